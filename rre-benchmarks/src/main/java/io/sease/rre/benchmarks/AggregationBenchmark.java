@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.benchmarks;
+
+import io.sease.rre.core.domain.DomainMember;
+import io.sease.rre.core.domain.Query;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Benchmark for {@link DomainMember#notifyCollectedMetrics()}, which pushes
+ * the metric values of a completed query up through its query group, topic
+ * and corpus. The multi-threaded variant reproduces the contention on the
+ * shared parent levels seen with the asynchronous evaluation managers.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AggregationBenchmark {
+
+    @Param({"1000"})
+    private int queryCount;
+
+    @Param({"1", "4"})
+    private int versionCount;
+
+    @Param({"10"})
+    private int depth;
+
+    private List<Query> queries;
+    private final AtomicInteger next = new AtomicInteger();
+
+    @Setup
+    public void setup() {
+        queries = Fixtures.evaluation(queryCount, Fixtures.versions(versionCount), depth);
+        // Notify each query once, so all of the parent metrics exist before measuring
+        queries.forEach(Query::notifyCollectedMetrics);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void notifySingleThread() {
+        nextQuery().notifyCollectedMetrics();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void notifyContended() {
+        nextQuery().notifyCollectedMetrics();
+    }
+
+    private Query nextQuery() {
+        return queries.get((next.getAndIncrement() & Integer.MAX_VALUE) % queries.size());
+    }
+}
@@ -0,0 +1,273 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.sease.rre.core.Engine;
+import io.sease.rre.core.domain.Evaluation;
+import io.sease.rre.core.domain.Query;
+import io.sease.rre.core.domain.metrics.MetricClassConfigurationManager;
+import io.sease.rre.core.evaluation.EvaluationManager;
+import io.sease.rre.core.evaluation.impl.AsynchronousEvaluationManager;
+import io.sease.rre.core.evaluation.impl.AsynchronousQueryEvaluationManager;
+import io.sease.rre.core.evaluation.impl.BatchingEvaluationManager;
+import io.sease.rre.core.evaluation.impl.NonBlockingEvaluationManager;
+import io.sease.rre.core.evaluation.impl.SynchronousEvaluationManager;
+import io.sease.rre.core.template.QueryTemplateManager;
+import io.sease.rre.core.template.impl.CachingQueryTemplateManager;
+import io.sease.rre.core.version.VersionManager;
+import io.sease.rre.core.version.VersionManagerImpl;
+import io.sease.rre.persistence.PersistenceHandler;
+import io.sease.rre.persistence.PersistenceManager;
+import io.sease.rre.search.api.SearchPlatform;
+import io.sease.rre.search.api.impl.InMemorySearchPlatform;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * End-to-end benchmark for {@link Engine#evaluate(Map)} - evaluation
+ * managers, metrics and aggregation - against the in-memory search platform,
+ * so no search engine cost is included.
+ * <p>
+ * As well as evaluations per second, this reports the queries evaluated
+ * per second ({@code queries}) and the peak heap use in MB during each
+ * iteration ({@code peakHeapMb}). Run with {@code -prof gc} for allocation rates.
+ * <p>
+ * Completed queries are discarded rather than persisted - persistence is
+ * measured by {@link JsonPersistenceBenchmark}. Note that the engine checks whether an
+ * asynchronous evaluation has completed once a second, so smaller query
+ * counts will be dominated by that wait.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(value = 1, jvmArgs = {"-Xms1g", "-Xmx1g"})
+public class EngineThroughputBenchmark {
+
+    private static final String INDEX_NAME = "benchmark";
+    private static final String TEMPLATE = "only_q.json";
+    private static final List<String> METRICS = Arrays.asList(
+            "io.sease.rre.core.domain.metrics.impl.PrecisionAtOne",
+            "io.sease.rre.core.domain.metrics.impl.PrecisionAtTen",
+            "io.sease.rre.core.domain.metrics.impl.Recall",
+            "io.sease.rre.core.domain.metrics.impl.AveragePrecision",
+            "io.sease.rre.core.domain.metrics.impl.ReciprocalRank",
+            "io.sease.rre.core.domain.metrics.impl.NDCGAtTen");
+
+    @Param({"sync", "async", "asyncQueries", "nonBlocking", "batched"})
+    private String manager;
+
+    @Param({"10000"})
+    private int queryCount;
+
+    @Param({"2"})
+    private int versionCount;
+
+    @Param({"0"})
+    private double latencyMillis;
+
+    private File folder;
+    private Engine engine;
+    private final Map<String, Object> configuration = new HashMap<>();
+
+    /**
+     * Counts the queries evaluated, reported as queries per second.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class QueryCounter {
+        public long queries;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            queries = 0;
+        }
+    }
+
+    /**
+     * Records the peak heap use during each iteration, in MB.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class HeapCounter {
+        public long peakHeapMb;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            peakHeapMb = 0;
+            heapPools().forEach(MemoryPoolMXBean::resetPeakUsage);
+        }
+
+        void record() {
+            peakHeapMb = Math.max(peakHeapMb,
+                    heapPools().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum() / (1024 * 1024));
+        }
+
+        private static Stream<MemoryPoolMXBean> heapPools() {
+            return ManagementFactory.getMemoryPoolMXBeans().stream().filter(pool -> pool.getType() == MemoryType.HEAP);
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        folder = Files.createTempDirectory("rre-engine-benchmark").toFile();
+        final ObjectMapper mapper = new ObjectMapper();
+
+        final File configurationSets = new File(folder, "configuration_sets");
+        final List<String> versions = Fixtures.versions(versionCount);
+        for (final String version : versions) {
+            final File versionFolder = new File(configurationSets, version);
+            versionFolder.mkdirs();
+            Files.write(new File(versionFolder, "in-memory-settings.json").toPath(), "{}".getBytes());
+        }
+
+        final File templates = new File(folder, "templates");
+        templates.mkdirs();
+        Files.write(new File(templates, TEMPLATE).toPath(), "{\"query\": \"$query\"}".getBytes());
+
+        final File ratings = new File(folder, "ratings");
+        ratings.mkdirs();
+        mapper.writeValue(new File(ratings, "ratings.json"), Fixtures.ratings(INDEX_NAME, TEMPLATE, queryCount, 20, 1000));
+
+        configuration.put("documentCount", 1000);
+        configuration.put("latencyMillis", latencyMillis);
+
+        final SearchPlatform platform = new InMemorySearchPlatform();
+        final VersionManager versionManager = new VersionManagerImpl(configurationSets, null, null, false);
+        final PersistenceManager persistenceManager = new PersistenceManager();
+        persistenceManager.registerHandler(new DiscardingPersistenceHandler());
+        final QueryTemplateManager templateManager = new CachingQueryTemplateManager(templates.getAbsolutePath());
+        engine = new Engine(
+                platform,
+                null,
+                ratings,
+                null,
+                MetricClassConfigurationManager.getInstance().buildMetricClassManager(METRICS, Collections.emptyMap()),
+                persistenceManager,
+                versionManager,
+                evaluationManager(platform, templateManager, persistenceManager, versionManager.getConfigurationVersions()));
+    }
+
+    private EvaluationManager evaluationManager(final SearchPlatform platform, final QueryTemplateManager templateManager,
+                                                final PersistenceManager persistenceManager, final Collection<String> versions) {
+        final String[] fields = new String[]{"id"};
+        final int threads = Math.max(4, Runtime.getRuntime().availableProcessors());
+        switch (manager) {
+            case "sync":
+                return new SynchronousEvaluationManager(platform, templateManager, persistenceManager, fields, versions, null);
+            case "async":
+                return new AsynchronousEvaluationManager(platform, templateManager, persistenceManager, fields, versions, null, threads);
+            case "asyncQueries":
+                return new AsynchronousQueryEvaluationManager(platform, templateManager, persistenceManager, fields, versions, null, threads);
+            case "nonBlocking":
+                return new NonBlockingEvaluationManager(platform, templateManager, persistenceManager, fields, versions, null, threads, 256);
+            case "batched":
+                return new BatchingEvaluationManager(platform, templateManager, persistenceManager, fields, versions, null, threads, 50, 50);
+            default:
+                throw new IllegalArgumentException("Unknown evaluation manager " + manager);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (final Stream<Path> paths = Files.walk(folder.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    /**
+     * Persistence handler which drops every query, so nothing is retained
+     * between evaluations.
+     */
+    private static class DiscardingPersistenceHandler implements PersistenceHandler {
+        @Override
+        public void configure(final String name, final Map<String, Object> configuration) {
+            // Nothing to configure
+        }
+
+        @Override
+        public String getName() {
+            return "discard";
+        }
+
+        @Override
+        public void beforeStart() {
+            // Nothing to prepare
+        }
+
+        @Override
+        public void start() {
+            // Nothing to start
+        }
+
+        @Override
+        public void recordQuery(final Query q) {
+            // Dropped
+        }
+
+        @Override
+        public void beforeStop() {
+            // Nothing to write
+        }
+
+        @Override
+        public void stop() {
+            // Nothing to stop
+        }
+    }
+
+    @Benchmark
+    public Evaluation evaluate(final QueryCounter queryCounter, final HeapCounter heapCounter) {
+        final Evaluation evaluation = engine.evaluate(configuration);
+        queryCounter.queries += (long) queryCount * versionCount;
+        heapCounter.record();
+        return evaluation;
+    }
+}
@@ -0,0 +1,271 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.sease.rre.core.domain.Corpus;
+import io.sease.rre.core.domain.Evaluation;
+import io.sease.rre.core.domain.Query;
+import io.sease.rre.core.domain.QueryGroup;
+import io.sease.rre.core.domain.Topic;
+import io.sease.rre.core.domain.metrics.Metric;
+import io.sease.rre.core.domain.metrics.impl.AveragePrecision;
+import io.sease.rre.core.domain.metrics.impl.ExpectedReciprocalRank;
+import io.sease.rre.core.domain.metrics.impl.FMeasureAtK;
+import io.sease.rre.core.domain.metrics.impl.NDCGAtK;
+import io.sease.rre.core.domain.metrics.impl.Precision;
+import io.sease.rre.core.domain.metrics.impl.Recall;
+import io.sease.rre.core.domain.metrics.impl.RecallAtK;
+import io.sease.rre.core.domain.metrics.impl.ReciprocalRank;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static io.sease.rre.Field.DEFAULT_ID_FIELD_NAME;
+import static io.sease.rre.Field.DESCRIPTION;
+import static io.sease.rre.Field.GAIN;
+import static io.sease.rre.Field.ID_FIELD_NAME;
+import static io.sease.rre.Field.INDEX_NAME;
+import static io.sease.rre.Field.NAME;
+import static io.sease.rre.Field.QUERIES;
+import static io.sease.rre.Field.QUERY_GROUPS;
+import static io.sease.rre.Field.RELEVANT_DOCUMENTS;
+import static io.sease.rre.Field.TOPICS;
+
+/**
+ * Synthetic fixtures shared by the benchmarks. Everything is built from a
+ * seeded {@link Random}, so each run of a benchmark sees the same data.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+public final class Fixtures {
+
+    public static final long SEED = 42L;
+    public static final int MAX_GRADE = 3;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private Fixtures() {
+    }
+
+    /**
+     * @param count the number of versions.
+     * @return version names v1.0, v1.1, and so on.
+     */
+    public static List<String> versions(final int count) {
+        final List<String> versions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            versions.add("v1." + i);
+        }
+        return versions;
+    }
+
+    /**
+     * Build a set of judgements, in the per-document style used once the
+     * ratings have been read (eg. <code>{"doc1": {"gain": 3}}</code>).
+     *
+     * @param random    the source of randomness.
+     * @param count     the number of judged documents.
+     * @param docRange  the range of document identifiers to judge from.
+     * @return the judgements.
+     */
+    public static ObjectNode relevantDocuments(final Random random, final int count, final int docRange) {
+        final ObjectNode judgements = MAPPER.createObjectNode();
+        while (judgements.size() < Math.min(count, docRange)) {
+            judgements.putObject(docId(random.nextInt(docRange))).put(GAIN, 1 + random.nextInt(MAX_GRADE));
+        }
+        return judgements;
+    }
+
+    /**
+     * Build a set of judgements in the gain-to-array style used in ratings
+     * files (eg. <code>{"3": ["doc1", "doc2"]}</code>).
+     *
+     * @param random    the source of randomness.
+     * @param count     the number of judged documents.
+     * @param docRange  the range of document identifiers to judge from.
+     * @return the judgements.
+     */
+    public static ObjectNode gainToArrayRelevantDocuments(final Random random, final int count, final int docRange) {
+        final ObjectNode judgements = MAPPER.createObjectNode();
+        relevantDocuments(random, count, docRange).fields().forEachRemaining(judgement -> {
+            final String gain = judgement.getValue().get(GAIN).asText();
+            final ArrayNode docs = judgements.has(gain) ? (ArrayNode) judgements.get(gain) : judgements.putArray(gain);
+            docs.add(judgement.getKey());
+        });
+        return judgements;
+    }
+
+    /**
+     * Build a result list. Each hit is a new, mutable map, since collecting
+     * a hit may add to it.
+     *
+     * @param random   the source of randomness.
+     * @param depth    the number of hits.
+     * @param docRange the range of document identifiers to return.
+     * @return the hits, in rank order.
+     */
+    public static List<Map<String, Object>> hits(final Random random, final int depth, final int docRange) {
+        final List<Map<String, Object>> hits = new ArrayList<>(depth);
+        for (int i = 0; i < depth; i++) {
+            final Map<String, Object> hit = new HashMap<>();
+            hit.put(DEFAULT_ID_FIELD_NAME, docId(random.nextInt(docRange)));
+            hits.add(hit);
+        }
+        return hits;
+    }
+
+    /**
+     * Build one instance of each of the standard metrics, set up as the
+     * engine would for a single query.
+     *
+     * @param relevantDocuments the judgements for the query.
+     * @param versions          the versions being evaluated.
+     * @param k                 the cut-off for the metrics which take one.
+     * @return the metrics.
+     */
+    public static List<Metric> metrics(final JsonNode relevantDocuments, final List<String> versions, final int k) {
+        final List<Metric> metrics = new ArrayList<>();
+        metrics.add(new Precision());
+        metrics.add(new Recall());
+        metrics.add(new RecallAtK(k));
+        metrics.add(new AveragePrecision());
+        metrics.add(new ReciprocalRank(k, null, null, null));
+        metrics.add(new NDCGAtK(k, null, null, null));
+        metrics.add(new ExpectedReciprocalRank(null, null, k, null));
+        metrics.add(new FMeasureAtK(1, k));
+        metrics.forEach(metric -> prepare(metric, relevantDocuments, versions));
+        return metrics;
+    }
+
+    /**
+     * Set up a metric as the engine would for a single query.
+     *
+     * @param metric            the metric.
+     * @param relevantDocuments the judgements for the query.
+     * @param versions          the versions being evaluated.
+     * @return the metric.
+     */
+    public static Metric prepare(final Metric metric, final JsonNode relevantDocuments, final List<String> versions) {
+        metric.setIdFieldName(DEFAULT_ID_FIELD_NAME);
+        metric.setRelevantDocuments(relevantDocuments);
+        metric.setVersions(versions);
+        return metric;
+    }
+
+    /**
+     * Build a query evaluation, with its metrics prepared but nothing
+     * collected.
+     */
+    public static Query query(final Query query, final JsonNode relevantDocuments, final List<String> versions, final int k) {
+        query.setIdFieldName(DEFAULT_ID_FIELD_NAME);
+        query.setRelevantDocuments(relevantDocuments);
+        query.prepare(metrics(relevantDocuments, versions, k));
+        return query;
+    }
+
+    /**
+     * Feed a result list into a query, for each version.
+     */
+    public static void collect(final Query query, final Random random, final List<String> versions, final int depth, final int docRange) {
+        for (final String version : versions) {
+            final List<Map<String, Object>> hits = hits(random, depth, docRange);
+            query.setTotalHits(docRange, version);
+            for (int rank = 0; rank < hits.size(); rank++) {
+                query.collect(hits.get(rank), rank + 1, version);
+            }
+        }
+    }
+
+    /**
+     * Build a complete evaluation tree - one corpus, with the queries split
+     * across topics and query groups - with results collected for every
+     * query, but metrics not yet notified to the parent levels.
+     *
+     * @param queryCount the total number of queries.
+     * @param versions   the versions being evaluated.
+     * @param depth      the number of results collected per query and version.
+     * @return the queries, in creation order.
+     */
+    public static List<Query> evaluation(final int queryCount, final List<String> versions, final int depth) {
+        final Random random = new Random(SEED);
+        final int docRange = depth * 10;
+        final Corpus corpus = new Evaluation().findOrCreate("corpus.json", Corpus::new);
+
+        final List<Query> queries = new ArrayList<>(queryCount);
+        for (int i = 0; i < queryCount; i++) {
+            final Topic topic = corpus.findOrCreate("topic " + (i / 100), Topic::new);
+            final QueryGroup group = topic.findOrCreate("group " + (i / 10), QueryGroup::new);
+            final Query query = query(
+                    group.findOrCreate("query " + i, Query::new),
+                    relevantDocuments(random, depth, docRange),
+                    versions,
+                    depth);
+            collect(query, random, versions, depth, docRange);
+            queries.add(query);
+        }
+        return queries;
+    }
+
+    /**
+     * Build a ratings set, in the format read by the engine, with the
+     * queries split across topics and query groups. Every query group uses
+     * the same template, with a single <code>$query</code> placeholder.
+     *
+     * @param indexName  the name of the index being evaluated.
+     * @param template   the name of the query template.
+     * @param queryCount the total number of queries.
+     * @param judgements the number of judged documents per query.
+     * @param docRange   the range of document identifiers to judge from.
+     * @return the ratings.
+     */
+    public static ObjectNode ratings(final String indexName, final String template, final int queryCount,
+                                     final int judgements, final int docRange) {
+        final Random random = new Random(SEED);
+        final ObjectNode ratings = MAPPER.createObjectNode();
+        ratings.put(INDEX_NAME, indexName);
+        ratings.put(ID_FIELD_NAME, DEFAULT_ID_FIELD_NAME);
+
+        final ArrayNode topics = ratings.putArray(TOPICS);
+        ArrayNode groups = null;
+        ArrayNode queries = null;
+        for (int i = 0; i < queryCount; i++) {
+            if (i % 100 == 0) {
+                groups = topics.addObject().put(DESCRIPTION, "topic " + (i / 100)).putArray(QUERY_GROUPS);
+            }
+            if (i % 10 == 0) {
+                final ObjectNode group = groups.addObject()
+                        .put(NAME, "group " + (i / 10))
+                        .put("template", template);
+                group.set(RELEVANT_DOCUMENTS, relevantDocuments(random, judgements, docRange));
+                queries = group.putArray(QUERIES);
+            }
+            queries.addObject().putObject("placeholders").put("$query", "query " + i);
+        }
+        return ratings;
+    }
+
+    private static String docId(final int i) {
+        return "doc" + i;
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.benchmarks;
+
+import io.sease.rre.core.domain.Query;
+import io.sease.rre.persistence.PersistenceException;
+import io.sease.rre.persistence.impl.JsonPersistenceHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark for {@link JsonPersistenceHandler}: aggregating the metrics of
+ * every recorded query and serializing the whole evaluation to a file.
+ * <p>
+ * Each invocation needs a fresh evaluation tree, so this benchmark is best
+ * run with larger query counts, where the invocation time dwarfs the cost
+ * of the per-invocation set up.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonPersistenceBenchmark {
+
+    @Param({"1000", "10000"})
+    private int queryCount;
+
+    @Param({"1", "4"})
+    private int versionCount;
+
+    @Param({"10"})
+    private int depth;
+
+    private File outputFile;
+    private JsonPersistenceHandler handler;
+
+    @Setup(Level.Trial)
+    public void createOutputFile() throws IOException {
+        outputFile = Files.createTempFile("rre-benchmark", ".json").toFile();
+    }
+
+    @Setup(Level.Invocation)
+    public void setup() throws PersistenceException {
+        final List<Query> queries = Fixtures.evaluation(queryCount, Fixtures.versions(versionCount), depth);
+        handler = new JsonPersistenceHandler();
+        handler.configure("json", Collections.singletonMap("destinationFile", outputFile.getAbsolutePath()));
+        handler.beforeStart();
+        queries.forEach(handler::recordQuery);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteOutputFile() {
+        outputFile.delete();
+    }
+
+    @Benchmark
+    public File persist() {
+        handler.beforeStop();
+        return outputFile;
+    }
+}
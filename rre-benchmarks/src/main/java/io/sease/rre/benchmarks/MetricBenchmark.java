@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.sease.rre.core.domain.metrics.Metric;
+import io.sease.rre.core.domain.metrics.ValueFactory;
+import io.sease.rre.core.domain.metrics.impl.AveragePrecision;
+import io.sease.rre.core.domain.metrics.impl.ExpectedReciprocalRank;
+import io.sease.rre.core.domain.metrics.impl.FMeasureAtK;
+import io.sease.rre.core.domain.metrics.impl.NDCGAtK;
+import io.sease.rre.core.domain.metrics.impl.Precision;
+import io.sease.rre.core.domain.metrics.impl.Recall;
+import io.sease.rre.core.domain.metrics.impl.RecallAtK;
+import io.sease.rre.core.domain.metrics.impl.ReciprocalRank;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark for a single metric: collecting k hits into its
+ * {@link ValueFactory}, then calculating the value.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MetricBenchmark {
+
+    private static final String VERSION = "v1.0";
+    private static final List<String> VERSIONS = Collections.singletonList(VERSION);
+
+    @Param({"P", "R", "R@k", "AP", "RR@k", "NDCG@k", "ERR@k", "F1@k"})
+    private String metric;
+
+    @Param({"1", "10", "100"})
+    private int k;
+
+    private JsonNode relevantDocuments;
+    private List<Map<String, Object>> hits;
+
+    @Setup
+    public void setup() {
+        final Random random = new Random(Fixtures.SEED);
+        relevantDocuments = Fixtures.relevantDocuments(random, Math.max(k, 10), k * 10);
+        hits = Fixtures.hits(random, k, k * 10);
+    }
+
+    @Benchmark
+    public BigDecimal collectAndValue() {
+        final Metric instance = Fixtures.prepare(newMetric(), relevantDocuments, VERSIONS);
+        final ValueFactory values = instance.valueFactory(VERSION);
+        values.setTotalHits(hits.size(), VERSION);
+        for (int rank = 0; rank < hits.size(); rank++) {
+            values.collect(hits.get(rank), rank + 1, VERSION);
+        }
+        return values.value();
+    }
+
+    private Metric newMetric() {
+        switch (metric) {
+            case "P":
+                return new Precision();
+            case "R":
+                return new Recall();
+            case "R@k":
+                return new RecallAtK(k);
+            case "AP":
+                return new AveragePrecision();
+            case "RR@k":
+                return new ReciprocalRank(k, null, null, null);
+            case "NDCG@k":
+                return new NDCGAtK(k, null, null, null);
+            case "ERR@k":
+                return new ExpectedReciprocalRank(null, null, k, null);
+            case "F1@k":
+                return new FMeasureAtK(1, k);
+            default:
+                throw new IllegalArgumentException("Unknown metric " + metric);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.sease.rre.core.domain.Query;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark for {@link Query#collect}, which fans each search hit out to
+ * every metric of the query, for each version being evaluated.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueryCollectBenchmark {
+
+    @Param({"1", "4"})
+    private int versionCount;
+
+    @Param({"10", "100"})
+    private int depth;
+
+    private List<String> versions;
+    private JsonNode relevantDocuments;
+    private List<List<Map<String, Object>>> hits;
+
+    @Setup
+    public void setup() {
+        final Random random = new Random(Fixtures.SEED);
+        final int docRange = depth * 10;
+        versions = Fixtures.versions(versionCount);
+        relevantDocuments = Fixtures.relevantDocuments(random, depth, docRange);
+        hits = new ArrayList<>();
+        for (int i = 0; i < versionCount; i++) {
+            hits.add(Fixtures.hits(random, depth, docRange));
+        }
+    }
+
+    @Benchmark
+    public Query collect() {
+        final Query query = Fixtures.query(new Query(), relevantDocuments, versions, depth);
+        for (int v = 0; v < versionCount; v++) {
+            final String version = versions.get(v);
+            final List<Map<String, Object>> versionHits = hits.get(v);
+            query.setTotalHits(versionHits.size(), version);
+            for (int rank = 0; rank < versionHits.size(); rank++) {
+                query.collect(versionHits.get(rank), rank + 1, version);
+            }
+        }
+        return query;
+    }
+}
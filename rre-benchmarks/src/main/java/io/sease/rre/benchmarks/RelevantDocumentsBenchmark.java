@@ -0,0 +1,73 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.sease.rre.core.Engine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark for {@link Engine#relevantDocuments(JsonNode)}, which converts
+ * the judgements of each query in the ratings into their per-document form.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RelevantDocumentsBenchmark {
+
+    @Param({"10", "100", "1000"})
+    private int judgements;
+
+    @Param({"true", "false"})
+    private boolean gainToArray;
+
+    private Engine engine;
+    private JsonNode definition;
+
+    @Setup
+    public void setup() {
+        // The conversion uses none of the engine's collaborators
+        engine = new Engine(null, null, null, null, null, null, null, null);
+        final Random random = new Random(Fixtures.SEED);
+        definition = gainToArray
+                ? Fixtures.gainToArrayRelevantDocuments(random, judgements, judgements * 10)
+                : Fixtures.relevantDocuments(random, judgements, judgements * 10);
+    }
+
+    @Benchmark
+    public JsonNode relevantDocuments() {
+        return engine.relevantDocuments(definition);
+    }
+}
@@ -0,0 +1,561 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.benchmarks.generator;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.zip.GZIPOutputStream;
+
+import static io.sease.rre.Field.CORPORA_FILENAME;
+import static io.sease.rre.Field.DEFAULT_ID_FIELD_NAME;
+import static io.sease.rre.Field.DESCRIPTION;
+import static io.sease.rre.Field.GAIN;
+import static io.sease.rre.Field.ID_FIELD_NAME;
+import static io.sease.rre.Field.INDEX_NAME;
+import static io.sease.rre.Field.NAME;
+import static io.sease.rre.Field.QUERIES;
+import static io.sease.rre.Field.QUERY_GROUPS;
+import static io.sease.rre.Field.RELEVANT_DOCUMENTS;
+import static io.sease.rre.Field.TOPICS;
+
+/**
+ * Generates a synthetic, reproducible RRE data set: a ratings file, the
+ * matching corpus, the query template and a set of configuration set
+ * folders, laid out as the {@link io.sease.rre.core.Engine} expects them.
+ * <p>
+ * Query terms are drawn from a synthetic vocabulary with a Zipf
+ * distribution, as are the relevant documents for each query group and
+ * their grades, so the skew of each can be controlled. Every relevant
+ * document's title contains the terms of the query groups it is judged for,
+ * so the generated queries find their relevant documents when run against a
+ * real search engine.
+ * <p>
+ * Run from the command line with options in the form
+ * {@code --name=value} - see {@link Options} for the full list.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+public class DatasetGenerator {
+
+    private static final Logger LOGGER = LogManager.getLogger(DatasetGenerator.class);
+
+    static final String TEMPLATE = "only_q.json";
+    static final String DOCUMENT_PREFIX = "doc";
+    static final String TITLE = "title";
+    static final String CATEGORY = "category";
+    static final String POPULARITY = "popularity";
+
+    private static final String[] SYLLABLES = {
+            "ba", "be", "bo", "da", "de", "do", "fa", "fi", "ga", "go", "ka", "ki", "ko", "la", "le", "lo",
+            "ma", "mi", "mo", "na", "ne", "no", "pa", "pi", "ra", "re", "ro", "sa", "si", "ta", "te", "to"
+    };
+    private static final int MAX_REQUIRED_TERMS_FACTOR = 4;
+
+    private final Options options;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final String[] vocabulary;
+    private final Map<Integer, List<String>> requiredTerms = new HashMap<>();
+
+    public DatasetGenerator(final Options options) {
+        this.options = options;
+        this.vocabulary = new String[options.vocabulary];
+        for (int i = 0; i < vocabulary.length; i++) {
+            vocabulary[i] = word(i);
+        }
+    }
+
+    public static void main(final String[] args) throws IOException {
+        final Options options = Options.parse(args);
+        new DatasetGenerator(options).generate();
+    }
+
+    /**
+     * Write the data set to the output folder. Existing files with the same
+     * names are replaced.
+     *
+     * @throws IOException if any of the files cannot be written.
+     */
+    public void generate() throws IOException {
+        final long start = System.currentTimeMillis();
+        requiredTerms.clear();
+
+        writeTemplate(new File(options.output, "templates"));
+        writeConfigurationSets(new File(options.output, "configuration_sets"));
+        writeRatings(new File(options.output, "ratings"));
+        if (options.platform.hasCorpus()) {
+            writeCorpus(new File(options.output, "corpora"));
+        }
+
+        LOGGER.info("Generated {} queries over {} documents in {} ({} ms)",
+                options.queries, options.documents, options.output, System.currentTimeMillis() - start);
+    }
+
+    private void writeTemplate(final File folder) throws IOException {
+        final ObjectNode template = mapper.createObjectNode();
+        if (options.platform == Platform.ELASTICSEARCH) {
+            template.putObject("query").putObject("match").put(TITLE, "$query");
+        } else {
+            template.put("q", "$query");
+        }
+        mapper.writerWithDefaultPrettyPrinter().writeValue(new File(mkdirs(folder), TEMPLATE), template);
+    }
+
+    private void writeConfigurationSets(final File folder) throws IOException {
+        for (int i = 0; i < options.versions; i++) {
+            final File version = mkdirs(new File(folder, "v1." + i));
+            switch (options.platform) {
+                case SOLR:
+                    final File conf = mkdirs(new File(version, options.indexName + "/conf"));
+                    copyResource("solr.xml", version);
+                    copyResource("schema.xml", conf);
+                    copyResource("solrconfig.xml", conf);
+                    break;
+                case ELASTICSEARCH:
+                    mapper.writerWithDefaultPrettyPrinter().writeValue(new File(version, "index-shape.json"), indexShape());
+                    break;
+                case IN_MEMORY:
+                    final ObjectNode settings = mapper.createObjectNode()
+                            .put("documentCount", options.documents)
+                            .put("idField", DEFAULT_ID_FIELD_NAME);
+                    mapper.writerWithDefaultPrettyPrinter().writeValue(new File(version, "in-memory-settings.json"), settings);
+                    break;
+            }
+        }
+    }
+
+    private ObjectNode indexShape() {
+        final ObjectNode shape = mapper.createObjectNode();
+        shape.putObject("settings")
+                .put("number_of_shards", 1)
+                .put("number_of_replicas", 0);
+        final ObjectNode properties = shape.putObject("mappings").putObject("doc").putObject("properties");
+        properties.putObject(TITLE).put("type", "text");
+        properties.putObject(CATEGORY).put("type", "keyword");
+        properties.putObject(POPULARITY).put("type", "integer");
+        return shape;
+    }
+
+    private void copyResource(final String name, final File folder) throws IOException {
+        try (final InputStream in = getClass().getResourceAsStream("/generator/solr/" + name)) {
+            Files.copy(in, new File(folder, name).toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private void writeRatings(final File folder) throws IOException {
+        final Random random = new Random(options.seed);
+        final ZipfSampler terms = new ZipfSampler(vocabulary.length, options.termSkew);
+        final ZipfSampler documents = new ZipfSampler(options.documents, options.relevanceSkew);
+        final ZipfSampler grades = new ZipfSampler(options.maxGrade, options.gradeSkew);
+
+        try (final JsonGenerator json = mapper.getFactory().createGenerator(new File(mkdirs(folder), "ratings.json"), JsonEncoding.UTF8)) {
+            json.writeStartObject();
+            json.writeStringField(INDEX_NAME, options.indexName);
+            json.writeStringField(ID_FIELD_NAME, DEFAULT_ID_FIELD_NAME);
+            if (options.platform.hasCorpus()) {
+                json.writeStringField(CORPORA_FILENAME, corpusFileName());
+            }
+
+            json.writeArrayFieldStart(TOPICS);
+            int query = 0;
+            int group = 0;
+            while (query < options.queries) {
+                json.writeStartObject();
+                json.writeStringField(DESCRIPTION, "topic " + (group / options.groupsPerTopic));
+                json.writeArrayFieldStart(QUERY_GROUPS);
+                for (int i = 0; i < options.groupsPerTopic && query < options.queries; i++) {
+                    final int queryCount = Math.min(options.queriesPerGroup, options.queries - query);
+                    writeQueryGroup(json, random, group++, queryCount, terms, documents, grades);
+                    query += queryCount;
+                }
+                json.writeEndArray();
+                json.writeEndObject();
+            }
+            json.writeEndArray();
+            json.writeEndObject();
+        }
+    }
+
+    private void writeQueryGroup(final JsonGenerator json, final Random random, final int group, final int queryCount,
+                                 final ZipfSampler terms, final ZipfSampler documents, final ZipfSampler grades) throws IOException {
+        final List<String> groupTerms = new ArrayList<>(options.termsPerQuery);
+        for (final Integer term : distinct(random, terms, options.termsPerQuery)) {
+            groupTerms.add(vocabulary[term]);
+        }
+
+        json.writeStartObject();
+        json.writeStringField(NAME, "group " + group);
+        json.writeStringField("template", TEMPLATE);
+
+        json.writeArrayFieldStart(QUERIES);
+        for (int i = 0; i < queryCount; i++) {
+            final List<String> queryTerms = new ArrayList<>(groupTerms);
+            if (i > 0) {
+                // Variations on the group's query, as a user would type them
+                Collections.shuffle(queryTerms, random);
+                queryTerms.add(vocabulary[terms.sample(random)]);
+            }
+            json.writeStartObject();
+            json.writeObjectFieldStart("placeholders");
+            json.writeStringField("$query", String.join(" ", queryTerms));
+            json.writeEndObject();
+            json.writeEndObject();
+        }
+        json.writeEndArray();
+
+        final Map<Integer, Integer> judgements = new LinkedHashMap<>();
+        for (final Integer document : distinct(random, documents, options.relevantPerGroup)) {
+            judgements.put(document, 1 + grades.sample(random));
+            final List<String> required = requiredTerms.computeIfAbsent(document, d -> new ArrayList<>());
+            if (required.size() < options.titleLength * MAX_REQUIRED_TERMS_FACTOR) {
+                required.addAll(groupTerms);
+            }
+        }
+        json.writeFieldName(RELEVANT_DOCUMENTS);
+        if (options.ratingsStyle == RatingsStyle.GAIN_TO_ARRAY) {
+            writeGainToArray(json, judgements);
+        } else {
+            writePerDocument(json, judgements);
+        }
+        json.writeEndObject();
+    }
+
+    private void writePerDocument(final JsonGenerator json, final Map<Integer, Integer> judgements) throws IOException {
+        json.writeStartObject();
+        for (final Map.Entry<Integer, Integer> judgement : judgements.entrySet()) {
+            json.writeObjectFieldStart(DOCUMENT_PREFIX + judgement.getKey());
+            json.writeNumberField(GAIN, judgement.getValue());
+            json.writeEndObject();
+        }
+        json.writeEndObject();
+    }
+
+    private void writeGainToArray(final JsonGenerator json, final Map<Integer, Integer> judgements) throws IOException {
+        final Map<Integer, List<Integer>> byGain = new TreeMap<>(Collections.reverseOrder());
+        judgements.forEach((document, gain) -> byGain.computeIfAbsent(gain, g -> new ArrayList<>()).add(document));
+
+        json.writeStartObject();
+        for (final Map.Entry<Integer, List<Integer>> gain : byGain.entrySet()) {
+            json.writeArrayFieldStart(String.valueOf(gain.getKey()));
+            for (final Integer document : gain.getValue()) {
+                json.writeString(DOCUMENT_PREFIX + document);
+            }
+            json.writeEndArray();
+        }
+        json.writeEndObject();
+    }
+
+    private void writeCorpus(final File folder) throws IOException {
+        final Random random = new Random(options.seed + 1);
+        final ZipfSampler terms = new ZipfSampler(vocabulary.length, options.termSkew);
+        final ZipfSampler categories = new ZipfSampler(options.categories, options.termSkew);
+        final boolean bulk = options.platform == Platform.ELASTICSEARCH;
+
+        final File file = new File(mkdirs(folder), corpusFileName());
+        try (final OutputStream out = options.compress
+                ? new GZIPOutputStream(new FileOutputStream(file), 1 << 16)
+                : new FileOutputStream(file);
+             final Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16)) {
+            if (!bulk) {
+                writer.write("[\n");
+            }
+
+            final Map<String, Object> document = new LinkedHashMap<>();
+            final Map<String, Object> metadata = new LinkedHashMap<>();
+            for (int i = 0; i < options.documents; i++) {
+                final String id = DOCUMENT_PREFIX + i;
+                document.clear();
+                if (bulk) {
+                    metadata.put("_index", options.indexName);
+                    metadata.put("_type", "doc");
+                    metadata.put("_id", id);
+                    writer.write(mapper.writeValueAsString(Collections.singletonMap("index", metadata)));
+                    writer.write('\n');
+                } else {
+                    document.put(DEFAULT_ID_FIELD_NAME, id);
+                }
+                document.put(TITLE, title(random, terms, requiredTerms.getOrDefault(i, Collections.emptyList())));
+                document.put(CATEGORY, CATEGORY + categories.sample(random));
+                document.put(POPULARITY, options.documents - i);
+                writer.write(mapper.writeValueAsString(document));
+                if (!bulk && i < options.documents - 1) {
+                    writer.write(',');
+                }
+                writer.write('\n');
+            }
+
+            if (!bulk) {
+                writer.write("]\n");
+            }
+        }
+    }
+
+    private String title(final Random random, final ZipfSampler terms, final List<String> required) {
+        final List<String> words = new ArrayList<>(required);
+        while (words.size() < options.titleLength) {
+            words.add(vocabulary[terms.sample(random)]);
+        }
+        Collections.shuffle(words, random);
+        return String.join(" ", words);
+    }
+
+    private Set<Integer> distinct(final Random random, final ZipfSampler sampler, final int count) {
+        final Set<Integer> values = new LinkedHashSet<>();
+        // Heavily skewed samplers may take a long time to find enough distinct values
+        for (int attempts = 0; values.size() < count && attempts < count * 100; attempts++) {
+            values.add(sampler.sample(random));
+        }
+        return values;
+    }
+
+    String corpusFileName() {
+        final String extension = options.platform == Platform.ELASTICSEARCH ? ".bulk" : ".json";
+        return options.indexName + extension + (options.compress ? ".gz" : "");
+    }
+
+    /**
+     * Build a pronounceable synthetic word from an index. Every index gives
+     * a distinct word, and lower indexes give shorter words.
+     */
+    static String word(final int index) {
+        final StringBuilder word = new StringBuilder();
+        int remaining = index;
+        do {
+            word.append(SYLLABLES[remaining % SYLLABLES.length]);
+            remaining /= SYLLABLES.length;
+        } while (remaining > 0);
+        return word.length() < 4 ? word.append("n").toString() : word.toString();
+    }
+
+    private static File mkdirs(final File folder) throws IOException {
+        if (!folder.isDirectory() && !folder.mkdirs()) {
+            throw new IOException("Unable to create " + folder);
+        }
+        return folder;
+    }
+
+    /**
+     * The search platform the data set is generated for, which determines
+     * the layout of the corpus, configuration sets and query template.
+     */
+    public enum Platform {
+        SOLR(true),
+        ELASTICSEARCH(true),
+        IN_MEMORY(false);
+
+        private final boolean corpus;
+
+        Platform(final boolean corpus) {
+            this.corpus = corpus;
+        }
+
+        boolean hasCorpus() {
+            return corpus;
+        }
+    }
+
+    /**
+     * The style of the relevant documents in the ratings file.
+     */
+    public enum RatingsStyle {
+        /**
+         * One entry per judged document: <code>{"doc1": {"gain": 3}}</code>.
+         */
+        PER_DOCUMENT,
+        /**
+         * One array of documents per gain: <code>{"3": ["doc1", "doc2"]}</code>.
+         */
+        GAIN_TO_ARRAY
+    }
+
+    /**
+     * The generator options. Each can be set on the command line as
+     * {@code --name=value}, using the field name; enumerated values are
+     * case-insensitive, and may use hyphens in place of underscores (eg.
+     * {@code --platform=in-memory}).
+     */
+    public static class Options {
+        /** The folder to write the data set to. Required. */
+        File output;
+        /** The search platform to generate the data set for. */
+        Platform platform = Platform.SOLR;
+        /** The style of the relevant documents in the ratings file. */
+        RatingsStyle ratingsStyle = RatingsStyle.PER_DOCUMENT;
+        /** The index (or collection) name. */
+        String indexName = "synthetic";
+        /** The random seed - the same options and seed give the same data set. */
+        long seed = 42L;
+        /** The number of documents in the corpus. */
+        int documents = 1_000_000;
+        /** The total number of queries. */
+        int queries = 100_000;
+        /** The number of queries in each query group. */
+        int queriesPerGroup = 5;
+        /** The number of query groups in each topic. */
+        int groupsPerTopic = 20;
+        /** The number of judged documents for each query group. */
+        int relevantPerGroup = 10;
+        /** The highest gain a judged document can have. */
+        int maxGrade = 3;
+        /** The number of configuration set versions. */
+        int versions = 2;
+        /** The number of distinct terms to build queries and titles from. */
+        int vocabulary = 50_000;
+        /** The number of terms in each query group's base query. */
+        int termsPerQuery = 2;
+        /** The minimum number of terms in each document title. */
+        int titleLength = 8;
+        /** The number of distinct document categories. */
+        int categories = 100;
+        /** The Zipf exponent for terms and categories - 0 is uniform. */
+        double termSkew = 1.0;
+        /** The Zipf exponent for the documents judged relevant - 0 is uniform. */
+        double relevanceSkew = 0.5;
+        /** The Zipf exponent for grades, favouring lower gains - 0 is uniform. */
+        double gradeSkew = 1.0;
+        /** Whether to gzip the corpus file. */
+        boolean compress;
+
+        /**
+         * Parse the options from a set of {@code --name=value} arguments.
+         *
+         * @param args the arguments.
+         * @return the options.
+         * @throws IllegalArgumentException if an argument is unknown or
+         *                                  malformed, or the output folder is not set.
+         */
+        public static Options parse(final String... args) {
+            final Options options = new Options();
+            for (final String arg : args) {
+                final int separator = arg.indexOf('=');
+                if (!arg.startsWith("--") || separator < 0) {
+                    throw new IllegalArgumentException("Expected --name=value, found " + arg);
+                }
+                options.set(arg.substring(2, separator), arg.substring(separator + 1));
+            }
+            if (options.output == null) {
+                throw new IllegalArgumentException("No --output folder given");
+            }
+            return options;
+        }
+
+        private void set(final String name, final String value) {
+            switch (name) {
+                case "output":
+                    output = new File(value);
+                    break;
+                case "platform":
+                    platform = Platform.valueOf(enumName(value));
+                    break;
+                case "ratingsStyle":
+                    ratingsStyle = RatingsStyle.valueOf(enumName(value));
+                    break;
+                case "indexName":
+                    indexName = value;
+                    break;
+                case "seed":
+                    seed = Long.parseLong(value);
+                    break;
+                case "documents":
+                    documents = positive(name, value);
+                    break;
+                case "queries":
+                    queries = positive(name, value);
+                    break;
+                case "queriesPerGroup":
+                    queriesPerGroup = positive(name, value);
+                    break;
+                case "groupsPerTopic":
+                    groupsPerTopic = positive(name, value);
+                    break;
+                case "relevantPerGroup":
+                    relevantPerGroup = positive(name, value);
+                    break;
+                case "maxGrade":
+                    maxGrade = positive(name, value);
+                    break;
+                case "versions":
+                    versions = positive(name, value);
+                    break;
+                case "vocabulary":
+                    vocabulary = positive(name, value);
+                    break;
+                case "termsPerQuery":
+                    termsPerQuery = positive(name, value);
+                    break;
+                case "titleLength":
+                    titleLength = positive(name, value);
+                    break;
+                case "categories":
+                    categories = positive(name, value);
+                    break;
+                case "termSkew":
+                    termSkew = Double.parseDouble(value);
+                    break;
+                case "relevanceSkew":
+                    relevanceSkew = Double.parseDouble(value);
+                    break;
+                case "gradeSkew":
+                    gradeSkew = Double.parseDouble(value);
+                    break;
+                case "compress":
+                    compress = Boolean.parseBoolean(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option --" + name);
+            }
+        }
+
+        private static String enumName(final String value) {
+            return value.replace('-', '_').toUpperCase(Locale.ROOT);
+        }
+
+        private static int positive(final String name, final String value) {
+            final int number = Integer.parseInt(value);
+            if (number < 1) {
+                throw new IllegalArgumentException("--" + name + " must be at least 1: " + value);
+            }
+            return number;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.benchmarks.generator;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Samples integers in {@code [0, size)} following a Zipf distribution, so
+ * that low values are drawn far more often than high ones. An exponent of
+ * zero gives a uniform distribution; larger exponents give more skew.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+class ZipfSampler {
+
+    private final int size;
+    private final double[] cumulative;
+
+    /**
+     * @param size     the number of values to sample from.
+     * @param exponent the skew of the distribution, zero or above.
+     */
+    ZipfSampler(final int size, final double exponent) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Zipf size must be at least 1: " + size);
+        }
+        if (exponent < 0) {
+            throw new IllegalArgumentException("Zipf exponent must not be negative: " + exponent);
+        }
+        this.size = size;
+
+        if (exponent == 0) {
+            cumulative = null;
+        } else {
+            cumulative = new double[size];
+            double total = 0;
+            for (int rank = 0; rank < size; rank++) {
+                total += 1 / Math.pow(rank + 1, exponent);
+                cumulative[rank] = total;
+            }
+            for (int rank = 0; rank < size; rank++) {
+                cumulative[rank] /= total;
+            }
+        }
+    }
+
+    /**
+     * @param random the source of randomness.
+     * @return the next value, in {@code [0, size)}.
+     */
+    int sample(final Random random) {
+        if (cumulative == null) {
+            return random.nextInt(size);
+        }
+
+        final int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        return Math.min(size - 1, index >= 0 ? index : -index - 1);
+    }
+}
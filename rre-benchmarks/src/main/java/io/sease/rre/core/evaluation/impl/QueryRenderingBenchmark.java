@@ -0,0 +1,146 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.core.evaluation.impl;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.sease.rre.benchmarks.Fixtures;
+import io.sease.rre.core.template.impl.CachingQueryTemplateManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark for building the query to send for each evaluated query:
+ * looking the template up in the {@link CachingQueryTemplateManager} and
+ * rendering it with the query's placeholders.
+ * <p>
+ * This lives in the evaluation manager package, since the query building
+ * methods of {@link BaseEvaluationManager} are package-private.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueryRenderingBenchmark {
+
+    private static final int QUERY_COUNT = 10000;
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * The number of distinct templates, per version. More templates than
+     * the template cache holds forces evictions and re-reads.
+     */
+    @Param({"10", "2000"})
+    private int templateCount;
+
+    @Param({"1", "4"})
+    private int versionCount;
+
+    @Param({"1", "5"})
+    private int placeholderCount;
+
+    private File templatesFolder;
+    private BaseEvaluationManager manager;
+    private List<String> versions;
+    private JsonNode[] queryNodes;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        versions = Fixtures.versions(versionCount);
+        templatesFolder = Files.createTempDirectory("rre-templates").toFile();
+        for (final String version : versions) {
+            final File versionFolder = new File(templatesFolder, version);
+            versionFolder.mkdirs();
+            for (int t = 0; t < templateCount; t++) {
+                Files.write(new File(versionFolder, "template" + t + ".json").toPath(),
+                        template(t).getBytes(StandardCharsets.UTF_8));
+            }
+        }
+
+        manager = new SynchronousEvaluationManager(null, new CachingQueryTemplateManager(templatesFolder.getAbsolutePath()),
+                null, new String[]{"id"}, versions, null);
+
+        final Random random = new Random(Fixtures.SEED);
+        queryNodes = new JsonNode[QUERY_COUNT];
+        for (int q = 0; q < QUERY_COUNT; q++) {
+            final ObjectNode queryNode = MAPPER.createObjectNode();
+            queryNode.put("template", "template" + random.nextInt(templateCount) + ".json");
+            final ObjectNode placeholders = queryNode.putObject("placeholders");
+            for (int p = 0; p < placeholderCount; p++) {
+                placeholders.put("$p" + p, "term" + random.nextInt(100000));
+            }
+            queryNodes[q] = queryNode;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        for (final String version : versions) {
+            final File versionFolder = new File(templatesFolder, version);
+            final File[] files = versionFolder.listFiles();
+            if (files != null) {
+                for (final File file : files) {
+                    file.delete();
+                }
+            }
+            versionFolder.delete();
+        }
+        templatesFolder.delete();
+    }
+
+    @Benchmark
+    public String render() {
+        final int i = next++ & Integer.MAX_VALUE;
+        return manager.batchQuery(versions.get(i % versions.size()), queryNodes[i % QUERY_COUNT], null, 10).getQuery();
+    }
+
+    private String template(final int t) {
+        final StringBuilder template = new StringBuilder("{\"query\": {\"bool\": {\"should\": [");
+        for (int p = 0; p < placeholderCount; p++) {
+            if (p > 0) {
+                template.append(", ");
+            }
+            template.append("{\"match\": {\"field").append(t).append("\": \"$p").append(p).append("\"}}");
+        }
+        return template.append("]}}}").toString();
+    }
+}
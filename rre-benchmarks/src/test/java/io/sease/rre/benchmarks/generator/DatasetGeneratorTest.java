@@ -0,0 +1,159 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.benchmarks.generator;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for the DatasetGenerator.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+public class DatasetGeneratorTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void generatesSameDataSetFromSameSeed() throws Exception {
+        final File first = generate("--platform=solr");
+        final File second = generate("--platform=solr");
+
+        assertArrayEquals(read(first, "ratings/ratings.json"), read(second, "ratings/ratings.json"));
+        assertArrayEquals(read(first, "corpora/synthetic.json"), read(second, "corpora/synthetic.json"));
+    }
+
+    @Test
+    public void writesRequestedNumberOfQueries() throws Exception {
+        final File folder = generate("--platform=solr", "--queries=13", "--queriesPerGroup=5", "--groupsPerTopic=2");
+        final JsonNode ratings = mapper.readTree(new File(folder, "ratings/ratings.json"));
+
+        int queries = 0;
+        for (final JsonNode topic : ratings.get("topics")) {
+            assertTrue(topic.get("query_groups").size() <= 2);
+            for (final JsonNode group : topic.get("query_groups")) {
+                queries += group.get("queries").size();
+            }
+        }
+        assertEquals(13, queries);
+        assertEquals("synthetic.json", ratings.get("corpora_file").asText());
+    }
+
+    @Test
+    public void relevantDocumentsContainGroupTerms() throws Exception {
+        final File folder = generate("--platform=solr");
+        final Map<String, String> titles = new HashMap<>();
+        for (final JsonNode document : mapper.readTree(new File(folder, "corpora/synthetic.json"))) {
+            titles.put(document.get("id").asText(), " " + document.get("title").asText() + " ");
+        }
+        assertEquals(1000, titles.size());
+
+        for (final JsonNode topic : mapper.readTree(new File(folder, "ratings/ratings.json")).get("topics")) {
+            for (final JsonNode group : topic.get("query_groups")) {
+                final String query = group.get("queries").get(0).get("placeholders").get("$query").asText();
+                group.get("relevant_documents").fields().forEachRemaining(judgement -> {
+                    for (final String term : query.split(" ")) {
+                        assertTrue(titles.get(judgement.getKey()).contains(" " + term + " "));
+                    }
+                    final int gain = judgement.getValue().get("gain").asInt();
+                    assertTrue(gain >= 1 && gain <= 3);
+                });
+            }
+        }
+    }
+
+    @Test
+    public void writesElasticsearchDataSet() throws Exception {
+        final File folder = generate("--platform=elasticsearch", "--ratingsStyle=gain-to-array", "--versions=3");
+
+        final List<String> lines = Files.readAllLines(new File(folder, "corpora/synthetic.bulk").toPath());
+        assertEquals(2000, lines.size());
+        assertEquals("doc0", mapper.readTree(lines.get(0)).get("index").get("_id").asText());
+        assertTrue(mapper.readTree(lines.get(1)).has("title"));
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(new File(folder, "configuration_sets/v1." + i + "/index-shape.json").isFile());
+        }
+        final JsonNode template = mapper.readTree(new File(folder, "templates/" + DatasetGenerator.TEMPLATE));
+        assertEquals("$query", template.get("query").get("match").get("title").asText());
+
+        final JsonNode group = mapper.readTree(new File(folder, "ratings/ratings.json")).get("topics").get(0).get("query_groups").get(0);
+        group.get("relevant_documents").fields().forEachRemaining(gain -> {
+            assertTrue(gain.getValue().isArray());
+            assertTrue(gain.getValue().get(0).asText().startsWith("doc"));
+        });
+    }
+
+    @Test
+    public void inMemoryDataSetHasNoCorpus() throws Exception {
+        final File folder = generate("--platform=in-memory");
+
+        assertFalse(new File(folder, "corpora").exists());
+        assertFalse(mapper.readTree(new File(folder, "ratings/ratings.json")).has("corpora_file"));
+        final JsonNode settings = mapper.readTree(new File(folder, "configuration_sets/v1.0/in-memory-settings.json"));
+        assertEquals(1000, settings.get("documentCount").asInt());
+    }
+
+    @Test
+    public void generatesDistinctWords() {
+        final Set<String> words = new HashSet<>();
+        for (int i = 0; i < 100_000; i++) {
+            assertTrue(words.add(DatasetGenerator.word(i)));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownOption() {
+        DatasetGenerator.Options.parse("--output=/tmp", "--unknown=1");
+    }
+
+    private File generate(final String... args) throws Exception {
+        final File folder = tempFolder.newFolder();
+        final String[] options = new String[args.length + 5];
+        options[0] = "--output=" + folder.getAbsolutePath();
+        options[1] = "--documents=1000";
+        options[2] = "--queries=100";
+        options[3] = "--vocabulary=500";
+        options[4] = "--relevanceSkew=0";
+        System.arraycopy(args, 0, options, 5, args.length);
+        new DatasetGenerator(DatasetGenerator.Options.parse(options)).generate();
+        return folder;
+    }
+
+    private byte[] read(final File folder, final String path) throws Exception {
+        return Files.readAllBytes(new File(folder, path).toPath());
+    }
+}
@@ -31,21 +31,27 @@ import io.sease.rre.core.domain.metrics.MetricClassManager;
 import io.sease.rre.core.evaluation.EvaluationConfiguration;
 import io.sease.rre.core.evaluation.EvaluationManager;
 import io.sease.rre.core.evaluation.EvaluationManagerFactory;
+import io.sease.rre.core.evaluation.Warmup;
+import io.sease.rre.core.instrumentation.Instrumentation;
+import io.sease.rre.core.instrumentation.InstrumentationConfiguration;
+import io.sease.rre.core.instrumentation.Tracing;
+import io.sease.rre.core.loadtest.LoadTestConfiguration;
+import io.sease.rre.core.loadtest.LoadTester;
+import io.sease.rre.core.template.QueryBuilder;
+import io.sease.rre.core.template.QueryTemplateManager;
 import io.sease.rre.core.template.impl.CachingQueryTemplateManager;
 import io.sease.rre.core.version.VersionManager;
 import io.sease.rre.core.version.VersionManagerImpl;
 import io.sease.rre.persistence.PersistenceConfiguration;
 import io.sease.rre.persistence.PersistenceHandler;
 import io.sease.rre.persistence.PersistenceManager;
+import io.sease.rre.search.api.CorpusSource;
 import io.sease.rre.search.api.SearchPlatform;
 import io.sease.rre.search.api.SearchPlatformException;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -55,8 +61,6 @@ import java.util.Optional;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
 
 import static io.sease.rre.Field.CORPORA_FILENAME;
 import static io.sease.rre.Field.DEFAULT_ID_FIELD_NAME;
@@ -102,6 +106,8 @@ public class Engine {
 
     private final VersionManager versionManager;
     private final EvaluationManager evaluationManager;
+    private final Warmup warmup;
+    private final LoadTester loadTester;
 
     private Integer minimumRequiredResults = null;
 
@@ -134,26 +140,62 @@ public class Engine {
             final String checksumFilepath,
             final PersistenceConfiguration persistenceConfiguration,
             final EvaluationConfiguration evaluationConfiguration) {
-        this.corporaFolder = corporaFolderPath == null ? null : new File(corporaFolderPath);
-        this.ratingsFolder = new File(ratingsFolderPath);
-        this.platform = platform;
+        this(builder()
+                .setPlatform(platform)
+                .setConfigurationsFolder(configurationsFolderPath)
+                .setCorporaFolder(corporaFolderPath)
+                .setRatingsFolder(ratingsFolderPath)
+                .setTemplatesFolder(templatesFolderPath)
+                .setMetricClassManager(metricClassManager)
+                .setFields(fields)
+                .setExclude(exclude)
+                .setInclude(include)
+                .setChecksumFile(checksumFilepath)
+                .setPersistenceConfiguration(persistenceConfiguration)
+                .setEvaluationConfiguration(evaluationConfiguration));
+    }
 
-        this.metricClassManager = metricClassManager;
+    private Engine(final Builder builder) {
+        Instrumentation.configure(builder.instrumentationConfiguration);
+        Tracing.configure(builder.instrumentationConfiguration);
+
+        this.corporaFolder = builder.corporaFolder == null ? null : new File(builder.corporaFolder);
+        this.ratingsFolder = new File(builder.ratingsFolder);
+        this.platform = builder.platform;
+
+        this.metricClassManager = builder.metricClassManager;
 
         this.persistenceManager = new PersistenceManager();
-        initialisePersistenceManager(persistenceConfiguration);
+        initialisePersistenceManager(builder.persistenceConfiguration);
 
-        this.versionManager = new VersionManagerImpl(new File(configurationsFolderPath), include, exclude, persistenceConfiguration.isUseTimestampAsVersion());
+        this.versionManager = new VersionManagerImpl(new File(builder.configurationsFolder), builder.include, builder.exclude,
+                builder.persistenceConfiguration.isUseTimestampAsVersion());
+        final QueryTemplateManager templateManager = new CachingQueryTemplateManager(builder.templatesFolder);
         this.evaluationManager = EvaluationManagerFactory.instantiateEvaluationManager(
-                evaluationConfiguration,
+                builder.evaluationConfiguration,
                 platform,
                 persistenceManager,
-                new CachingQueryTemplateManager(templatesFolderPath),
-                safe(fields),
+                templateManager,
+                safe(builder.fields),
                 versionManager.getConfigurationVersions(),
                 versionManager.getVersionTimestamp());
+        final QueryBuilder queryBuilder = new QueryBuilder(templateManager, safe(builder.fields));
+        this.warmup = builder.evaluationConfiguration.getWarmup().isEnabled()
+                ? new Warmup(platform, queryBuilder, builder.evaluationConfiguration.getWarmup())
+                : null;
+        this.loadTester = builder.loadTestConfiguration.isEnabled()
+                ? new LoadTester(platform, queryBuilder, builder.loadTestConfiguration)
+                : null;
+
+        initialiseFileUpdateChecker(builder.checksumFile);
+    }
 
-        initialiseFileUpdateChecker(checksumFilepath);
+    /**
+     * @return a builder for an engine configured from folder paths, as
+     * used by the evaluation plugins.
+     */
+    public static Builder builder() {
+        return new Builder();
     }
 
     /**
@@ -185,6 +227,8 @@ public class Engine {
         this.persistenceManager = persistenceManager;
         this.versionManager = versionManager;
         this.evaluationManager = evaluationManager;
+        this.warmup = null;
+        this.loadTester = null;
         initialiseFileUpdateChecker(checksumFile);
     }
 
@@ -230,6 +274,7 @@ public class Engine {
     public Evaluation evaluate(final Map<String, Object> configuration) {
         try {
             LOGGER.info("RRE: New evaluation session is starting...");
+            Tracing.startRecording();
 
             platform.beforeStart(configuration);
             persistenceManager.beforeStart();
@@ -266,6 +311,10 @@ public class Engine {
                 LOGGER.warn("  ... no queries evaluated!");
             }
 
+            if (loadTester != null) {
+                loadTester.run(versionManager.getConfigurationVersions());
+            }
+
             return evaluation;
         } finally {
             LOGGER.info("RRE: " + platform.getName() + " Evaluation complete - preparing for shutdown");
@@ -274,6 +323,8 @@ public class Engine {
             LOGGER.info("RRE: " + platform.getName() + " Search Platform shutdown procedure executed.");
             LOGGER.info("RRE: Stopping persistence manager");
             persistenceManager.stop();
+            Instrumentation.writeSnapshot();
+            Tracing.stopRecording();
         }
     }
 
@@ -296,21 +347,25 @@ public class Engine {
                         "WARNING!!! \"" + ID_FIELD_NAME + "\" attribute not found!")
                         .asText(DEFAULT_ID_FIELD_NAME);
 
-        final Optional<File> data = data(ratingsNode);
+        final Optional<CorpusSource> data = data(ratingsNode);
         final String queryPlaceholder = ofNullable(ratingsNode.get("query_placeholder")).map(JsonNode::asText).orElse("$query");
 
         LOGGER.info("");
         LOGGER.info("*********************************");
         LOGGER.info("RRE: Index name => " + indexName);
         LOGGER.info("RRE: ID Field name => " + idFieldName);
-        data.ifPresent(file -> LOGGER.info("RRE: Test Collection => " + file.getAbsolutePath()));
+        data.ifPresent(corpus -> LOGGER.info("RRE: Test Collection => " + corpus.getFile().getAbsolutePath()));
 
         try {
             // Load the data. If the collection being loaded cannot be reached,
             // this will fail.
             prepareData(indexName, data.orElse(null));
 
-            final Corpus corpus = evaluation.findOrCreate(data.map(File::getName).orElse(indexName), Corpus::new);
+            if (warmup != null) {
+                warmUp(indexName, idFieldName, ratingsNode);
+            }
+
+            final Corpus corpus = evaluation.findOrCreate(data.map(CorpusSource::getName).orElse(indexName), Corpus::new);
             all(ratingsNode, TOPICS)
                     .forEach(topicNode -> {
                         final Topic topic = corpus.findOrCreate(name(topicNode), Topic::new);
@@ -341,8 +396,11 @@ public class Engine {
                                                         new ArrayList<>(versionManager.getConfigurationVersions()));
                                                 queryEvaluation.prepare(metrics);
 
-                                                evaluationManager.evaluateQuery(queryEvaluation, indexName, queryNode, sharedTemplate,
-                                                        Math.max(relevantDocuments.size(), minimumRequiredResults(metrics)));
+                                                final int relevantDocCount = Math.max(relevantDocuments.size(), minimumRequiredResults(metrics));
+                                                evaluationManager.evaluateQuery(queryEvaluation, indexName, queryNode, sharedTemplate, relevantDocCount);
+                                                if (loadTester != null) {
+                                                    loadTester.addQuery(indexName, queryNode, sharedTemplate, relevantDocCount);
+                                                }
                                             });
                                 });
                     });
@@ -351,61 +409,60 @@ public class Engine {
         }
     }
 
-    private Optional<File> data(final JsonNode ratingsNode) {
-        final File retFile;
-
-        if (platform.isCorporaRequired()) {
-            final File corporaFile =
-                    new File(
-                            corporaFolder,
-                            requireNonNull(
-                                    ratingsNode.get(CORPORA_FILENAME),
-                                    "WARNING!!! \"" + CORPORA_FILENAME + "\" attribute not found!").asText());
-
-            if (corporaFile.getName().endsWith(".zip")) {
-                retFile = unzipAndGet(corporaFile);
-            } else {
-                retFile = corporaFile;
-            }
-
-            if (!retFile.canRead()) {
-                throw new IllegalArgumentException("RRE: WARNING!!! Unable to read the corpus file " + retFile.getAbsolutePath());
-            }
-        } else {
-            retFile = null;
-        }
-
-        return Optional.ofNullable(retFile);
+    /**
+     * Warm up each version with the queries in a ratings set, without
+     * evaluating them.
+     *
+     * @param indexName   the base name of the index to query.
+     * @param idFieldName the name of the ID field.
+     * @param ratingsNode the contents of the ratings set.
+     */
+    private void warmUp(String indexName, String idFieldName, JsonNode ratingsNode) {
+        all(ratingsNode, TOPICS)
+                .flatMap(topicNode -> all(topicNode, QUERY_GROUPS))
+                .forEach(groupNode -> {
+                    final String sharedTemplate = ofNullable(groupNode.get("template")).map(JsonNode::asText).orElse(null);
+                    all(groupNode, QUERIES)
+                            .forEach(queryNode -> {
+                                final JsonNode relevantDocuments = relevantDocuments(
+                                        Optional.ofNullable(queryNode.get(RELEVANT_DOCUMENTS))
+                                                .orElse(groupNode.get(RELEVANT_DOCUMENTS)));
+                                if (minimumRequiredResults == null) {
+                                    minimumRequiredResults(availableMetrics(idFieldName, relevantDocuments,
+                                            new ArrayList<>(versionManager.getConfigurationVersions())));
+                                }
+                                warmup.addQuery(indexName, queryNode, sharedTemplate,
+                                        Math.max(relevantDocuments.size(), minimumRequiredResults));
+                            });
+                });
+
+        final int sent = warmup.run(versionManager.getConfigurationVersions());
+        LOGGER.info("RRE: warm-up complete - {} queries sent", sent);
     }
 
-    private File unzipAndGet(final File corporaFile) {
-        LOGGER.info("RRE: found a compressed corpora file: " + corporaFile.getAbsolutePath());
-
-        final File outputFolder = new File(System.getProperty("java.io.tmpdir"));
-
-        LOGGER.info("RRE: uncompressing corpora file under: " + outputFolder.getAbsolutePath());
+    private Optional<CorpusSource> data(final JsonNode ratingsNode) {
+        if (!platform.isCorporaRequired()) {
+            return Optional.empty();
+        }
 
-        try (final ZipInputStream zInputStream = new ZipInputStream(new FileInputStream((corporaFile)))) {
-            ZipEntry entry = zInputStream.getNextEntry();
-            while (entry != null) {
-                if (entry.getName().endsWith(".json")) {
-                    LOGGER.info("RRE: found a corpora candidate within the archive: " + entry.getName());
+        final File corporaFile =
+                new File(
+                        corporaFolder,
+                        requireNonNull(
+                                ratingsNode.get(CORPORA_FILENAME),
+                                "WARNING!!! \"" + CORPORA_FILENAME + "\" attribute not found!").asText());
 
-                    final File outputFile = new File(outputFolder, entry.getName());
-                    try (final BufferedOutputStream bos = new BufferedOutputStream(new FileOutputStream(outputFile))) {
-                        final byte[] buffer = new byte[1024];
-                        int read;
-                        while ((read = zInputStream.read(buffer)) != -1) {
-                            bos.write(buffer, 0, read);
-                        }
-                        return outputFile;
-                    }
-                }
+        if (!corporaFile.canRead()) {
+            throw new IllegalArgumentException("RRE: WARNING!!! Unable to read the corpus file " + corporaFile.getAbsolutePath());
+        }
 
-                zInputStream.closeEntry();
-                entry = zInputStream.getNextEntry();
+        try {
+            // Compressed corpora are streamed from the archive by the platform
+            final CorpusSource corpus = CorpusSource.of(corporaFile);
+            if (corpus.getEntries().size() > 1) {
+                LOGGER.info("RRE: found a compressed corpora file with " + corpus.getEntries().size() + " entries: " + corporaFile.getAbsolutePath());
             }
-            throw new IllegalArgumentException("Unable to find a valid dataset within the compressed corpora file: " + corporaFile.getAbsolutePath());
+            return Optional.of(corpus);
         } catch (final IOException exception) {
             throw new IllegalArgumentException("Unable to read the compressed corpora file: " + corporaFile.getAbsolutePath());
         }
@@ -509,15 +566,18 @@ public class Engine {
      * @throws SearchPlatformException if problems occur loading data to the
      *                                 search platform.
      */
-    private void prepareData(final String collection, final File dataToBeIndexed) throws SearchPlatformException {
+    private void prepareData(final String collection, final CorpusSource dataToBeIndexed) throws SearchPlatformException {
         if (dataToBeIndexed != null) {
-            LOGGER.info("Preparing dataToBeIndexed for " + collection + " from " + dataToBeIndexed.getAbsolutePath());
+            LOGGER.info("Preparing dataToBeIndexed for " + collection + " from " + dataToBeIndexed.getFile().getAbsolutePath());
         } else {
             LOGGER.info("Preparing platform for " + collection);
         }
 
+        // Check the corpora once - the checker records the new checksum on the first call,
+        // so checking again for each version would only trigger a reload of the first one.
+        final boolean corporaChanged = folderHasChanged(corporaFolder);
         Collection<File> configFiles = versionManager.getConfigurationVersionFolders().stream()
-                .filter(this::isConfigurationReloadNecessary)
+                .filter(versionFolder -> isConfigurationReloadNecessary(versionFolder, corporaChanged))
                 .flatMap(versionFolder -> stream(safe(versionFolder.listFiles(ONLY_NON_HIDDEN_FILES))))
                 .filter(file -> platform.isSearchPlatformConfiguration(collection, file))
                 .sorted()
@@ -525,7 +585,12 @@ public class Engine {
         for (File searchPlatformConfiguration : configFiles) {
             LOGGER.info("RRE: Loading the Search Engine " + platform.getName() + ", configuration version " + searchPlatformConfiguration.getParentFile().getName());
             String version = searchPlatformConfiguration.getParentFile().getName();
-            platform.load(dataToBeIndexed, searchPlatformConfiguration, collection, version);
+            final long start = System.nanoTime();
+            final Tracing.Span load = Tracing.load(platform.getName(), collection, version);
+            platform.loadCorpus(dataToBeIndexed, searchPlatformConfiguration, collection, version);
+            final long corpusSize = dataToBeIndexed == null ? 0 : dataToBeIndexed.getFile().length();
+            load.end(corpusSize);
+            Instrumentation.recordIndexLoad(platform.getName(), collection, version, corpusSize, start);
             if (!platform.checkCollection(collection, version)) {
                 throw new SearchPlatformException("Collection check failed for " + collection + " version " + version);
             }
@@ -538,8 +603,7 @@ public class Engine {
         LOGGER.info("RRE: target versions are " + String.join(",", versionManager.getConfigurationVersions()));
     }
 
-    private boolean isConfigurationReloadNecessary(File versionFolder) {
-        boolean corporaChanged = folderHasChanged(corporaFolder);
+    private boolean isConfigurationReloadNecessary(File versionFolder, boolean corporaChanged) {
         return folderHasChanged(versionFolder) || corporaChanged || platform.isRefreshRequired();
     }
 
@@ -567,5 +631,161 @@ public class Engine {
         }
     }
 
-    
-}
\ No newline at end of file
+    /**
+     * Builder for an {@link Engine} configured from folder paths. New
+     * configuration should be added here, with a default, rather than as
+     * another constructor parameter.
+     */
+    public static class Builder {
+        private SearchPlatform platform;
+        private String configurationsFolder;
+        private String corporaFolder;
+        private String ratingsFolder;
+        private String templatesFolder;
+        private MetricClassManager metricClassManager;
+        private String[] fields;
+        private List<String> exclude;
+        private List<String> include;
+        private String checksumFile;
+        private PersistenceConfiguration persistenceConfiguration = PersistenceConfiguration.DEFAULT_CONFIG;
+        private EvaluationConfiguration evaluationConfiguration = EvaluationConfiguration.DEFAULT_CONFIG;
+        private InstrumentationConfiguration instrumentationConfiguration = InstrumentationConfiguration.DEFAULT_CONFIG;
+        private LoadTestConfiguration loadTestConfiguration = LoadTestConfiguration.DEFAULT_CONFIG;
+
+        private Builder() {
+        }
+
+        /**
+         * @param platform the search platform in use.
+         * @return the builder.
+         */
+        public Builder setPlatform(final SearchPlatform platform) {
+            this.platform = platform;
+            return this;
+        }
+
+        /**
+         * @param configurationsFolder the configurations folder path.
+         * @return the builder.
+         */
+        public Builder setConfigurationsFolder(final String configurationsFolder) {
+            this.configurationsFolder = configurationsFolder;
+            return this;
+        }
+
+        /**
+         * @param corporaFolder the corpora folder path (optional).
+         * @return the builder.
+         */
+        public Builder setCorporaFolder(final String corporaFolder) {
+            this.corporaFolder = corporaFolder;
+            return this;
+        }
+
+        /**
+         * @param ratingsFolder the ratings folder path.
+         * @return the builder.
+         */
+        public Builder setRatingsFolder(final String ratingsFolder) {
+            this.ratingsFolder = ratingsFolder;
+            return this;
+        }
+
+        /**
+         * @param templatesFolder the query templates folder path.
+         * @return the builder.
+         */
+        public Builder setTemplatesFolder(final String templatesFolder) {
+            this.templatesFolder = templatesFolder;
+            return this;
+        }
+
+        /**
+         * @param metricClassManager the manager class for the metrics being evaluated.
+         * @return the builder.
+         */
+        public Builder setMetricClassManager(final MetricClassManager metricClassManager) {
+            this.metricClassManager = metricClassManager;
+            return this;
+        }
+
+        /**
+         * @param fields the fields to retrieve with each result.
+         * @return the builder.
+         */
+        public Builder setFields(final String[] fields) {
+            this.fields = fields;
+            return this;
+        }
+
+        /**
+         * @param exclude a list of folders to exclude when scanning the configuration folders.
+         * @return the builder.
+         */
+        public Builder setExclude(final List<String> exclude) {
+            this.exclude = exclude;
+            return this;
+        }
+
+        /**
+         * @param include a list of folders to include from the configuration folders.
+         * @return the builder.
+         */
+        public Builder setInclude(final List<String> include) {
+            this.include = include;
+            return this;
+        }
+
+        /**
+         * @param checksumFile the path to the file used to store the configuration checksums (optional).
+         * @return the builder.
+         */
+        public Builder setChecksumFile(final String checksumFile) {
+            this.checksumFile = checksumFile;
+            return this;
+        }
+
+        /**
+         * @param persistenceConfiguration the persistence framework configuration.
+         * @return the builder.
+         */
+        public Builder setPersistenceConfiguration(final PersistenceConfiguration persistenceConfiguration) {
+            this.persistenceConfiguration = persistenceConfiguration;
+            return this;
+        }
+
+        /**
+         * @param evaluationConfiguration the evaluation manager configuration.
+         * @return the builder.
+         */
+        public Builder setEvaluationConfiguration(final EvaluationConfiguration evaluationConfiguration) {
+            this.evaluationConfiguration = evaluationConfiguration;
+            return this;
+        }
+
+        /**
+         * @param instrumentationConfiguration the instrumentation configuration.
+         * @return the builder.
+         */
+        public Builder setInstrumentationConfiguration(final InstrumentationConfiguration instrumentationConfiguration) {
+            this.instrumentationConfiguration = instrumentationConfiguration;
+            return this;
+        }
+
+        /**
+         * @param loadTestConfiguration the load test configuration.
+         * @return the builder.
+         */
+        public Builder setLoadTestConfiguration(final LoadTestConfiguration loadTestConfiguration) {
+            this.loadTestConfiguration = loadTestConfiguration;
+            return this;
+        }
+
+        /**
+         * @return the engine.
+         */
+        public Engine build() {
+            return new Engine(this);
+        }
+    }
+}
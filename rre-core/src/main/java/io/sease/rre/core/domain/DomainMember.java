@@ -19,7 +19,10 @@ package io.sease.rre.core.domain;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import io.sease.rre.core.domain.metrics.Metric;
+import io.sease.rre.core.domain.metrics.QueryPerformance;
+import io.sease.rre.core.domain.metrics.impl.AggregatedPerformanceMetric;
 import io.sease.rre.core.domain.metrics.impl.AveragedMetric;
+import io.sease.rre.core.domain.metrics.impl.PerformanceMetric;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
@@ -70,6 +73,18 @@ public abstract class DomainMember<C extends DomainMember> {
         return childrenLookupCache.computeIfAbsent(name, key -> add((C) factory.get().setName(name).setParent(this)));
     }
 
+    /**
+     * Adds a child which belongs to another entity, unless this entity
+     * already has a child with the same name. The child keeps its parent,
+     * so metrics it collects are not passed on to this entity.
+     *
+     * @param child the child entity.
+     * @return the child of this entity with the given child's name.
+     */
+    public C findOrShare(final C child) {
+        return childrenLookupCache.computeIfAbsent(child.getName(), key -> add(child));
+    }
+
     /**
      * Sets the name of this domain entity.
      *
@@ -122,11 +137,25 @@ public abstract class DomainMember<C extends DomainMember> {
         ofNullable(parent).ifPresent(p -> p.collectLeafMetric(version, value, name));
     }
 
-    private void initialiseVersions(final String name, final List<String> versions) {
-        if (!metrics.containsKey(name)) {
-            metric(name).setVersions(versions);
+    /**
+     * Collects a leaf performance measurement (which has been just collected).
+     *
+     * @param version     the version associated with the measurement.
+     * @param measurement the measurement.
+     * @param leaf        the leaf metric holding the measurement.
+     */
+    private void collectLeafMeasurement(final String version, final long measurement, final PerformanceMetric leaf) {
+        if (measurement != QueryPerformance.UNKNOWN) {
+            ((AggregatedPerformanceMetric) aggregate(leaf)).collect(version, measurement);
+        }
+        ofNullable(parent).ifPresent(p -> p.collectLeafMeasurement(version, measurement, leaf));
+    }
+
+    private void initialiseVersions(final Metric leaf, final List<String> versions) {
+        if (!metrics.containsKey(leaf.getName())) {
+            aggregate(leaf).setVersions(versions);
         }
-        ofNullable(parent).ifPresent(p -> p.initialiseVersions(name, versions));
+        ofNullable(parent).ifPresent(p -> p.initialiseVersions(leaf, versions));
     }
 
     /**
@@ -139,18 +168,34 @@ public abstract class DomainMember<C extends DomainMember> {
         return (AveragedMetric) metrics.computeIfAbsent(name, k -> new AveragedMetric(name));
     }
 
+    /**
+     * Returns the metric which aggregates the given leaf metric at this level:
+     * an {@link AggregatedPerformanceMetric} for performance metrics, or an
+     * {@link AveragedMetric} for everything else.
+     *
+     * @param leaf the leaf metric.
+     * @return the aggregate metric with the same name as the leaf metric.
+     */
+    private Metric aggregate(final Metric leaf) {
+        if (leaf instanceof PerformanceMetric) {
+            return metrics.computeIfAbsent(leaf.getName(), k -> ((PerformanceMetric) leaf).aggregate());
+        }
+        return metric(leaf.getName());
+    }
+
     public void notifyCollectedMetrics() {
         // Make sure all of the versions are set at all levels for each metric
         metrics.values()
-                .forEach(metric -> initialiseVersions(metric.getName(), new ArrayList<>(metric.getVersions().keySet())));
-        metrics.values().stream()
-                .flatMap(metric -> metric.getVersions().entrySet().stream())
-                .forEach(entry ->
-                        ofNullable(parent)
-                                .ifPresent(p -> p.collectLeafMetric(
-                                        entry.getKey(),
-                                        entry.getValue().value(),
-                                        entry.getValue().owner().getName())));
+                .forEach(metric -> initialiseVersions(metric, new ArrayList<>(metric.getVersions().keySet())));
+        metrics.values().forEach(metric ->
+                metric.getVersions().forEach((version, value) ->
+                        ofNullable(parent).ifPresent(p -> {
+                            if (metric instanceof PerformanceMetric) {
+                                p.collectLeafMeasurement(version, ((PerformanceMetric) metric).measurement(version), (PerformanceMetric) metric);
+                            } else {
+                                p.collectLeafMetric(version, value.value(), metric.getName());
+                            }
+                        })));
     }
 
     public Map<String, Metric> getMetrics() {
@@ -23,6 +23,8 @@ import io.sease.rre.Func;
 import io.sease.rre.core.domain.metrics.HitsCollector;
 import io.sease.rre.core.domain.metrics.Metric;
 import io.sease.rre.core.domain.metrics.MetricClassConfigurationManager;
+import io.sease.rre.core.domain.metrics.QueryPerformance;
+import io.sease.rre.core.domain.metrics.impl.PerformanceMetric;
 
 import java.util.AbstractMap;
 import java.util.Collections;
@@ -99,6 +101,19 @@ public class Query extends DomainMember<Query> implements HitsCollector {
         results.computeIfAbsent(version, v -> new MutableQueryOrSearchResponse()).collect(hit, rank, version);
     }
 
+    /**
+     * Collects the performance of this query for a version, passing it to
+     * the performance metrics.
+     *
+     * @param performance the query performance.
+     * @param version     the version the query was run against.
+     */
+    public void collect(final QueryPerformance performance, final String version) {
+        metrics.values().stream()
+                .filter(PerformanceMetric.class::isInstance)
+                .forEach(metric -> ((PerformanceMetric) metric).collect(performance, version));
+    }
+
     /**
      * Extracts the id field valueFactory from the given document.
      *
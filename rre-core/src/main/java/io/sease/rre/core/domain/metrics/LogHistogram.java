@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.core.domain.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A histogram of non-negative values, with logarithmically sized buckets so
+ * that any quantile is accurate to within 1% of the recorded values. Only
+ * the buckets which have been used are stored, so a histogram holding a
+ * handful of values is small, and two histograms can be merged without
+ * losing accuracy.
+ * <p>
+ * This is not thread-safe - callers must synchronize access to it.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+public class LogHistogram {
+
+    private static final double RELATIVE_ACCURACY = 0.01;
+    private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+    private static final double LOG_GAMMA = Math.log(GAMMA);
+
+    private final TreeMap<Integer, Long> buckets = new TreeMap<>();
+    private long zeroCount;
+    private long count;
+    private long sum;
+    private long min = Long.MAX_VALUE;
+    private long max = Long.MIN_VALUE;
+
+    /**
+     * Record a value.
+     *
+     * @param value the value, which must not be negative.
+     * @throws IllegalArgumentException if the value is negative.
+     */
+    public void record(final long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Cannot record negative value " + value);
+        } else if (value == 0) {
+            zeroCount++;
+        } else {
+            buckets.merge(index(value), 1L, Long::sum);
+        }
+        count++;
+        sum += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Add all of the values recorded in another histogram to this one.
+     *
+     * @param other the histogram to merge.
+     */
+    public void merge(final LogHistogram other) {
+        other.buckets.forEach((index, bucketCount) -> buckets.merge(index, bucketCount, Long::sum));
+        zeroCount += other.zeroCount;
+        count += other.count;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * @return the number of values recorded.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return the exact mean of the recorded values, or 0 if there are none.
+     */
+    public double getMean() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    /**
+     * Get the value at the given quantile, to within 1%.
+     *
+     * @param quantile the quantile, between 0 and 1.
+     * @return the value at the quantile, or 0 if no values have been recorded.
+     */
+    public double getValueAtQuantile(final double quantile) {
+        if (count == 0) {
+            return 0;
+        }
+
+        final long rank = (long) (quantile * (count - 1));
+        long seen = zeroCount;
+        if (rank < seen) {
+            return 0;
+        }
+        for (final Map.Entry<Integer, Long> bucket : buckets.entrySet()) {
+            seen += bucket.getValue();
+            if (rank < seen) {
+                // Keep the estimate within the recorded range
+                return Math.max(min, Math.min(max, value(bucket.getKey())));
+            }
+        }
+        return max;
+    }
+
+    private static int index(final long value) {
+        return (int) Math.ceil(Math.log(value) / LOG_GAMMA);
+    }
+
+    private static double value(final int index) {
+        return 2 * Math.pow(GAMMA, index) / (GAMMA + 1);
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.core.domain.metrics;
+
+/**
+ * The cost of running a query against a single version: the latency seen by
+ * RRE, the time reported by the search engine and the size of its response.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+public class QueryPerformance {
+
+    /**
+     * The value of a measurement which is not available.
+     */
+    public static final long UNKNOWN = -1;
+
+    private final long latency;
+    private final long engineTime;
+    private final long responseBytes;
+
+    /**
+     * @param latency       the latency of the query, in microseconds.
+     * @param engineTime    the time reported by the search engine, in
+     *                      milliseconds, or {@link #UNKNOWN}.
+     * @param responseBytes the size of the response in bytes, or {@link #UNKNOWN}.
+     */
+    public QueryPerformance(final long latency, final long engineTime, final long responseBytes) {
+        this.latency = latency;
+        this.engineTime = engineTime;
+        this.responseBytes = responseBytes;
+    }
+
+    /**
+     * @return the latency of the query, in microseconds.
+     */
+    public long getLatency() {
+        return latency;
+    }
+
+    /**
+     * @return the time reported by the search engine in milliseconds, or {@link #UNKNOWN}.
+     */
+    public long getEngineTime() {
+        return engineTime;
+    }
+
+    /**
+     * @return the size of the response in bytes, or {@link #UNKNOWN}.
+     */
+    public long getResponseBytes() {
+        return responseBytes;
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.core.domain.metrics.impl;
+
+import io.sease.rre.core.domain.metrics.LogHistogram;
+import io.sease.rre.core.domain.metrics.Metric;
+import io.sease.rre.core.domain.metrics.ValueFactory;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+/**
+ * A metric which reports a statistic of the performance measurements
+ * collected from the queries below it.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ * @see PerformanceMetric
+ */
+public class AggregatedPerformanceMetric extends Metric {
+
+    private final PerformanceMetric.Statistic statistic;
+    private final long unit;
+
+    /**
+     * Builds a new aggregated performance metric.
+     *
+     * @param name      the metric name.
+     * @param statistic the statistic to report.
+     * @param unit      the number of measured units per reported unit.
+     */
+    AggregatedPerformanceMetric(final String name, final PerformanceMetric.Statistic statistic, final long unit) {
+        super(name);
+        this.statistic = statistic;
+        this.unit = unit;
+    }
+
+    /**
+     * Collects a new measurement.
+     *
+     * @param version     the version associated with the measurement.
+     * @param measurement the measurement.
+     */
+    public synchronized void collect(final String version, final long measurement) {
+        ((HistogramValueFactory) values.computeIfAbsent(version, this::createValueFactory)).histogram.record(measurement);
+    }
+
+    @Override
+    public ValueFactory createValueFactory(final String version) {
+        return new HistogramValueFactory(this, version);
+    }
+
+    private class HistogramValueFactory extends ValueFactory {
+        private final LogHistogram histogram = new LogHistogram();
+
+        private HistogramValueFactory(final Metric owner, final String version) {
+            super(owner, version);
+        }
+
+        @Override
+        public BigDecimal value() {
+            synchronized (AggregatedPerformanceMetric.this) {
+                return PerformanceMetric.toValue(statistic.of(histogram), unit);
+            }
+        }
+
+        @Override
+        public void collect(final Map<String, Object> hit, final int rank, final String version) {
+            // Noop
+        }
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.core.domain.metrics.impl;
+
+import io.sease.rre.core.domain.metrics.LogHistogram;
+import io.sease.rre.core.domain.metrics.Metric;
+import io.sease.rre.core.domain.metrics.QueryPerformance;
+import io.sease.rre.core.domain.metrics.ValueFactory;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.Map;
+
+import static java.util.Optional.ofNullable;
+
+/**
+ * Supertype layer for the performance pseudo-metrics, which measure the cost
+ * of a query rather than the relevance of its results.
+ * <p>
+ * At query level, the value is the measurement for that query. Above query
+ * level, the measurements are gathered into a {@link LogHistogram}, and the
+ * value is the configured statistic - the mean, or the 50th, 95th or 99th
+ * percentile - of the queries below.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+public abstract class PerformanceMetric extends Metric {
+
+    /**
+     * The statistics which can be reported for a set of measurements.
+     */
+    public enum Statistic {
+        MEAN("mean", 0),
+        P50("p50", 0.5),
+        P95("p95", 0.95),
+        P99("p99", 0.99);
+
+        private final String label;
+        private final double quantile;
+
+        Statistic(final String label, final double quantile) {
+            this.label = label;
+            this.quantile = quantile;
+        }
+
+        /**
+         * Look up a statistic by its label.
+         *
+         * @param label the label, eg. "p95". If {@code null}, the mean is used.
+         * @return the statistic.
+         * @throws IllegalArgumentException if there is no statistic with the label.
+         */
+        public static Statistic of(final String label) {
+            if (label == null) {
+                return MEAN;
+            }
+            return Arrays.stream(values())
+                    .filter(statistic -> statistic.label.equalsIgnoreCase(label))
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalArgumentException("Unknown statistic " + label));
+        }
+
+        double of(final LogHistogram histogram) {
+            return this == MEAN ? histogram.getMean() : histogram.getValueAtQuantile(quantile);
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    private final Statistic statistic;
+    private final long unit;
+
+    /**
+     * Builds a new performance metric.
+     *
+     * @param label     the label for the measurement, eg. "Latency".
+     * @param name      the name to use for this metric. If {@code null}, will
+     *                  default to the label followed by the statistic.
+     * @param statistic the statistic to report above query level.
+     * @param unit      the number of measured units per reported unit, eg.
+     *                  1000 to report a measurement in microseconds as milliseconds.
+     */
+    protected PerformanceMetric(final String label, final String name, final Statistic statistic, final long unit) {
+        super(ofNullable(name).orElse(label + " " + statistic.getLabel()));
+        this.statistic = statistic;
+        this.unit = unit;
+    }
+
+    /**
+     * Extract this metric's measurement from the performance of a query.
+     *
+     * @param performance the query performance.
+     * @return the measurement, or {@link QueryPerformance#UNKNOWN}.
+     */
+    protected abstract long measure(QueryPerformance performance);
+
+    /**
+     * Collects the performance of the query for a version.
+     *
+     * @param performance the query performance.
+     * @param version     the version the query was run against.
+     */
+    public void collect(final QueryPerformance performance, final String version) {
+        ofNullable((Measurement) values.get(version)).ifPresent(value -> value.measurement = measure(performance));
+    }
+
+    /**
+     * Returns the measurement collected for a version.
+     *
+     * @param version the version.
+     * @return the measurement, or {@link QueryPerformance#UNKNOWN} if none
+     * has been collected.
+     */
+    public long measurement(final String version) {
+        return ofNullable((Measurement) values.get(version)).map(value -> value.measurement).orElse(QueryPerformance.UNKNOWN);
+    }
+
+    /**
+     * Builds the metric which combines the measurements of this metric
+     * across many queries.
+     *
+     * @return a new, empty, aggregate metric with the same name as this one.
+     */
+    public AggregatedPerformanceMetric aggregate() {
+        return new AggregatedPerformanceMetric(getName(), statistic, unit);
+    }
+
+    static BigDecimal toValue(final double measurement, final long unit) {
+        return BigDecimal.valueOf(measurement).divide(BigDecimal.valueOf(unit), 2, RoundingMode.HALF_UP);
+    }
+
+    @Override
+    public ValueFactory createValueFactory(final String version) {
+        return new Measurement(this, version);
+    }
+
+    /**
+     * Holds the single measurement for a query version.
+     */
+    private class Measurement extends ValueFactory {
+        private volatile long measurement = QueryPerformance.UNKNOWN;
+
+        private Measurement(final Metric owner, final String version) {
+            super(owner, version);
+        }
+
+        @Override
+        public BigDecimal value() {
+            return measurement == QueryPerformance.UNKNOWN ? BigDecimal.ZERO : toValue(measurement, unit);
+        }
+
+        @Override
+        public void collect(final Map<String, Object> hit, final int rank, final String version) {
+            // Noop
+        }
+    }
+}
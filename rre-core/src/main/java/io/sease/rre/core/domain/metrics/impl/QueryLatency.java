@@ -0,0 +1,57 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.core.domain.metrics.impl;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.sease.rre.core.domain.metrics.ParameterizedMetricClassManager;
+import io.sease.rre.core.domain.metrics.QueryPerformance;
+
+/**
+ * Pseudo-metric for the time taken to run each query, as seen by RRE, in milliseconds.
+ * Reports the mean by default - set the {@code statistic} parameter to
+ * {@code p50}, {@code p95} or {@code p99} for a percentile.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+public class QueryLatency extends PerformanceMetric {
+
+    /**
+     * Builds a new QueryLatency metric, reporting the mean.
+     */
+    public QueryLatency() {
+        this(null, null);
+    }
+
+    /**
+     * Builds a new QueryLatency metric.
+     *
+     * @param statistic the statistic to report, or {@code null} for the mean.
+     * @param name      the name to use for this metric. If {@code null}, will
+     *                  default to "Latency" followed by the statistic.
+     */
+    @JsonCreator
+    public QueryLatency(@JsonProperty("statistic") final String statistic,
+                        @JsonProperty(ParameterizedMetricClassManager.NAME_KEY) final String name) {
+        super("Latency", name, Statistic.of(statistic), 1000);
+    }
+
+    @Override
+    protected long measure(final QueryPerformance performance) {
+        return performance.getLatency();
+    }
+}
@@ -33,6 +33,13 @@ public class EvaluationConfiguration {
     private boolean runAsync = true;
     private boolean runQueriesAsync = false;
     private int threadpoolSize = 4;
+    private boolean runQueriesNonBlocking = false;
+    private int maxQueriesInFlight = 256;
+    private boolean runQueriesBatched = false;
+    private int batchSize = 50;
+    private long batchWaitMillis = 50;
+    private boolean interleaveVersions = false;
+    private WarmupConfiguration warmup = WarmupConfiguration.DEFAULT_CONFIG;
 
     @SuppressWarnings("unused")
     public EvaluationConfiguration() {
@@ -45,6 +52,25 @@ public class EvaluationConfiguration {
         this.threadpoolSize = threadpool;
     }
 
+    EvaluationConfiguration(boolean async, boolean qAsync, int threadpool, boolean nonBlocking, int maxInFlight) {
+        this(async, qAsync, threadpool);
+        this.runQueriesNonBlocking = nonBlocking;
+        this.maxQueriesInFlight = maxInFlight;
+    }
+
+    EvaluationConfiguration(boolean async, boolean qAsync, int threadpool, boolean batched, int batchSize, long batchWaitMillis) {
+        this(async, qAsync, threadpool);
+        this.runQueriesBatched = batched;
+        this.batchSize = batchSize;
+        this.batchWaitMillis = batchWaitMillis;
+    }
+
+    EvaluationConfiguration(boolean async, boolean qAsync, int threadpool, boolean interleaveVersions, WarmupConfiguration warmup) {
+        this(async, qAsync, threadpool);
+        this.interleaveVersions = interleaveVersions;
+        this.warmup = warmup;
+    }
+
     /**
      * Running asynchronously should reduce the time required to evaluate all
      * of the queries, if multi-threading is available.
@@ -73,6 +99,75 @@ public class EvaluationConfiguration {
         return threadpoolSize;
     }
 
+    /**
+     * Non-blocking queries are handed to the search platform without holding
+     * an evaluation thread while they run, so many more queries can be in
+     * flight than there are threads. This only helps with search platforms
+     * which support non-blocking queries, and takes precedence over
+     * {@link #isRunQueriesAsync()}.
+     *
+     * @return {@code true} if queries should be run without blocking.
+     */
+    public boolean isRunQueriesNonBlocking() {
+        return runQueriesNonBlocking;
+    }
+
+    /**
+     * @return the maximum number of versioned queries to have running at
+     * once, when running queries without blocking.
+     */
+    public int getMaxQueriesInFlight() {
+        return maxQueriesInFlight;
+    }
+
+    /**
+     * Batched queries are grouped by version and sent to the search
+     * platform several at a time, saving a network round-trip for each
+     * query. This only helps with search platforms which support batches of
+     * queries, and takes precedence over {@link #isRunQueriesAsync()}.
+     *
+     * @return {@code true} if queries should be sent in batches.
+     */
+    public boolean isRunQueriesBatched() {
+        return runQueriesBatched;
+    }
+
+    /**
+     * @return the maximum number of queries to send in a single batch.
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * @return the longest time, in milliseconds, to wait for a batch to
+     * fill before sending it anyway.
+     */
+    public long getBatchWaitMillis() {
+        return batchWaitMillis;
+    }
+
+    /**
+     * By default, each query is run against the versions in the same order,
+     * so the first version always sees the coldest caches. Interleaving the
+     * versions starts each query at the next version in turn, so every
+     * version sees comparable cache states.
+     *
+     * @return {@code true} if the order of the versions should change for
+     * every query.
+     */
+    public boolean isInterleaveVersions() {
+        return interleaveVersions;
+    }
+
+    /**
+     * @return the configuration for warming up each version before its
+     * queries are evaluated.
+     */
+    public WarmupConfiguration getWarmup() {
+        return warmup;
+    }
+
     private static EvaluationConfiguration defaultConfiguration() {
         return new EvaluationConfiguration(true, false, 4);
     }
@@ -16,9 +16,13 @@
  */
 package io.sease.rre.core.evaluation;
 
+import io.micrometer.core.instrument.Tags;
 import io.sease.rre.core.evaluation.impl.AsynchronousEvaluationManager;
 import io.sease.rre.core.evaluation.impl.AsynchronousQueryEvaluationManager;
+import io.sease.rre.core.evaluation.impl.BatchingEvaluationManager;
+import io.sease.rre.core.evaluation.impl.NonBlockingEvaluationManager;
 import io.sease.rre.core.evaluation.impl.SynchronousEvaluationManager;
+import io.sease.rre.core.instrumentation.Instrumentation;
 import io.sease.rre.core.template.QueryTemplateManager;
 import io.sease.rre.persistence.PersistenceManager;
 import io.sease.rre.search.api.SearchPlatform;
@@ -41,7 +45,7 @@ public abstract class EvaluationManagerFactory {
      * @param persistenceManager      the persistence manager.
      * @param templateManager         the template manager.
      * @param fields                  the fields to return from each query.
-     * @param versions                the versions being evaluated.
+     * @param configurationVersions   the versions being evaluated.
      * @param versionTimestamp        the version timestamp, if required.
      * @return an appropriate {@link EvaluationManager} for the configuration.
      */
@@ -51,12 +55,19 @@ public abstract class EvaluationManagerFactory {
             final PersistenceManager persistenceManager,
             final QueryTemplateManager templateManager,
             final String[] fields,
-            final Collection<String> versions,
+            final Collection<String> configurationVersions,
             final String versionTimestamp) {
         final EvaluationManager evaluationManager;
+        final Collection<String> versions = evaluationConfiguration.isInterleaveVersions()
+                ? new InterleavedVersions(configurationVersions)
+                : configurationVersions;
 
         if (evaluationConfiguration.isRunAsync()) {
-            if (evaluationConfiguration.isRunQueriesAsync()) {
+            if (evaluationConfiguration.isRunQueriesNonBlocking()) {
+                evaluationManager = new NonBlockingEvaluationManager(searchPlatform, templateManager, persistenceManager, fields, versions, versionTimestamp, evaluationConfiguration.getThreadpoolSize(), evaluationConfiguration.getMaxQueriesInFlight());
+            } else if (evaluationConfiguration.isRunQueriesBatched()) {
+                evaluationManager = new BatchingEvaluationManager(searchPlatform, templateManager, persistenceManager, fields, versions, versionTimestamp, evaluationConfiguration.getThreadpoolSize(), evaluationConfiguration.getBatchSize(), evaluationConfiguration.getBatchWaitMillis());
+            } else if (evaluationConfiguration.isRunQueriesAsync()) {
                 evaluationManager = new AsynchronousQueryEvaluationManager(searchPlatform, templateManager, persistenceManager, fields, versions, versionTimestamp, evaluationConfiguration.getThreadpoolSize());
             } else {
                 evaluationManager = new AsynchronousEvaluationManager(searchPlatform, templateManager, persistenceManager, fields, versions, versionTimestamp, evaluationConfiguration.getThreadpoolSize());
@@ -65,6 +76,10 @@ public abstract class EvaluationManagerFactory {
             evaluationManager = new SynchronousEvaluationManager(searchPlatform, templateManager, persistenceManager, fields, versions, versionTimestamp);
         }
 
+        Instrumentation.queueDepth(Instrumentation.EVALUATION_PENDING,
+                Tags.of("manager", evaluationManager.getClass().getSimpleName()),
+                evaluationManager, EvaluationManager::getQueriesRemaining);
+
         return evaluationManager;
     }
 }
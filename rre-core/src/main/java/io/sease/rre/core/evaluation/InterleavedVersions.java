@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.core.evaluation;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The versions being evaluated, in an order which changes for every
+ * query: each time the versions are iterated, the iteration starts one
+ * version further along. The evaluation managers iterate the versions once
+ * per query, so each version is queried first for an equal share of the
+ * queries, rather than the first version always meeting the coldest caches.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+public class InterleavedVersions extends AbstractCollection<String> {
+
+    private final List<String> versions;
+    private final AtomicInteger iterations = new AtomicInteger();
+
+    /**
+     * @param versions the versions being evaluated.
+     */
+    public InterleavedVersions(Collection<String> versions) {
+        this.versions = new ArrayList<>(versions);
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        final int size = versions.size();
+        final int first = size == 0 ? 0 : Math.floorMod(iterations.getAndIncrement(), size);
+        return new Iterator<String>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return versions.get((first + next++) % size);
+            }
+        };
+    }
+
+    @Override
+    public int size() {
+        return versions.size();
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.core.evaluation;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.sease.rre.core.template.QueryBuilder;
+import io.sease.rre.core.template.ReplayableQuery;
+import io.sease.rre.search.api.SearchPlatform;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Sends a sample of queries to each version before they are evaluated,
+ * discarding the responses. Nothing is recorded while warming up.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+public class Warmup {
+
+    private static final Logger LOGGER = LogManager.getLogger(Warmup.class);
+
+    private final SearchPlatform platform;
+    private final QueryBuilder queryBuilder;
+    private final WarmupConfiguration configuration;
+
+    private final List<ReplayableQuery> queries = new ArrayList<>();
+
+    /**
+     * @param platform      the search platform to send the queries to.
+     * @param queryBuilder  the builder used to build the evaluated queries.
+     * @param configuration the warm-up configuration.
+     */
+    public Warmup(SearchPlatform platform, QueryBuilder queryBuilder, WarmupConfiguration configuration) {
+        this.platform = platform;
+        this.queryBuilder = queryBuilder;
+        this.configuration = configuration;
+    }
+
+    /**
+     * Add a query to warm up with. The arguments are those which will be
+     * passed to the evaluation manager when the query is evaluated.
+     *
+     * @param indexName        the base name of the index to query.
+     * @param queryNode        the JSON node holding details of the query template.
+     * @param defaultTemplate  the fallback query template.
+     * @param relevantDocCount the number of relevant documents required.
+     */
+    public void addQuery(String indexName, JsonNode queryNode, String defaultTemplate, int relevantDocCount) {
+        queries.add(new ReplayableQuery(indexName, queryNode, defaultTemplate, relevantDocCount));
+    }
+
+    /**
+     * Warm up each version in turn with a sample of the queries added since
+     * the last run.
+     *
+     * @param versions the versions to warm up.
+     * @return the number of queries sent.
+     */
+    public int run(Collection<String> versions) {
+        final List<ReplayableQuery> sample = sample();
+        queries.clear();
+
+        int sent = 0;
+        int failed = 0;
+        for (final String version : versions) {
+            LOGGER.info("RRE: warming up version {} with {} queries", version, sample.size());
+            final List<ReplayableQuery.Request> requests = new ArrayList<>(sample.size());
+            sample.forEach(query -> requests.add(query.build(queryBuilder, platform, version)));
+            for (int pass = 0; pass < configuration.getPasses(); pass++) {
+                for (final ReplayableQuery.Request request : requests) {
+                    sent++;
+                    if (!execute(request)) {
+                        failed++;
+                    }
+                }
+            }
+        }
+
+        if (failed > 0) {
+            LOGGER.warn("RRE: {} of {} warm-up queries failed", failed, sent);
+        }
+        return sent;
+    }
+
+    /**
+     * @return the configured number of queries, evenly spaced through those
+     * added.
+     */
+    private List<ReplayableQuery> sample() {
+        final int sampleSize = configuration.getSampleSize();
+        if (sampleSize <= 0 || sampleSize >= queries.size()) {
+            return new ArrayList<>(queries);
+        }
+
+        final List<ReplayableQuery> sample = new ArrayList<>(sampleSize);
+        final double stride = queries.size() / (double) sampleSize;
+        for (int i = 0; i < sampleSize; i++) {
+            sample.add(queries.get((int) (i * stride)));
+        }
+        return sample;
+    }
+
+    private boolean execute(ReplayableQuery.Request request) {
+        try {
+            request.execute(platform);
+            return true;
+        } catch (RuntimeException e) {
+            LOGGER.debug("Warm-up query failed :: " + e.getMessage());
+            return false;
+        }
+    }
+}
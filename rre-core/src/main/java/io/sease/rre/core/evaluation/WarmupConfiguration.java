@@ -0,0 +1,68 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.core.evaluation;
+
+/**
+ * Warm-up configuration details. When enabled, the queries for each ratings
+ * set are sent to every version once the data has been loaded, and before
+ * they are evaluated, so the evaluation does not run against cold caches.
+ * The warm-up responses are discarded.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+public class WarmupConfiguration {
+
+    public static final WarmupConfiguration DEFAULT_CONFIG = new WarmupConfiguration();
+
+    private boolean enabled = false;
+    private int passes = 1;
+    private int sampleSize = 0;
+
+    @SuppressWarnings("unused")
+    public WarmupConfiguration() {
+        // Do nothing - required for Maven initialisation
+    }
+
+    WarmupConfiguration(boolean enabled, int passes, int sampleSize) {
+        this.enabled = enabled;
+        this.passes = passes;
+        this.sampleSize = sampleSize;
+    }
+
+    /**
+     * @return {@code true} if the queries should be warmed up before being
+     * evaluated.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return the number of times to send each query to each version.
+     */
+    public int getPasses() {
+        return passes;
+    }
+
+    /**
+     * @return the number of queries from each ratings set to warm up with,
+     * spread evenly through the set, or 0 to warm up with every query.
+     */
+    public int getSampleSize() {
+        return sampleSize;
+    }
+}
@@ -19,6 +19,7 @@ package io.sease.rre.core.evaluation.impl;
 import com.fasterxml.jackson.databind.JsonNode;
 import io.sease.rre.core.domain.Query;
 import io.sease.rre.core.evaluation.EvaluationManager;
+import io.sease.rre.core.instrumentation.Instrumentation;
 import io.sease.rre.core.template.QueryTemplateManager;
 import io.sease.rre.persistence.PersistenceManager;
 import io.sease.rre.search.api.QueryOrSearchResponse;
@@ -31,7 +32,6 @@ import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Simple asynchronous implementation of {@link EvaluationManager}. This
@@ -67,6 +67,7 @@ public class AsynchronousEvaluationManager extends BaseEvaluationManager impleme
                                          int threadpoolSize) {
         super(platform, templateManager, persistenceManager, fields, versions, versionTimestamp);
         this.executor = (ThreadPoolExecutor) Executors.newFixedThreadPool(threadpoolSize);
+        Instrumentation.monitor(executor, "rre.evaluation.executor");
     }
 
     @Override
@@ -90,11 +91,8 @@ public class AsynchronousEvaluationManager extends BaseEvaluationManager impleme
         return CompletableFuture.supplyAsync(() -> {
             final CountDownLatch doneSignal = new CountDownLatch(getVersions().size());
             getVersions().forEach(version -> {
-                final AtomicInteger rank = new AtomicInteger(1);
-
                 final QueryOrSearchResponse response = executeQuery(indexName, version, queryNode, defaultTemplate, relevantDocCount);
-                query.setTotalHits(response.totalHits(), persistVersion(version));
-                response.hits().forEach(hit -> query.collect(hit, rank.getAndIncrement(), persistVersion(version)));
+                collect(query, version, response);
                 doneSignal.countDown();
             });
             try {
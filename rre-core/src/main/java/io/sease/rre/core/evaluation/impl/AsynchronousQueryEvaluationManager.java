@@ -19,6 +19,7 @@ package io.sease.rre.core.evaluation.impl;
 import com.fasterxml.jackson.databind.JsonNode;
 import io.sease.rre.core.domain.Query;
 import io.sease.rre.core.evaluation.EvaluationManager;
+import io.sease.rre.core.instrumentation.Instrumentation;
 import io.sease.rre.core.template.QueryTemplateManager;
 import io.sease.rre.persistence.PersistenceManager;
 import io.sease.rre.search.api.SearchPlatform;
@@ -31,7 +32,6 @@ import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Asynchronous implementation of {@link EvaluationManager} that runs
@@ -66,6 +66,8 @@ public class AsynchronousQueryEvaluationManager extends BaseEvaluationManager im
         int queryThreadpool = Math.min(threadpoolSize / 2, versions.size());
         this.executor = (ThreadPoolExecutor) Executors.newFixedThreadPool(threadpoolSize - queryThreadpool);
         this.queryExecutor = Executors.newFixedThreadPool(queryThreadpool);
+        Instrumentation.monitor(executor, "rre.evaluation.executor");
+        Instrumentation.monitor(queryExecutor, "rre.evaluation.query.executor");
     }
 
     @Override
@@ -89,12 +91,10 @@ public class AsynchronousQueryEvaluationManager extends BaseEvaluationManager im
         return CompletableFuture.supplyAsync(() -> {
             final CountDownLatch doneSignal = new CountDownLatch(getVersions().size());
             getVersions().forEach(version -> {
-                final AtomicInteger rank = new AtomicInteger(1);
                 // Queries are run in their own threadpool
                 CompletableFuture.supplyAsync(() -> executeQuery(indexName, version, queryNode, defaultTemplate, relevantDocCount), queryExecutor)
                         .thenAccept(response -> {
-                            query.setTotalHits(response.totalHits(), persistVersion(version));
-                            response.hits().forEach(hit -> query.collect(hit, rank.getAndIncrement(), persistVersion(version)));
+                            collect(query, version, response);
                             doneSignal.countDown();
                         });
             });
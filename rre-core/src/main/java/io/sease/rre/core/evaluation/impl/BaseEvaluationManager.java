@@ -17,16 +17,29 @@
 package io.sease.rre.core.evaluation.impl;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Timer;
 import io.sease.rre.core.Engine;
 import io.sease.rre.core.domain.Query;
+import io.sease.rre.core.domain.metrics.QueryPerformance;
+import io.sease.rre.core.instrumentation.Instrumentation;
+import io.sease.rre.core.instrumentation.Instrumentation.Stage;
+import io.sease.rre.core.instrumentation.Tracing;
+import io.sease.rre.core.template.QueryBuilder;
 import io.sease.rre.core.template.QueryTemplateManager;
 import io.sease.rre.persistence.PersistenceManager;
+import io.sease.rre.search.api.BatchQuery;
 import io.sease.rre.search.api.QueryOrSearchResponse;
 import io.sease.rre.search.api.SearchPlatform;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Collection;
-import java.util.Iterator;
-import java.util.Optional;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static java.util.Optional.ofNullable;
 
@@ -39,12 +52,13 @@ import static java.util.Optional.ofNullable;
 abstract class BaseEvaluationManager {
 
     private final SearchPlatform platform;
-    private final QueryTemplateManager templateManager;
+    private final QueryBuilder queryBuilder;
     private final PersistenceManager persistenceManager;
-    private final String[] fields;
     private final Collection<String> versions;
     private final String versionTimestamp;
 
+    private final Map<String, VersionMeters> versionMeters = new ConcurrentHashMap<>();
+
     BaseEvaluationManager(SearchPlatform platform,
                           QueryTemplateManager templateManager,
                           PersistenceManager persistenceManager,
@@ -52,9 +66,8 @@ abstract class BaseEvaluationManager {
                           Collection<String> versions,
                           String versionTimestamp) {
         this.platform = platform;
-        this.templateManager = templateManager;
+        this.queryBuilder = new QueryBuilder(templateManager, fields);
         this.persistenceManager = persistenceManager;
-        this.fields = fields;
         this.versions = versions;
         this.versionTimestamp = versionTimestamp;
     }
@@ -65,11 +78,122 @@ abstract class BaseEvaluationManager {
     }
 
     QueryOrSearchResponse executeQuery(String indexName, String version, JsonNode queryNode, String defaultTemplate, int relevantDocCount) {
-        return platform.executeQuery(
-                indexName, version,
-                query(queryNode, defaultTemplate, version),
-                fields,
-                Math.max(10, relevantDocCount));
+        long start = System.nanoTime();
+        final Tracing.Span render = Tracing.render(indexName, version, queryId(queryNode));
+        final BatchQuery query = queryBuilder.build(version, queryNode, defaultTemplate, relevantDocCount);
+        final boolean templated = query.getTemplate() != null && platform.isQueryTemplateSupported();
+        final String queryString = templated ? null : query.getQuery();
+        start = Instrumentation.recordStage(Stage.RENDER, start);
+
+        final VersionMeters meters = meters(version);
+        final int requestSize = templated ? requestSize(query.getValues()) : requestSize(queryString);
+        render.end(requestSize);
+        meters.requestSize.record(requestSize);
+        final Tracing.Span search = Tracing.search(indexName, version, queryId(queryNode));
+        final QueryOrSearchResponse response = templated
+                ? platform.executeQuery(indexName, version, query.getTemplate(), query.getValues(), query.getFields(), query.getMaxRows())
+                : platform.executeQuery(indexName, version, queryString, query.getFields(), query.getMaxRows());
+        search.end(response.hits().size());
+        return meters.searched(start, response);
+    }
+
+    /**
+     * Execute a versioned query without blocking, using the search platform's
+     * asynchronous query method.
+     *
+     * @param indexName        the base name of the index to query.
+     * @param version          the version being executed.
+     * @param queryNode        the JSON node holding details of the query template.
+     * @param defaultTemplate  the fallback query template.
+     * @param relevantDocCount the number of relevant documents required.
+     * @return a Future which, when complete, will contain the query response.
+     */
+    CompletableFuture<QueryOrSearchResponse> executeQueryAsync(String indexName, String version, JsonNode queryNode, String defaultTemplate, int relevantDocCount) {
+        final VersionMeters meters = meters(version);
+        long start = System.nanoTime();
+        final Tracing.Span render = Tracing.render(indexName, version, queryId(queryNode));
+        final BatchQuery query = queryBuilder.build(version, queryNode, defaultTemplate, relevantDocCount);
+        final boolean templated = query.getTemplate() != null && platform.isQueryTemplateSupported();
+        final String queryString = templated ? null : query.getQuery();
+        start = Instrumentation.recordStage(Stage.RENDER, start);
+        final int requestSize = templated ? requestSize(query.getValues()) : requestSize(queryString);
+        render.end(requestSize);
+        meters.requestSize.record(requestSize);
+        final long searchStart = start;
+        final Tracing.Span search = Tracing.search(indexName, version, queryId(queryNode));
+        final CompletableFuture<QueryOrSearchResponse> response = templated
+                ? platform.executeQueryAsync(indexName, version, query.getTemplate(), query.getValues(), query.getFields(), query.getMaxRows())
+                : platform.executeQueryAsync(indexName, version, queryString, query.getFields(), query.getMaxRows());
+        return response
+                .whenComplete((r, error) -> {
+                    search.end(r == null ? 0 : r.hits().size());
+                    if (error != null) {
+                        meters.recordSearch(searchStart);
+                    }
+                })
+                .thenApply(r -> meters.searched(searchStart, r));
+    }
+
+    /**
+     * Build a versioned query, ready to be executed as part of a batch.
+     *
+     * @param version          the version being executed.
+     * @param queryNode        the JSON node holding details of the query template.
+     * @param defaultTemplate  the fallback query template.
+     * @param relevantDocCount the number of relevant documents required.
+     * @return the query to add to the batch for the version.
+     */
+    BatchQuery batchQuery(String version, JsonNode queryNode, String defaultTemplate, int relevantDocCount) {
+        final long start = System.nanoTime();
+        final Tracing.Span render = Tracing.render(null, version, queryId(queryNode));
+        final BatchQuery query = queryBuilder.build(version, queryNode, defaultTemplate, relevantDocCount);
+        Instrumentation.recordStage(Stage.RENDER, start);
+        // Templated queries are rendered by the platform - avoid rendering them here
+        final int requestSize = query.getTemplate() != null ? requestSize(query.getValues()) : requestSize(query.getQuery());
+        render.end(requestSize);
+        meters(version).requestSize.record(requestSize);
+        return query;
+    }
+
+    /**
+     * Execute a batch of queries against a single version of an index.
+     *
+     * @param indexName the base name of the index to query.
+     * @param version   the version being executed.
+     * @param queries   the queries, as built by {@link #batchQuery}.
+     * @return the responses, in the same order as the queries. Their
+     * latency is unknown - only the latency of the whole batch is recorded.
+     */
+    List<QueryOrSearchResponse> executeQueries(String indexName, String version, List<BatchQuery> queries) {
+        final VersionMeters meters = meters(version);
+        final long start = System.nanoTime();
+        final Tracing.Span search = Tracing.search(indexName, version, "batch of " + queries.size());
+        final List<QueryOrSearchResponse> responses = platform.executeQueries(indexName, version, queries);
+        meters.batchLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        responses.forEach(meters::received);
+        Instrumentation.recordStage(Stage.SEARCH, start);
+        search.end(responses.stream().mapToLong(response -> response.hits().size()).sum());
+        return responses;
+    }
+
+    /**
+     * Collect the results and performance of a versioned query, updating
+     * its metrics.
+     *
+     * @param query    the query being evaluated.
+     * @param version  the version the response is for.
+     * @param response the search platform's response.
+     */
+    void collect(Query query, String version, QueryOrSearchResponse response) {
+        final long start = System.nanoTime();
+        final Tracing.Span metrics = Tracing.metrics(version, query.getName());
+        final String persistVersion = persistVersion(version);
+        final AtomicInteger rank = new AtomicInteger(1);
+        query.setTotalHits(response.totalHits(), persistVersion);
+        response.hits().forEach(hit -> query.collect(hit, rank.getAndIncrement(), persistVersion));
+        query.collect(performance(response), persistVersion);
+        Instrumentation.recordStage(Stage.METRICS, start);
+        metrics.end(response.hits().size());
     }
 
     /**
@@ -79,41 +203,45 @@ abstract class BaseEvaluationManager {
      * @param query the query.
      */
     void completeQuery(Query query) {
+        long start = System.nanoTime();
+        final Tracing.Span aggregation = Tracing.aggregation(query.getName());
         query.notifyCollectedMetrics();
+        start = Instrumentation.recordStage(Stage.METRICS, start);
+        aggregation.end(query.getMetrics().size());
         persistenceManager.recordQuery(query);
+        Instrumentation.recordStage(Stage.PERSISTENCE, start);
+    }
+
+    private static QueryPerformance performance(QueryOrSearchResponse response) {
+        final long latency = response.latency() == QueryOrSearchResponse.UNKNOWN
+                ? QueryPerformance.UNKNOWN
+                : TimeUnit.NANOSECONDS.toMicros(response.latency());
+        return new QueryPerformance(latency, response.engineTime(), response.responseBytes());
+    }
+
+    private VersionMeters meters(String version) {
+        return versionMeters.computeIfAbsent(version, v -> new VersionMeters(platform.getName(), v));
     }
 
     /**
-     * Returns a query (as a string) that will be used for executing a specific evaluation.
-     * A query string is the result of replacing all placeholders found in the template.
-     *
-     * @param queryNode       the JSON query node (in ratings configuration).
-     * @param defaultTemplate the default template that will be used if a query doesn't declare it.
-     * @param version         the version being executed.
-     * @return a query (as a string) that will be used for executing a specific evaluation.
+     * Identify a query for tracing by its placeholders, or the whole query
+     * node if it has none.
      */
-    private String query(final JsonNode queryNode, final String defaultTemplate, final String version) {
-        // try to see if the query declares a template
-        String template = getQueryTemplate(queryNode).orElse(null);
-        try {
-            // EE case
-            if (template == null && defaultTemplate == null) {
-                return queryNode.toString();
-            } else {
-                String query = templateManager.getTemplate(defaultTemplate, template, version);
-                for (final Iterator<String> iterator = queryNode.get("placeholders").fieldNames(); iterator.hasNext(); ) {
-                    final String name = iterator.next();
-                    query = query.replace(name, queryNode.get("placeholders").get(name).asText());
-                }
-                return query;
-            }
-        } catch (Exception e) {
-            throw new RuntimeException(e);
-        }
+    private static JsonNode queryId(JsonNode queryNode) {
+        final JsonNode placeholders = queryNode.get("placeholders");
+        return placeholders == null ? queryNode : placeholders;
     }
 
-    private Optional<String> getQueryTemplate(JsonNode queryNode) {
-        return ofNullable(queryNode.get("template")).map(JsonNode::asText);
+    private static int requestSize(String query) {
+        return query.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private static int requestSize(String[] values) {
+        int size = 0;
+        for (final String value : values) {
+            size += value == null ? 0 : value.getBytes(StandardCharsets.UTF_8).length;
+        }
+        return size;
     }
 
     /**
@@ -128,4 +256,49 @@ abstract class BaseEvaluationManager {
     String persistVersion(final String configVersion) {
         return ofNullable(versionTimestamp).orElse(configVersion);
     }
+
+    /**
+     * The query meters for a single version, looked up once rather than for
+     * every query.
+     */
+    private static class VersionMeters {
+        private final Timer latency;
+        private final Timer batchLatency;
+        private final DistributionSummary requestSize;
+        private final DistributionSummary responseSize;
+        private final DistributionSummary responseHits;
+
+        VersionMeters(String platform, String version) {
+            this.latency = Instrumentation.queryLatency(platform, version);
+            this.batchLatency = Instrumentation.batchLatency(platform, version);
+            this.requestSize = Instrumentation.requestSize(platform, version);
+            this.responseSize = Instrumentation.responseSize(platform, version);
+            this.responseHits = Instrumentation.responseHits(platform, version);
+        }
+
+        long recordSearch(long start) {
+            final long elapsed = System.nanoTime() - start;
+            latency.record(elapsed, TimeUnit.NANOSECONDS);
+            Instrumentation.recordStage(Stage.SEARCH, start);
+            return elapsed;
+        }
+
+        /**
+         * Record a completed search.
+         *
+         * @return the response, holding the search latency.
+         */
+        QueryOrSearchResponse searched(long start, QueryOrSearchResponse response) {
+            final long elapsed = recordSearch(start);
+            received(response);
+            return response.withLatency(elapsed);
+        }
+
+        void received(QueryOrSearchResponse response) {
+            if (response.responseBytes() != QueryOrSearchResponse.UNKNOWN) {
+                responseSize.record(response.responseBytes());
+            }
+            responseHits.record(response.hits().size());
+        }
+    }
 }
@@ -0,0 +1,208 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.core.evaluation.impl;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.sease.rre.core.domain.Query;
+import io.sease.rre.core.evaluation.EvaluationManager;
+import io.sease.rre.core.instrumentation.Instrumentation;
+import io.sease.rre.core.template.QueryTemplateManager;
+import io.sease.rre.persistence.PersistenceManager;
+import io.sease.rre.search.api.BatchQuery;
+import io.sease.rre.search.api.QueryOrSearchResponse;
+import io.sease.rre.search.api.SearchPlatform;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Implementation of {@link EvaluationManager} that groups the versioned
+ * queries into batches, and sends each batch to the search platform in a
+ * single request. A batch is sent once it holds the maximum number of
+ * queries, or once its first query has been waiting for the maximum wait
+ * time, whichever comes first.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+public class BatchingEvaluationManager extends BaseEvaluationManager implements EvaluationManager {
+
+    private final static Logger LOGGER = LogManager.getLogger(BatchingEvaluationManager.class);
+
+    private final ExecutorService executor;
+    private final ScheduledExecutorService scheduler;
+    private final int batchSize;
+    private final long batchWaitMillis;
+
+    // Batches currently being filled, keyed by index name and version
+    private final Map<List<String>, Batch> batches = new HashMap<>();
+
+    private final AtomicInteger totalQueries = new AtomicInteger();
+    private final AtomicInteger completedQueries = new AtomicInteger();
+
+    /**
+     * Construct a batching {@link EvaluationManager} instance.
+     *
+     * @param platform           the search engine in use.
+     * @param templateManager    the template manager.
+     * @param persistenceManager the persistence manager.
+     * @param fields             the fields to return from each query.
+     * @param versions           the query versions to run.
+     * @param versionTimestamp   the version timestamp.
+     * @param threadpoolSize     the maximum number of batches to run at once.
+     * @param batchSize          the maximum number of queries in a batch.
+     * @param batchWaitMillis    the longest time to wait for a batch to fill.
+     */
+    public BatchingEvaluationManager(SearchPlatform platform,
+                                     QueryTemplateManager templateManager,
+                                     PersistenceManager persistenceManager,
+                                     String[] fields,
+                                     Collection<String> versions,
+                                     String versionTimestamp,
+                                     int threadpoolSize,
+                                     int batchSize,
+                                     long batchWaitMillis) {
+        super(platform, templateManager, persistenceManager, fields, versions, versionTimestamp);
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be at least 1");
+        }
+        this.executor = Executors.newFixedThreadPool(threadpoolSize);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor();
+        this.batchSize = batchSize;
+        this.batchWaitMillis = batchWaitMillis;
+        Instrumentation.monitor(executor, "rre.evaluation.executor");
+    }
+
+    @Override
+    public void evaluateQuery(Query query, String indexName, JsonNode queryNode, String defaultTemplate, int relevantDocCount) {
+        totalQueries.incrementAndGet();
+        try {
+            final CompletableFuture<?>[] versionQueries = getVersions().stream()
+                    .map(version -> {
+                        final BatchQuery batchQuery = batchQuery(version, queryNode, defaultTemplate, relevantDocCount);
+                        return addToBatch(indexName, version, batchQuery)
+                                .thenAccept(response -> collect(query, version, response));
+                    })
+                    .toArray(CompletableFuture[]::new);
+
+            CompletableFuture.allOf(versionQueries)
+                    .thenRun(() -> completeQuery(query))
+                    .whenComplete((result, error) -> {
+                        if (error != null) {
+                            LOGGER.error("Caught exception evaluating query " + query.getName(), error);
+                        }
+                        completedQueries.incrementAndGet();
+                    });
+        } catch (RuntimeException e) {
+            LOGGER.error("Caught exception evaluating query " + query.getName(), e);
+            completedQueries.incrementAndGet();
+        }
+    }
+
+    private synchronized CompletableFuture<QueryOrSearchResponse> addToBatch(String indexName, String version, BatchQuery batchQuery) {
+        final List<String> key = Arrays.asList(indexName, version);
+        Batch batch = batches.get(key);
+        if (batch == null) {
+            final Batch newBatch = new Batch(indexName, version);
+            batches.put(key, newBatch);
+            scheduler.schedule(() -> send(key, newBatch), batchWaitMillis, TimeUnit.MILLISECONDS);
+            batch = newBatch;
+        }
+
+        final CompletableFuture<QueryOrSearchResponse> future = batch.add(batchQuery);
+        if (batch.size() >= batchSize) {
+            send(key, batch);
+        }
+        return future;
+    }
+
+    /**
+     * Send a batch to be executed, unless it has already been sent.
+     */
+    private synchronized void send(List<String> key, Batch batch) {
+        if (batches.remove(key, batch)) {
+            executor.execute(batch::execute);
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return completedQueries.get() < totalQueries.get();
+    }
+
+    @Override
+    public int getQueriesRemaining() {
+        return totalQueries.get() - completedQueries.get();
+    }
+
+    @Override
+    public int getTotalQueries() {
+        return totalQueries.get();
+    }
+
+    /**
+     * The queries waiting to be sent to a single version of an index, with
+     * the futures to complete when their responses arrive.
+     */
+    private class Batch {
+        private final String indexName;
+        private final String version;
+        private final List<BatchQuery> queries = new ArrayList<>();
+        private final List<CompletableFuture<QueryOrSearchResponse>> futures = new ArrayList<>();
+
+        Batch(String indexName, String version) {
+            this.indexName = indexName;
+            this.version = version;
+        }
+
+        CompletableFuture<QueryOrSearchResponse> add(BatchQuery query) {
+            final CompletableFuture<QueryOrSearchResponse> future = new CompletableFuture<>();
+            queries.add(query);
+            futures.add(future);
+            return future;
+        }
+
+        int size() {
+            return queries.size();
+        }
+
+        void execute() {
+            try {
+                final List<QueryOrSearchResponse> responses = executeQueries(indexName, version, queries);
+                if (responses.size() != queries.size()) {
+                    throw new IllegalStateException("Expected " + queries.size() + " responses, got " + responses.size());
+                }
+                for (int i = 0; i < responses.size(); i++) {
+                    futures.get(i).complete(responses.get(i));
+                }
+            } catch (RuntimeException e) {
+                futures.forEach(f -> f.completeExceptionally(e));
+            }
+        }
+    }
+}
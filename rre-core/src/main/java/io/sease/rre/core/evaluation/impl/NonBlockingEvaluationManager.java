@@ -0,0 +1,146 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.core.evaluation.impl;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.micrometer.core.instrument.Tags;
+import io.sease.rre.core.domain.Query;
+import io.sease.rre.core.evaluation.EvaluationManager;
+import io.sease.rre.core.instrumentation.Instrumentation;
+import io.sease.rre.core.template.QueryTemplateManager;
+import io.sease.rre.persistence.PersistenceManager;
+import io.sease.rre.search.api.QueryOrSearchResponse;
+import io.sease.rre.search.api.SearchPlatform;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Implementation of {@link EvaluationManager} that runs queries using the
+ * search platform's non-blocking query method. A small threadpool prepares
+ * the queries and processes their responses, while the queries themselves
+ * are in flight without holding a thread - up to a given maximum number
+ * of queries at any one time.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+public class NonBlockingEvaluationManager extends BaseEvaluationManager implements EvaluationManager {
+
+    private final static Logger LOGGER = LogManager.getLogger(NonBlockingEvaluationManager.class);
+
+    private final ExecutorService executor;
+    private final Semaphore inFlight;
+
+    private final AtomicInteger totalQueries = new AtomicInteger();
+    private final AtomicInteger completedQueries = new AtomicInteger();
+
+    /**
+     * Construct a non-blocking {@link EvaluationManager} instance.
+     *
+     * @param platform           the search engine in use.
+     * @param templateManager    the template manager.
+     * @param persistenceManager the persistence manager.
+     * @param fields             the fields to return from each query.
+     * @param versions           the query versions to run.
+     * @param versionTimestamp   the version timestamp.
+     * @param threadpoolSize     the number of threads to use to prepare
+     *                           queries and process their responses.
+     * @param maxQueriesInFlight the maximum number of versioned queries to
+     *                           have running at once.
+     */
+    public NonBlockingEvaluationManager(SearchPlatform platform,
+                                        QueryTemplateManager templateManager,
+                                        PersistenceManager persistenceManager,
+                                        String[] fields,
+                                        Collection<String> versions,
+                                        String versionTimestamp,
+                                        int threadpoolSize,
+                                        int maxQueriesInFlight) {
+        super(platform, templateManager, persistenceManager, fields, versions, versionTimestamp);
+        if (maxQueriesInFlight < 1) {
+            throw new IllegalArgumentException("maxQueriesInFlight must be at least 1");
+        }
+        this.executor = Executors.newFixedThreadPool(threadpoolSize);
+        this.inFlight = new Semaphore(maxQueriesInFlight);
+        Instrumentation.monitor(executor, "rre.evaluation.executor");
+        Instrumentation.queueDepth("rre.evaluation.inflight", Tags.empty(), inFlight,
+                permits -> maxQueriesInFlight - permits.availablePermits());
+    }
+
+    @Override
+    public void evaluateQuery(Query query, String indexName, JsonNode queryNode, String defaultTemplate, int relevantDocCount) {
+        totalQueries.incrementAndGet();
+        CompletableFuture.supplyAsync(() -> evaluateQueryAsync(query, indexName, queryNode, defaultTemplate, relevantDocCount), executor)
+                .thenCompose(evaluation -> evaluation)
+                .thenAccept(this::completeQuery)
+                .whenComplete((result, error) -> {
+                    if (error != null) {
+                        LOGGER.error("Caught exception evaluating query " + query.getName(), error);
+                    }
+                    completedQueries.incrementAndGet();
+                });
+    }
+
+    /**
+     * Dispatch each versioned query, waiting only if the maximum number of
+     * queries are already in flight.
+     *
+     * @return a Future which will complete once every version of the query
+     * has returned and its results have been collected.
+     */
+    private CompletableFuture<Query> evaluateQueryAsync(Query query, String indexName, JsonNode queryNode, String defaultTemplate, int relevantDocCount) {
+        final CompletableFuture<?>[] versionQueries = getVersions().stream()
+                .map(version -> executeVersionQuery(indexName, version, queryNode, defaultTemplate, relevantDocCount)
+                        // Collect the results on the threadpool, keeping the platform's I/O threads free
+                        .thenAcceptAsync(response -> collect(query, version, response), executor))
+                .toArray(CompletableFuture[]::new);
+        return CompletableFuture.allOf(versionQueries).thenApply(v -> query);
+    }
+
+    private CompletableFuture<QueryOrSearchResponse> executeVersionQuery(String indexName, String version, JsonNode queryNode, String defaultTemplate, int relevantDocCount) {
+        inFlight.acquireUninterruptibly();
+        try {
+            // Release the permit as soon as the response arrives, whichever thread it arrives on
+            return executeQueryAsync(indexName, version, queryNode, defaultTemplate, relevantDocCount)
+                    .whenComplete((response, error) -> inFlight.release());
+        } catch (RuntimeException e) {
+            inFlight.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return completedQueries.get() < totalQueries.get();
+    }
+
+    @Override
+    public int getQueriesRemaining() {
+        return totalQueries.get() - completedQueries.get();
+    }
+
+    @Override
+    public int getTotalQueries() {
+        return totalQueries.get();
+    }
+}
@@ -25,7 +25,6 @@ import io.sease.rre.search.api.QueryOrSearchResponse;
 import io.sease.rre.search.api.SearchPlatform;
 
 import java.util.Collection;
-import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A synchronous implementation of {@link EvaluationManager} - all queries
@@ -57,11 +56,8 @@ public class SynchronousEvaluationManager extends BaseEvaluationManager implemen
         queryCount++;
 
         getVersions().forEach(version -> {
-            final AtomicInteger rank = new AtomicInteger(1);
             final QueryOrSearchResponse response = executeQuery(indexName, version, queryNode, defaultTemplate, relevantDocCount);
-
-            query.setTotalHits(response.totalHits(), persistVersion(version));
-            response.hits().forEach(hit -> query.collect(hit, rank.getAndIncrement(), persistVersion(version)));
+            collect(query, version, response);
         });
 
         completeQuery(query);
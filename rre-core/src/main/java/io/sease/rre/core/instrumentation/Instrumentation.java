@@ -0,0 +1,363 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.core.instrumentation;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.Clock;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Measurement;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.jmx.JmxConfig;
+import io.micrometer.jmx.JmxMeterRegistry;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Instrumentation for the evaluation pipeline, recording query latencies
+ * and sizes, the time spent in each stage of a query evaluation, the depth
+ * of the evaluation and persistence queues, and index load times.
+ * <p>
+ * Metrics are recorded in the Micrometer global registry, so they are
+ * published by any registry added to it - including the JMX and snapshot
+ * registries set up by {@link #configure(InstrumentationConfiguration)},
+ * and any registry added by an application embedding RRE. When no registry
+ * has been added, recording is close to free.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+public final class Instrumentation {
+
+    private static final Logger LOGGER = LogManager.getLogger(Instrumentation.class);
+
+    public static final String QUERY_LATENCY = "rre.query.latency";
+    public static final String QUERY_BATCH_LATENCY = "rre.query.batch.latency";
+    public static final String QUERY_REQUEST_SIZE = "rre.query.request.size";
+    public static final String QUERY_RESPONSE_SIZE = "rre.query.response.size";
+    public static final String QUERY_RESPONSE_HITS = "rre.query.response.hits";
+    public static final String QUERY_STAGE = "rre.query.stage";
+    public static final String EVALUATION_PENDING = "rre.evaluation.pending";
+    public static final String PERSISTENCE_PENDING = "rre.persistence.pending";
+    public static final String PERSISTENCE_RECORD = "rre.persistence.record";
+    public static final String INDEX_LOAD = "rre.index.load";
+    public static final String INDEX_LOAD_SIZE = "rre.index.load.size";
+
+    public static final String PLATFORM_TAG = "platform";
+    public static final String VERSION_TAG = "version";
+    public static final String COLLECTION_TAG = "collection";
+    public static final String STAGE_TAG = "stage";
+
+    private static final double[] PERCENTILES = {0.5, 0.95, 0.99};
+
+    /**
+     * The stages of a single versioned query evaluation.
+     */
+    public enum Stage {
+        /** Building the query from its template. */
+        RENDER,
+        /** Running the query on the search platform. */
+        SEARCH,
+        /** Collecting the results and computing the metrics. */
+        METRICS,
+        /** Passing the completed query to the persistence handlers. */
+        PERSISTENCE;
+
+        String tag() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private static final Map<Stage, Timer> STAGES = new EnumMap<>(Stage.class);
+
+    static {
+        for (final Stage stage : Stage.values()) {
+            STAGES.put(stage, Timer.builder(QUERY_STAGE)
+                    .description("Time spent in each stage of a query evaluation")
+                    .tag(STAGE_TAG, stage.tag())
+                    .publishPercentiles(PERCENTILES)
+                    .register(Metrics.globalRegistry));
+        }
+    }
+
+    private static JmxMeterRegistry jmxRegistry;
+    private static SimpleMeterRegistry snapshotRegistry;
+    private static File snapshotFile;
+
+    private Instrumentation() {
+    }
+
+    /**
+     * Publish the metrics as required by the configuration. JMX publishing
+     * is set up once per JVM; the snapshot file may be changed by later
+     * calls.
+     *
+     * @param configuration the instrumentation configuration.
+     */
+    public static synchronized void configure(final InstrumentationConfiguration configuration) {
+        if (configuration.isJmxEnabled() && jmxRegistry == null) {
+            jmxRegistry = new JmxMeterRegistry(new JmxConfig() {
+                @Override
+                public String get(final String key) {
+                    return null;
+                }
+
+                @Override
+                public String domain() {
+                    return configuration.getJmxDomain();
+                }
+            }, Clock.SYSTEM);
+            Metrics.addRegistry(jmxRegistry);
+            LOGGER.info("RRE: publishing metrics over JMX, domain " + configuration.getJmxDomain());
+        }
+
+        if (configuration.getSnapshotFile() != null) {
+            if (snapshotRegistry == null) {
+                snapshotRegistry = new SimpleMeterRegistry();
+                Metrics.addRegistry(snapshotRegistry);
+            }
+            snapshotFile = new File(configuration.getSnapshotFile());
+        }
+    }
+
+    /**
+     * @return the registry the metrics are recorded in.
+     */
+    public static MeterRegistry registry() {
+        return Metrics.globalRegistry;
+    }
+
+    /**
+     * @param platform the name of the search platform.
+     * @param version  the configuration version.
+     * @return the timer for the search platform's response time.
+     */
+    public static Timer queryLatency(final String platform, final String version) {
+        return Timer.builder(QUERY_LATENCY)
+                .description("Search platform response time, as seen by RRE")
+                .tags(versionTags(platform, version))
+                .publishPercentiles(PERCENTILES)
+                .publishPercentileHistogram()
+                .register(registry());
+    }
+
+    /**
+     * @param platform the name of the search platform.
+     * @param version  the configuration version.
+     * @return the timer for the search platform's response time to a batch
+     * of queries. The time taken by the individual queries in a batch is
+     * not known.
+     */
+    public static Timer batchLatency(final String platform, final String version) {
+        return Timer.builder(QUERY_BATCH_LATENCY)
+                .description("Search platform response time to a batch of queries, as seen by RRE")
+                .tags(versionTags(platform, version))
+                .publishPercentiles(PERCENTILES)
+                .register(registry());
+    }
+
+    /**
+     * @param platform the name of the search platform.
+     * @param version  the configuration version.
+     * @return the summary of the size of the queries sent.
+     */
+    public static DistributionSummary requestSize(final String platform, final String version) {
+        return DistributionSummary.builder(QUERY_REQUEST_SIZE)
+                .description("Size of the queries sent to the search platform")
+                .baseUnit("bytes")
+                .tags(versionTags(platform, version))
+                .register(registry());
+    }
+
+    /**
+     * @param platform the name of the search platform.
+     * @param version  the configuration version.
+     * @return the summary of the size of the responses received - only
+     * recorded for platforms which report it.
+     */
+    public static DistributionSummary responseSize(final String platform, final String version) {
+        return DistributionSummary.builder(QUERY_RESPONSE_SIZE)
+                .description("Size of the responses received from the search platform")
+                .baseUnit("bytes")
+                .tags(versionTags(platform, version))
+                .register(registry());
+    }
+
+    /**
+     * @param platform the name of the search platform.
+     * @param version  the configuration version.
+     * @return the summary of the number of hits returned.
+     */
+    public static DistributionSummary responseHits(final String platform, final String version) {
+        return DistributionSummary.builder(QUERY_RESPONSE_HITS)
+                .description("Number of hits returned by the search platform")
+                .tags(versionTags(platform, version))
+                .register(registry());
+    }
+
+    /**
+     * Record the time spent in a query evaluation stage.
+     *
+     * @param stage      the stage.
+     * @param startNanos the {@link System#nanoTime()} at the start of the stage.
+     * @return the {@link System#nanoTime()} at the end of the stage.
+     */
+    public static long recordStage(final Stage stage, final long startNanos) {
+        final long end = System.nanoTime();
+        STAGES.get(stage).record(end - startNanos, TimeUnit.NANOSECONDS);
+        return end;
+    }
+
+    /**
+     * Record the loading of a corpus into a version of an index.
+     *
+     * @param platform   the name of the search platform.
+     * @param collection the index name.
+     * @param version    the configuration version.
+     * @param bytes      the size of the corpus file.
+     * @param startNanos the {@link System#nanoTime()} at the start of the load.
+     */
+    public static void recordIndexLoad(final String platform, final String collection, final String version,
+                                       final long bytes, final long startNanos) {
+        final Tags tags = versionTags(platform, version).and(COLLECTION_TAG, tagValue(collection));
+        Timer.builder(INDEX_LOAD)
+                .description("Time taken to load a corpus into the search platform")
+                .tags(tags)
+                .register(registry())
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        DistributionSummary.builder(INDEX_LOAD_SIZE)
+                .description("Size of the corpora loaded into the search platform")
+                .baseUnit("bytes")
+                .tags(tags)
+                .register(registry())
+                .record(bytes);
+    }
+
+    /**
+     * Register a gauge reporting the depth of a queue.
+     *
+     * @param name   the gauge name.
+     * @param tags   the gauge tags.
+     * @param source the object holding the queue. Only a weak reference is kept.
+     * @param depth  the function to read the queue depth.
+     * @param <T>    the type of the object holding the queue.
+     */
+    public static <T> void queueDepth(final String name, final Iterable<Tag> tags, final T source, final ToDoubleFunction<T> depth) {
+        Gauge.builder(name, source, depth)
+                .tags(tags)
+                .register(registry());
+    }
+
+    /**
+     * Publish the pool size, active and queued tasks of an executor.
+     *
+     * @param executor the executor.
+     * @param name     the name to publish the executor metrics under.
+     */
+    public static void monitor(final ExecutorService executor, final String name) {
+        new ExecutorServiceMetrics(executor, name, Tags.empty()).bindTo(registry());
+    }
+
+    private static Tags versionTags(final String platform, final String version) {
+        return Tags.of(PLATFORM_TAG, tagValue(platform), VERSION_TAG, tagValue(version));
+    }
+
+    private static String tagValue(final String value) {
+        return value == null ? "unknown" : value;
+    }
+
+    /**
+     * Write a summary of every metric recorded so far to the configured
+     * snapshot file, if there is one.
+     */
+    public static synchronized void writeSnapshot() {
+        if (snapshotFile == null) {
+            return;
+        }
+
+        try {
+            final File parent = snapshotFile.getAbsoluteFile().getParentFile();
+            if (!parent.isDirectory() && !parent.mkdirs()) {
+                throw new IOException("Unable to create " + parent);
+            }
+            final ObjectMapper mapper = new ObjectMapper();
+            mapper.writerWithDefaultPrettyPrinter().writeValue(snapshotFile, snapshot(mapper));
+            LOGGER.info("RRE: metrics snapshot written to " + snapshotFile.getAbsolutePath());
+        } catch (final IOException e) {
+            LOGGER.error("Could not write metrics snapshot to " + snapshotFile + " :: " + e.getMessage());
+        }
+    }
+
+    private static ObjectNode snapshot(final ObjectMapper mapper) {
+        final ObjectNode snapshot = mapper.createObjectNode();
+        snapshot.put("timestamp", Instant.now().toString());
+        final ArrayNode meters = snapshot.putArray("meters");
+        snapshotRegistry.getMeters().stream()
+                .sorted((a, b) -> a.getId().toString().compareTo(b.getId().toString()))
+                .forEach(meter -> {
+                    final ObjectNode node = meters.addObject();
+                    node.put("name", meter.getId().getName());
+                    node.put("type", meter.getId().getType().name().toLowerCase(Locale.ROOT));
+                    final ObjectNode tags = node.putObject("tags");
+                    meter.getId().getTags().forEach(tag -> tags.put(tag.getKey(), tag.getValue()));
+
+                    if (meter instanceof Timer) {
+                        histogram(node, ((Timer) meter).takeSnapshot(), TimeUnit.MILLISECONDS);
+                        node.put("unit", "milliseconds");
+                    } else if (meter instanceof DistributionSummary) {
+                        histogram(node, ((DistributionSummary) meter).takeSnapshot(), null);
+                        node.put("unit", meter.getId().getBaseUnit());
+                    } else {
+                        for (final Measurement measurement : meter.measure()) {
+                            node.put(measurement.getStatistic().getTagValueRepresentation(), measurement.getValue());
+                        }
+                    }
+                });
+        return snapshot;
+    }
+
+    private static void histogram(final ObjectNode node, final HistogramSnapshot histogram, final TimeUnit unit) {
+        node.put("count", histogram.count());
+        node.put("total", unit == null ? histogram.total() : histogram.total(unit));
+        node.put("mean", unit == null ? histogram.mean() : histogram.mean(unit));
+        node.put("max", unit == null ? histogram.max() : histogram.max(unit));
+        final ObjectNode percentiles = node.putObject("percentiles");
+        for (final ValueAtPercentile percentile : histogram.percentileValues()) {
+            percentiles.put(String.valueOf(percentile.percentile()), unit == null ? percentile.value() : percentile.value(unit));
+        }
+    }
+}
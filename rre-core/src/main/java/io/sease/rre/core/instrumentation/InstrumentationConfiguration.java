@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.core.instrumentation;
+
+/**
+ * Instrumentation configuration details, controlling where the metrics
+ * recorded by {@link Instrumentation} are published.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+public class InstrumentationConfiguration {
+
+    public static final InstrumentationConfiguration DEFAULT_CONFIG = new InstrumentationConfiguration();
+
+    private boolean jmxEnabled = false;
+    private String jmxDomain = "rre";
+    private String snapshotFile;
+    private String flightRecording;
+    private String flightRecordingSettings = "default";
+
+    @SuppressWarnings("unused")
+    public InstrumentationConfiguration() {
+        // Do nothing - required for Maven initialisation
+    }
+
+    InstrumentationConfiguration(boolean jmxEnabled, String jmxDomain, String snapshotFile) {
+        this.jmxEnabled = jmxEnabled;
+        this.jmxDomain = jmxDomain;
+        this.snapshotFile = snapshotFile;
+    }
+
+    InstrumentationConfiguration(String flightRecording, String flightRecordingSettings) {
+        this.flightRecording = flightRecording;
+        this.flightRecordingSettings = flightRecordingSettings;
+    }
+
+    /**
+     * @return {@code true} if the metrics should be published as JMX MBeans.
+     */
+    public boolean isJmxEnabled() {
+        return jmxEnabled;
+    }
+
+    /**
+     * @return the JMX domain to publish the metrics under.
+     */
+    public String getJmxDomain() {
+        return jmxDomain;
+    }
+
+    /**
+     * @return the path of the file to write a summary of the metrics to at
+     * the end of an evaluation, or {@code null} if no summary is required.
+     */
+    public String getSnapshotFile() {
+        return snapshotFile;
+    }
+
+    /**
+     * @return the path of the file to write a Java Flight Recorder recording
+     * of each evaluation to, or {@code null} if no recording is required.
+     */
+    public String getFlightRecording() {
+        return flightRecording;
+    }
+
+    /**
+     * @return the name of the JFR settings to record with - either "default"
+     * or "profile" - or the path to a custom settings file.
+     */
+    public String getFlightRecordingSettings() {
+        return flightRecordingSettings;
+    }
+}
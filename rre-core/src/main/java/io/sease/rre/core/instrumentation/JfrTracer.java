@@ -0,0 +1,265 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.core.instrumentation;
+
+import jdk.jfr.Category;
+import jdk.jfr.Configuration;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.text.ParseException;
+
+/**
+ * Tracer emitting Java Flight Recorder events. This class is only loaded
+ * when JFR is available.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+class JfrTracer implements Tracing.Tracer {
+
+    private static final String CATEGORY = "RRE";
+
+    private Recording recording;
+
+    @Override
+    public Tracing.Span render(final String collection, final String version, final Object query) {
+        final RenderEvent event = new RenderEvent();
+        if (!event.isEnabled()) {
+            return Tracing.Span.NOOP;
+        }
+        event.begin();
+        return size -> {
+            event.end();
+            if (event.shouldCommit()) {
+                event.collection = collection;
+                event.version = version;
+                event.query = String.valueOf(query);
+                event.requestSize = size;
+                event.commit();
+            }
+        };
+    }
+
+    @Override
+    public Tracing.Span search(final String collection, final String version, final Object query) {
+        final SearchEvent event = new SearchEvent();
+        if (!event.isEnabled()) {
+            return Tracing.Span.NOOP;
+        }
+        event.begin();
+        return size -> {
+            event.end();
+            if (event.shouldCommit()) {
+                event.collection = collection;
+                event.version = version;
+                event.query = String.valueOf(query);
+                event.hits = size;
+                event.commit();
+            }
+        };
+    }
+
+    @Override
+    public Tracing.Span metrics(final String version, final Object query) {
+        final MetricsEvent event = new MetricsEvent();
+        if (!event.isEnabled()) {
+            return Tracing.Span.NOOP;
+        }
+        event.begin();
+        return size -> {
+            event.end();
+            if (event.shouldCommit()) {
+                event.version = version;
+                event.query = String.valueOf(query);
+                event.hits = size;
+                event.commit();
+            }
+        };
+    }
+
+    @Override
+    public Tracing.Span aggregation(final Object query) {
+        final AggregationEvent event = new AggregationEvent();
+        if (!event.isEnabled()) {
+            return Tracing.Span.NOOP;
+        }
+        event.begin();
+        return size -> {
+            event.end();
+            if (event.shouldCommit()) {
+                event.query = String.valueOf(query);
+                event.metrics = size;
+                event.commit();
+            }
+        };
+    }
+
+    @Override
+    public Tracing.Span load(final String platform, final String collection, final String version) {
+        final LoadEvent event = new LoadEvent();
+        if (!event.isEnabled()) {
+            return Tracing.Span.NOOP;
+        }
+        event.begin();
+        return size -> {
+            event.end();
+            if (event.shouldCommit()) {
+                event.platform = platform;
+                event.collection = collection;
+                event.version = version;
+                event.corpusSize = size;
+                event.commit();
+            }
+        };
+    }
+
+    @Override
+    public Tracing.Span flush(final String handler) {
+        final FlushEvent event = new FlushEvent();
+        if (!event.isEnabled()) {
+            return Tracing.Span.NOOP;
+        }
+        event.begin();
+        return size -> {
+            event.end();
+            if (event.shouldCommit()) {
+                event.handler = handler;
+                event.queries = size;
+                event.commit();
+            }
+        };
+    }
+
+    @Override
+    public synchronized void startRecording(final File destination, final String settings) throws Exception {
+        stopRecording();
+        recording = new Recording(configuration(settings));
+        recording.setName("RRE evaluation");
+        recording.setDestination(destination.toPath());
+        recording.start();
+    }
+
+    @Override
+    public synchronized void stopRecording() {
+        if (recording != null) {
+            // Stopping writes the recording to its destination
+            recording.stop();
+            recording.close();
+            recording = null;
+        }
+    }
+
+    private static Configuration configuration(final String settings) throws Exception {
+        if (Files.isRegularFile(Paths.get(settings))) {
+            return Configuration.create(Paths.get(settings));
+        }
+        try {
+            return Configuration.getConfiguration(settings);
+        } catch (final ParseException e) {
+            throw new IllegalArgumentException("Could not read JFR settings " + settings, e);
+        }
+    }
+
+    @Name("io.sease.rre.QueryRender")
+    @Label("Query Render")
+    @Category(CATEGORY)
+    @Description("Rendering of a query from its template")
+    static class RenderEvent extends Event {
+        @Label("Collection")
+        String collection;
+        @Label("Version")
+        String version;
+        @Label("Query")
+        String query;
+        @Label("Request Size")
+        @DataAmount
+        long requestSize;
+    }
+
+    @Name("io.sease.rre.Search")
+    @Label("Search")
+    @Category(CATEGORY)
+    @Description("Execution of a query, or a batch of queries, by the search platform")
+    static class SearchEvent extends Event {
+        @Label("Collection")
+        String collection;
+        @Label("Version")
+        String version;
+        @Label("Query")
+        String query;
+        @Label("Hits")
+        long hits;
+    }
+
+    @Name("io.sease.rre.MetricComputation")
+    @Label("Metric Computation")
+    @Category(CATEGORY)
+    @Description("Collection of a query's hits by its metrics")
+    static class MetricsEvent extends Event {
+        @Label("Version")
+        String version;
+        @Label("Query")
+        String query;
+        @Label("Hits")
+        long hits;
+    }
+
+    @Name("io.sease.rre.Aggregation")
+    @Label("Aggregation")
+    @Category(CATEGORY)
+    @Description("Aggregation of a query's metrics up the evaluation tree")
+    static class AggregationEvent extends Event {
+        @Label("Query")
+        String query;
+        @Label("Metrics")
+        long metrics;
+    }
+
+    @Name("io.sease.rre.PlatformLoad")
+    @Label("Platform Load")
+    @Category(CATEGORY)
+    @Description("Loading of a configuration version and its corpus into the search platform")
+    static class LoadEvent extends Event {
+        @Label("Platform")
+        String platform;
+        @Label("Collection")
+        String collection;
+        @Label("Version")
+        String version;
+        @Label("Corpus Size")
+        @DataAmount
+        long corpusSize;
+    }
+
+    @Name("io.sease.rre.PersistenceFlush")
+    @Label("Persistence Flush")
+    @Category(CATEGORY)
+    @Description("A persistence handler writing out its data")
+    static class FlushEvent extends Event {
+        @Label("Handler")
+        String handler;
+        @Label("Queries")
+        long queries;
+    }
+}
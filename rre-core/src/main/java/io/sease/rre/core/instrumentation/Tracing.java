@@ -0,0 +1,254 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.core.instrumentation;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.File;
+
+/**
+ * Tracing for the evaluation pipeline, emitting Java Flight Recorder events
+ * for query rendering, searches, metric computation, aggregation, platform
+ * loads and persistence flushes. The events carry the collection, version
+ * and query they relate to, so profiling samples can be mapped back to them.
+ * <p>
+ * Each traced operation is wrapped in a {@link Span}. When no recording is
+ * running - or the JVM does not support JFR - the span is a shared no-op,
+ * so tracing costs almost nothing. A recording of a whole evaluation can be
+ * requested through {@link InstrumentationConfiguration#getFlightRecording()}.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+public final class Tracing {
+
+    private static final Logger LOGGER = LogManager.getLogger(Tracing.class);
+
+    private static final Tracer TRACER = createTracer();
+
+    private static File recordingFile;
+    private static String recordingSettings;
+
+    private Tracing() {
+    }
+
+    /**
+     * A traced operation, which is recorded when it ends.
+     */
+    @FunctionalInterface
+    public interface Span {
+
+        /**
+         * Span which records nothing.
+         */
+        Span NOOP = size -> {
+        };
+
+        /**
+         * End the operation.
+         *
+         * @param size the size of the operation's result - see the method
+         *             which began the span for its meaning.
+         */
+        void end(long size);
+    }
+
+    /**
+     * Creates the spans for each traced operation.
+     */
+    interface Tracer {
+        Span render(String collection, String version, Object query);
+
+        Span search(String collection, String version, Object query);
+
+        Span metrics(String version, Object query);
+
+        Span aggregation(Object query);
+
+        Span load(String platform, String collection, String version);
+
+        Span flush(String handler);
+
+        void startRecording(File destination, String settings) throws Exception;
+
+        void stopRecording();
+    }
+
+    private static Tracer createTracer() {
+        try {
+            Class.forName("jdk.jfr.FlightRecorder");
+            return new JfrTracer();
+        } catch (final ClassNotFoundException | LinkageError e) {
+            LOGGER.debug("RRE: Java Flight Recorder is not available - tracing disabled");
+            return new NoopTracer();
+        }
+    }
+
+    /**
+     * Set up the flight recording requested by the configuration, if any.
+     *
+     * @param configuration the instrumentation configuration.
+     */
+    public static synchronized void configure(final InstrumentationConfiguration configuration) {
+        recordingFile = configuration.getFlightRecording() == null ? null : new File(configuration.getFlightRecording());
+        recordingSettings = configuration.getFlightRecordingSettings();
+    }
+
+    /**
+     * Start the configured flight recording, if there is one.
+     */
+    public static synchronized void startRecording() {
+        if (recordingFile == null) {
+            return;
+        }
+
+        try {
+            final File parent = recordingFile.getAbsoluteFile().getParentFile();
+            if (!parent.isDirectory() && !parent.mkdirs()) {
+                throw new IllegalStateException("Unable to create " + parent);
+            }
+            TRACER.startRecording(recordingFile, recordingSettings);
+            LOGGER.info("RRE: flight recording to " + recordingFile.getAbsolutePath());
+        } catch (final Exception e) {
+            LOGGER.error("Could not start flight recording to " + recordingFile + " :: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Stop the flight recording, writing it to the configured file.
+     */
+    public static synchronized void stopRecording() {
+        TRACER.stopRecording();
+    }
+
+    /**
+     * Trace the rendering of a query. The size is the size of the rendered query.
+     *
+     * @param collection the collection being queried.
+     * @param version    the version being queried.
+     * @param query      the query identifier - only converted to a string if
+     *                   the event is recorded.
+     * @return the span, to be ended when the query has been rendered.
+     */
+    public static Span render(final String collection, final String version, final Object query) {
+        return TRACER.render(collection, version, query);
+    }
+
+    /**
+     * Trace a search. The size is the number of hits returned.
+     *
+     * @param collection the collection being queried.
+     * @param version    the version being queried.
+     * @param query      the query identifier.
+     * @return the span, to be ended when the search platform has responded.
+     */
+    public static Span search(final String collection, final String version, final Object query) {
+        return TRACER.search(collection, version, query);
+    }
+
+    /**
+     * Trace the metric computation for a query. The size is the number of
+     * hits collected.
+     *
+     * @param version the version the hits are from.
+     * @param query   the query identifier.
+     * @return the span, to be ended when the hits have been collected.
+     */
+    public static Span metrics(final String version, final Object query) {
+        return TRACER.metrics(version, query);
+    }
+
+    /**
+     * Trace the aggregation of a query's metrics up the evaluation tree.
+     * The size is the number of metrics aggregated.
+     *
+     * @param query the query identifier.
+     * @return the span, to be ended when the metrics have been aggregated.
+     */
+    public static Span aggregation(final Object query) {
+        return TRACER.aggregation(query);
+    }
+
+    /**
+     * Trace the loading of a version into the search platform. The size is
+     * the size of the corpus, in bytes.
+     *
+     * @param platform   the search platform name.
+     * @param collection the collection being loaded.
+     * @param version    the version being loaded.
+     * @return the span, to be ended when the version has been loaded.
+     */
+    public static Span load(final String platform, final String collection, final String version) {
+        return TRACER.load(platform, collection, version);
+    }
+
+    /**
+     * Trace a persistence handler writing out its data. The size is the
+     * number of queries the handler has recorded.
+     *
+     * @param handler the persistence handler name.
+     * @return the span, to be ended when the handler has been flushed.
+     */
+    public static Span flush(final String handler) {
+        return TRACER.flush(handler);
+    }
+
+    /**
+     * Tracer used when JFR is not available.
+     */
+    private static class NoopTracer implements Tracer {
+        @Override
+        public Span render(String collection, String version, Object query) {
+            return Span.NOOP;
+        }
+
+        @Override
+        public Span search(String collection, String version, Object query) {
+            return Span.NOOP;
+        }
+
+        @Override
+        public Span metrics(String version, Object query) {
+            return Span.NOOP;
+        }
+
+        @Override
+        public Span aggregation(Object query) {
+            return Span.NOOP;
+        }
+
+        @Override
+        public Span load(String platform, String collection, String version) {
+            return Span.NOOP;
+        }
+
+        @Override
+        public Span flush(String handler) {
+            return Span.NOOP;
+        }
+
+        @Override
+        public void startRecording(File destination, String settings) {
+            throw new UnsupportedOperationException("Java Flight Recorder is not available");
+        }
+
+        @Override
+        public void stopRecording() {
+            // Nothing to stop
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.core.loadtest;
+
+/**
+ * Load test configuration details. When enabled, the queries evaluated for
+ * relevance are replayed against each version at a fixed rate, after the
+ * evaluation has completed.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+public class LoadTestConfiguration {
+
+    public static final LoadTestConfiguration DEFAULT_CONFIG = new LoadTestConfiguration();
+
+    private static final int DEFAULT_MAX_QUEUED = 1000;
+
+    private boolean enabled = false;
+    private double targetQps = 50;
+    private int durationSeconds = 60;
+    private int warmupSeconds = 10;
+    private int threads = 16;
+    private int maxQueued = DEFAULT_MAX_QUEUED;
+    private String outputFile = "target/rre/load-test.json";
+
+    @SuppressWarnings("unused")
+    public LoadTestConfiguration() {
+        // Do nothing - required for Maven initialisation
+    }
+
+    LoadTestConfiguration(boolean enabled, double targetQps, int durationSeconds, int warmupSeconds, int threads, String outputFile) {
+        this(enabled, targetQps, durationSeconds, warmupSeconds, threads, DEFAULT_MAX_QUEUED, outputFile);
+    }
+
+    LoadTestConfiguration(boolean enabled, double targetQps, int durationSeconds, int warmupSeconds, int threads, int maxQueued, String outputFile) {
+        this.enabled = enabled;
+        this.targetQps = targetQps;
+        this.durationSeconds = durationSeconds;
+        this.warmupSeconds = warmupSeconds;
+        this.threads = threads;
+        this.maxQueued = maxQueued;
+        this.outputFile = outputFile;
+    }
+
+    /**
+     * @return {@code true} if the load test should be run.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return the rate to send queries at, in queries per second. This is
+     * the rate the queries are scheduled at, regardless of how quickly the
+     * search platform responds.
+     */
+    public double getTargetQps() {
+        return targetQps;
+    }
+
+    /**
+     * @return the length of the measured run for each version, in seconds.
+     */
+    public int getDurationSeconds() {
+        return durationSeconds;
+    }
+
+    /**
+     * @return the length of the unmeasured run preceding the measured run
+     * for each version, in seconds.
+     */
+    public int getWarmupSeconds() {
+        return warmupSeconds;
+    }
+
+    /**
+     * @return the number of threads sending queries. This limits the number
+     * of queries in flight - once they are all busy, queries queue up and
+     * the time spent waiting counts towards their latency.
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * @return the maximum number of queries waiting for a thread. Queries
+     * scheduled while the backlog is full are not sent, and are counted as
+     * errors.
+     */
+    public int getMaxQueued() {
+        return maxQueued;
+    }
+
+    /**
+     * @return the path of the file to write the load test report to.
+     */
+    public String getOutputFile() {
+        return outputFile;
+    }
+}
@@ -0,0 +1,312 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.core.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.sease.rre.core.template.QueryBuilder;
+import io.sease.rre.core.template.ReplayableQuery;
+import io.sease.rre.search.api.SearchPlatform;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays the queries from the ratings sets against each version of the
+ * search platform at a fixed rate, measuring throughput and latency.
+ * <p>
+ * Queries are sent open-loop: each is scheduled at a fixed interval from
+ * the start of the run, whether or not earlier queries have completed, and
+ * its latency is measured from the time it was scheduled to be sent. When
+ * the platform falls behind, the time queries spend queued is included in
+ * their latency rather than hidden by a slower send rate (coordinated
+ * omission). The time each query spent with the platform is recorded
+ * separately as its service time.
+ * <p>
+ * The backlog of queued queries is capped: queries which cannot be queued
+ * are counted as errors. Queries still queued when a run is abandoned are
+ * recorded with the latency they had reached by then.
+ * <p>
+ * Versions are tested one at a time, each with an unmeasured warm-up
+ * before the measured run.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+public class LoadTester {
+
+    private static final Logger LOGGER = LogManager.getLogger(LoadTester.class);
+
+    private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final SearchPlatform platform;
+    private final QueryBuilder queryBuilder;
+    private final LoadTestConfiguration configuration;
+
+    private final List<ReplayableQuery> queries = new ArrayList<>();
+
+    /**
+     * @param platform      the search platform to send the queries to.
+     * @param queryBuilder  the builder used to build the evaluated queries.
+     * @param configuration the load test configuration.
+     */
+    public LoadTester(SearchPlatform platform, QueryBuilder queryBuilder, LoadTestConfiguration configuration) {
+        this.platform = platform;
+        this.queryBuilder = queryBuilder;
+        this.configuration = configuration;
+    }
+
+    /**
+     * Add a query to be replayed. The arguments are those passed to the
+     * evaluation manager when the query is evaluated.
+     *
+     * @param indexName        the base name of the index to query.
+     * @param queryNode        the JSON node holding details of the query template.
+     * @param defaultTemplate  the fallback query template.
+     * @param relevantDocCount the number of relevant documents required.
+     */
+    public void addQuery(String indexName, JsonNode queryNode, String defaultTemplate, int relevantDocCount) {
+        queries.add(new ReplayableQuery(indexName, queryNode, defaultTemplate, relevantDocCount));
+    }
+
+    /**
+     * Run the load test against each version in turn, and write the report.
+     *
+     * @param versions the versions to test.
+     * @return the report, as written to the output file.
+     */
+    public ObjectNode run(Collection<String> versions) {
+        final ObjectMapper mapper = new ObjectMapper();
+        final ObjectNode report = mapper.createObjectNode();
+        report.put("timestamp", Instant.now().toString());
+        report.put("platform", platform.getName());
+        report.put("queries", queries.size());
+        final ObjectNode config = report.putObject("configuration");
+        config.put("targetQps", configuration.getTargetQps());
+        config.put("durationSeconds", configuration.getDurationSeconds());
+        config.put("warmupSeconds", configuration.getWarmupSeconds());
+        config.put("threads", configuration.getThreads());
+        config.put("maxQueued", configuration.getMaxQueued());
+        final ObjectNode versionsNode = report.putObject("versions");
+
+        if (queries.isEmpty()) {
+            LOGGER.warn("RRE: no queries to load test!");
+        } else {
+            for (final String version : versions) {
+                final List<ReplayableQuery.Request> requests = build(version);
+                LOGGER.info("RRE: load testing version {} at {} queries per second", version, configuration.getTargetQps());
+                if (configuration.getWarmupSeconds() > 0) {
+                    replay(version, requests, configuration.getWarmupSeconds());
+                }
+                replay(version, requests, configuration.getDurationSeconds()).write(versionsNode.putObject(version));
+            }
+        }
+
+        write(mapper, report);
+        return report;
+    }
+
+    /**
+     * Build the queries for a version up front, so building them is not
+     * included in the measurements.
+     */
+    private List<ReplayableQuery.Request> build(String version) {
+        final List<ReplayableQuery.Request> requests = new ArrayList<>(queries.size());
+        for (final ReplayableQuery query : queries) {
+            requests.add(query.build(queryBuilder, platform, version));
+        }
+        return requests;
+    }
+
+    private Result replay(String version, List<ReplayableQuery.Request> requests, int seconds) {
+        final long interval = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / configuration.getTargetQps()));
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(configuration.getThreads(), configuration.getThreads(),
+                0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(configuration.getMaxQueued()), runnable -> {
+            final Thread thread = new Thread(runnable, "rre-load-test");
+            thread.setDaemon(true);
+            return thread;
+        });
+        final Result result = new Result();
+
+        final long start = System.nanoTime();
+        final long end = start + TimeUnit.SECONDS.toNanos(seconds);
+        long sent = 0;
+        for (long intended = start; intended < end; intended = start + ++sent * interval) {
+            long wait;
+            while ((wait = intended - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            try {
+                executor.execute(new Replay(requests.get((int) (sent % requests.size())), intended, result));
+            } catch (RejectedExecutionException e) {
+                result.rejected();
+            }
+        }
+
+        executor.shutdown();
+        try {
+            // Allow the queued queries as long again as the run to drain
+            if (!executor.awaitTermination(seconds, TimeUnit.SECONDS)) {
+                LOGGER.warn("RRE: version {} did not complete its queued queries - abandoning them", version);
+                abandon(executor, result);
+                // Give the interrupted queries a moment to finish
+                executor.awaitTermination(1, TimeUnit.SECONDS);
+            }
+        } catch (InterruptedException e) {
+            abandon(executor, result);
+            Thread.currentThread().interrupt();
+        }
+
+        result.complete(start, sent);
+        return result;
+    }
+
+    private static void abandon(ThreadPoolExecutor executor, Result result) {
+        final long abandoned = System.nanoTime();
+        executor.shutdownNow().forEach(replay -> result.abandoned(((Replay) replay).scheduled, abandoned));
+    }
+
+    private void write(ObjectMapper mapper, ObjectNode report) {
+        final File outputFile = new File(configuration.getOutputFile());
+        try {
+            final File parent = outputFile.getAbsoluteFile().getParentFile();
+            if (!parent.isDirectory() && !parent.mkdirs()) {
+                throw new IOException("Unable to create " + parent);
+            }
+            mapper.writerWithDefaultPrettyPrinter().writeValue(outputFile, report);
+            LOGGER.info("RRE: load test report written to " + outputFile.getAbsolutePath());
+        } catch (final IOException e) {
+            LOGGER.error("Could not write load test report to " + outputFile + " :: " + e.getMessage());
+        }
+    }
+
+    /**
+     * A query scheduled to be sent at a given time.
+     */
+    private class Replay implements Runnable {
+        private final ReplayableQuery.Request request;
+        private final long scheduled;
+        private final Result result;
+
+        Replay(ReplayableQuery.Request request, long scheduled, Result result) {
+            this.request = request;
+            this.scheduled = scheduled;
+            this.result = result;
+        }
+
+        @Override
+        public void run() {
+            final long sent = System.nanoTime();
+            try {
+                request.execute(platform);
+                result.record(scheduled, sent);
+            } catch (RuntimeException e) {
+                LOGGER.debug("Load test query failed :: " + e.getMessage());
+                result.failed();
+            }
+        }
+    }
+
+    /**
+     * The measurements for a single run.
+     */
+    private static class Result {
+        private final Histogram latency = new ConcurrentHistogram(3);
+        private final Histogram serviceTime = new ConcurrentHistogram(3);
+        private final LongAdder completed = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder abandoned = new LongAdder();
+        private final AtomicLong lastCompleted = new AtomicLong();
+        private long sent;
+        private double elapsedSeconds;
+
+        void record(long scheduled, long sent) {
+            final long done = System.nanoTime();
+            latency.recordValue(done - scheduled);
+            serviceTime.recordValue(done - sent);
+            completed.increment();
+            lastCompleted.accumulateAndGet(done, Math::max);
+        }
+
+        void failed() {
+            errors.increment();
+            lastCompleted.accumulateAndGet(System.nanoTime(), Math::max);
+        }
+
+        /**
+         * Record a query which could not be queued, as an error.
+         */
+        void rejected() {
+            rejected.increment();
+            errors.increment();
+        }
+
+        /**
+         * Record a query which was still queued when the run was abandoned.
+         * Its latency is at least the time it had waited by then.
+         */
+        void abandoned(long scheduled, long abandonedAt) {
+            latency.recordValue(abandonedAt - scheduled);
+            abandoned.increment();
+        }
+
+        void complete(long start, long sent) {
+            this.sent = sent;
+            this.elapsedSeconds = (Math.max(lastCompleted.get(), start) - start) / (double) TimeUnit.SECONDS.toNanos(1);
+        }
+
+        void write(ObjectNode node) {
+            final long completed = this.completed.sum();
+            node.put("requests", sent);
+            node.put("completed", completed);
+            node.put("errors", errors.sum());
+            node.put("rejected", rejected.sum());
+            node.put("abandoned", abandoned.sum());
+            node.put("incomplete", sent - completed - errors.sum() - abandoned.sum());
+            node.put("achievedQps", elapsedSeconds == 0 ? 0 : completed / elapsedSeconds);
+            write(node.putObject("latency"), latency);
+            write(node.putObject("serviceTime"), serviceTime);
+        }
+
+        private static void write(ObjectNode node, Histogram histogram) {
+            node.put("unit", "milliseconds");
+            node.put("mean", histogram.getMean() / NANOS_PER_MILLI);
+            node.put("p50", histogram.getValueAtPercentile(50) / NANOS_PER_MILLI);
+            node.put("p90", histogram.getValueAtPercentile(90) / NANOS_PER_MILLI);
+            node.put("p95", histogram.getValueAtPercentile(95) / NANOS_PER_MILLI);
+            node.put("p99", histogram.getValueAtPercentile(99) / NANOS_PER_MILLI);
+            node.put("p999", histogram.getValueAtPercentile(99.9) / NANOS_PER_MILLI);
+            node.put("max", histogram.getMaxValue() / NANOS_PER_MILLI);
+        }
+    }
+}
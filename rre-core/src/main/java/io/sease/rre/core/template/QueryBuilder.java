@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.core.template;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.sease.rre.search.api.BatchQuery;
+import io.sease.rre.search.api.CompiledQueryTemplate;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import static java.util.Optional.ofNullable;
+
+/**
+ * Builds the versioned queries to send to the search platform from the
+ * query nodes in the ratings file.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+public class QueryBuilder {
+
+    private final QueryTemplateManager templateManager;
+    private final String[] fields;
+
+    /**
+     * @param templateManager the manager holding the query templates.
+     * @param fields          the fields to retrieve with each result.
+     */
+    public QueryBuilder(QueryTemplateManager templateManager, String[] fields) {
+        this.templateManager = templateManager;
+        this.fields = fields;
+    }
+
+    /**
+     * Build a versioned query. If the query uses a template, it is compiled
+     * but not rendered, so the search platform may render it instead.
+     *
+     * @param version          the version being executed.
+     * @param queryNode        the JSON node holding details of the query template.
+     * @param defaultTemplate  the fallback query template.
+     * @param relevantDocCount the number of relevant documents required.
+     * @return the query.
+     */
+    public BatchQuery build(String version, JsonNode queryNode, String defaultTemplate, int relevantDocCount) {
+        final int maxRows = Math.max(10, relevantDocCount);
+        // try to see if the query declares a template
+        final String template = getQueryTemplate(queryNode).orElse(null);
+        // EE case
+        if (template == null && defaultTemplate == null) {
+            return new BatchQuery(queryNode.toString(), fields, maxRows);
+        }
+
+        try {
+            final Map<String, String> placeholders = placeholders(queryNode);
+            final CompiledQueryTemplate compiled = templateManager.getQueryTemplate(defaultTemplate, template, version)
+                    .compile(new ArrayList<>(placeholders.keySet()));
+            return new BatchQuery(compiled, QueryTemplate.values(compiled, placeholders), fields, maxRows);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private Map<String, String> placeholders(final JsonNode queryNode) {
+        final Map<String, String> placeholders = new LinkedHashMap<>();
+        final JsonNode placeholdersNode = queryNode.get("placeholders");
+        for (final Iterator<Map.Entry<String, JsonNode>> iterator = placeholdersNode.fields(); iterator.hasNext(); ) {
+            final Map.Entry<String, JsonNode> placeholder = iterator.next();
+            placeholders.put(placeholder.getKey(), placeholder.getValue().asText());
+        }
+        return placeholders;
+    }
+
+    private Optional<String> getQueryTemplate(JsonNode queryNode) {
+        return ofNullable(queryNode.get("template")).map(JsonNode::asText);
+    }
+}
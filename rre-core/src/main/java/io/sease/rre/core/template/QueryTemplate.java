@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.core.template;
+
+import io.sease.rre.search.api.CompiledQueryTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A query template, compiled for rendering with a given set of
+ * placeholders.
+ * <p>
+ * Since placeholder names are only known from the queries, a
+ * {@link CompiledQueryTemplate} is kept for each distinct list of
+ * placeholder names the template is rendered with - typically only one.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+public class QueryTemplate {
+
+    private static final int MAX_COMPILED_FORMS = 16;
+
+    private final String content;
+    private final Map<List<String>, CompiledQueryTemplate> compiledTemplates = new ConcurrentHashMap<>();
+
+    /**
+     * Build a query template.
+     *
+     * @param content the template content.
+     */
+    public QueryTemplate(final String content) {
+        this.content = content;
+    }
+
+    /**
+     * @return the raw template content.
+     */
+    public String getContent() {
+        return content;
+    }
+
+    /**
+     * Get the template compiled for a list of placeholder names.
+     *
+     * @param placeholderNames the placeholder names.
+     * @return the compiled template.
+     */
+    public CompiledQueryTemplate compile(final List<String> placeholderNames) {
+        CompiledQueryTemplate compiled = compiledTemplates.get(placeholderNames);
+        if (compiled == null) {
+            compiled = new CompiledQueryTemplate(content, placeholderNames);
+            if (compiledTemplates.size() < MAX_COMPILED_FORMS) {
+                final CompiledQueryTemplate existing = compiledTemplates.putIfAbsent(placeholderNames, compiled);
+                if (existing != null) {
+                    compiled = existing;
+                }
+            }
+        }
+        return compiled;
+    }
+
+    /**
+     * Render the template, replacing every occurrence of each placeholder
+     * name with its value. Where placeholder names overlap, the first
+     * matching name in the map's iteration order is used.
+     *
+     * @param placeholders the placeholder names and their values.
+     * @return the rendered query.
+     */
+    public String render(final Map<String, String> placeholders) {
+        if (placeholders.isEmpty()) {
+            return content;
+        }
+
+        final CompiledQueryTemplate compiled = compile(new ArrayList<>(placeholders.keySet()));
+        return compiled.render(values(compiled, placeholders));
+    }
+
+    /**
+     * Get the placeholder values in the order expected by a compiled
+     * template.
+     *
+     * @param compiled     the compiled template.
+     * @param placeholders the placeholder names and their values.
+     * @return the placeholder values.
+     */
+    public static String[] values(final CompiledQueryTemplate compiled, final Map<String, String> placeholders) {
+        final List<String> names = compiled.getPlaceholderNames();
+        final String[] values = new String[names.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = placeholders.get(names.get(i));
+        }
+        return values;
+    }
+}
@@ -45,4 +45,21 @@ public interface QueryTemplateManager {
      * @throws IOException           if problems occur reading the content from the file.
      */
     String getTemplate(String defaultTemplate, String template, String version) throws FileNotFoundException, IOException;
+
+    /**
+     * Retrieve the required query template, ready to be rendered. The
+     * template is located in the same way as {@link #getTemplate}.
+     *
+     * @param defaultTemplate the default (fallback) template.
+     * @param template        the filename of the required template, with optional
+     *                        version placeholder.
+     * @param version         the version of the template required.
+     * @return the query template.
+     * @throws FileNotFoundException if no file can be found to match the
+     *                               required template or default template values.
+     * @throws IOException           if problems occur reading the content from the file.
+     */
+    default QueryTemplate getQueryTemplate(String defaultTemplate, String template, String version) throws FileNotFoundException, IOException {
+        return new QueryTemplate(getTemplate(defaultTemplate, template, version));
+    }
 }
@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.core.template;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.sease.rre.search.api.BatchQuery;
+import io.sease.rre.search.api.QueryOrSearchResponse;
+import io.sease.rre.search.api.SearchPlatform;
+
+/**
+ * A query as it is passed for evaluation, kept so that it can be sent to
+ * each version again outside the evaluation - eg. to warm up or load test
+ * the search platform.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+public class ReplayableQuery {
+    private final String indexName;
+    private final JsonNode queryNode;
+    private final String defaultTemplate;
+    private final int relevantDocCount;
+
+    /**
+     * @param indexName        the base name of the index to query.
+     * @param queryNode        the JSON node holding details of the query template.
+     * @param defaultTemplate  the fallback query template.
+     * @param relevantDocCount the number of relevant documents required.
+     */
+    public ReplayableQuery(String indexName, JsonNode queryNode, String defaultTemplate, int relevantDocCount) {
+        this.indexName = indexName;
+        this.queryNode = queryNode;
+        this.defaultTemplate = defaultTemplate;
+        this.relevantDocCount = relevantDocCount;
+    }
+
+    /**
+     * Build the query for a version. Queries the platform will not render
+     * itself are rendered here, so that sending the query does no more
+     * than the platform call.
+     *
+     * @param queryBuilder the builder used to build the evaluated queries.
+     * @param platform     the search platform the query will be sent to.
+     * @param version      the version to query.
+     * @return the query, ready to be sent.
+     */
+    public Request build(QueryBuilder queryBuilder, SearchPlatform platform, String version) {
+        final BatchQuery query = queryBuilder.build(version, queryNode, defaultTemplate, relevantDocCount);
+        final boolean templated = query.getTemplate() != null && platform.isQueryTemplateSupported();
+        return new Request(indexName, version, query, templated ? null : query.getQuery());
+    }
+
+    /**
+     * A query built for a single version.
+     */
+    public static class Request {
+        private final String indexName;
+        private final String version;
+        private final BatchQuery query;
+        private final String queryString;
+
+        private Request(String indexName, String version, BatchQuery query, String queryString) {
+            this.indexName = indexName;
+            this.version = version;
+            this.query = query;
+            this.queryString = queryString;
+        }
+
+        /**
+         * Send the query to the search platform.
+         *
+         * @param platform the search platform.
+         * @return the platform's response.
+         */
+        public QueryOrSearchResponse execute(SearchPlatform platform) {
+            if (queryString == null) {
+                return platform.executeQuery(indexName, version, query.getTemplate(), query.getValues(), query.getFields(), query.getMaxRows());
+            }
+            return platform.executeQuery(indexName, version, queryString, query.getFields(), query.getMaxRows());
+        }
+    }
+}
@@ -16,25 +16,40 @@
  */
 package io.sease.rre.core.template.impl;
 
+import io.sease.rre.core.template.QueryTemplate;
 import io.sease.rre.core.template.QueryTemplateManager;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * An implementation of the {@link QueryTemplateManager} that will cache the
- * template contents.
+ * compiled templates.
+ * <p>
+ * Templates are cached by name and version, so once a template has been
+ * read the file system is not touched again. The cache is safe for use by
+ * several evaluation threads, and holds a limited number of templates.
  *
  * @author Matt Pearce (matt@flax.co.uk)
  */
 public class CachingQueryTemplateManager implements QueryTemplateManager {
 
-    private final Map<File, String> templatePathMap = new HashMap<>();
+    /**
+     * The default maximum number of templates to cache.
+     */
+    public static final int DEFAULT_CACHE_SIZE = 1024;
+
+    private final Map<List<String>, QueryTemplate> templateCache = new ConcurrentHashMap<>();
     private final File templatesFolder;
+    private final int maxCacheSize;
 
     /**
      * Initialise the query template manager with template folder path.
@@ -44,20 +59,65 @@ public class CachingQueryTemplateManager implements QueryTemplateManager {
      *                                  directory, or the directory cannot be read.
      */
     public CachingQueryTemplateManager(String templatesFolderPath) throws IllegalArgumentException {
+        this(templatesFolderPath, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * Initialise the query template manager with template folder path and
+     * cache size.
+     *
+     * @param templatesFolderPath the path to the template folder.
+     * @param maxCacheSize        the maximum number of templates to cache.
+     * @throws IllegalArgumentException if the folder path doesn't point to a
+     *                                  directory, or the directory cannot be read.
+     */
+    public CachingQueryTemplateManager(String templatesFolderPath, int maxCacheSize) throws IllegalArgumentException {
         this.templatesFolder = new File(templatesFolderPath);
         if (!templatesFolder.isDirectory() || !templatesFolder.canRead()) {
             throw new IllegalArgumentException("Unable to read from query template directory " + templatesFolder.getAbsolutePath());
         }
+        this.maxCacheSize = maxCacheSize;
     }
 
     @Override
     public String getTemplate(final String defaultTemplate, final String template, final String version) throws IOException {
+        return getQueryTemplate(defaultTemplate, template, version).getContent();
+    }
+
+    @Override
+    public QueryTemplate getQueryTemplate(final String defaultTemplate, final String template, final String version) throws IOException {
         String templateName = Optional.ofNullable(getTemplate(defaultTemplate, template))
                 .orElseThrow(() -> new IllegalArgumentException("No template name supplied!"));
-        File templatePath = buildTemplatePath(templateName, version);
-        templatePathMap.putIfAbsent(templatePath, readTemplateContent(templatePath));
+        final List<String> key = Arrays.asList(templateName, version);
+
+        QueryTemplate queryTemplate = templateCache.get(key);
+        if (queryTemplate == null) {
+            queryTemplate = loadTemplate(key);
+        }
+        return queryTemplate;
+    }
+
+    private QueryTemplate loadTemplate(final List<String> key) throws IOException {
+        if (templateCache.size() >= maxCacheSize) {
+            // Make room by evicting an arbitrary template - it will be re-read if needed
+            final Iterator<List<String>> keys = templateCache.keySet().iterator();
+            if (keys.hasNext()) {
+                keys.next();
+                keys.remove();
+            }
+        }
 
-        return templatePathMap.get(templatePath);
+        try {
+            return templateCache.computeIfAbsent(key, k -> {
+                try {
+                    return new QueryTemplate(readTemplateContent(buildTemplatePath(k.get(0), k.get(1))));
+                } catch (final IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (final UncheckedIOException e) {
+            throw e.getCause();
+        }
     }
 
     private String getTemplate(String defaultTemplate, String template) {
@@ -16,7 +16,11 @@
  */
 package io.sease.rre.persistence;
 
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
 import io.sease.rre.core.domain.Query;
+import io.sease.rre.core.instrumentation.Instrumentation;
+import io.sease.rre.core.instrumentation.Tracing;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -24,6 +28,10 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * The general manager class for all persistence handlers. This provides
@@ -43,6 +51,13 @@ public class PersistenceManager {
     private static final Logger LOGGER = LogManager.getLogger(PersistenceManager.class);
 
     private final List<PersistenceHandler> handlers = new ArrayList<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicLong recorded = new AtomicLong();
+    private final Map<PersistenceHandler, Timer> recordTimers = new ConcurrentHashMap<>();
+
+    public PersistenceManager() {
+        Instrumentation.queueDepth(Instrumentation.PERSISTENCE_PENDING, Tags.empty(), pending, AtomicInteger::get);
+    }
 
     public void registerHandler(PersistenceHandler handler) {
         LOGGER.info("Registering handler " + handler.getName() + " -> " + handler.getClass().getCanonicalName());
@@ -89,11 +104,28 @@ public class PersistenceManager {
     }
 
     public void recordQuery(Query query) {
-        handlers.parallelStream().forEach(h -> h.recordQuery(query));
+        pending.incrementAndGet();
+        try {
+            handlers.parallelStream().forEach(h -> recordTimer(h).record(() -> h.recordQuery(query)));
+        } finally {
+            pending.decrementAndGet();
+            recorded.incrementAndGet();
+        }
+    }
+
+    private Timer recordTimer(PersistenceHandler handler) {
+        return recordTimers.computeIfAbsent(handler, h -> Timer.builder(Instrumentation.PERSISTENCE_RECORD)
+                .description("Time taken by each persistence handler to record a query")
+                .tag("handler", Objects.toString(h.getName(), h.getClass().getSimpleName()))
+                .register(Instrumentation.registry()));
     }
 
     public void beforeStop() {
-        handlers.parallelStream().forEach(PersistenceHandler::beforeStop);
+        handlers.parallelStream().forEach(h -> {
+            final Tracing.Span flush = Tracing.flush(Objects.toString(h.getName(), h.getClass().getSimpleName()));
+            h.beforeStop();
+            flush.end(recorded.get());
+        });
     }
 
     public void stop() {
@@ -0,0 +1,375 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.persistence.impl;
+
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Content digests of the members of an evaluation, as written by the
+ * {@link JsonPersistenceHandler}.
+ * <p>
+ * A member's digest covers its own fields - its name and metrics - and the
+ * digests of its children, in order. Two evaluations can be compared from
+ * the top down, descending only into members whose digests differ. A
+ * query's digest covers the whole query.
+ * <p>
+ * Digests are computed from the JSON tokens, so do not depend on how the
+ * JSON is formatted. Equal digests mean equal content; numbers are compared
+ * as written, so equal content does not always mean equal digests.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+public final class EvaluationDigest {
+
+    /**
+     * The depth of the queries, below the evaluation (0), corpora (1),
+     * topics (2) and query groups (3).
+     */
+    public static final int QUERY_DEPTH = 4;
+
+    /**
+     * The field holding the children of a member, by depth.
+     */
+    public static final String[] CHILDREN_FIELDS = {"corpora", "topics", "query-groups", "query-evaluations"};
+
+    private static final String ALGORITHM = "SHA-1";
+    private static final long[] NO_FIELDS = new long[0];
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private EvaluationDigest() {
+    }
+
+    /**
+     * Read the digests of an evaluation.
+     *
+     * @param parser the parser, positioned before or at the start of the
+     *               evaluation object.
+     * @return the digest of the evaluation, holding the digests of its
+     * members.
+     * @throws IOException if the JSON cannot be read, or is not an
+     *                     evaluation.
+     */
+    public static Node read(final JsonParser parser) throws IOException {
+        return read(parser, 0);
+    }
+
+    /**
+     * Read the digests of a single evaluation member.
+     *
+     * @param parser the parser, positioned before or at the start of the
+     *               member object.
+     * @param depth  the depth of the member - 0 for the evaluation, up to
+     *               {@link #QUERY_DEPTH} for a query.
+     * @return the digest of the member, holding the digests of its
+     * children.
+     * @throws IOException if the JSON cannot be read, or is not an
+     *                     evaluation member.
+     */
+    public static Node read(final JsonParser parser, final int depth) throws IOException {
+        if (depth < 0 || depth > QUERY_DEPTH) {
+            throw new IllegalArgumentException("No evaluation members at depth " + depth);
+        }
+        final JsonToken token = parser.currentToken() == null ? parser.nextToken() : parser.currentToken();
+        if (token != JsonToken.START_OBJECT) {
+            throw new IOException("Expected an evaluation member, found " + token);
+        }
+        return depth == QUERY_DEPTH ? query(parser) : member(parser, depth);
+    }
+
+    private static Node member(final JsonParser parser, final int depth) throws IOException {
+        final long start = offset(parser.getTokenLocation());
+        final MessageDigest own = digest();
+        final List<Node> children = new ArrayList<>();
+        long[] fields = NO_FIELDS;
+        int fieldCount = 0;
+        String name = null;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String field = parser.getCurrentName();
+            final long fieldStart = offset(parser.getTokenLocation());
+            final JsonToken value = parser.nextToken();
+            if (CHILDREN_FIELDS[depth].equals(field) && value == JsonToken.START_ARRAY) {
+                JsonToken child;
+                while ((child = parser.nextToken()) == JsonToken.START_OBJECT) {
+                    children.add(depth + 1 == QUERY_DEPTH ? query(parser) : member(parser, depth + 1));
+                }
+                if (child != JsonToken.END_ARRAY) {
+                    throw new IOException("Expected evaluation members in " + field + ", found " + child);
+                }
+            } else {
+                if ("name".equals(field) && value == JsonToken.VALUE_STRING) {
+                    name = parser.getText();
+                }
+                update(own, parser, JsonToken.FIELD_NAME);
+                value(own, parser);
+
+                if (fieldCount == fields.length) {
+                    fields = Arrays.copyOf(fields, Math.max(4, fields.length * 2));
+                }
+                fields[fieldCount++] = fieldStart;
+                fields[fieldCount++] = offset(parser.getCurrentLocation());
+            }
+        }
+        if (name == null && depth > 0) {
+            throw new IOException("Unnamed evaluation member at offset " + start);
+        }
+
+        final Node node = Node.of(name, own.digest(), children);
+        node.start = start;
+        node.end = offset(parser.getCurrentLocation());
+        node.ownFields = fieldCount == fields.length ? fields : Arrays.copyOf(fields, fieldCount);
+        return node;
+    }
+
+    private static Node query(final JsonParser parser) throws IOException {
+        final long start = offset(parser.getTokenLocation());
+        final MessageDigest digest = digest();
+        String name = null;
+
+        update(digest, parser, JsonToken.START_OBJECT);
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String field = parser.getCurrentName();
+            update(digest, parser, JsonToken.FIELD_NAME);
+            if (parser.nextToken() == JsonToken.VALUE_STRING && "query".equals(field)) {
+                name = parser.getText();
+            }
+            value(digest, parser);
+        }
+        update(digest, parser, JsonToken.END_OBJECT);
+        if (name == null) {
+            throw new IOException("Unnamed query at offset " + start);
+        }
+
+        final Node node = new Node(name, null, digest.digest(), Collections.emptyList());
+        node.start = start;
+        node.end = offset(parser.getCurrentLocation());
+        return node;
+    }
+
+    /**
+     * Add a value to a digest, with the parser positioned at its first
+     * token. The parser is left at its last token.
+     */
+    private static void value(final MessageDigest digest, final JsonParser parser) throws IOException {
+        JsonToken token = parser.currentToken();
+        update(digest, parser, token);
+        if (token.isStructStart()) {
+            int open = 1;
+            while (open > 0) {
+                token = parser.nextToken();
+                update(digest, parser, token);
+                if (token.isStructStart()) {
+                    open++;
+                } else if (token.isStructEnd()) {
+                    open--;
+                }
+            }
+        }
+    }
+
+    private static void update(final MessageDigest digest, final JsonParser parser, final JsonToken token) throws IOException {
+        digest.update((byte) token.id());
+        if (token == JsonToken.FIELD_NAME || token.isScalarValue() && token != JsonToken.VALUE_TRUE
+                && token != JsonToken.VALUE_FALSE && token != JsonToken.VALUE_NULL) {
+            final byte[] text = parser.getText().getBytes(StandardCharsets.UTF_8);
+            digest.update(new byte[]{(byte) (text.length >>> 24), (byte) (text.length >>> 16), (byte) (text.length >>> 8), (byte) text.length});
+            digest.update(text);
+        }
+    }
+
+    private static long offset(final JsonLocation location) {
+        return location == null ? -1 : location.getByteOffset();
+    }
+
+    private static MessageDigest digest() {
+        try {
+            return MessageDigest.getInstance(ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(ALGORITHM + " is not available", e);
+        }
+    }
+
+    /**
+     * @param digest a digest.
+     * @return the digest, as a lower-case hex string.
+     */
+    public static String hex(final byte[] digest) {
+        final char[] chars = new char[digest.length * 2];
+        for (int i = 0; i < digest.length; i++) {
+            chars[i * 2] = HEX[(digest[i] >> 4) & 0xf];
+            chars[i * 2 + 1] = HEX[digest[i] & 0xf];
+        }
+        return new String(chars);
+    }
+
+    /**
+     * @param hex a digest, as a hex string.
+     * @return the digest.
+     * @throws IllegalArgumentException if the string is not hex.
+     */
+    public static byte[] unhex(final String hex) {
+        if (hex.length() % 2 != 0) {
+            throw new IllegalArgumentException("Invalid digest: " + hex);
+        }
+        final byte[] digest = new byte[hex.length() / 2];
+        for (int i = 0; i < digest.length; i++) {
+            final int high = Character.digit(hex.charAt(i * 2), 16);
+            final int low = Character.digit(hex.charAt(i * 2 + 1), 16);
+            if (high < 0 || low < 0) {
+                throw new IllegalArgumentException("Invalid digest: " + hex);
+            }
+            digest[i] = (byte) (high << 4 | low);
+        }
+        return digest;
+    }
+
+    /**
+     * @param path the names of an evaluation member and its ancestors,
+     *             below the evaluation.
+     * @return the path, as a JSON Pointer.
+     */
+    public static String pointer(final List<String> path) {
+        final StringBuilder pointer = new StringBuilder();
+        path.forEach(name -> pointer.append('/').append(name.replace("~", "~0").replace("/", "~1")));
+        return pointer.toString();
+    }
+
+    /**
+     * @param pointer a JSON Pointer, as built by {@link #pointer(List)}.
+     * @return the names of the evaluation member and its ancestors.
+     * @throws IllegalArgumentException if the pointer is not valid.
+     */
+    public static List<String> path(final String pointer) {
+        if (pointer.isEmpty()) {
+            return Collections.emptyList();
+        } else if (pointer.charAt(0) != '/') {
+            throw new IllegalArgumentException("Invalid path: " + pointer);
+        }
+        final List<String> path = new ArrayList<>();
+        for (final String name : pointer.substring(1).split("/", -1)) {
+            path.add(name.replace("~1", "/").replace("~0", "~"));
+        }
+        return path;
+    }
+
+    /**
+     * The digest of one evaluation member, and of its children.
+     */
+    public static class Node {
+        private final String name;
+        private final byte[] own;
+        private final byte[] digest;
+        private final List<Node> children;
+        private long start = -1;
+        private long end = -1;
+        private long[] ownFields = NO_FIELDS;
+
+        /**
+         * @param name     the member name.
+         * @param own      the digest of the member's own fields, or
+         *                 {@code null} for a query.
+         * @param digest   the digest of the member.
+         * @param children the digests of the member's children, or
+         *                 {@code null} if they are not known.
+         */
+        public Node(final String name, final byte[] own, final byte[] digest, final List<Node> children) {
+            this.name = name;
+            this.own = own;
+            this.digest = digest;
+            this.children = children;
+        }
+
+        /**
+         * Build the digest of a member from its parts.
+         *
+         * @param name     the member name.
+         * @param own      the digest of the member's own fields.
+         * @param children the digests of the member's children.
+         * @return the member's digest.
+         */
+        public static Node of(final String name, final byte[] own, final List<Node> children) {
+            final MessageDigest digest = digest();
+            digest.update(own);
+            children.forEach(child -> digest.update(child.digest));
+            return new Node(name, own, digest.digest(), children);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public byte[] getOwn() {
+            return own;
+        }
+
+        public byte[] getDigest() {
+            return digest;
+        }
+
+        /**
+         * @return the digests of the member's children, or {@code null} if
+         * they are not known.
+         */
+        public List<Node> getChildren() {
+            return children;
+        }
+
+        /**
+         * @return the byte offset of the member in the JSON it was read
+         * from, or -1 if not known.
+         */
+        public long getStart() {
+            return start;
+        }
+
+        /**
+         * @return the byte offset following the member in the JSON it was
+         * read from, or -1 if not known.
+         */
+        public long getEnd() {
+            return end;
+        }
+
+        /**
+         * @return the start and end byte offsets of each of the member's
+         * own fields, in pairs. Empty if the offsets are not known, or the
+         * member is a query.
+         */
+        public long[] getOwnFields() {
+            return ownFields;
+        }
+
+        /**
+         * @param other another member digest.
+         * @return {@code true} if both members have the same content.
+         */
+        public boolean matches(final Node other) {
+            return other != null && MessageDigest.isEqual(digest, other.digest);
+        }
+    }
+}
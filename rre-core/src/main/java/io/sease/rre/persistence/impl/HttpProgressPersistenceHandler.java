@@ -0,0 +1,266 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.persistence.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.sease.rre.core.domain.DomainMember;
+import io.sease.rre.core.domain.Query;
+import io.sease.rre.core.domain.metrics.Metric;
+import io.sease.rre.core.domain.metrics.ValueFactory;
+import io.sease.rre.persistence.PersistenceHandler;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.LinkedTransferQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TransferQueue;
+
+/**
+ * Progress implementation of the {@link PersistenceHandler}, pushing each
+ * completed query and the rolling metric averages to a running RRE server
+ * while the evaluation is in progress.
+ *
+ * Queries are queued as they complete and sent in batches by a single
+ * scheduled thread, so a slow or missing server never holds up the
+ * evaluation. Progress is best effort: a batch that cannot be delivered is
+ * logged and dropped, and the complete evaluation should still be sent to
+ * the server by the usual reporting route.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+public class HttpProgressPersistenceHandler implements PersistenceHandler {
+
+    private static final Logger LOGGER = LogManager.getLogger(HttpProgressPersistenceHandler.class);
+
+    static final String SERVER_URL_KEY = "serverUrl";
+    static final String EVALUATION_ID_KEY = "evaluationId";
+    static final String RUN_INTERVAL_KEY = "runIntervalMs";
+    static final String BATCH_SIZE_KEY = "batchSize";
+    static final String TIMEOUT_KEY = "timeoutMs";
+
+    static final String DEFAULT_SERVER_URL = "http://localhost:8080";
+    static final String DEFAULT_EVALUATION_ID = "default";
+    static final long DEFAULT_RUN_INTERVAL = 500;
+    static final int DEFAULT_BATCHSIZE = 500;
+    static final int DEFAULT_TIMEOUT = 5000;
+
+    private final TransferQueue<Query> queryQueue = new LinkedTransferQueue<>();
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    // Rolling totals, keyed by metric then version - only touched by the scheduled thread
+    private final Map<String, Map<String, RunningMean>> aggregates = new TreeMap<>();
+    private long completed;
+
+    private String name;
+    private String progressUrl;
+    private long runIntervalMs;
+    private int batchSize;
+    private int timeoutMs;
+
+    private ScheduledExecutorService scheduledExecutor;
+
+    @Override
+    public void configure(String name, Map<String, Object> configuration) {
+        this.name = name;
+        String serverUrl = String.valueOf(configuration.getOrDefault(SERVER_URL_KEY, DEFAULT_SERVER_URL));
+        if (serverUrl.endsWith("/")) {
+            serverUrl = serverUrl.substring(0, serverUrl.length() - 1);
+        }
+        final String evaluationId = String.valueOf(configuration.getOrDefault(EVALUATION_ID_KEY, DEFAULT_EVALUATION_ID));
+        try {
+            this.progressUrl = serverUrl + "/evaluations/" + URLEncoder.encode(evaluationId, StandardCharsets.UTF_8.name()).replace("+", "%20") + "/progress";
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Cannot encode evaluation ID " + evaluationId, e);
+        }
+
+        runIntervalMs = Long.parseLong(String.valueOf(configuration.getOrDefault(RUN_INTERVAL_KEY, DEFAULT_RUN_INTERVAL)));
+        batchSize = Integer.parseInt(String.valueOf(configuration.getOrDefault(BATCH_SIZE_KEY, DEFAULT_BATCHSIZE)));
+        timeoutMs = Integer.parseInt(String.valueOf(configuration.getOrDefault(TIMEOUT_KEY, DEFAULT_TIMEOUT)));
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public void beforeStart() {
+        scheduledExecutor = new ScheduledThreadPoolExecutor(1);
+    }
+
+    @Override
+    public void start() {
+        scheduledExecutor.scheduleWithFixedDelay(() -> sendProgress(false), runIntervalMs, runIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void recordQuery(Query q) {
+        if (!queryQueue.offer(q)) {
+            LOGGER.warn("Query item rejected by progress queue");
+        }
+    }
+
+    @Override
+    public void beforeStop() {
+        // Send whatever is left, flagged as the end of the run
+        scheduledExecutor.execute(() -> sendProgress(true));
+        scheduledExecutor.shutdown();
+    }
+
+    @Override
+    public void stop() {
+        try {
+            if (!scheduledExecutor.awaitTermination(30, TimeUnit.SECONDS)) {
+                LOGGER.warn("Timed out waiting for final progress update to be sent");
+                scheduledExecutor.shutdownNow();
+            }
+        } catch (final InterruptedException e) {
+            LOGGER.error("Interrupted waiting for progress updates to complete :: {}", e.getMessage());
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Drain the queue in batches, sending each batch with the rolling
+     * averages at that point. An update is always sent when the run is
+     * done, even if there are no outstanding queries.
+     *
+     * @param done {@code true} if this is the final update for the run.
+     */
+    private void sendProgress(boolean done) {
+        final List<Query> batch = new ArrayList<>(batchSize);
+        boolean more;
+        do {
+            batch.clear();
+            queryQueue.drainTo(batch, batchSize);
+            more = !queryQueue.isEmpty();
+            if (!batch.isEmpty() || (done && !more)) {
+                post(buildUpdate(batch, done && !more));
+            }
+        } while (more);
+    }
+
+    ObjectNode buildUpdate(List<Query> batch, boolean done) {
+        final ObjectNode update = mapper.createObjectNode();
+        final ArrayNode queries = update.putArray("queries");
+        for (final Query query : batch) {
+            final ObjectNode queryNode = queries.addObject();
+            queryNode.put("name", query.getName());
+            final ArrayNode path = queryNode.putArray("path");
+            parentNames(query).forEach(path::add);
+            final ObjectNode metrics = queryNode.putObject("metrics");
+            for (final Map.Entry<String, Metric> metric : query.getMetrics().entrySet()) {
+                final ObjectNode versions = metrics.putObject(metric.getKey());
+                for (final Map.Entry<String, ValueFactory> version : metric.getValue().getVersions().entrySet()) {
+                    final BigDecimal value = version.getValue().value();
+                    versions.put(version.getKey(), value);
+                    aggregates.computeIfAbsent(metric.getKey(), m -> new TreeMap<>())
+                            .computeIfAbsent(version.getKey(), v -> new RunningMean())
+                            .add(value);
+                }
+            }
+            completed++;
+        }
+
+        update.put("completed", completed);
+        update.put("done", done);
+        final ObjectNode aggregateNode = update.putObject("aggregates");
+        aggregates.forEach((metric, versions) -> {
+            final ObjectNode versionNode = aggregateNode.putObject(metric);
+            versions.forEach((version, mean) -> versionNode.put(version, mean.mean()));
+        });
+        return update;
+    }
+
+    /**
+     * @return the names of the query's ancestors, from the corpus down to
+     * the query group. The top level evaluation is not named, so is skipped.
+     */
+    private static List<String> parentNames(Query query) {
+        final LinkedList<String> names = new LinkedList<>();
+        Optional<DomainMember> parent = query.getParent();
+        while (parent.isPresent() && parent.get().getParent().isPresent()) {
+            names.addFirst(parent.get().getName());
+            parent = parent.get().getParent();
+        }
+        return names;
+    }
+
+    private void post(ObjectNode update) {
+        HttpURLConnection connection = null;
+        try {
+            connection = (HttpURLConnection) new URL(progressUrl).openConnection();
+            connection.setConnectTimeout(timeoutMs);
+            connection.setReadTimeout(timeoutMs);
+            connection.setDoOutput(true);
+            connection.setRequestMethod("POST");
+            connection.setRequestProperty("Content-Type", "application/json");
+            try (OutputStream out = connection.getOutputStream()) {
+                mapper.writeValue(out, update);
+            }
+            final int status = connection.getResponseCode();
+            if (status >= 300) {
+                LOGGER.warn("Progress update rejected by {} with status {}", progressUrl, status);
+            }
+        } catch (final IOException e) {
+            LOGGER.warn("Could not send progress update to {} :: {}", progressUrl, e.getMessage());
+        } finally {
+            if (connection != null) {
+                connection.disconnect();
+            }
+        }
+    }
+
+    // Testing method
+    String getProgressUrl() {
+        return progressUrl;
+    }
+
+    /**
+     * Running mean of a single metric/version pair.
+     */
+    private static class RunningMean {
+        private BigDecimal total = BigDecimal.ZERO;
+        private long count;
+
+        void add(BigDecimal value) {
+            total = total.add(value);
+            count++;
+        }
+
+        double mean() {
+            return count == 0 ? 0 : total.doubleValue() / count;
+        }
+    }
+}
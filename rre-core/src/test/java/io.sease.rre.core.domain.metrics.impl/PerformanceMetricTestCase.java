@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.core.domain.metrics.impl;
+
+import io.sease.rre.core.domain.DomainMember;
+import io.sease.rre.core.domain.Query;
+import io.sease.rre.core.domain.QueryGroup;
+import io.sease.rre.core.domain.Topic;
+import io.sease.rre.core.domain.metrics.Metric;
+import io.sease.rre.core.domain.metrics.MetricClassManager;
+import io.sease.rre.core.domain.metrics.ParameterizedMetricClassManager;
+import io.sease.rre.core.domain.metrics.QueryPerformance;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static io.sease.rre.core.TestData.A_VERSION;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Performance pseudo-metrics test case.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+public class PerformanceMetricTestCase {
+
+    private Topic topic;
+
+    @Before
+    public void setUp() {
+        topic = new Topic();
+        topic.setName("topic");
+    }
+
+    @Test
+    public void queryValueIsItsMeasurement() {
+        final Query query = query("q1", new QueryPerformance(12_500, 7, 2048));
+
+        assertEquals(12.5, value(query, "Latency mean"), 0);
+        assertEquals(7, value(query, "Engine Time p95"), 0);
+        assertEquals(2048, value(query, "Response Size p99"), 0);
+    }
+
+    @Test
+    public void unknownMeasurementsAreNotAggregated() {
+        query("q1", new QueryPerformance(1000, QueryPerformance.UNKNOWN, QueryPerformance.UNKNOWN));
+        query("q2", new QueryPerformance(3000, 5, QueryPerformance.UNKNOWN));
+
+        assertEquals(2, value(topic, "Latency mean"), 0);
+        assertEquals(5, value(topic, "Engine Time p95"), 0);
+        assertEquals(0, value(topic, "Response Size p99"), 0);
+    }
+
+    @Test
+    public void percentilesAggregateUpTheTree() {
+        for (int i = 1; i <= 100; i++) {
+            query("q" + i, new QueryPerformance(i * 1000, i, i));
+        }
+
+        final QueryGroup group = topic.getChildren().get(0);
+        for (final DomainMember<?> member : Arrays.<DomainMember<?>>asList(group, topic)) {
+            final Map<String, Metric> metrics = member.getMetrics();
+            assertTrue(metrics.get("Latency mean") instanceof AggregatedPerformanceMetric);
+            assertEquals(50.5, metrics.get("Latency mean").valueFactory(A_VERSION).value().doubleValue(), 0);
+            assertEquals(95, metrics.get("Engine Time p95").valueFactory(A_VERSION).value().doubleValue(), 1);
+            assertEquals(99, metrics.get("Response Size p99").valueFactory(A_VERSION).value().doubleValue(), 1);
+        }
+    }
+
+    @Test
+    public void canBeConfiguredByStatistic() throws Exception {
+        final Map<String, Object> config = new HashMap<>();
+        config.put("class", QueryLatency.class.getName());
+        config.put("statistic", "p50");
+        final Map<String, Map> metricConfiguration = new HashMap<>();
+        metricConfiguration.put("latency", config);
+        final MetricClassManager manager = new ParameterizedMetricClassManager(Collections.emptyList(), metricConfiguration);
+
+        final Metric metric = manager.instantiateMetric("latency");
+
+        assertTrue(metric instanceof QueryLatency);
+        assertEquals("Latency p50", metric.getName());
+        assertEquals("Latency mean", new QueryLatency().getName());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownStatistic() {
+        new EngineTime("p42", null);
+    }
+
+    private Query query(final String name, final QueryPerformance performance) {
+        final QueryGroup group = topic.findOrCreate("group", QueryGroup::new);
+        final Query query = group.findOrCreate(name, Query::new);
+        final List<Metric> metrics = Arrays.asList(new QueryLatency(), new EngineTime("p95", null), new ResponseSize("p99", null));
+        metrics.forEach(metric -> metric.setVersions(Collections.singletonList(A_VERSION)));
+        query.prepare(metrics);
+        query.collect(performance, A_VERSION);
+        query.notifyCollectedMetrics();
+        return query;
+    }
+
+    private double value(final DomainMember<?> member, final String metric) {
+        return member.getMetrics().get(metric).valueFactory(A_VERSION).value().doubleValue();
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.core.domain.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Unit tests for the LogHistogram class.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+public class LogHistogramTest {
+
+    @Test
+    public void emptyHistogramReturnsZero() {
+        LogHistogram histogram = new LogHistogram();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMean(), 0);
+        assertEquals(0, histogram.getValueAtQuantile(0.99), 0);
+    }
+
+    @Test
+    public void singleValueIsExact() {
+        LogHistogram histogram = new LogHistogram();
+        histogram.record(1234);
+
+        assertEquals(1234, histogram.getMean(), 0);
+        assertEquals(1234, histogram.getValueAtQuantile(0.5), 0);
+        assertEquals(1234, histogram.getValueAtQuantile(0.99), 0);
+    }
+
+    @Test
+    public void quantilesAreWithinOnePercent() {
+        LogHistogram histogram = new LogHistogram();
+        for (int i = 1; i <= 10000; i++) {
+            histogram.record(i);
+        }
+
+        assertEquals(10000, histogram.getCount());
+        assertEquals(5000.5, histogram.getMean(), 0);
+        assertEquals(5000, histogram.getValueAtQuantile(0.5), 50);
+        assertEquals(9500, histogram.getValueAtQuantile(0.95), 95);
+        assertEquals(9900, histogram.getValueAtQuantile(0.99), 99);
+    }
+
+    @Test
+    public void recordsZeroes() {
+        LogHistogram histogram = new LogHistogram();
+        for (int i = 0; i < 3; i++) {
+            histogram.record(0);
+        }
+        histogram.record(100);
+
+        assertEquals(0, histogram.getValueAtQuantile(0.5), 0);
+        assertEquals(100, histogram.getValueAtQuantile(1), 1);
+        assertEquals(25, histogram.getMean(), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNegativeValues() {
+        new LogHistogram().record(-1);
+    }
+
+    @Test
+    public void mergeMatchesRecordingAllValues() {
+        LogHistogram all = new LogHistogram();
+        LogHistogram odd = new LogHistogram();
+        LogHistogram even = new LogHistogram();
+        for (int i = 0; i < 1000; i++) {
+            all.record(i * 7);
+            (i % 2 == 0 ? even : odd).record(i * 7);
+        }
+
+        odd.merge(even);
+        odd.merge(new LogHistogram());
+
+        assertEquals(all.getCount(), odd.getCount());
+        assertEquals(all.getMean(), odd.getMean(), 0);
+        for (double quantile : new double[]{0, 0.5, 0.95, 0.99, 1}) {
+            assertEquals(all.getValueAtQuantile(quantile), odd.getValueAtQuantile(quantile), 0);
+        }
+    }
+}
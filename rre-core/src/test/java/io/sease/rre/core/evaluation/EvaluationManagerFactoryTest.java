@@ -16,20 +16,34 @@
  */
 package io.sease.rre.core.evaluation;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.sease.rre.core.domain.Query;
 import io.sease.rre.core.evaluation.impl.AsynchronousEvaluationManager;
 import io.sease.rre.core.evaluation.impl.AsynchronousQueryEvaluationManager;
+import io.sease.rre.core.evaluation.impl.BatchingEvaluationManager;
+import io.sease.rre.core.evaluation.impl.NonBlockingEvaluationManager;
 import io.sease.rre.core.evaluation.impl.SynchronousEvaluationManager;
 import io.sease.rre.core.template.QueryTemplateManager;
 import io.sease.rre.persistence.PersistenceManager;
+import io.sease.rre.search.api.QueryOrSearchResponse;
 import io.sease.rre.search.api.SearchPlatform;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 /**
  * Unit tests for the evaluation manager factory.
@@ -71,4 +85,38 @@ public class EvaluationManagerFactoryTest {
         assertNotNull(test);
         assertTrue(test instanceof AsynchronousQueryEvaluationManager);
     }
+
+    @Test
+    public void instantiateReturnsNonBlocking() {
+        final EvaluationConfiguration config = new EvaluationConfiguration(true, true, 4, true, 100);
+        final EvaluationManager test = EvaluationManagerFactory.instantiateEvaluationManager(config, platform, persistenceManager, templateManager, fields, versions, versionTimestamp);
+
+        assertNotNull(test);
+        assertTrue(test instanceof NonBlockingEvaluationManager);
+    }
+
+    @Test
+    public void instantiateReturnsBatching() {
+        final EvaluationConfiguration config = new EvaluationConfiguration(true, true, 4, true, 50, 50);
+        final EvaluationManager test = EvaluationManagerFactory.instantiateEvaluationManager(config, platform, persistenceManager, templateManager, fields, versions, versionTimestamp);
+
+        assertNotNull(test);
+        assertTrue(test instanceof BatchingEvaluationManager);
+    }
+
+    @Test
+    public void interleavedVersionsStartAtNextVersionForEachQuery() throws Exception {
+        when(platform.executeQuery(anyString(), anyString(), anyString(), any(), anyInt()))
+                .thenReturn(new QueryOrSearchResponse(0, Collections.emptyList()));
+        final EvaluationConfiguration config = new EvaluationConfiguration(false, false, 0, true, WarmupConfiguration.DEFAULT_CONFIG);
+        final EvaluationManager test = EvaluationManagerFactory.instantiateEvaluationManager(config, platform, persistenceManager, templateManager, fields,
+                Arrays.asList("v1.0", "v1.1"), versionTimestamp);
+
+        test.evaluateQuery(mock(Query.class), "index", new ObjectMapper().readTree("{\"query\": {}}"), null, 10);
+        test.evaluateQuery(mock(Query.class), "index", new ObjectMapper().readTree("{\"query\": {}}"), null, 10);
+
+        final ArgumentCaptor<String> queriedVersions = ArgumentCaptor.forClass(String.class);
+        verify(platform, times(4)).executeQuery(anyString(), queriedVersions.capture(), anyString(), any(), anyInt());
+        assertEquals(Arrays.asList("v1.0", "v1.1", "v1.1", "v1.0"), queriedVersions.getAllValues());
+    }
 }
@@ -0,0 +1,57 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.core.evaluation;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Unit tests for the interleaved versions collection.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+public class InterleavedVersionsTest {
+
+    @Test
+    public void eachIterationStartsAtNextVersion() {
+        final InterleavedVersions versions = new InterleavedVersions(Arrays.asList("v1", "v2", "v3"));
+
+        assertEquals(Arrays.asList("v1", "v2", "v3"), new ArrayList<>(versions));
+        assertEquals(Arrays.asList("v2", "v3", "v1"), new ArrayList<>(versions));
+        assertEquals(Arrays.asList("v3", "v1", "v2"), new ArrayList<>(versions));
+        assertEquals(Arrays.asList("v1", "v2", "v3"), new ArrayList<>(versions));
+    }
+
+    @Test
+    public void sizeDoesNotChangeOrder() {
+        final InterleavedVersions versions = new InterleavedVersions(Arrays.asList("v1", "v2"));
+
+        assertEquals(2, versions.size());
+        assertEquals(Arrays.asList("v1", "v2"), new ArrayList<>(versions));
+    }
+
+    @Test
+    public void handlesNoVersions() {
+        assertFalse(new InterleavedVersions(Collections.emptyList()).iterator().hasNext());
+    }
+}
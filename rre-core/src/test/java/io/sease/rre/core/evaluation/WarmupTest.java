@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.core.evaluation;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.sease.rre.core.template.QueryBuilder;
+import io.sease.rre.search.api.QueryOrSearchResponse;
+import io.sease.rre.search.api.SearchPlatform;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for the warm-up stage.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+public class WarmupTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final SearchPlatform platform = mock(SearchPlatform.class);
+    private final QueryBuilder queryBuilder = new QueryBuilder(null, new String[]{"id"});
+
+    @Before
+    public void setupPlatform() {
+        when(platform.executeQuery(anyString(), anyString(), anyString(), any(), anyInt()))
+                .thenReturn(new QueryOrSearchResponse(0, Collections.emptyList()));
+    }
+
+    @Test
+    public void sendsEveryQueryToEveryVersionForEachPass() throws Exception {
+        final Warmup warmup = new Warmup(platform, queryBuilder, new WarmupConfiguration(true, 2, 0));
+        addQueries(warmup, 3);
+
+        assertEquals(12, warmup.run(Arrays.asList("v1.0", "v1.1")));
+        verify(platform, times(6)).executeQuery(eq("index"), eq("v1.0"), anyString(), any(), anyInt());
+        verify(platform, times(6)).executeQuery(eq("index"), eq("v1.1"), anyString(), any(), anyInt());
+    }
+
+    @Test
+    public void sendsEvenlySpacedSample() throws Exception {
+        final Warmup warmup = new Warmup(platform, queryBuilder, new WarmupConfiguration(true, 1, 2));
+        addQueries(warmup, 4);
+
+        assertEquals(2, warmup.run(Collections.singletonList("v1.0")));
+        verify(platform).executeQuery(anyString(), anyString(), contains("q0"), any(), anyInt());
+        verify(platform).executeQuery(anyString(), anyString(), contains("q2"), any(), anyInt());
+    }
+
+    @Test
+    public void clearsQueriesAfterRun() throws Exception {
+        final Warmup warmup = new Warmup(platform, queryBuilder, new WarmupConfiguration(true, 1, 0));
+        addQueries(warmup, 2);
+        warmup.run(Collections.singletonList("v1.0"));
+
+        assertEquals(0, warmup.run(Collections.singletonList("v1.0")));
+    }
+
+    @Test
+    public void continuesAfterFailedQueries() throws Exception {
+        when(platform.executeQuery(anyString(), anyString(), contains("q0"), any(), anyInt()))
+                .thenThrow(new IllegalStateException("Not available"));
+        final Warmup warmup = new Warmup(platform, queryBuilder, new WarmupConfiguration(true, 1, 0));
+        addQueries(warmup, 2);
+
+        assertEquals(2, warmup.run(Collections.singletonList("v1.0")));
+        verify(platform).executeQuery(anyString(), anyString(), contains("q1"), any(), anyInt());
+        verify(platform, never()).executeQuery(anyString(), anyString(), any(), any(), any(), anyInt());
+    }
+
+    private void addQueries(Warmup warmup, int count) throws Exception {
+        for (int i = 0; i < count; i++) {
+            warmup.addQuery("index", mapper.readTree("{\"query\": {\"term\": \"q" + i + "\"}}"), null, 10);
+        }
+    }
+}
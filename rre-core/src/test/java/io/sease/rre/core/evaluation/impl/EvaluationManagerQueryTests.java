@@ -18,10 +18,16 @@ package io.sease.rre.core.evaluation.impl;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import io.sease.rre.core.domain.Query;
 import io.sease.rre.core.evaluation.EvaluationManager;
+import io.sease.rre.core.instrumentation.Instrumentation;
+import io.sease.rre.core.template.QueryTemplate;
 import io.sease.rre.core.template.QueryTemplateManager;
 import io.sease.rre.persistence.PersistenceManager;
+import io.sease.rre.search.api.BatchQuery;
+import io.sease.rre.search.api.CompiledQueryTemplate;
 import io.sease.rre.search.api.QueryOrSearchResponse;
 import io.sease.rre.search.api.SearchPlatform;
 import org.junit.Before;
@@ -32,10 +38,17 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
 
+import static org.junit.Assert.assertEquals;
+import static org.mockito.AdditionalMatchers.aryEq;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.anyInt;
+import static org.mockito.Mockito.anyList;
+import static org.mockito.Mockito.argThat;
 import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.isA;
 import static org.mockito.Mockito.isNull;
@@ -74,10 +87,16 @@ public class EvaluationManagerQueryTests {
         queryNode = buildQueryNode();
 
         // Set up template manager
-        when(templateManager.getTemplate(isNull(), eq(TEMPLATE), isA(String.class))).thenReturn(QUERY_TEMPLATE);
+        when(templateManager.getQueryTemplate(isNull(), eq(TEMPLATE), isA(String.class))).thenReturn(new QueryTemplate(QUERY_TEMPLATE));
         // Set up platform for each version query
         versions.forEach(v -> when(platform.executeQuery(eq(INDEX_NAME), eq(v), eq(QUERY_VALUE), any(String[].class), anyInt()))
                 .thenReturn(new QueryOrSearchResponse(0, Collections.emptyList())));
+        versions.forEach(v -> when(platform.executeQueryAsync(eq(INDEX_NAME), eq(v), eq(QUERY_VALUE), any(String[].class), anyInt()))
+                .thenReturn(CompletableFuture.supplyAsync(() -> new QueryOrSearchResponse(0, Collections.emptyList()))));
+        versions.forEach(v -> when(platform.executeQueries(eq(INDEX_NAME), eq(v), anyList()))
+                .thenAnswer(invocation -> ((List<?>) invocation.getArgument(2)).stream()
+                        .map(q -> new QueryOrSearchResponse(0, Collections.emptyList()))
+                        .collect(Collectors.toList())));
     }
 
 
@@ -111,6 +130,61 @@ public class EvaluationManagerQueryTests {
         verifySearchPlatform();
     }
 
+    @Test
+    public void evaluateQuery_nonBlocking() {
+        final EvaluationManager evaluationManager = new NonBlockingEvaluationManager(platform, templateManager, persistenceManager, fields, versions, null, THREADPOOL_SIZE, 1);
+
+        evaluateAndWaitUntilDone(evaluationManager);
+
+        verifyPersistence();
+        versions.forEach(v -> verify(platform).executeQueryAsync(eq(INDEX_NAME), eq(v), eq(QUERY_VALUE), eq(fields), anyInt()));
+    }
+
+    @Test
+    public void evaluateQuery_nonBlockingWithQueryTemplates() {
+        when(platform.isQueryTemplateSupported()).thenReturn(true);
+        versions.forEach(v -> when(platform.executeQueryAsync(eq(INDEX_NAME), eq(v), any(CompiledQueryTemplate.class), any(String[].class), any(String[].class), anyInt()))
+                .thenReturn(CompletableFuture.supplyAsync(() -> new QueryOrSearchResponse(0, Collections.emptyList()))));
+        final EvaluationManager evaluationManager = new NonBlockingEvaluationManager(platform, templateManager, persistenceManager, fields, versions, null, THREADPOOL_SIZE, 1);
+
+        evaluateAndWaitUntilDone(evaluationManager);
+
+        verifyPersistence();
+        versions.forEach(v -> verify(platform).executeQueryAsync(eq(INDEX_NAME), eq(v),
+                argThat((CompiledQueryTemplate template) -> template.render(new String[]{QUERY_TEXT}).equals(QUERY_VALUE)),
+                aryEq(new String[]{QUERY_TEXT}), eq(fields), anyInt()));
+    }
+
+    @Test
+    public void evaluateQuery_batched() {
+        final EvaluationManager evaluationManager = new BatchingEvaluationManager(platform, templateManager, persistenceManager, fields, versions, null, THREADPOOL_SIZE, 10, 50);
+
+        evaluateAndWaitUntilDone(evaluationManager);
+
+        verifyPersistence();
+        versions.forEach(v -> verify(platform).executeQueries(eq(INDEX_NAME), eq(v), argThat(queries ->
+                queries.size() == 1 && queries.get(0).getQuery().equals(QUERY_VALUE) && queries.get(0).getFields() == fields)));
+    }
+
+    @Test
+    public void executeQueries_recordsTheBatchLatencyOnly() {
+        final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        Metrics.addRegistry(registry);
+        try {
+            final BatchingEvaluationManager evaluationManager = new BatchingEvaluationManager(platform, templateManager, persistenceManager, fields, versions, null, THREADPOOL_SIZE, 10, 50);
+            final List<BatchQuery> queries = Arrays.asList(new BatchQuery(QUERY_VALUE, fields, 10), new BatchQuery(QUERY_VALUE, fields, 10));
+
+            final List<QueryOrSearchResponse> responses = evaluationManager.executeQueries(INDEX_NAME, "v1.0", queries);
+
+            assertEquals(2, responses.size());
+            responses.forEach(response -> assertEquals(QueryOrSearchResponse.UNKNOWN, response.latency()));
+            assertEquals(1, registry.get(Instrumentation.QUERY_BATCH_LATENCY).tag(Instrumentation.VERSION_TAG, "v1.0").timer().count());
+            assertEquals(0, registry.get(Instrumentation.QUERY_LATENCY).tag(Instrumentation.VERSION_TAG, "v1.0").timer().count());
+        } finally {
+            Metrics.removeRegistry(registry);
+        }
+    }
+
     private void evaluateAndWaitUntilDone(EvaluationManager evaluationManager) {
         evaluationManager.evaluateQuery(query, INDEX_NAME, queryNode, null, DOC_IDS.size());
 
@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.core.instrumentation;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.sease.rre.core.instrumentation.Instrumentation.Stage;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for the Instrumentation class.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+public class InstrumentationTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private File snapshotFile;
+
+    @Before
+    public void setup() {
+        snapshotFile = new File(tempFolder.getRoot(), "metrics/snapshot.json");
+        Instrumentation.configure(new InstrumentationConfiguration(false, "rre", snapshotFile.getAbsolutePath()));
+    }
+
+    @Test
+    public void writesSnapshotOfRecordedMetrics() throws Exception {
+        Instrumentation.queryLatency("test", "v1.0").record(5, TimeUnit.MILLISECONDS);
+        Instrumentation.requestSize("test", "v1.0").record(128);
+        Instrumentation.responseSize("test", "v1.0").record(2048);
+        Instrumentation.recordStage(Stage.RENDER, System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(1));
+        Instrumentation.recordIndexLoad("test", "index", "v1.0", 1024, System.nanoTime());
+
+        Instrumentation.writeSnapshot();
+
+        final JsonNode snapshot = new ObjectMapper().readTree(snapshotFile);
+        final JsonNode latency = meter(snapshot, Instrumentation.QUERY_LATENCY, "test");
+        assertEquals("timer", latency.get("type").asText());
+        assertEquals("v1.0", latency.get("tags").get("version").asText());
+        assertEquals(1, latency.get("count").asLong());
+        assertEquals(5.0, latency.get("max").asDouble(), 0.001);
+        assertTrue(latency.get("percentiles").has("0.95"));
+
+        assertEquals(128.0, meter(snapshot, Instrumentation.QUERY_REQUEST_SIZE, "test").get("total").asDouble(), 0.001);
+        assertEquals(2048.0, meter(snapshot, Instrumentation.QUERY_RESPONSE_SIZE, "test").get("total").asDouble(), 0.001);
+        assertEquals(1024.0, meter(snapshot, Instrumentation.INDEX_LOAD_SIZE, "test").get("total").asDouble(), 0.001);
+
+        boolean renderFound = false;
+        for (final JsonNode meter : snapshot.get("meters")) {
+            if (meter.get("name").asText().equals(Instrumentation.QUERY_STAGE)
+                    && meter.get("tags").get("stage").asText().equals("render")) {
+                renderFound = meter.get("count").asLong() > 0;
+            }
+        }
+        assertTrue(renderFound);
+    }
+
+    @Test
+    public void acceptsMissingPlatformName() throws Exception {
+        Instrumentation.queryLatency(null, "v1.0").record(1, TimeUnit.MILLISECONDS);
+
+        Instrumentation.writeSnapshot();
+
+        assertNotNull(meter(new ObjectMapper().readTree(snapshotFile), Instrumentation.QUERY_LATENCY, "unknown"));
+    }
+
+    private JsonNode meter(final JsonNode snapshot, final String name, final String platform) {
+        for (final JsonNode meter : snapshot.get("meters")) {
+            if (meter.get("name").asText().equals(name) && meter.get("tags").get("platform").asText().equals(platform)) {
+                return meter;
+            }
+        }
+        throw new AssertionError("No " + name + " meter for " + platform);
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.core.instrumentation;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for the Tracing class.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+public class TracingTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @After
+    public void tearDown() {
+        Tracing.stopRecording();
+        Tracing.configure(InstrumentationConfiguration.DEFAULT_CONFIG);
+    }
+
+    @Test
+    public void spansAreNoopWithoutRecording() {
+        assertSame(Tracing.Span.NOOP, Tracing.search("index", "v1.0", "query"));
+        assertSame(Tracing.Span.NOOP, Tracing.flush("json"));
+    }
+
+    @Test
+    public void recordsEventsToConfiguredFile() throws Exception {
+        File recordingFile = new File(tempFolder.getRoot(), "jfr/evaluation.jfr");
+        Tracing.configure(new InstrumentationConfiguration(recordingFile.getAbsolutePath(), "default"));
+
+        Tracing.startRecording();
+        Tracing.render("index", "v1.0", "query").end(64);
+        Tracing.search("index", "v1.0", "query").end(10);
+        Tracing.metrics("v1.0", "query").end(10);
+        Tracing.aggregation("query").end(3);
+        Tracing.load("test", "index", "v1.0").end(1024);
+        Tracing.flush("json").end(1);
+        Tracing.stopRecording();
+
+        assertTrue(recordingFile.exists());
+        List<RecordedEvent> events = RecordingFile.readAllEvents(recordingFile.toPath()).stream()
+                .filter(event -> event.getEventType().getName().startsWith("io.sease.rre."))
+                .collect(Collectors.toList());
+        assertEquals(6, events.size());
+
+        RecordedEvent search = events.stream()
+                .filter(event -> event.getEventType().getName().equals("io.sease.rre.Search"))
+                .findFirst()
+                .orElseThrow(AssertionError::new);
+        assertEquals("index", search.getString("collection"));
+        assertEquals("v1.0", search.getString("version"));
+        assertEquals("query", search.getString("query"));
+        assertEquals(10, search.getLong("hits"));
+    }
+}
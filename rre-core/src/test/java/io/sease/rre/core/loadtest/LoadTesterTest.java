@@ -0,0 +1,162 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.core.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.sease.rre.core.template.QueryBuilder;
+import io.sease.rre.search.api.QueryOrSearchResponse;
+import io.sease.rre.search.api.SearchPlatform;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for the load tester.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+public class LoadTesterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final SearchPlatform platform = mock(SearchPlatform.class);
+    private final QueryBuilder queryBuilder = new QueryBuilder(null, new String[]{"id"});
+
+    private File outputFile;
+
+    @Before
+    public void setupPlatform() {
+        outputFile = new File(folder.getRoot(), "load-test.json");
+        when(platform.getName()).thenReturn("mock");
+    }
+
+    @Test
+    public void writesReportForEachVersion() throws Exception {
+        when(platform.executeQuery(anyString(), anyString(), anyString(), any(), anyInt()))
+                .thenReturn(new QueryOrSearchResponse(0, Collections.emptyList()));
+
+        final LoadTester loadTester = new LoadTester(platform, queryBuilder,
+                new LoadTestConfiguration(true, 100, 1, 0, 2, outputFile.getPath()));
+        loadTester.addQuery("index", mapper.readTree("{\"query\": {\"match_all\": {}}}"), null, 10);
+        loadTester.run(Arrays.asList("v1.0", "v1.1"));
+
+        final JsonNode report = mapper.readTree(outputFile);
+        assertEquals(1, report.get("queries").asInt());
+        for (final String version : Arrays.asList("v1.0", "v1.1")) {
+            final JsonNode result = report.get("versions").get(version);
+            assertEquals(100, result.get("requests").asLong());
+            assertEquals(100, result.get("completed").asLong());
+            assertEquals(0, result.get("errors").asLong());
+            assertTrue(result.get("latency").get("p99").asDouble() >= result.get("serviceTime").get("p99").asDouble());
+        }
+    }
+
+    @Test
+    public void countsFailedQueriesAsErrors() throws Exception {
+        when(platform.executeQuery(anyString(), anyString(), anyString(), any(), anyInt()))
+                .thenThrow(new IllegalStateException("Not available"));
+
+        final LoadTester loadTester = new LoadTester(platform, queryBuilder,
+                new LoadTestConfiguration(true, 50, 1, 0, 2, outputFile.getPath()));
+        loadTester.addQuery("index", mapper.readTree("{\"query\": {\"match_all\": {}}}"), null, 10);
+
+        final JsonNode result = loadTester.run(Collections.singletonList("v1.0")).get("versions").get("v1.0");
+        assertEquals(50, result.get("requests").asLong());
+        assertEquals(0, result.get("completed").asLong());
+        assertEquals(50, result.get("errors").asLong());
+    }
+
+    @Test
+    public void latencyIncludesTimeQueued_WhenPlatformFallsBehind() throws Exception {
+        when(platform.executeQuery(anyString(), anyString(), anyString(), any(), anyInt()))
+                .thenAnswer(invocation -> {
+                    Thread.sleep(20);
+                    return new QueryOrSearchResponse(0, Collections.emptyList());
+                });
+
+        // One thread handles 50 queries per second - send 80
+        final LoadTester loadTester = new LoadTester(platform, queryBuilder,
+                new LoadTestConfiguration(true, 80, 1, 0, 1, outputFile.getPath()));
+        loadTester.addQuery("index", mapper.readTree("{\"query\": {\"match_all\": {}}}"), null, 10);
+
+        final JsonNode result = loadTester.run(Collections.singletonList("v1.0")).get("versions").get("v1.0");
+        assertEquals(80, result.get("completed").asLong());
+        assertTrue(result.get("serviceTime").get("p99").asDouble() < 100);
+        assertTrue(result.get("latency").get("p99").asDouble() > 300);
+    }
+
+    @Test
+    public void queriesOverTheBacklogLimit_areCountedAsErrors() throws Exception {
+        when(platform.executeQuery(anyString(), anyString(), anyString(), any(), anyInt()))
+                .thenAnswer(invocation -> {
+                    Thread.sleep(100);
+                    return new QueryOrSearchResponse(0, Collections.emptyList());
+                });
+
+        // One thread handles 10 queries per second, with room for 5 more queued - send 50
+        final LoadTester loadTester = new LoadTester(platform, queryBuilder,
+                new LoadTestConfiguration(true, 50, 1, 0, 1, 5, outputFile.getPath()));
+        loadTester.addQuery("index", mapper.readTree("{\"query\": {\"match_all\": {}}}"), null, 10);
+
+        final JsonNode result = loadTester.run(Collections.singletonList("v1.0")).get("versions").get("v1.0");
+        assertEquals(50, result.get("requests").asLong());
+        assertTrue(result.get("rejected").asLong() > 0);
+        assertEquals(result.get("rejected").asLong(), result.get("errors").asLong());
+        assertEquals(50, result.get("completed").asLong() + result.get("errors").asLong());
+    }
+
+    @Test
+    public void abandonedQueries_areRecordedWithTheLatencyReached() throws Exception {
+        when(platform.executeQuery(anyString(), anyString(), anyString(), any(), anyInt()))
+                .thenAnswer(invocation -> {
+                    // Parking, unlike sleeping, returns quietly when the query is abandoned
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(200));
+                    return new QueryOrSearchResponse(0, Collections.emptyList());
+                });
+
+        // One thread handles 5 queries per second - send 20, leaving half to be abandoned
+        final LoadTester loadTester = new LoadTester(platform, queryBuilder,
+                new LoadTestConfiguration(true, 20, 1, 0, 1, outputFile.getPath()));
+        loadTester.addQuery("index", mapper.readTree("{\"query\": {\"match_all\": {}}}"), null, 10);
+
+        final JsonNode result = loadTester.run(Collections.singletonList("v1.0")).get("versions").get("v1.0");
+        assertEquals(20, result.get("requests").asLong());
+        assertTrue(result.get("abandoned").asLong() > 0);
+        assertEquals(20, result.get("completed").asLong() + result.get("abandoned").asLong()
+                + result.get("errors").asLong() + result.get("incomplete").asLong());
+        // Abandoned after the drain time, so they had waited for more than a second
+        assertTrue(result.get("latency").get("max").asDouble() > 1000);
+    }
+}
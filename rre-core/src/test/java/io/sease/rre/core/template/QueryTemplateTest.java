@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.core.template;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Unit tests for the QueryTemplate class.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+public class QueryTemplateTest {
+
+    @Test
+    public void render_returnsContentWhenNoPlaceholders() {
+        final String content = "{ \"q\": \"$query\" }";
+
+        assertEquals(content, new QueryTemplate(content).render(Collections.emptyMap()));
+    }
+
+    @Test
+    public void render_replacesEveryOccurrence() {
+        final QueryTemplate template = new QueryTemplate("{ \"q\": \"$query\", \"pf\": \"$query\", \"fq\": \"$filter\" }");
+        final Map<String, String> placeholders = new LinkedHashMap<>();
+        placeholders.put("$query", "fred");
+        placeholders.put("$filter", "type:bass");
+
+        assertEquals("{ \"q\": \"fred\", \"pf\": \"fred\", \"fq\": \"type:bass\" }", template.render(placeholders));
+
+        // Render again with new values, using the compiled template
+        placeholders.put("$query", "barney");
+        assertEquals("{ \"q\": \"barney\", \"pf\": \"barney\", \"fq\": \"type:bass\" }", template.render(placeholders));
+    }
+
+    @Test
+    public void render_matchesSequentialReplacementForOverlappingNames() {
+        final QueryTemplate template = new QueryTemplate("$query $query2");
+        final Map<String, String> placeholders = new LinkedHashMap<>();
+        placeholders.put("$query2", "b");
+        placeholders.put("$query", "a");
+
+        assertEquals("a b", template.render(placeholders));
+    }
+
+    @Test
+    public void render_doesNotReplaceWithinValues() {
+        final QueryTemplate template = new QueryTemplate("$a $b");
+        final Map<String, String> placeholders = new LinkedHashMap<>();
+        placeholders.put("$a", "$b");
+        placeholders.put("$b", "x");
+
+        assertEquals("$b x", template.render(placeholders));
+    }
+}
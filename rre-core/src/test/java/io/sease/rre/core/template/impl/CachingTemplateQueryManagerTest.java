@@ -16,6 +16,7 @@
  */
 package io.sease.rre.core.template.impl;
 
+import io.sease.rre.core.template.QueryTemplate;
 import io.sease.rre.core.template.QueryTemplateManager;
 import org.junit.Before;
 import org.junit.Rule;
@@ -28,6 +29,8 @@ import java.nio.file.Files;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 
 /**
  * Unit tests for the Caching QueryTemplateManager implementation.
@@ -129,6 +132,31 @@ public class CachingTemplateQueryManagerTest {
     }
 
 
+    @Test
+    public void getQueryTemplate_isCachedByNameAndVersion() throws Exception {
+        final String vTemplate = "query.json";
+        final File templateFile = new File(folder.getRoot(), vTemplate);
+        createTempFile(folder.getRoot(), vTemplate, vTemplate);
+
+        QueryTemplate template = templateManager.getQueryTemplate(null, vTemplate, "1.0");
+        templateFile.delete();
+
+        assertSame(template, templateManager.getQueryTemplate(null, vTemplate, "1.0"));
+        assertEquals(vTemplate, templateManager.getTemplate(null, vTemplate, "1.0"));
+    }
+
+    @Test
+    public void getQueryTemplate_evictsWhenCacheFull() throws Exception {
+        templateManager = new CachingQueryTemplateManager(folder.getRoot().getAbsolutePath(), 1);
+        createTempFile(folder.getRoot(), "query1.json", "query1");
+        createTempFile(folder.getRoot(), "query2.json", "query2");
+
+        QueryTemplate template = templateManager.getQueryTemplate(null, "query1.json", "1.0");
+        templateManager.getQueryTemplate(null, "query2.json", "1.0");
+
+        assertNotSame(template, templateManager.getQueryTemplate(null, "query1.json", "1.0"));
+    }
+
     private void createTempFile(File destFolder, String fileName, String content) {
         try {
             File outFile = new File(destFolder, fileName);
@@ -0,0 +1,184 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.persistence.impl;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for the evaluation digests.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+public class EvaluationDigestTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    public void digestsDoNotDependOnFormatting() throws Exception {
+        final JsonNode evaluation = evaluation();
+
+        final EvaluationDigest.Node compact = read(mapper.writeValueAsString(evaluation));
+        final EvaluationDigest.Node pretty = read(mapper.writerWithDefaultPrettyPrinter().writeValueAsString(evaluation));
+        final EvaluationDigest.Node tree = EvaluationDigest.read(evaluation.traverse(mapper));
+
+        assertTrue(compact.matches(pretty));
+        assertTrue(compact.matches(tree));
+    }
+
+    @Test
+    public void changingQueryChangesDigestsOnItsPathOnly() throws Exception {
+        final JsonNode evaluation = evaluation();
+        final EvaluationDigest.Node before = EvaluationDigest.read(evaluation.traverse(mapper));
+
+        final ObjectNode query = (ObjectNode) evaluation.at("/corpora/0/topics/0/query-groups/0/query-evaluations/1");
+        query.put("total-hits", 11);
+        final EvaluationDigest.Node after = EvaluationDigest.read(evaluation.traverse(mapper));
+
+        assertFalse(before.matches(after));
+        assertArrayEquals(before.getOwn(), after.getOwn());
+
+        final EvaluationDigest.Node beforeGroup = group(before);
+        final EvaluationDigest.Node afterGroup = group(after);
+        assertFalse(beforeGroup.matches(afterGroup));
+        assertTrue(beforeGroup.getChildren().get(0).matches(afterGroup.getChildren().get(0)));
+        assertFalse(beforeGroup.getChildren().get(1).matches(afterGroup.getChildren().get(1)));
+        assertEquals("q2", afterGroup.getChildren().get(1).getName());
+        assertTrue(before.getChildren().get(0).getChildren().get(1).matches(after.getChildren().get(0).getChildren().get(1)));
+    }
+
+    @Test
+    public void changingMetricsChangesOwnDigest() throws Exception {
+        final JsonNode evaluation = evaluation();
+        final EvaluationDigest.Node before = EvaluationDigest.read(evaluation.traverse(mapper));
+
+        ((ObjectNode) evaluation.at("/corpora/0/metrics/P@1/versions/v1")).put("value", 0.75);
+        final EvaluationDigest.Node after = EvaluationDigest.read(evaluation.traverse(mapper));
+
+        final EvaluationDigest.Node beforeCorpus = before.getChildren().get(0);
+        final EvaluationDigest.Node afterCorpus = after.getChildren().get(0);
+        assertFalse(beforeCorpus.matches(afterCorpus));
+        assertFalse(Arrays.equals(beforeCorpus.getOwn(), afterCorpus.getOwn()));
+        assertTrue(beforeCorpus.getChildren().get(0).matches(afterCorpus.getChildren().get(0)));
+    }
+
+    @Test
+    public void offsetsLocateMembersAndOwnFields() throws Exception {
+        final String json = mapper.writerWithDefaultPrettyPrinter().writeValueAsString(evaluation());
+        final byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        final EvaluationDigest.Node root = read(json);
+
+        final EvaluationDigest.Node group = group(root);
+        final EvaluationDigest.Node query = group.getChildren().get(1);
+        assertTrue(query.matches(EvaluationDigest.read(parser(slice(bytes, query.getStart(), query.getEnd())), EvaluationDigest.QUERY_DEPTH)));
+        assertTrue(group.matches(EvaluationDigest.read(parser(slice(bytes, group.getStart(), group.getEnd())), 3)));
+
+        final long[] fields = group.getOwnFields();
+        assertEquals(4, fields.length);
+        final String own = "{" + slice(bytes, fields[0], fields[1]) + "," + slice(bytes, fields[2], fields[3]) + "}";
+        assertArrayEquals(group.getOwn(), EvaluationDigest.read(parser(own), 3).getOwn());
+    }
+
+    @Test
+    public void rebuiltNodeMatchesReadNode() throws Exception {
+        final EvaluationDigest.Node group = group(EvaluationDigest.read(evaluation().traverse(mapper)));
+
+        assertTrue(group.matches(EvaluationDigest.Node.of(group.getName(), group.getOwn(), group.getChildren())));
+    }
+
+    @Test(expected = IOException.class)
+    public void throwsException_whenMemberUnnamed() throws Exception {
+        final JsonNode evaluation = evaluation();
+        ((ObjectNode) evaluation.at("/corpora/0")).remove("name");
+
+        EvaluationDigest.read(evaluation.traverse(mapper));
+    }
+
+    @Test
+    public void hexRoundTrips() {
+        final byte[] digest = {0, 1, -1, 127, -128, 42};
+
+        assertEquals("0001ff7f802a", EvaluationDigest.hex(digest));
+        assertArrayEquals(digest, EvaluationDigest.unhex("0001FF7f802a"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unhexThrowsException_whenNotHex() {
+        EvaluationDigest.unhex("0g");
+    }
+
+    @Test
+    public void pointerRoundTrips() {
+        final List<String> path = Arrays.asList("corpus", "a/b~c", "");
+
+        assertEquals("/corpus/a~1b~0c/", EvaluationDigest.pointer(path));
+        assertEquals(path, EvaluationDigest.path(EvaluationDigest.pointer(path)));
+        assertTrue(EvaluationDigest.path("").isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void pathThrowsException_whenNotPointer() {
+        EvaluationDigest.path("corpus");
+    }
+
+    private EvaluationDigest.Node read(final String json) throws IOException {
+        try (final JsonParser parser = parser(json)) {
+            return EvaluationDigest.read(parser);
+        }
+    }
+
+    private JsonParser parser(final String json) throws IOException {
+        return mapper.getFactory().createParser(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String slice(final byte[] bytes, final long start, final long end) {
+        return new String(bytes, (int) start, (int) (end - start), StandardCharsets.UTF_8);
+    }
+
+    private static EvaluationDigest.Node group(final EvaluationDigest.Node evaluation) {
+        final List<EvaluationDigest.Node> corpora = evaluation.getChildren();
+        return corpora.get(0).getChildren().get(0).getChildren().get(0);
+    }
+
+    private JsonNode evaluation() throws IOException {
+        return mapper.readTree(
+                "{\"name\":\"e\",\"metrics\":" + metrics(0.5) + ",\"corpora\":[" +
+                        "{\"name\":\"c1\",\"metrics\":" + metrics(0.5) + ",\"topics\":[" +
+                        "{\"name\":\"t1\",\"metrics\":" + metrics(0.5) + ",\"query-groups\":[" +
+                        "{\"name\":\"g1\",\"metrics\":" + metrics(0.5) + ",\"query-evaluations\":[" +
+                        "{\"query\":\"q1\",\"total-hits\":3,\"metrics\":" + metrics(1) + "}," +
+                        "{\"query\":\"q2\",\"total-hits\":10,\"metrics\":" + metrics(0) + "}]}]}," +
+                        "{\"name\":\"t2\",\"metrics\":" + metrics(0.25) + ",\"query-groups\":[]}]}]}");
+    }
+
+    private static String metrics(final double value) {
+        return "{\"P@1\":{\"name\":\"P@1\",\"versions\":{\"v1\":{\"value\":" + value + "}}}}";
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.persistence.impl;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import io.sease.rre.core.domain.Corpus;
+import io.sease.rre.core.domain.Evaluation;
+import io.sease.rre.core.domain.Query;
+import io.sease.rre.core.domain.QueryGroup;
+import io.sease.rre.core.domain.Topic;
+import io.sease.rre.core.domain.metrics.Metric;
+import io.sease.rre.core.domain.metrics.QueryPerformance;
+import io.sease.rre.core.domain.metrics.impl.QueryLatency;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for the HTTP progress PersistenceHandler implementation.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+public class HttpProgressPersistenceHandlerTest {
+
+    private static final String HANDLER_NAME = "progressTest";
+    private static final String VERSION = "v1.0";
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final List<JsonNode> updates = new CopyOnWriteArrayList<>();
+
+    private HttpServer server;
+    private HttpProgressPersistenceHandler handler;
+
+    @Before
+    public void setupServer() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/evaluations/", exchange -> {
+            updates.add(mapper.readTree(exchange.getRequestBody()));
+            exchange.sendResponseHeaders(202, -1);
+            exchange.close();
+        });
+        server.start();
+
+        handler = new HttpProgressPersistenceHandler();
+        Map<String, Object> config = new HashMap<>();
+        config.put(HttpProgressPersistenceHandler.SERVER_URL_KEY, "http://localhost:" + server.getAddress().getPort() + "/");
+        config.put(HttpProgressPersistenceHandler.EVALUATION_ID_KEY, "nightly run");
+        config.put(HttpProgressPersistenceHandler.RUN_INTERVAL_KEY, 60000L);
+        config.put(HttpProgressPersistenceHandler.BATCH_SIZE_KEY, 2);
+        handler.configure(HANDLER_NAME, config);
+    }
+
+    @After
+    public void tearDownServer() {
+        server.stop(0);
+    }
+
+    @Test
+    public void configureBuildsProgressUrl() {
+        assertEquals("http://localhost:" + server.getAddress().getPort() + "/evaluations/nightly%20run/progress", handler.getProgressUrl());
+    }
+
+    @Test
+    public void buildUpdateIncludesQueryPathAndRollingMean() {
+        final Evaluation evaluation = new Evaluation();
+        handler.buildUpdate(Collections.singletonList(buildQuery(evaluation, "q1", 2000)), false);
+        final JsonNode update = handler.buildUpdate(Collections.singletonList(buildQuery(evaluation, "q2", 4000)), false);
+
+        assertEquals(2, update.get("completed").asInt());
+        assertFalse(update.get("done").asBoolean());
+        final JsonNode query = update.get("queries").get(0);
+        assertEquals("q2", query.get("name").asText());
+        assertEquals("[\"corpus\",\"topic\",\"group\"]", query.get("path").toString());
+        assertEquals(4.0, query.get("metrics").get("Latency").get(VERSION).asDouble(), 0.001);
+        assertEquals(3.0, update.get("aggregates").get("Latency").get(VERSION).asDouble(), 0.001);
+    }
+
+    @Test
+    public void beforeStopSendsOutstandingQueriesInBatches() {
+        final Evaluation evaluation = new Evaluation();
+        handler.beforeStart();
+        handler.start();
+        final List<Query> queries = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            queries.add(buildQuery(evaluation, "q" + i, 1000));
+        }
+        queries.forEach(handler::recordQuery);
+        handler.beforeStop();
+        handler.stop();
+
+        assertEquals(3, updates.size());
+        assertEquals(2, updates.get(0).get("queries").size());
+        assertFalse(updates.get(0).get("done").asBoolean());
+        assertEquals(1, updates.get(2).get("queries").size());
+        assertEquals(5, updates.get(2).get("completed").asInt());
+        assertTrue(updates.get(2).get("done").asBoolean());
+    }
+
+    @Test
+    public void beforeStopSendsDoneUpdate_whenNoQueriesRecorded() {
+        handler.beforeStart();
+        handler.start();
+        handler.beforeStop();
+        handler.stop();
+
+        assertEquals(1, updates.size());
+        assertEquals(0, updates.get(0).get("completed").asInt());
+        assertTrue(updates.get(0).get("done").asBoolean());
+    }
+
+    @Test
+    public void unreachableServerDoesNotFailRun() {
+        server.stop(0);
+        handler.beforeStart();
+        handler.start();
+        handler.recordQuery(buildQuery(new Evaluation(), "q1", 1000));
+        handler.beforeStop();
+        handler.stop();
+
+        assertTrue(updates.isEmpty());
+    }
+
+    private static Query buildQuery(Evaluation evaluation, String name, long latencyMicros) {
+        final Query query = (Query) evaluation.findOrCreate("corpus", Corpus::new)
+                .findOrCreate("topic", Topic::new)
+                .findOrCreate("group", QueryGroup::new)
+                .findOrCreate(name, Query::new);
+        final Metric latency = new QueryLatency(null, "Latency");
+        latency.setVersions(Collections.singletonList(VERSION));
+        query.prepare(Collections.singletonList(latency));
+        query.collect(new QueryPerformance(latencyMicros, QueryPerformance.UNKNOWN, QueryPerformance.UNKNOWN), VERSION);
+        return query;
+    }
+}
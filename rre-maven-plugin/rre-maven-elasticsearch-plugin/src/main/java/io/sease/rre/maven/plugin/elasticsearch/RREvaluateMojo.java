@@ -20,6 +20,8 @@ import io.sease.rre.core.Engine;
 import io.sease.rre.core.domain.metrics.MetricClassConfigurationManager;
 import io.sease.rre.core.domain.metrics.MetricClassManager;
 import io.sease.rre.core.evaluation.EvaluationConfiguration;
+import io.sease.rre.core.instrumentation.InstrumentationConfiguration;
+import io.sease.rre.core.loadtest.LoadTestConfiguration;
 import io.sease.rre.persistence.PersistenceConfiguration;
 import io.sease.rre.search.api.SearchPlatform;
 import io.sease.rre.search.api.impl.Elasticsearch;
@@ -67,6 +69,12 @@ public class RREvaluateMojo extends AbstractMojo {
     @Parameter(name = "force-refresh", defaultValue = "true")
     private boolean forceRefresh;
 
+    @Parameter(name = "share-indices", defaultValue = "true")
+    private boolean shareIndices;
+
+    @Parameter(name = "stored-templates", defaultValue = "false")
+    private boolean storedTemplates;
+
     @Parameter(name = "checksum-file")
     private String checksumFile;
 
@@ -103,6 +111,12 @@ public class RREvaluateMojo extends AbstractMojo {
     @Parameter(name = "evaluation")
     private EvaluationConfiguration evaluation = EvaluationConfiguration.DEFAULT_CONFIG;
 
+    @Parameter(name = "instrumentation")
+    private InstrumentationConfiguration instrumentation = InstrumentationConfiguration.DEFAULT_CONFIG;
+
+    @Parameter(name = "loadTest")
+    private LoadTestConfiguration loadTest = LoadTestConfiguration.DEFAULT_CONFIG;
+
     @Override
     public void execute() throws MojoExecutionException {
         final URL [] urls = compilePaths.stream()
@@ -125,19 +139,22 @@ public class RREvaluateMojo extends AbstractMojo {
                     .setDefaultMaximumGrade(maximumGrade)
                     .setDefaultMissingGrade(missingGrade)
                     .buildMetricClassManager(metrics, parameterizedMetrics);
-            final Engine engine = new Engine(
-                    platform,
-                    configurationsFolder,
-                    corporaFolder,
-                    ratingsFolder,
-                    templatesFolder,
-                    metricClassManager,
-                    fields.split(","),
-                    exclude,
-                    include,
-                    checksumFile,
-                    persistence,
-                    evaluation);
+            final Engine engine = Engine.builder()
+                    .setPlatform(platform)
+                    .setConfigurationsFolder(configurationsFolder)
+                    .setCorporaFolder(corporaFolder)
+                    .setRatingsFolder(ratingsFolder)
+                    .setTemplatesFolder(templatesFolder)
+                    .setMetricClassManager(metricClassManager)
+                    .setFields(fields.split(","))
+                    .setExclude(exclude)
+                    .setInclude(include)
+                    .setChecksumFile(checksumFile)
+                    .setPersistenceConfiguration(persistence)
+                    .setEvaluationConfiguration(evaluation)
+                    .setInstrumentationConfiguration(instrumentation)
+                    .setLoadTestConfiguration(loadTest)
+                    .build();
 
             final Map<String, Object> configuration = new HashMap<>();
             configuration.put("path.home", "/tmp");
@@ -145,6 +162,8 @@ public class RREvaluateMojo extends AbstractMojo {
             configuration.put("network.host", port);
             configuration.put("plugins", plugins);
             configuration.put("forceRefresh", forceRefresh);
+            configuration.put("shareIndices", shareIndices);
+            configuration.put("storedTemplates", storedTemplates);
 
             engine.evaluate(configuration);
         } catch (final IOException exception) {
@@ -22,6 +22,8 @@ import io.sease.rre.core.domain.Evaluation;
 import io.sease.rre.core.domain.metrics.MetricClassConfigurationManager;
 import io.sease.rre.core.domain.metrics.MetricClassManager;
 import io.sease.rre.core.evaluation.EvaluationConfiguration;
+import io.sease.rre.core.instrumentation.InstrumentationConfiguration;
+import io.sease.rre.core.loadtest.LoadTestConfiguration;
 import io.sease.rre.persistence.PersistenceConfiguration;
 import io.sease.rre.search.api.SearchPlatform;
 import io.sease.rre.search.api.impl.ExternalElasticsearch;
@@ -35,7 +37,7 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URL;
 import java.net.URLClassLoader;
-import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -80,12 +82,21 @@ public class RREvaluateMojo extends AbstractMojo {
     @Parameter(name="missingGrade", defaultValue="2")
     private float missingGrade;
 
+    @Parameter(name = "stored-templates", defaultValue = "false")
+    private boolean storedTemplates;
+
     @Parameter(name = "persistence")
     private PersistenceConfiguration persistence = PersistenceConfiguration.DEFAULT_CONFIG;
 
     @Parameter(name = "evaluation")
     private EvaluationConfiguration evaluation = EvaluationConfiguration.DEFAULT_CONFIG;
 
+    @Parameter(name = "instrumentation")
+    private InstrumentationConfiguration instrumentation = InstrumentationConfiguration.DEFAULT_CONFIG;
+
+    @Parameter(name = "loadTest")
+    private LoadTestConfiguration loadTest = LoadTestConfiguration.DEFAULT_CONFIG;
+
     @Override
     public void execute() throws MojoExecutionException {
         final URL[] urls = compilePaths.stream()
@@ -108,21 +119,23 @@ public class RREvaluateMojo extends AbstractMojo {
                     .setDefaultMaximumGrade(maximumGrade)
                     .setDefaultMissingGrade(missingGrade)
                     .buildMetricClassManager(metrics, parameterizedMetrics);
-            final Engine engine = new Engine(
-                    platform,
-                    configurationsFolder,
-                    null,
-                    ratingsFolder,
-                    templatesFolder,
-                    metricClassManager,
-                    fields.split(","),
-                    exclude,
-                    include,
-                    null,
-                    persistence,
-                    evaluation);
-
-            final Map<String, Object> configuration = Collections.emptyMap();
+            final Engine engine = Engine.builder()
+                    .setPlatform(platform)
+                    .setConfigurationsFolder(configurationsFolder)
+                    .setRatingsFolder(ratingsFolder)
+                    .setTemplatesFolder(templatesFolder)
+                    .setMetricClassManager(metricClassManager)
+                    .setFields(fields.split(","))
+                    .setExclude(exclude)
+                    .setInclude(include)
+                    .setPersistenceConfiguration(persistence)
+                    .setEvaluationConfiguration(evaluation)
+                    .setInstrumentationConfiguration(instrumentation)
+                    .setLoadTestConfiguration(loadTest)
+                    .build();
+
+            final Map<String, Object> configuration = new HashMap<>();
+            configuration.put("storedTemplates", storedTemplates);
 
             write(engine.evaluate(configuration));
         } catch (final IOException exception) {
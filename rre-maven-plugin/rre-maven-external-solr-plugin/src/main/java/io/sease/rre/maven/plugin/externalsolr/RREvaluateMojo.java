@@ -20,6 +20,8 @@ import io.sease.rre.core.Engine;
 import io.sease.rre.core.domain.metrics.MetricClassConfigurationManager;
 import io.sease.rre.core.domain.metrics.MetricClassManager;
 import io.sease.rre.core.evaluation.EvaluationConfiguration;
+import io.sease.rre.core.instrumentation.InstrumentationConfiguration;
+import io.sease.rre.core.loadtest.LoadTestConfiguration;
 import io.sease.rre.persistence.PersistenceConfiguration;
 import io.sease.rre.search.api.SearchPlatform;
 import io.sease.rre.search.api.impl.ExternalApacheSolr;
@@ -78,6 +80,12 @@ public class RREvaluateMojo extends AbstractMojo {
     @Parameter(name = "evaluation")
     private EvaluationConfiguration evaluation = EvaluationConfiguration.DEFAULT_CONFIG;
 
+    @Parameter(name = "instrumentation")
+    private InstrumentationConfiguration instrumentation = InstrumentationConfiguration.DEFAULT_CONFIG;
+
+    @Parameter(name = "loadTest")
+    private LoadTestConfiguration loadTest = LoadTestConfiguration.DEFAULT_CONFIG;
+
     @Override
     public void execute() throws MojoExecutionException {
         try (final SearchPlatform platform = new ExternalApacheSolr()) {
@@ -85,19 +93,20 @@ public class RREvaluateMojo extends AbstractMojo {
                     .setDefaultMaximumGrade(maximumGrade)
                     .setDefaultMissingGrade(missingGrade)
                     .buildMetricClassManager(metrics, parameterizedMetrics);
-            final Engine engine = new Engine(
-                    platform,
-                    configurationsFolder,
-                    null,
-                    ratingsFolder,
-                    templatesFolder,
-                    metricClassManager,
-                    fields.split(","),
-                    exclude,
-                    include,
-                    null,
-                    persistence,
-                    evaluation);
+            final Engine engine = Engine.builder()
+                    .setPlatform(platform)
+                    .setConfigurationsFolder(configurationsFolder)
+                    .setRatingsFolder(ratingsFolder)
+                    .setTemplatesFolder(templatesFolder)
+                    .setMetricClassManager(metricClassManager)
+                    .setFields(fields.split(","))
+                    .setExclude(exclude)
+                    .setInclude(include)
+                    .setPersistenceConfiguration(persistence)
+                    .setEvaluationConfiguration(evaluation)
+                    .setInstrumentationConfiguration(instrumentation)
+                    .setLoadTestConfiguration(loadTest)
+                    .build();
 
             final Map<String, Object> configuration = Collections.emptyMap();
 
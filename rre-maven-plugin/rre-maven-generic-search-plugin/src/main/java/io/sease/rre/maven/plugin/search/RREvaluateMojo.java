@@ -20,6 +20,8 @@ import io.sease.rre.core.Engine;
 import io.sease.rre.core.domain.metrics.MetricClassConfigurationManager;
 import io.sease.rre.core.domain.metrics.MetricClassManager;
 import io.sease.rre.core.evaluation.EvaluationConfiguration;
+import io.sease.rre.core.instrumentation.InstrumentationConfiguration;
+import io.sease.rre.core.loadtest.LoadTestConfiguration;
 import io.sease.rre.persistence.PersistenceConfiguration;
 import io.sease.rre.search.api.SearchPlatform;
 import org.apache.maven.plugin.AbstractMojo;
@@ -87,6 +89,12 @@ public class RREvaluateMojo extends AbstractMojo {
     @Parameter(name = "evaluation")
     private EvaluationConfiguration evaluation = EvaluationConfiguration.DEFAULT_CONFIG;
 
+    @Parameter(name = "instrumentation")
+    private InstrumentationConfiguration instrumentation = InstrumentationConfiguration.DEFAULT_CONFIG;
+
+    @Parameter(name = "loadTest")
+    private LoadTestConfiguration loadTest = LoadTestConfiguration.DEFAULT_CONFIG;
+
     @Parameter(name = "searchPlatform", required = true)
     private String searchPlatform;
 
@@ -100,19 +108,22 @@ public class RREvaluateMojo extends AbstractMojo {
                     .setDefaultMaximumGrade(maximumGrade)
                     .setDefaultMissingGrade(missingGrade)
                     .buildMetricClassManager(metrics, parameterizedMetrics);
-            final Engine engine = new Engine(
-                    platform,
-                    configurationsFolder,
-                    corporaFolder,
-                    ratingsFolder,
-                    templatesFolder,
-                    metricClassManager,
-                    fields.split(","),
-                    exclude,
-                    include,
-                    checksumFile,
-                    persistence,
-                    evaluation);
+            final Engine engine = Engine.builder()
+                    .setPlatform(platform)
+                    .setConfigurationsFolder(configurationsFolder)
+                    .setCorporaFolder(corporaFolder)
+                    .setRatingsFolder(ratingsFolder)
+                    .setTemplatesFolder(templatesFolder)
+                    .setMetricClassManager(metricClassManager)
+                    .setFields(fields.split(","))
+                    .setExclude(exclude)
+                    .setInclude(include)
+                    .setChecksumFile(checksumFile)
+                    .setPersistenceConfiguration(persistence)
+                    .setEvaluationConfiguration(evaluation)
+                    .setInstrumentationConfiguration(instrumentation)
+                    .setLoadTestConfiguration(loadTest)
+                    .build();
             engine.evaluate(searchPlatformConfiguration);
         } catch (final IOException exception) {
             throw new MojoExecutionException(exception.getMessage(), exception);
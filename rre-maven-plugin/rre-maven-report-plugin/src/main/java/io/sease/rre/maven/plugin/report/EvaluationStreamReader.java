@@ -0,0 +1,179 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.maven.plugin.report;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import io.sease.rre.maven.plugin.report.domain.EvaluationMetadata;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Reads an evaluation JSON payload one member at a time, so that reports
+ * can be written without holding the whole evaluation in memory. Only the
+ * metrics and name of each member are read - query results are skipped.
+ * <p>
+ * Members are passed to the {@link Visitor} in document order, each one
+ * before its children. The name and metrics of a member are expected to
+ * come before its children, as they do in the JSON written by RRE.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+public class EvaluationStreamReader {
+
+    private static final String[] CHILDREN_FIELDS = { "corpora", "topics", "query-groups", "query-evaluations" };
+    private static final int QUERY_DEPTH = CHILDREN_FIELDS.length;
+
+    /**
+     * Receives the members of an evaluation as they are read.
+     */
+    public interface Visitor {
+        void corpus(String name, JsonNode metrics);
+
+        void topic(String name, JsonNode metrics);
+
+        void queryGroup(String name, JsonNode metrics);
+
+        void query(JsonNode query, JsonNode metrics);
+
+        /**
+         * Called once every member of a corpus has been read.
+         *
+         * @param name the corpus name.
+         */
+        void endCorpus(String name);
+    }
+
+    /**
+     * Read an evaluation, passing each of its members to the visitor.
+     *
+     * @param parser  a parser positioned before the evaluation. The parser
+     *                must have a codec, to read the metrics.
+     * @param visitor the visitor.
+     * @throws IOException if the evaluation cannot be read.
+     */
+    public void read(final JsonParser parser, final Visitor visitor) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new IOException("Evaluation payload is not a JSON object");
+        }
+        member(parser, 0, visitor);
+    }
+
+    private void member(final JsonParser parser, final int depth, final Visitor visitor) throws IOException {
+        JsonNode name = null;
+        JsonNode metrics = null;
+        boolean visited = depth == 0;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String field = parser.getCurrentName();
+            final JsonToken value = parser.nextToken();
+            if (depth == QUERY_DEPTH ? "query".equals(field) : "name".equals(field)) {
+                name = parser.readValueAsTree();
+            } else if ("metrics".equals(field)) {
+                metrics = parser.readValueAsTree();
+            } else if (depth < QUERY_DEPTH && CHILDREN_FIELDS[depth].equals(field) && value == JsonToken.START_ARRAY) {
+                if (!visited) {
+                    visit(depth, name, metrics, visitor);
+                    visited = true;
+                }
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    member(parser, depth + 1, visitor);
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+        if (!visited) {
+            visit(depth, name, metrics, visitor);
+        }
+        if (depth == 1) {
+            visitor.endCorpus(text(name));
+        }
+    }
+
+    private static void visit(final int depth, final JsonNode name, final JsonNode metrics, final Visitor visitor) {
+        switch (depth) {
+            case 1:
+                visitor.corpus(text(name), metrics);
+                break;
+            case 2:
+                visitor.topic(text(name), metrics);
+                break;
+            case 3:
+                visitor.queryGroup(text(name), metrics);
+                break;
+            default:
+                visitor.query(name, metrics);
+        }
+    }
+
+    private static String text(final JsonNode node) {
+        return node == null ? null : node.asText();
+    }
+
+    /**
+     * Read the metadata of an evaluation - the metrics and versions of its
+     * first corpus. Reading stops at the first corpus's metrics.
+     *
+     * @param parser a parser positioned before the evaluation. The parser
+     *               must have a codec, to read the metrics.
+     * @return the metadata, or empty if the evaluation has no corpora.
+     * @throws IOException if the evaluation cannot be read.
+     */
+    public Optional<EvaluationMetadata> metadata(final JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new IOException("Evaluation payload is not a JSON object");
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String field = parser.getCurrentName();
+            if (parser.nextToken() == JsonToken.START_ARRAY && CHILDREN_FIELDS[0].equals(field)) {
+                if (parser.nextToken() != JsonToken.START_OBJECT) {
+                    return Optional.empty();
+                }
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    final String corpusField = parser.getCurrentName();
+                    parser.nextToken();
+                    if ("metrics".equals(corpusField)) {
+                        final JsonNode metrics = parser.readValueAsTree();
+                        return Optional.of(fromMetrics(metrics));
+                    }
+                    parser.skipChildren();
+                }
+                return Optional.of(fromMetrics(null));
+            }
+            parser.skipChildren();
+        }
+        return Optional.empty();
+    }
+
+    private static EvaluationMetadata fromMetrics(final JsonNode metricsNode) {
+        final List<String> metrics = new ArrayList<>();
+        final List<String> versions = new ArrayList<>();
+        if (metricsNode != null) {
+            metricsNode.fieldNames().forEachRemaining(metrics::add);
+            final Iterator<JsonNode> first = metricsNode.elements();
+            if (first.hasNext() && first.next().has("versions")) {
+                metricsNode.elements().next().get("versions").fieldNames().forEachRemaining(versions::add);
+            }
+        }
+        return new EvaluationMetadata(versions, metrics);
+    }
+}
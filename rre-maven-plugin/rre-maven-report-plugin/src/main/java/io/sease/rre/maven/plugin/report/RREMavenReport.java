@@ -16,10 +16,12 @@
  */
 package io.sease.rre.maven.plugin.report;
 
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.sease.rre.maven.plugin.report.domain.EvaluationMetadata;
 import io.sease.rre.maven.plugin.report.formats.OutputFormat;
+import io.sease.rre.maven.plugin.report.formats.StreamingOutputFormat;
 import io.sease.rre.maven.plugin.report.formats.impl.RREOutputFormat;
 import io.sease.rre.maven.plugin.report.formats.impl.SpreadsheetOutputFormat;
 import io.sease.rre.maven.plugin.report.formats.impl.UrlRREOutputFormat;
@@ -31,18 +33,13 @@ import org.apache.maven.reporting.AbstractMavenReport;
 import java.io.File;
 import java.io.IOException;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
-import java.util.Spliterator;
+import java.util.Optional;
 
-import static io.sease.rre.maven.plugin.report.Utility.all;
-import static java.util.Optional.ofNullable;
-import static java.util.Spliterators.spliteratorUnknownSize;
 import static java.util.stream.Collectors.toList;
-import static java.util.stream.StreamSupport.stream;
 
 /**
  * A Maven plugin for creating useful / human-readable reports from the RRE evaluation results.
@@ -61,6 +58,12 @@ public class RREMavenReport extends AbstractMavenReport {
     @Parameter(name="evaluationFile", defaultValue = JsonPersistenceHandler.DEFAULT_OUTPUT_FILE)
     String evaluationFile;
 
+    @Parameter(name = "compression", defaultValue = "gzip")
+    String compression;
+
+    @Parameter(name = "delta", defaultValue = "true")
+    boolean delta;
+
     private Map<String, OutputFormat> formatters = new HashMap<>();
 
     {
@@ -73,52 +76,48 @@ public class RREMavenReport extends AbstractMavenReport {
 
     @Override
     protected void executeReport(final Locale locale) {
-        final JsonNode evaluationData = evaluationAsJson();
-        final JsonNode corpora = evaluationData.get("corpora");
+        final File evaluationFile = evaluationOutputFile();
+        final Optional<EvaluationMetadata> metadata = evaluationMetadata(evaluationFile);
 
-        if (corpora == null || corpora.size() == 0) {
+        if (!metadata.isPresent()) {
             getLog().info("No evaluation data has been generated - no reports will be produced.");
             return;
         }
 
-        formats.parallelStream()
+        final List<OutputFormat> selected = formats.stream()
                 .map(formatters::get)
                 .filter(Objects::nonNull)
-                .forEach(formatter ->
-                        formatter.writeReport(
-                                evaluationData,
-                                evaluationMetadata(evaluationData),
-                                locale,
-                                this));
+                .collect(toList());
+
+        // Only parse the whole evaluation if a format needs it
+        final JsonNode evaluationData = selected.stream().allMatch(StreamingOutputFormat.class::isInstance)
+                ? null
+                : evaluationAsJson(evaluationFile);
+
+        selected.parallelStream()
+                .forEach(formatter -> {
+                    if (formatter instanceof StreamingOutputFormat) {
+                        ((StreamingOutputFormat) formatter).writeReport(evaluationFile, metadata.get(), locale, this);
+                    } else {
+                        formatter.writeReport(evaluationData, metadata.get(), locale, this);
+                    }
+                });
     }
 
     /**
-     * Returns the metadata extracted from the current evaluation.
+     * Returns the metadata extracted from the current evaluation, reading
+     * only as far as the first corpus.
      *
-     * @param evaluationData the evaluation result.
-     * @return the metadata extracted from the current evaluation.
+     * @param evaluationFile the evaluation result file.
+     * @return the metadata extracted from the current evaluation, or empty
+     * if the evaluation has no corpora.
      */
-    private EvaluationMetadata evaluationMetadata(final JsonNode evaluationData) {
-        final List<String> metrics =
-                all(evaluationData, "corpora")
-                        .limit(1)
-                        .map(corpusNode -> corpusNode.get("metrics"))
-                        .flatMap(metricsNode -> stream(spliteratorUnknownSize(metricsNode.fieldNames(), Spliterator.ORDERED), false))
-                        .collect(toList());
-
-        final List<String> versions =
-                all(evaluationData, "corpora")
-                        .limit(1)
-                        .map(corpusNode -> ofNullable(corpusNode.get("metrics"))
-                                                .map(JsonNode::iterator)
-                                                .filter(Iterator::hasNext)
-                                                .map(Iterator::next)
-                                                .map(node -> node.get("versions"))
-                                                .orElseGet(() -> new ObjectMapper().createObjectNode()))
-                        .flatMap(versionsNode -> stream(spliteratorUnknownSize(versionsNode.fieldNames(), Spliterator.ORDERED), false))
-                        .collect(toList());
-
-        return new EvaluationMetadata(versions, metrics);
+    private Optional<EvaluationMetadata> evaluationMetadata(final File evaluationFile) {
+        try (final JsonParser parser = mapper.getFactory().createParser(evaluationFile)) {
+            return new EvaluationStreamReader().metadata(parser);
+        } catch (final IOException exception) {
+            throw new RuntimeException("Unable to load the RRE evaluation JSON payload. Are you sure RRE executed successfully?", exception);
+        }
     }
 
     @Override
@@ -150,14 +149,35 @@ public class RREMavenReport extends AbstractMavenReport {
         return endpoint;
     }
 
+    /**
+     * Returns the content encoding used to compress evaluations sent to
+     * the RRE server: one of gzip, deflate or none.
+     *
+     * @return the content encoding used when sending to the RRE server.
+     */
+    public String getCompression() {
+        return compression;
+    }
+
+    /**
+     * Returns whether only the changes to an evaluation should be sent to
+     * the RRE server, when it already holds an earlier run of it.
+     *
+     * @return true if changes should be sent rather than the whole evaluation.
+     */
+    public boolean isDelta() {
+        return delta;
+    }
+
     /**
      * Returns the evaluation data as a JSON object.
      *
+     * @param evaluationFile the evaluation result file.
      * @return the evaluation data as a JSON object.
      */
-    private JsonNode evaluationAsJson() {
+    private JsonNode evaluationAsJson(final File evaluationFile) {
         try {
-            return mapper.readTree(evaluationOutputFile());
+            return mapper.readTree(evaluationFile);
         } catch (final IOException exception) {
             throw new RuntimeException("Unable to load the RRE evaluation JSON payload. Are you sure RRE executed successfully?", exception);
         }
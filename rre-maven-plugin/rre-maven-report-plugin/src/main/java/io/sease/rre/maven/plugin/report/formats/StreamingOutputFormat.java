@@ -0,0 +1,43 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.maven.plugin.report.formats;
+
+import io.sease.rre.maven.plugin.report.RREMavenReport;
+import io.sease.rre.maven.plugin.report.domain.EvaluationMetadata;
+
+import java.io.File;
+import java.util.Locale;
+
+/**
+ * An output format which can read the evaluation from its file as it
+ * writes the report, rather than from a fully parsed payload. If every
+ * requested format is a streaming format, the evaluation is never fully
+ * parsed.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+public interface StreamingOutputFormat extends OutputFormat {
+    /**
+     * Writes out the report, reading the evaluation from its file.
+     *
+     * @param evaluationFile the RRE evaluation result file.
+     * @param metadata       the RRE evaluation metadata.
+     * @param locale         the current locale.
+     * @param plugin         the owning plugin.
+     */
+    void writeReport(File evaluationFile, EvaluationMetadata metadata, Locale locale, RREMavenReport plugin);
+}
@@ -0,0 +1,318 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.maven.plugin.report.formats.impl;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.sease.rre.persistence.impl.EvaluationDigest;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Sends the changes to an evaluation to RRE Server, rather than the whole
+ * evaluation, when the server already holds an earlier run of it.
+ * <p>
+ * The digests of the evaluation's members are compared with the digests
+ * of the evaluation held by the server, from the top down, and only the
+ * members which differ are sent, as a patch. The server's query digests
+ * are only fetched for the query groups which have changed.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+class DeltaUpload {
+
+    /**
+     * The identifier the server holds evaluations sent in full under.
+     */
+    static final String EVALUATION_ID = "default";
+
+    /**
+     * The depth the server's digests are first fetched to - down to the
+     * query groups, leaving out the queries.
+     */
+    private static final int FIRST_DEPTH = EvaluationDigest.QUERY_DEPTH - 1;
+
+    private final OkHttpClient client;
+    private final String endpoint;
+    private final File evaluationFile;
+    private final RREOutputFormat.Compression compression;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final List<Operation> operations = new ArrayList<>();
+
+    DeltaUpload(final OkHttpClient client, final String endpoint, final File evaluationFile, final RREOutputFormat.Compression compression) {
+        this.client = client;
+        this.endpoint = endpoint;
+        this.evaluationFile = evaluationFile;
+        this.compression = compression;
+    }
+
+    /**
+     * Send the changes to the evaluation.
+     *
+     * @param log the plugin log.
+     * @return {@code true} if the server holds the evaluation, or
+     * {@code false} if the whole evaluation must be sent.
+     * @throws IOException if the evaluation cannot be read, or the server
+     *                     cannot be reached.
+     */
+    boolean send(final Log log) throws IOException {
+        final EvaluationDigest.Node local;
+        try (final JsonParser parser = mapper.getFactory().createParser(evaluationFile)) {
+            local = EvaluationDigest.read(parser);
+        }
+
+        final Optional<EvaluationDigest.Node> remote = fetch(new ArrayList<>(), FIRST_DEPTH);
+        if (!remote.isPresent()) {
+            log.info("RRE Server holds no earlier evaluation to send changes against.");
+            return false;
+        } else if (local.matches(remote.get())) {
+            log.info("Evaluation data is unchanged on RRE Server located at " + endpoint);
+            return true;
+        }
+
+        diff(local, remote.get(), new ArrayList<>(), 0);
+        final long size = operations.stream().mapToLong(Operation::size).sum();
+        if (size > evaluationFile.length() / 2) {
+            log.info("Most of the evaluation has changed - sending the whole evaluation.");
+            return false;
+        }
+
+        final Request request = new Request.Builder()
+                .url(requireNonNull(HttpUrl.parse(endpoint + "/evaluations/" + EVALUATION_ID + "/patch")))
+                .post(new RREOutputFormat.StreamedBody(out -> writePatch(out, remote.get()), compression))
+                .header("Content-Encoding", compression.encoding())
+                .build();
+        try (final Response response = client.newCall(request).execute()) {
+            if (response.code() != 200) {
+                log.info("RRE Server did not apply the evaluation changes (return code " + response.code() + ") - sending the whole evaluation.");
+                return false;
+            }
+            final ResponseBody body = response.body();
+            final JsonNode patched = body == null ? null : mapper.readTree(body.byteStream());
+            if (patched == null || !EvaluationDigest.hex(local.getDigest()).equals(patched.path("digest").asText())) {
+                // Members reordered without changing are not sent, so may be held in a different order
+                log.warn("RRE Server holds a different evaluation after applying the changes - sending the whole evaluation.");
+                return false;
+            }
+        }
+        log.info("Evaluation changes (" + operations.size() + " members, " + size + " bytes) have been correctly sent to RRE Server located at " + endpoint);
+        return true;
+    }
+
+    /**
+     * Compare a local member with the server's, adding an operation for each
+     * difference.
+     */
+    private void diff(final EvaluationDigest.Node local, final EvaluationDigest.Node remote, final List<String> path, final int depth) throws IOException {
+        if (local.matches(remote)) {
+            return;
+        }
+        if (!Arrays.equals(local.getOwn(), remote.getOwn())) {
+            operations.add(Operation.update(path, local));
+        }
+
+        List<EvaluationDigest.Node> remoteChildren = remote.getChildren();
+        if (remoteChildren == null) {
+            remoteChildren = fetch(path, 1)
+                    .orElseThrow(() -> new IOException("RRE Server no longer holds " + EvaluationDigest.pointer(path)))
+                    .getChildren();
+        }
+        final Map<String, EvaluationDigest.Node> byName = new LinkedHashMap<>();
+        remoteChildren.forEach(child -> byName.putIfAbsent(child.getName(), child));
+
+        final List<EvaluationDigest.Node> localChildren = local.getChildren();
+        for (int i = 0; i < localChildren.size(); i++) {
+            final EvaluationDigest.Node child = localChildren.get(i);
+            final List<String> childPath = new ArrayList<>(path);
+            childPath.add(child.getName());
+            final EvaluationDigest.Node remoteChild = byName.remove(child.getName());
+            if (remoteChild == null) {
+                operations.add(Operation.add(childPath, child, i));
+            } else if (depth + 1 == EvaluationDigest.QUERY_DEPTH) {
+                if (!child.matches(remoteChild)) {
+                    operations.add(Operation.replace(childPath, child));
+                }
+            } else {
+                diff(child, remoteChild, childPath, depth + 1);
+            }
+        }
+        for (final EvaluationDigest.Node removed : byName.values()) {
+            final List<String> childPath = new ArrayList<>(path);
+            childPath.add(removed.getName());
+            operations.add(Operation.remove(childPath));
+        }
+    }
+
+    /**
+     * Fetch the server's digests of a member.
+     *
+     * @return the digests, or empty if the server does not hold them.
+     */
+    private Optional<EvaluationDigest.Node> fetch(final List<String> path, final int depth) throws IOException {
+        final HttpUrl url = requireNonNull(HttpUrl.parse(endpoint + "/evaluations/" + EVALUATION_ID + "/digest"))
+                .newBuilder()
+                .addQueryParameter("path", EvaluationDigest.pointer(path))
+                .addQueryParameter("depth", String.valueOf(depth))
+                .build();
+        try (final Response response = client.newCall(new Request.Builder().url(url).build()).execute()) {
+            final ResponseBody body = response.body();
+            if (response.code() == 404) {
+                return Optional.empty();
+            } else if (response.code() != 200 || body == null) {
+                throw new IOException("Unable to read evaluation digests. Return code was: " + response.code());
+            }
+            return Optional.of(node(mapper.readTree(body.byteStream())));
+        }
+    }
+
+    private static EvaluationDigest.Node node(final JsonNode json) {
+        final JsonNode children = json.get("children");
+        List<EvaluationDigest.Node> nodes = null;
+        if (children != null) {
+            nodes = new ArrayList<>(children.size());
+            for (final JsonNode child : children) {
+                nodes.add(node(child));
+            }
+        }
+        return new EvaluationDigest.Node(
+                json.hasNonNull("name") ? json.get("name").asText() : null,
+                json.has("own") ? EvaluationDigest.unhex(json.get("own").asText()) : null,
+                EvaluationDigest.unhex(json.path("digest").asText()),
+                nodes);
+    }
+
+    private void writePatch(final OutputStream out, final EvaluationDigest.Node base) throws IOException {
+        try (final RandomAccessFile file = new RandomAccessFile(evaluationFile, "r");
+             final JsonGenerator generator = mapper.getFactory().createGenerator(out)) {
+            generator.writeStartObject();
+            generator.writeStringField("base", EvaluationDigest.hex(base.getDigest()));
+            generator.writeArrayFieldStart("operations");
+            for (final Operation operation : operations) {
+                generator.writeStartObject();
+                generator.writeStringField("op", operation.op);
+                generator.writeStringField("path", EvaluationDigest.pointer(operation.path));
+                if (operation.index >= 0) {
+                    generator.writeNumberField("index", operation.index);
+                }
+                if (operation.hasValue()) {
+                    generator.writeFieldName("value");
+                    generator.writeRawValue(operation.value(file));
+                }
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+    }
+
+    /**
+     * A single patch operation, with the value to send read from the
+     * evaluation file when the patch is written.
+     */
+    private static class Operation {
+        private final String op;
+        private final List<String> path;
+        private final long[] ranges;
+        private final boolean wrap;
+        private final int index;
+
+        private Operation(final String op, final List<String> path, final long[] ranges, final boolean wrap, final int index) {
+            this.op = op;
+            this.path = path;
+            this.ranges = ranges;
+            this.wrap = wrap;
+            this.index = index;
+        }
+
+        /**
+         * Add a new member, at its position among its siblings.
+         */
+        static Operation add(final List<String> path, final EvaluationDigest.Node member, final int index) {
+            return new Operation("add", path, new long[]{member.getStart(), member.getEnd()}, false, index);
+        }
+
+        /**
+         * Set the whole of a member.
+         */
+        static Operation replace(final List<String> path, final EvaluationDigest.Node member) {
+            return new Operation("replace", path, new long[]{member.getStart(), member.getEnd()}, false, -1);
+        }
+
+        /**
+         * Set a member's own fields, leaving its children.
+         */
+        static Operation update(final List<String> path, final EvaluationDigest.Node member) {
+            return new Operation("update", path, member.getOwnFields(), true, -1);
+        }
+
+        static Operation remove(final List<String> path) {
+            return new Operation("remove", path, new long[0], false, -1);
+        }
+
+        boolean hasValue() {
+            return !"remove".equals(op);
+        }
+
+        long size() {
+            long size = 0;
+            for (int i = 0; i < ranges.length; i += 2) {
+                size += ranges[i + 1] - ranges[i];
+            }
+            return size;
+        }
+
+        String value(final RandomAccessFile file) throws IOException {
+            final StringBuilder value = new StringBuilder();
+            if (wrap) {
+                value.append('{');
+            }
+            for (int i = 0; i < ranges.length; i += 2) {
+                if (i > 0) {
+                    value.append(',');
+                }
+                final byte[] bytes = new byte[(int) (ranges[i + 1] - ranges[i])];
+                file.seek(ranges[i]);
+                file.readFully(bytes);
+                value.append(new String(bytes, StandardCharsets.UTF_8));
+            }
+            if (wrap) {
+                value.append('}');
+            }
+            return value.toString();
+        }
+    }
+}
@@ -20,31 +20,70 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.sease.rre.maven.plugin.report.RREMavenReport;
 import io.sease.rre.maven.plugin.report.domain.EvaluationMetadata;
-import io.sease.rre.maven.plugin.report.formats.OutputFormat;
+import io.sease.rre.maven.plugin.report.formats.StreamingOutputFormat;
 import okhttp3.*;
+import okio.BufferedSink;
 
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
 import java.util.Locale;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
 
 import static java.util.Objects.requireNonNull;
 
 /**
  * OutputFormat implementor for sending evaluation results to a running RRE Server instance.
  * Clearly, this assumes you're using an RRE Server somewhere.
+ * <p>
+ * The evaluation is streamed straight from the evaluation file, with
+ * chunked transfer, and compressed as configured by the plugin's
+ * {@code compression} parameter. If the server already holds an earlier
+ * run of the evaluation, and the plugin's {@code delta} parameter is set,
+ * only the changes are sent - see {@link DeltaUpload}.
  *
  * @author agazzarini
  * @since 1.0
  */
-public class RREOutputFormat implements OutputFormat {
+public class RREOutputFormat implements StreamingOutputFormat {
+
+    private static final MediaType JSON = MediaType.parse("application/json");
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
     @Override
     public void writeReport(final JsonNode data, final EvaluationMetadata metadata, final Locale locale, final RREMavenReport plugin) {
+        send(out -> mapper.writeValue(out, data), plugin);
+    }
+
+    @Override
+    public void writeReport(final File evaluationFile, final EvaluationMetadata metadata, final Locale locale, final RREMavenReport plugin) {
+        if (plugin.isDelta()) {
+            try {
+                if (new DeltaUpload(new OkHttpClient(), plugin.getEndpoint(), evaluationFile, Compression.of(plugin.getCompression())).send(plugin.getLog())) {
+                    return;
+                }
+            } catch (final Exception exception) {
+                plugin.getLog().warn("RRE: Unable to send the evaluation changes to RRE Server - sending the whole evaluation. " + exception.getMessage());
+            }
+        }
+        send(out -> Files.copy(evaluationFile.toPath(), out), plugin);
+    }
+
+    private void send(final Payload payload, final RREMavenReport plugin) {
         try {
-            final ObjectMapper serializer = new ObjectMapper();
-            Request request = new Request.Builder()
+            final Compression compression = Compression.of(plugin.getCompression());
+            final Request.Builder builder = new Request.Builder()
                     .url(requireNonNull(HttpUrl.parse(plugin.getEndpoint() + "/evaluation")))
-                    .post(RequestBody.create(MediaType.parse("application/json"), serializer.writeValueAsString(data)))
-                    .build();
+                    .post(new StreamedBody(payload, compression));
+            if (compression != Compression.NONE) {
+                builder.header("Content-Encoding", compression.encoding());
+            }
 
-            try (final Response response = new OkHttpClient().newCall(request).execute()) {
+            try (final Response response = new OkHttpClient().newCall(builder.build()).execute()) {
                 if (response.code() != 200) {
                     plugin.getLog().error("Exception while communicating with RREServer. Return code was: " + response.code());
                 } else {
@@ -55,4 +94,97 @@ public class RREOutputFormat implements OutputFormat {
             plugin.getLog().error("RRE: Unable to connect to RRE Server. See below for further details.", exception);
         }
     }
+
+    /**
+     * Writes the evaluation JSON to the request.
+     */
+    @FunctionalInterface
+    interface Payload {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    /**
+     * The content encodings which may be used to compress the evaluation.
+     */
+    enum Compression {
+        NONE("identity"),
+        GZIP("gzip"),
+        DEFLATE("deflate");
+
+        private final String encoding;
+
+        Compression(final String encoding) {
+            this.encoding = encoding;
+        }
+
+        String encoding() {
+            return encoding;
+        }
+
+        OutputStream wrap(final OutputStream out) throws IOException {
+            switch (this) {
+                case GZIP:
+                    return new GZIPOutputStream(out, 64 * 1024);
+                case DEFLATE:
+                    return new DeflaterOutputStream(out);
+                default:
+                    return out;
+            }
+        }
+
+        static Compression of(final String name) {
+            if (name == null || name.isEmpty()) {
+                return NONE;
+            }
+            return valueOf(name.toUpperCase(Locale.ROOT));
+        }
+    }
+
+    /**
+     * A request body of unknown length - sent with chunked transfer
+     * encoding - written from the payload as the request is sent.
+     */
+    static class StreamedBody extends RequestBody {
+        private final Payload payload;
+        private final Compression compression;
+
+        StreamedBody(final Payload payload, final Compression compression) {
+            this.payload = payload;
+            this.compression = compression;
+        }
+
+        @Override
+        public MediaType contentType() {
+            return JSON;
+        }
+
+        @Override
+        public long contentLength() {
+            return -1;
+        }
+
+        @Override
+        public void writeTo(final BufferedSink sink) throws IOException {
+            final OutputStream out = compression.wrap(new NonClosingOutputStream(sink.outputStream()));
+            payload.writeTo(out);
+            // Finish the compressed stream, leaving the sink to OkHttp
+            out.close();
+        }
+    }
+
+    private static class NonClosingOutputStream extends FilterOutputStream {
+        NonClosingOutputStream(final OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
 }
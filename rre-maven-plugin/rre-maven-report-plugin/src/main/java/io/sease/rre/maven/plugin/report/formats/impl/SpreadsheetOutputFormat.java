@@ -16,62 +16,73 @@
  */
 package io.sease.rre.maven.plugin.report.formats.impl;
 
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.sease.rre.maven.plugin.report.EvaluationStreamReader;
 import io.sease.rre.maven.plugin.report.RREMavenReport;
 import io.sease.rre.maven.plugin.report.domain.EvaluationMetadata;
-import io.sease.rre.maven.plugin.report.formats.OutputFormat;
+import io.sease.rre.maven.plugin.report.formats.StreamingOutputFormat;
 import one.util.streamex.DoubleStreamEx;
 import org.apache.poi.ss.usermodel.*;
 import org.apache.poi.ss.util.CellRangeAddress;
-import org.apache.poi.xssf.usermodel.*;
+import org.apache.poi.ss.util.SheetUtil;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.util.*;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Locale;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.StreamSupport;
 
-import static io.sease.rre.maven.plugin.report.Utility.all;
 import static io.sease.rre.maven.plugin.report.Utility.pretty;
 import static java.util.Arrays.stream;
-import static java.util.Optional.ofNullable;
 
 /**
  * RRE Report : Excel output format.
+ * <p>
+ * The workbook is streamed: the evaluation is read one member at a time,
+ * and only the most recent {@link #ROW_ACCESS_WINDOW} rows of each sheet
+ * are held in memory, the rest being flushed to a temporary file. Cell
+ * styles are created once per workbook, and column widths are measured as
+ * rows are written, rather than by tracking every flushed cell.
  *
  * @author agazzarini
  * @since 1.0
  */
-public class SpreadsheetOutputFormat implements OutputFormat {
-    private void topHeader(final XSSFSheet sheet, EvaluationMetadata metadata) {
-        final XSSFRow header = sheet.createRow(0);
+public class SpreadsheetOutputFormat implements StreamingOutputFormat {
 
-        final CellStyle bold = sheet.getWorkbook().createCellStyle();
-        final Font font = sheet.getWorkbook().createFont();
-        font.setBold(true);
-        bold.setFont(font);
+    /**
+     * The number of rows held in memory for each sheet.
+     */
+    static final int ROW_ACCESS_WINDOW = 100;
 
-        final CellStyle boldAndCentered = sheet.getWorkbook().createCellStyle();
-        boldAndCentered.setFont(font);
-        boldAndCentered.setAlignment(HorizontalAlignment.CENTER);
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private void topHeader(final Sheet sheet, final EvaluationMetadata metadata, final Styles styles) {
+        final Row header = sheet.createRow(0);
 
         final Cell topicHeaderCell = header.createCell(0, CellType.STRING);
         topicHeaderCell.setCellValue("Topic");
-        topicHeaderCell.setCellStyle(bold);
+        topicHeaderCell.setCellStyle(styles.bold);
 
         final Cell qgHeaderCell = header.createCell(1, CellType.STRING);
         qgHeaderCell.setCellValue("Query Group");
-        qgHeaderCell.setCellStyle(bold);
+        qgHeaderCell.setCellStyle(styles.bold);
 
         final Cell qHeaderCell = header.createCell(2, CellType.STRING);
         qHeaderCell.setCellValue("Query");
-        qHeaderCell.setCellStyle(bold);
+        qHeaderCell.setCellStyle(styles.bold);
 
         final Cell mHeaderCell = header.createCell(3, CellType.STRING);
         mHeaderCell.setCellValue("Metric");
-        mHeaderCell.setCellStyle(bold);
+        mHeaderCell.setCellStyle(styles.bold);
 
         try {
             sheet.addMergedRegion(
@@ -83,15 +94,8 @@ public class SpreadsheetOutputFormat implements OutputFormat {
         } catch (final Exception ignore) {}
     }
 
-    private void metricsHeader(final XSSFSheet sheet, final EvaluationMetadata metadata) {
-        final XSSFRow header = sheet.createRow(1);
-
-        final CellStyle bold = sheet.getWorkbook().createCellStyle();
-        final XSSFFont font = sheet.getWorkbook().createFont();
-        font.setBold(true);
-        bold.setFont(font);
-        bold.setAlignment(HorizontalAlignment.CENTER);
-        font.getCTFont().addNewB();
+    private void metricsHeader(final Sheet sheet, final EvaluationMetadata metadata, final Styles styles) {
+        final Row header = sheet.createRow(1);
 
         final AtomicInteger counter = new AtomicInteger(0);
         metadata.metrics
@@ -99,7 +103,7 @@ public class SpreadsheetOutputFormat implements OutputFormat {
                     final int columnIndex = 3 + (counter.getAndIncrement() * ((metadata.howManyVersions() * 2) - 1));
                     final Cell qgHeaderCell = header.createCell(columnIndex, CellType.STRING);
                     qgHeaderCell.setCellValue(name);
-                    qgHeaderCell.setCellStyle(bold);
+                    qgHeaderCell.setCellStyle(styles.boldAndCentered);
                    try {
                         sheet.addMergedRegion(
                                 new CellRangeAddress(
@@ -112,15 +116,8 @@ public class SpreadsheetOutputFormat implements OutputFormat {
                 });
     }
 
-    private void versionsHeader(final XSSFSheet sheet, final EvaluationMetadata metadata) {
-        final XSSFRow header = sheet.createRow(2);
-
-        final CellStyle bold = sheet.getWorkbook().createCellStyle();
-        final XSSFFont font = sheet.getWorkbook().createFont();
-        font.setBold(true);
-        bold.setFont(font);
-        bold.setAlignment(HorizontalAlignment.CENTER);
-        font.getCTFont().addNewB();
+    private void versionsHeader(final Sheet sheet, final EvaluationMetadata metadata, final Styles styles) {
+        final Row header = sheet.createRow(2);
 
         final AtomicInteger versionCounter = new AtomicInteger(3);
         metadata.metrics.forEach(metric -> {
@@ -129,7 +126,7 @@ public class SpreadsheetOutputFormat implements OutputFormat {
                             final int columnIndex = versionCounter.getAndIncrement();
                             final Cell qgHeaderCell = header.createCell(columnIndex, CellType.STRING);
                             qgHeaderCell.setCellValue(name);
-                            qgHeaderCell.setCellStyle(bold);
+                            qgHeaderCell.setCellStyle(styles.boldAndCentered);
                         });
 
             LinkedList<Integer> deltaColumns = new LinkedList<>();
@@ -141,7 +138,7 @@ public class SpreadsheetOutputFormat implements OutputFormat {
                             deltaColumns.add(columnIndex);
                             final Cell qgHeaderCell = header.createCell(columnIndex, CellType.STRING);
                             qgHeaderCell.setCellValue("DELTA");
-                            qgHeaderCell.setCellStyle(bold);
+                            qgHeaderCell.setCellStyle(styles.boldAndCentered);
                         });
                 try {
                     sheet.addMergedRegion(
@@ -157,10 +154,14 @@ public class SpreadsheetOutputFormat implements OutputFormat {
         });
     }
 
-    private void writeMetrics(final JsonNode ownerNode, final XSSFRow row) {
+    private void writeMetrics(final JsonNode metrics, final Row row, final Styles styles) {
+        if (metrics == null) {
+            return;
+        }
+
         AtomicInteger counter = new AtomicInteger();
 
-        ownerNode.get("metrics").fields()
+        metrics.fields()
                 .forEachRemaining(entry -> {
                     entry.getValue().get("versions").fields()
                             .forEachRemaining(vEntry -> {
@@ -180,151 +181,220 @@ public class SpreadsheetOutputFormat implements OutputFormat {
                         final Cell vCell = row.createCell(3 + counter.getAndIncrement(), CellType.NUMERIC);
                         vCell.setCellValue(v);
                         if (v == 0) {
-                            vCell.setCellStyle(yellow);
+                            vCell.setCellStyle(styles.yellow);
                         } else if (v > 0) {
-                            vCell.setCellStyle(green);
+                            vCell.setCellStyle(styles.green);
                         } else {
-                            vCell.setCellStyle(red);
+                            vCell.setCellStyle(styles.red);
                         }
                     });
                 });
 
     }
 
-    private CellStyle green;
-    private CellStyle red;
-    private CellStyle yellow;
-
     @Override
-    public void writeReport(final JsonNode data, EvaluationMetadata metadata, final Locale locale, final RREMavenReport plugin) {
-        final XSSFWorkbook workbook = new XSSFWorkbook();
-        final CellStyle topAlign = workbook.createCellStyle();
-        topAlign.setVerticalAlignment(VerticalAlignment.TOP);
-
-        final Font redFont = workbook.createFont();
-        redFont.setBold(true);
-        redFont.setColor(IndexedColors.RED.getIndex());
-
-        final Font greenFont = workbook.createFont();
-        greenFont.setBold(true);
-        greenFont.setColor(IndexedColors.GREEN.getIndex());
-
-        final Font yFont = workbook.createFont();
-        yFont.setBold(true);
-        yFont.setColor(IndexedColors.ORANGE.getIndex());
-
-        green = workbook.createCellStyle();
-        green.setFont(greenFont);
-
-        red = workbook.createCellStyle();
-        red.setFont(redFont);
-
-        yellow = workbook.createCellStyle();
-        yellow.setFont(yFont);
-
-        all(data, "corpora")
-                .forEach(corpus -> {
-                    final AtomicInteger rowCount = new AtomicInteger(3);
-                    final String name = corpus.get("name").asText();
-                    final XSSFSheet spreadsheet = workbook.createSheet(name);
-
-                    topHeader(spreadsheet, metadata);
-                    metricsHeader(spreadsheet, metadata);
-                    versionsHeader(spreadsheet, metadata);
-
-                    final XSSFRow corpusRow = spreadsheet.createRow(rowCount.getAndIncrement());
-                    // final Cell nCell = corpusRow.createCell(0, CellType.STRING);
-                    //nCell.setCellValue(name);
-
-                    writeMetrics(corpus, corpusRow);
-
-                    all(corpus, "topics")
-                            .forEach(topic -> {
-                                final XSSFRow topicRow = spreadsheet.createRow(rowCount.getAndIncrement());
-                                final Cell topicCell = topicRow.createCell(0, CellType.STRING);
+    public void writeReport(final JsonNode data, final EvaluationMetadata metadata, final Locale locale, final RREMavenReport plugin) {
+        try (final JsonParser parser = data.traverse(mapper)) {
+            write(parser, metadata, plugin);
+        } catch (final IOException exception) {
+            throw new RuntimeException(exception);
+        }
+    }
 
-                                final String topicName = topic.get("name").asText();
-                                topicCell.setCellValue(topicName);
+    @Override
+    public void writeReport(final File evaluationFile, final EvaluationMetadata metadata, final Locale locale, final RREMavenReport plugin) {
+        try (final JsonParser parser = mapper.getFactory().createParser(evaluationFile)) {
+            write(parser, metadata, plugin);
+        } catch (final IOException exception) {
+            throw new RuntimeException(exception);
+        }
+    }
 
-                                writeMetrics(topic, topicRow);
+    private void write(final JsonParser parser, final EvaluationMetadata metadata, final RREMavenReport plugin) throws IOException {
+        final SXSSFWorkbook workbook = new SXSSFWorkbook(ROW_ACCESS_WINDOW);
+        workbook.setCompressTempFiles(true);
+        try {
+            new EvaluationStreamReader().read(parser, new SheetWriter(workbook, metadata));
+
+            plugin.getReportOutputDirectory().mkdirs();
+
+            try (final OutputStream out =
+                         new FileOutputStream(
+                                 new File(plugin.getReportOutputDirectory(), plugin.getOutputName() + ".xlsx"))) {
+                workbook.write(out);
+            }
+        } finally {
+            // Remove the temporary files holding the flushed rows
+            workbook.dispose();
+        }
+    }
 
-                                all(topic, "query-groups")
-                                        .forEach(group -> {
-                                            final XSSFRow groupRow = spreadsheet.createRow(rowCount.getAndIncrement());
-                                            final Cell groupCell = groupRow.createCell(1, CellType.STRING);
-                                            groupCell.setCellValue(group.get("name").asText());
+    private float computeRowHeightInPoints(int fontSizeInPoints, int numLines, Sheet sheet) {
+        float lineHeightInPoints = 1.3f * fontSizeInPoints;
+        float rowHeightInPoints = lineHeightInPoints * numLines;
+        rowHeightInPoints = Math.round(rowHeightInPoints * 4) / 4f;
 
-                                            writeMetrics(group, groupRow);
+        float defaultRowHeightInPoints = sheet.getDefaultRowHeightInPoints();
+        if (rowHeightInPoints < defaultRowHeightInPoints + 1) {
+            rowHeightInPoints = defaultRowHeightInPoints;
+        }
+        return rowHeightInPoints;
+    }
 
-                                            all(group, "query-evaluations")
-                                                    .forEach(qeval -> {
-                                                        final XSSFRow qRow = spreadsheet.createRow(rowCount.getAndIncrement());
-                                                        final Cell qCell = qRow.createCell(2, CellType.STRING);
-                                                        qCell.setCellValue(pretty(qeval.get("query")));
+    /**
+     * The cell styles shared by every sheet in the workbook.
+     */
+    private static class Styles {
+        private final CellStyle bold;
+        private final CellStyle boldAndCentered;
+        private final CellStyle green;
+        private final CellStyle red;
+        private final CellStyle yellow;
+        private final short defaultFontHeight;
+
+        Styles(final Workbook workbook) {
+            final Font boldFont = workbook.createFont();
+            boldFont.setBold(true);
+
+            bold = workbook.createCellStyle();
+            bold.setFont(boldFont);
+
+            boldAndCentered = workbook.createCellStyle();
+            boldAndCentered.setFont(boldFont);
+            boldAndCentered.setAlignment(HorizontalAlignment.CENTER);
+
+            green = colouredStyle(workbook, IndexedColors.GREEN);
+            red = colouredStyle(workbook, IndexedColors.RED);
+            yellow = colouredStyle(workbook, IndexedColors.ORANGE);
+
+            defaultFontHeight = workbook.getFontAt((short) 0).getFontHeightInPoints();
+        }
 
-                                                        writeMetrics(qeval, qRow);
-                                                    });
+        private static CellStyle colouredStyle(final Workbook workbook, final IndexedColors colour) {
+            final Font font = workbook.createFont();
+            font.setBold(true);
+            font.setColor(colour.getIndex());
+            final CellStyle style = workbook.createCellStyle();
+            style.setFont(font);
+            return style;
+        }
+    }
 
-                                        });
-                            });
+    /**
+     * Writes a sheet per corpus, with a row for each member, as the
+     * evaluation is read.
+     */
+    private class SheetWriter implements EvaluationStreamReader.Visitor {
+        private final SXSSFWorkbook workbook;
+        private final EvaluationMetadata metadata;
+        private final Styles styles;
+
+        private final int sizedColumns;
+        private final int defaultCharWidth;
+        private final DataFormatter formatter = new DataFormatter();
+        private final Map<String, Double> cellWidths = new HashMap<>();
+
+        private SXSSFSheet spreadsheet;
+        private int rowCount;
+        private double[] columnWidths;
+
+        SheetWriter(final SXSSFWorkbook workbook, final EvaluationMetadata metadata) {
+            this.workbook = workbook;
+            this.metadata = metadata;
+            this.styles = new Styles(workbook);
+            this.sizedColumns = metadata.howManyVersions() * metadata.howManyMetrics() + 2;
+            this.defaultCharWidth = SheetUtil.getDefaultCharWidth(workbook);
+        }
 
-                    for (int i = 0; i < (metadata.howManyVersions() * metadata.howManyMetrics() + 2); i++) {
-                        spreadsheet.autoSizeColumn(i);
-                    }
+        @Override
+        public void corpus(final String name, final JsonNode metrics) {
+            spreadsheet = workbook.createSheet(name);
+            columnWidths = new double[sizedColumns];
+            rowCount = 3;
+
+            topHeader(spreadsheet, metadata, styles);
+            metricsHeader(spreadsheet, metadata, styles);
+            versionsHeader(spreadsheet, metadata, styles);
+            // The headers hold merged cells, so are measured uncached
+            for (int i = 0; i < rowCount; i++) {
+                measure(spreadsheet.getRow(i), false);
+            }
+
+            final Row corpusRow = spreadsheet.createRow(rowCount++);
+            writeMetrics(metrics, corpusRow, styles);
+            measure(corpusRow, true);
+        }
 
-                    XSSFCellStyle style = workbook.createCellStyle();
-                    style.setWrapText(true);
-                    StreamSupport.stream(Spliterators.spliteratorUnknownSize(spreadsheet.iterator(), Spliterator.ORDERED), false)
-                            .skip(5)
-                            .filter(Objects::nonNull)
-                            .forEach(row -> {
-                                XSSFCell c = (XSSFCell) row.getCell(2);
-                                ofNullable(c).ifPresent(poiCell -> {
-                                    float tallestCell = -1;
-                                    String value = poiCell.getStringCellValue();
-                                    int numLines = 1;
-                                    for (int i = 0; i < value.length(); i++) {
-                                        if (value.charAt(i) == '\n') numLines++;
-                                    }
-                                    float cellHeight = computeRowHeightInPoints(poiCell.getCellStyle().getFont().getFontHeightInPoints(), numLines, spreadsheet);
-                                    if (cellHeight > tallestCell) {
-                                        tallestCell = cellHeight;
-                                    }
-
-                                    float defaultRowHeightInPoints = spreadsheet.getDefaultRowHeightInPoints();
-                                    float rowHeight = tallestCell;
-                                    if (rowHeight < defaultRowHeightInPoints + 1) {
-                                        rowHeight = -1;    // resets to the default
-                                    }
-
-                                    row.setHeightInPoints(rowHeight);
-                                });
+        @Override
+        public void topic(final String name, final JsonNode metrics) {
+            final Row topicRow = spreadsheet.createRow(rowCount++);
+            final Cell topicCell = topicRow.createCell(0, CellType.STRING);
+            topicCell.setCellValue(name);
 
-                            });
-                });
+            writeMetrics(metrics, topicRow, styles);
+            measure(topicRow, true);
+        }
 
+        @Override
+        public void queryGroup(final String name, final JsonNode metrics) {
+            final Row groupRow = spreadsheet.createRow(rowCount++);
+            final Cell groupCell = groupRow.createCell(1, CellType.STRING);
+            groupCell.setCellValue(name);
 
+            writeMetrics(metrics, groupRow, styles);
+            measure(groupRow, true);
+        }
 
-        plugin.getReportOutputDirectory().mkdirs();
+        @Override
+        public void query(final JsonNode query, final JsonNode metrics) {
+            final Row qRow = spreadsheet.createRow(rowCount++);
+            final Cell qCell = qRow.createCell(2, CellType.STRING);
+            final String value = pretty(query);
+            qCell.setCellValue(value);
+
+            writeMetrics(metrics, qRow, styles);
+            measure(qRow, true);
+
+            // Make room for queries spread over several lines
+            int numLines = 1;
+            for (int i = 0; i < value.length(); i++) {
+                if (value.charAt(i) == '\n') numLines++;
+            }
+            final float rowHeight = computeRowHeightInPoints(styles.defaultFontHeight, numLines, spreadsheet);
+            if (rowHeight >= spreadsheet.getDefaultRowHeightInPoints() + 1) {
+                qRow.setHeightInPoints(rowHeight);
+            }
+        }
 
-        try (final OutputStream out =
-                     new FileOutputStream(
-                             new File(plugin.getReportOutputDirectory(), plugin.getOutputName() + ".xlsx"))) {
-            workbook.write(out);
-        } catch (final IOException exception) {
-            throw new RuntimeException(exception);
+        @Override
+        public void endCorpus(final String name) {
+            for (int i = 0; i < sizedColumns; i++) {
+                if (columnWidths[i] > 0) {
+                    // As Sheet.autoSizeColumn(), capped at the maximum column width
+                    spreadsheet.setColumnWidth(i, (int) Math.min(columnWidths[i] * 256, 255 * 256));
+                }
+            }
         }
-    }
 
-    private float computeRowHeightInPoints(int fontSizeInPoints, int numLines, XSSFSheet sheet) {
-        float lineHeightInPoints = 1.3f * fontSizeInPoints;
-        float rowHeightInPoints = lineHeightInPoints * numLines;
-        rowHeightInPoints = Math.round(rowHeightInPoints * 4) / 4f;
+        /**
+         * Widen the sized columns to fit a row's cells. Metric values repeat
+         * heavily, so the width of each formatted value is computed once per
+         * style and cached.
+         */
+        private void measure(final Row row, final boolean cached) {
+            for (final Cell cell : row) {
+                final int column = cell.getColumnIndex();
+                if (column >= sizedColumns) {
+                    continue;
+                }
 
-        float defaultRowHeightInPoints = sheet.getDefaultRowHeightInPoints();
-        if (rowHeightInPoints < defaultRowHeightInPoints + 1) {
-            rowHeightInPoints = defaultRowHeightInPoints;
+                final double width = cached && cell.getCellTypeEnum() == CellType.NUMERIC
+                        ? cellWidths.computeIfAbsent(
+                                cell.getCellStyle().getIndex() + ":" + formatter.formatCellValue(cell),
+                                key -> SheetUtil.getCellWidth(cell, defaultCharWidth, formatter, false))
+                        : SheetUtil.getCellWidth(cell, defaultCharWidth, formatter, false);
+                columnWidths[column] = Math.max(columnWidths[column], width);
+            }
         }
-        return rowHeightInPoints;
     }
 }
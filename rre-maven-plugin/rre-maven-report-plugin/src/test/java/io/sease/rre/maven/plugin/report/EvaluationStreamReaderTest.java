@@ -0,0 +1,188 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.maven.plugin.report;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.sease.rre.maven.plugin.report.domain.EvaluationMetadata;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for the EvaluationStreamReader class.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+public class EvaluationStreamReaderTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final EvaluationStreamReader reader = new EvaluationStreamReader();
+
+    private JsonNode evaluation;
+
+    @Before
+    public void setup() throws Exception {
+        try (final InputStream in = EvaluationStreamReaderTest.class.getResourceAsStream("/evaluation.json")) {
+            evaluation = mapper.readTree(in);
+        }
+    }
+
+    @Test
+    public void read_visitsMembersInDocumentOrder() throws Exception {
+        final RecordingVisitor visitor = read(evaluation);
+
+        assertEquals(Arrays.asList(
+                "corpus corpus.json",
+                "topic topic one",
+                "group group one",
+                "query query a",
+                "query query b",
+                "topic topic two",
+                "group group two",
+                "query query c",
+                "end corpus.json"), visitor.events);
+    }
+
+    @Test
+    public void read_visitsEachCorpusInTurn() throws Exception {
+        final ArrayNode corpora = (ArrayNode) evaluation.get("corpora");
+        final ObjectNode second = corpora.get(0).deepCopy();
+        second.put("name", "second.json");
+        ((ArrayNode) second.get("topics")).remove(0);
+        corpora.add(second);
+
+        final RecordingVisitor visitor = read(evaluation);
+
+        assertEquals(Arrays.asList(
+                "end corpus.json",
+                "corpus second.json",
+                "topic topic two",
+                "group group two",
+                "query query c",
+                "end second.json"), visitor.events.subList(8, visitor.events.size()));
+    }
+
+    @Test
+    public void read_passesMetricsOfEachMember() throws Exception {
+        final RecordingVisitor visitor = read(evaluation);
+
+        final JsonNode corpus = evaluation.at("/corpora/0");
+        final JsonNode query = corpus.at("/topics/0/query-groups/0/query-evaluations/1");
+        assertEquals(corpus.get("metrics"), visitor.metrics.get(0));
+        assertEquals(query.get("metrics"), visitor.metrics.get(4));
+        assertEquals(0.4375, visitor.metrics.get(4).at("/P@10/versions/v1.1/value").asDouble(), 0);
+    }
+
+    @Test
+    public void read_passesMissingMetricsAsNull() throws Exception {
+        ((ObjectNode) evaluation.at("/corpora/0/topics/0")).remove("metrics");
+
+        final RecordingVisitor visitor = read(evaluation);
+
+        assertNull(visitor.metrics.get(1));
+    }
+
+    @Test(expected = IOException.class)
+    public void read_rejectsPayloadWhichIsNotAnObject() throws Exception {
+        read(mapper.createArrayNode());
+    }
+
+    @Test
+    public void metadata_readsFirstCorpusMetricsAndVersions() throws Exception {
+        try (final JsonParser parser = evaluation.traverse(mapper)) {
+            final Optional<EvaluationMetadata> metadata = reader.metadata(parser);
+
+            assertTrue(metadata.isPresent());
+            assertEquals(Arrays.asList("P@10", "NDCG@10"), metadata.get().metrics);
+            assertEquals(Arrays.asList("v1.0", "v1.1"), metadata.get().versions);
+        }
+    }
+
+    @Test
+    public void metadata_isEmptyWithoutCorpora() throws Exception {
+        ((ObjectNode) evaluation).putArray("corpora");
+        try (final JsonParser parser = evaluation.traverse(mapper)) {
+            assertFalse(reader.metadata(parser).isPresent());
+        }
+
+        ((ObjectNode) evaluation).remove("corpora");
+        try (final JsonParser parser = evaluation.traverse(mapper)) {
+            assertFalse(reader.metadata(parser).isPresent());
+        }
+    }
+
+    private RecordingVisitor read(final JsonNode payload) throws IOException {
+        final RecordingVisitor visitor = new RecordingVisitor();
+        try (final JsonParser parser = mapper.getFactory().createParser(mapper.writeValueAsBytes(payload))) {
+            reader.read(parser, visitor);
+        }
+        return visitor;
+    }
+
+    /**
+     * Records the members visited, and their metrics.
+     */
+    private static class RecordingVisitor implements EvaluationStreamReader.Visitor {
+        private final List<String> events = new ArrayList<>();
+        private final List<JsonNode> metrics = new ArrayList<>();
+
+        @Override
+        public void corpus(final String name, final JsonNode metrics) {
+            visit("corpus " + name, metrics);
+        }
+
+        @Override
+        public void topic(final String name, final JsonNode metrics) {
+            visit("topic " + name, metrics);
+        }
+
+        @Override
+        public void queryGroup(final String name, final JsonNode metrics) {
+            visit("group " + name, metrics);
+        }
+
+        @Override
+        public void query(final JsonNode query, final JsonNode metrics) {
+            visit("query " + query.asText(), metrics);
+        }
+
+        @Override
+        public void endCorpus(final String name) {
+            events.add("end " + name);
+        }
+
+        private void visit(final String event, final JsonNode metrics) {
+            events.add(event);
+            this.metrics.add(metrics);
+        }
+    }
+}
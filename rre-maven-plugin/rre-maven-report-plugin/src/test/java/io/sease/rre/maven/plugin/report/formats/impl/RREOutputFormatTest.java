@@ -0,0 +1,144 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.maven.plugin.report.formats.impl;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpServer;
+import io.sease.rre.maven.plugin.report.RREMavenReport;
+import io.sease.rre.maven.plugin.report.domain.EvaluationMetadata;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Unit tests for the RREOutputFormat class, capturing the evaluation it
+ * uploads to a local HTTP server.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+public class RREOutputFormatTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final EvaluationMetadata metadata = new EvaluationMetadata(Arrays.asList("v1.0", "v1.1"), Arrays.asList("P@10", "NDCG@10"));
+
+    private JsonNode evaluation;
+    private HttpServer server;
+    private Headers headers;
+    private byte[] body;
+
+    @Before
+    public void setup() throws Exception {
+        try (final InputStream in = RREOutputFormatTest.class.getResourceAsStream("/evaluation.json")) {
+            evaluation = mapper.readTree(in);
+        }
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/evaluation", exchange -> {
+            headers = exchange.getRequestHeaders();
+            body = read(exchange.getRequestBody());
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void writeReport_sendsEvaluationFileChunkedAndCompressed() throws Exception {
+        final File file = tempFolder.newFile("evaluation.json");
+        mapper.writeValue(file, evaluation);
+
+        new RREOutputFormat().writeReport(file, metadata, Locale.ROOT, plugin("gzip"));
+
+        assertEquals("chunked", headers.getFirst("Transfer-Encoding"));
+        assertNull(headers.getFirst("Content-Length"));
+        assertEquals("gzip", headers.getFirst("Content-Encoding"));
+        assertEquals(evaluation, mapper.readTree(read(new GZIPInputStream(new ByteArrayInputStream(body)))));
+    }
+
+    @Test
+    public void writeReport_sendsEvaluationDataChunkedAndCompressed() throws Exception {
+        new RREOutputFormat().writeReport(evaluation, metadata, Locale.ROOT, plugin("gzip"));
+
+        assertEquals("chunked", headers.getFirst("Transfer-Encoding"));
+        assertEquals("gzip", headers.getFirst("Content-Encoding"));
+        assertEquals(evaluation, mapper.readTree(read(new GZIPInputStream(new ByteArrayInputStream(body)))));
+    }
+
+    @Test
+    public void writeReport_sendsUncompressedEvaluationWithoutEncoding() throws Exception {
+        new RREOutputFormat().writeReport(evaluation, metadata, Locale.ROOT, plugin(null));
+
+        assertEquals("chunked", headers.getFirst("Transfer-Encoding"));
+        assertNull(headers.getFirst("Content-Encoding"));
+        assertEquals(evaluation, mapper.readTree(body));
+    }
+
+    private RREMavenReport plugin(final String compression) {
+        final String endpoint = "http://localhost:" + server.getAddress().getPort();
+        return new RREMavenReport() {
+            @Override
+            public String getEndpoint() {
+                return endpoint;
+            }
+
+            @Override
+            public String getCompression() {
+                return compression;
+            }
+
+            @Override
+            public boolean isDelta() {
+                return false;
+            }
+        };
+    }
+
+    private static byte[] read(final InputStream in) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+}
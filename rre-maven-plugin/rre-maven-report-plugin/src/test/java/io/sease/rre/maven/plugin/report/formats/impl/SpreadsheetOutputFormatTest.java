@@ -0,0 +1,199 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.maven.plugin.report.formats.impl;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.sease.rre.maven.plugin.report.RREMavenReport;
+import io.sease.rre.maven.plugin.report.domain.EvaluationMetadata;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for the SpreadsheetOutputFormat class, reading back the
+ * workbook it streams out.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+public class SpreadsheetOutputFormatTest {
+
+    private static final int FIRST_MEMBER_ROW = 3;
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final EvaluationMetadata metadata = new EvaluationMetadata(Arrays.asList("v1.0", "v1.1"), Arrays.asList("P@10", "NDCG@10"));
+
+    private JsonNode evaluation;
+    private RREMavenReport plugin;
+
+    @Before
+    public void setup() throws Exception {
+        try (final InputStream in = SpreadsheetOutputFormatTest.class.getResourceAsStream("/evaluation.json")) {
+            evaluation = mapper.readTree(in);
+        }
+        plugin = new RREMavenReport() {
+            @Override
+            public String getOutputName() {
+                return "rre-report";
+            }
+        };
+        plugin.setReportOutputDirectory(tempFolder.newFolder());
+    }
+
+    @Test
+    public void writeReport_writesHeaderRows() throws Exception {
+        try (final XSSFWorkbook workbook = write(evaluation)) {
+            assertEquals(1, workbook.getNumberOfSheets());
+            final Sheet sheet = workbook.getSheet("corpus.json");
+
+            assertEquals(Arrays.asList("Topic", "Query Group", "Query", "Metric"), strings(sheet.getRow(0)));
+            assertEquals(Arrays.asList("", "", "", "P@10", "", "", "NDCG@10"), strings(sheet.getRow(1)));
+            assertEquals(Arrays.asList("", "", "", "v1.0", "v1.1", "DELTA", "v1.0", "v1.1", "DELTA"), strings(sheet.getRow(2)));
+        }
+    }
+
+    @Test
+    public void writeReport_mergesHeaderCells() throws Exception {
+        try (final XSSFWorkbook workbook = write(evaluation)) {
+            final Sheet sheet = workbook.getSheet("corpus.json");
+
+            final List<String> merged = new ArrayList<>();
+            for (final CellRangeAddress region : sheet.getMergedRegions()) {
+                merged.add(region.formatAsString());
+            }
+            // A single DELTA column is not merged
+            assertEquals(Arrays.asList("D1:H1", "D2:F2", "G2:I2"), merged);
+        }
+    }
+
+    @Test
+    public void writeReport_writesRowForEachMember() throws Exception {
+        try (final XSSFWorkbook workbook = write(evaluation)) {
+            final Sheet sheet = workbook.getSheet("corpus.json");
+
+            assertEquals(FIRST_MEMBER_ROW + 8, sheet.getPhysicalNumberOfRows());
+            assertEquals("topic one", sheet.getRow(4).getCell(0).getStringCellValue());
+            assertEquals("group one", sheet.getRow(5).getCell(1).getStringCellValue());
+            assertEquals(Arrays.asList("query a", "query b", "query c"), queries(sheet));
+            assertEquals("topic two", sheet.getRow(8).getCell(0).getStringCellValue());
+            assertEquals("group two", sheet.getRow(9).getCell(1).getStringCellValue());
+        }
+    }
+
+    @Test
+    public void writeReport_writesMetricsAndDeltas() throws Exception {
+        try (final XSSFWorkbook workbook = write(evaluation)) {
+            final Row corpus = workbook.getSheet("corpus.json").getRow(FIRST_MEMBER_ROW);
+            assertNull(corpus.getCell(0));
+            assertEquals(0.3125, corpus.getCell(3).getNumericCellValue(), 0);
+            assertEquals(0.375, corpus.getCell(4).getNumericCellValue(), 0);
+            assertEquals(0.0625, corpus.getCell(5).getNumericCellValue(), 0);
+            assertEquals(0.4375, corpus.getCell(6).getNumericCellValue(), 0);
+            assertEquals(0.5, corpus.getCell(7).getNumericCellValue(), 0);
+            assertEquals(0.0625, corpus.getCell(8).getNumericCellValue(), 0);
+
+            final Row group = workbook.getSheet("corpus.json").getRow(5);
+            assertEquals(-0.875, group.getCell(8).getNumericCellValue(), 0);
+        }
+    }
+
+    @Test
+    public void writeReport_keepsRowsFlushedFromMemory() throws Exception {
+        final ArrayNode queries = (ArrayNode) evaluation.at("/corpora/0/topics/0/query-groups/0/query-evaluations");
+        final JsonNode template = queries.get(0);
+        queries.removeAll();
+        final int count = SpreadsheetOutputFormat.ROW_ACCESS_WINDOW * 2 + 10;
+        for (int i = 0; i < count; i++) {
+            queries.add(((ObjectNode) template.deepCopy()).put("query", "query " + i));
+        }
+
+        try (final XSSFWorkbook workbook = write(evaluation)) {
+            final List<String> written = queries(workbook.getSheet("corpus.json"));
+
+            assertEquals(count + 1, written.size());
+            assertEquals("query 0", written.get(0));
+            assertEquals("query " + (count - 1), written.get(count - 1));
+            assertEquals("query c", written.get(count));
+        }
+    }
+
+    @Test
+    public void writeReport_readsEvaluationFile() throws Exception {
+        final File file = tempFolder.newFile("evaluation.json");
+        mapper.writeValue(file, evaluation);
+
+        new SpreadsheetOutputFormat().writeReport(file, metadata, Locale.ROOT, plugin);
+
+        try (final XSSFWorkbook workbook = read()) {
+            assertEquals(Arrays.asList("query a", "query b", "query c"), queries(workbook.getSheet("corpus.json")));
+        }
+    }
+
+    private XSSFWorkbook write(final JsonNode data) throws Exception {
+        new SpreadsheetOutputFormat().writeReport(data, metadata, Locale.ROOT, plugin);
+        return read();
+    }
+
+    private XSSFWorkbook read() throws Exception {
+        final File report = new File(plugin.getReportOutputDirectory(), "rre-report.xlsx");
+        assertTrue(report.isFile());
+        return new XSSFWorkbook(report);
+    }
+
+    /**
+     * @return the text of the row's cells, up to the last cell.
+     */
+    private static List<String> strings(final Row row) {
+        final List<String> strings = new ArrayList<>();
+        for (int i = 0; i < row.getLastCellNum(); i++) {
+            strings.add(row.getCell(i) == null ? "" : row.getCell(i).getStringCellValue());
+        }
+        return strings;
+    }
+
+    private static List<String> queries(final Sheet sheet) {
+        final List<String> queries = new ArrayList<>();
+        for (int i = FIRST_MEMBER_ROW; i <= sheet.getLastRowNum(); i++) {
+            final Row row = sheet.getRow(i);
+            if (row.getCell(2) != null) {
+                queries.add(row.getCell(2).getStringCellValue());
+            }
+        }
+        return queries;
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.search.api;
+
+/**
+ * A single query within a batch of queries sent to a search platform.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+public class BatchQuery {
+    private final String query;
+    private final CompiledQueryTemplate template;
+    private final String[] values;
+    private final String[] fields;
+    private final int maxRows;
+
+    /**
+     * Builds a new batch query.
+     *
+     * @param query   the query, whose semantic may change between platforms.
+     * @param fields  the fields to return.
+     * @param maxRows the maximum number of rows that will be returned.
+     */
+    public BatchQuery(final String query, final String[] fields, final int maxRows) {
+        this.query = query;
+        this.template = null;
+        this.values = null;
+        this.fields = fields;
+        this.maxRows = maxRows;
+    }
+
+    /**
+     * Builds a new batch query from a query template.
+     *
+     * @param template the compiled query template.
+     * @param values   the placeholder values, in the template's placeholder order.
+     * @param fields   the fields to return.
+     * @param maxRows  the maximum number of rows that will be returned.
+     */
+    public BatchQuery(final CompiledQueryTemplate template, final String[] values, final String[] fields, final int maxRows) {
+        this.query = null;
+        this.template = template;
+        this.values = values;
+        this.fields = fields;
+        this.maxRows = maxRows;
+    }
+
+    /**
+     * @return the query, rendered from its template if necessary.
+     */
+    public String getQuery() {
+        return template == null ? query : template.render(values);
+    }
+
+    /**
+     * @return the query template, or {@code null} if the query was not
+     * built from a template.
+     */
+    public CompiledQueryTemplate getTemplate() {
+        return template;
+    }
+
+    /**
+     * @return the placeholder values for the query template, or
+     * {@code null} if the query was not built from a template.
+     */
+    public String[] getValues() {
+        return values;
+    }
+
+    /**
+     * @return the fields to return.
+     */
+    public String[] getFields() {
+        return fields;
+    }
+
+    /**
+     * @return the maximum number of rows that will be returned.
+     */
+    public int getMaxRows() {
+        return maxRows;
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.search.api;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * A query template compiled for a given list of placeholder names: the
+ * template content split into the literal text between placeholders, and
+ * the placeholder to insert after each literal segment.
+ * <p>
+ * Rendering a query is a single pass over the segments into a buffer
+ * re-used by the calling thread. Search platforms with their own templating
+ * may instead use {@link #toSource(IntFunction)} to convert the template
+ * into their own syntax, and send only the placeholder values with each
+ * query.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+public class CompiledQueryTemplate {
+
+    private static final int MAX_BUFFER_SIZE = 64 * 1024;
+    private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(StringBuilder::new);
+
+    private final String id;
+    private final List<String> placeholderNames;
+    private final String[] segments;
+    private final int[] slots;
+    private final int literalLength;
+
+    /**
+     * Compile a template. Where placeholder names overlap, the first
+     * matching name in the list is used.
+     *
+     * @param content          the template content.
+     * @param placeholderNames the names of the placeholders to replace.
+     */
+    public CompiledQueryTemplate(final String content, final List<String> placeholderNames) {
+        this.placeholderNames = Collections.unmodifiableList(new ArrayList<>(placeholderNames));
+        this.id = IndexChecksums.checksum(content + "\n" + String.join("\n", placeholderNames));
+
+        final List<String> segmentList = new ArrayList<>();
+        final List<Integer> slotList = new ArrayList<>();
+
+        int segmentStart = 0;
+        int i = 0;
+        while (i < content.length()) {
+            final int slot = matchAt(content, i, placeholderNames);
+            if (slot >= 0) {
+                segmentList.add(content.substring(segmentStart, i));
+                slotList.add(slot);
+                i += placeholderNames.get(slot).length();
+                segmentStart = i;
+            } else {
+                i++;
+            }
+        }
+        segmentList.add(content.substring(segmentStart));
+
+        this.segments = segmentList.toArray(new String[0]);
+        this.slots = slotList.stream().mapToInt(Integer::intValue).toArray();
+        this.literalLength = segmentList.stream().mapToInt(String::length).sum();
+    }
+
+    private static int matchAt(final String content, final int offset, final List<String> names) {
+        for (int n = 0; n < names.size(); n++) {
+            final String name = names.get(n);
+            if (!name.isEmpty() && content.startsWith(name, offset)) {
+                return n;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return an identifier for the template, derived from its content and
+     * placeholder names.
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * @return the names of the placeholders, in the order their values are
+     * expected by {@link #render(String[])}.
+     */
+    public List<String> getPlaceholderNames() {
+        return placeholderNames;
+    }
+
+    /**
+     * Render the template.
+     *
+     * @param values the placeholder values, in placeholder name order.
+     * @return the rendered query.
+     */
+    public String render(final String[] values) {
+        if (slots.length == 0) {
+            return segments[0];
+        }
+
+        final StringBuilder buffer = BUFFER.get();
+        buffer.setLength(0);
+        buffer.ensureCapacity(literalLength + 16 * slots.length);
+        for (int i = 0; i < slots.length; i++) {
+            buffer.append(segments[i]).append(values[slots[i]]);
+        }
+        buffer.append(segments[slots.length]);
+
+        final String rendered = buffer.toString();
+        if (buffer.capacity() > MAX_BUFFER_SIZE) {
+            // Don't hold on to the buffer for an unusually large query
+            BUFFER.remove();
+        }
+        return rendered;
+    }
+
+    /**
+     * Convert the template to another syntax, by replacing each placeholder
+     * with a reference built by the given function.
+     *
+     * @param placeholderReference builds the reference for the placeholder
+     *                             at the given index in the placeholder names.
+     * @return the converted template.
+     */
+    public String toSource(final IntFunction<String> placeholderReference) {
+        final StringBuilder source = new StringBuilder(literalLength + 16 * slots.length);
+        for (int i = 0; i < slots.length; i++) {
+            source.append(segments[i]).append(placeholderReference.apply(slots[i]));
+        }
+        return source.append(segments[slots.length]).toString();
+    }
+}
@@ -0,0 +1,267 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.search.api;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * A corpus to be loaded into a search platform. The corpus may be a plain
+ * file, a gzipped file, or a zip archive holding one or more files. Only the
+ * JSON files in an archive - plain or gzipped - are part of the corpus.
+ * <p>
+ * Each file in the corpus is exposed as an {@link Entry}, whose content can
+ * be streamed directly from the archive. Where a platform needs a real
+ * file, the entry is extracted once into a cache folder keyed by the
+ * checksum of the archive, and re-used by subsequent runs.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+public class CorpusSource {
+
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final String CACHE_FOLDER = "rre-corpora";
+
+    private final File file;
+    private final List<Entry> entries;
+    private String checksum;
+
+    private CorpusSource(final File file) throws IOException {
+        this.file = file;
+        if (isZip(file)) {
+            this.entries = zipEntries();
+        } else if (file.getName().endsWith(".gz")) {
+            this.entries = Collections.singletonList(new GzipEntry());
+        } else {
+            this.entries = Collections.singletonList(new FileEntry());
+        }
+    }
+
+    /**
+     * Build a corpus source for a file.
+     *
+     * @param file the corpus file - either a plain, gzipped or zip file.
+     * @return the corpus source.
+     * @throws IOException if the file is a zip archive which cannot be read.
+     */
+    public static CorpusSource of(final File file) throws IOException {
+        return new CorpusSource(file);
+    }
+
+    /**
+     * @return the corpus file, as found in the corpora folder.
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return the name of the corpus: the name of its only entry, or the
+     * name of the archive if it holds several entries.
+     */
+    public String getName() {
+        return entries.size() == 1 ? entries.get(0).getName() : file.getName();
+    }
+
+    /**
+     * @return the entries in the corpus, in archive order.
+     */
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * A single file within a corpus.
+     */
+    public interface Entry {
+        /**
+         * @return the name of the entry.
+         */
+        String getName();
+
+        /**
+         * Open a new stream over the content of the entry. Streams may be
+         * opened concurrently for different entries.
+         *
+         * @return the stream, which should be closed by the caller.
+         * @throws IOException if the entry cannot be opened.
+         */
+        InputStream open() throws IOException;
+
+        /**
+         * Get the entry as a real file, extracting it from its archive if
+         * necessary.
+         *
+         * @return a file holding the content of the entry.
+         * @throws IOException if the entry cannot be extracted.
+         */
+        File toFile() throws IOException;
+    }
+
+    private static boolean isZip(final File file) {
+        return file.getName().endsWith(".zip");
+    }
+
+    private List<Entry> zipEntries() throws IOException {
+        final List<Entry> zipEntries = new ArrayList<>();
+        try (final ZipFile zip = new ZipFile(file)) {
+            final Enumeration<? extends ZipEntry> archiveEntries = zip.entries();
+            while (archiveEntries.hasMoreElements()) {
+                final ZipEntry entry = archiveEntries.nextElement();
+                final String name = new File(entry.getName()).getName();
+                if (!entry.isDirectory() && !name.startsWith(".") && !entry.getName().startsWith("__MACOSX")
+                        && (name.endsWith(".json") || name.endsWith(".json.gz"))) {
+                    zipEntries.add(new ZipArchiveEntry(entry.getName()));
+                }
+            }
+        }
+
+        if (zipEntries.isEmpty()) {
+            throw new IllegalArgumentException("Unable to find a valid dataset within the compressed corpora file: " + file.getAbsolutePath());
+        }
+        return Collections.unmodifiableList(zipEntries);
+    }
+
+    private synchronized String checksum() throws IOException {
+        if (checksum == null) {
+            checksum = IndexChecksums.checksum(file);
+        }
+        return checksum;
+    }
+
+    /**
+     * Extract an entry into the cache folder, unless it has already been
+     * extracted from the same archive.
+     *
+     * @param entry the entry to extract.
+     * @param path  the path of the extracted file, relative to the cache
+     *              folder - unique within the archive.
+     */
+    private File extract(final Entry entry, final String path) throws IOException {
+        final File cacheFolder = new File(new File(System.getProperty("java.io.tmpdir"), CACHE_FOLDER), checksum());
+        final File target = new File(cacheFolder, path);
+        if (!target.getCanonicalPath().startsWith(cacheFolder.getCanonicalPath() + File.separator)) {
+            throw new IOException("Corpus entry " + path + " is outside the archive");
+        }
+        if (!target.exists()) {
+            // Extract to a unique temporary file, so concurrent extractions cannot clash
+            final File folder = target.getParentFile();
+            folder.mkdirs();
+            final File tmp = Files.createTempFile(folder.toPath(), entry.getName(), ".tmp").toFile();
+            try (final InputStream in = entry.open()) {
+                Files.copy(in, tmp.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                tmp.delete();
+            }
+        }
+        return target;
+    }
+
+    private class FileEntry implements Entry {
+        @Override
+        public String getName() {
+            return file.getName();
+        }
+
+        @Override
+        public InputStream open() throws IOException {
+            return new BufferedInputStream(Files.newInputStream(file.toPath()), BUFFER_SIZE);
+        }
+
+        @Override
+        public File toFile() {
+            return file;
+        }
+    }
+
+    private class GzipEntry implements Entry {
+        @Override
+        public String getName() {
+            return file.getName().substring(0, file.getName().length() - ".gz".length());
+        }
+
+        @Override
+        public InputStream open() throws IOException {
+            return new BufferedInputStream(new GZIPInputStream(Files.newInputStream(file.toPath()), BUFFER_SIZE), BUFFER_SIZE);
+        }
+
+        @Override
+        public File toFile() throws IOException {
+            return extract(this, getName());
+        }
+    }
+
+    private class ZipArchiveEntry implements Entry {
+        private final String entryName;
+
+        ZipArchiveEntry(final String entryName) {
+            this.entryName = entryName;
+        }
+
+        @Override
+        public String getName() {
+            final String name = new File(entryName).getName();
+            return name.endsWith(".gz") ? name.substring(0, name.length() - ".gz".length()) : name;
+        }
+
+        @Override
+        public InputStream open() throws IOException {
+            // Each stream has its own ZipFile, so entries can be read in parallel
+            final ZipFile zip = new ZipFile(file);
+            try {
+                final ZipEntry entry = zip.getEntry(entryName);
+                InputStream in = zip.getInputStream(entry);
+                if (entryName.endsWith(".gz")) {
+                    in = new GZIPInputStream(in, BUFFER_SIZE);
+                }
+                return new FilterInputStream(new BufferedInputStream(in, BUFFER_SIZE)) {
+                    @Override
+                    public void close() throws IOException {
+                        try {
+                            super.close();
+                        } finally {
+                            zip.close();
+                        }
+                    }
+                };
+            } catch (final IOException | RuntimeException e) {
+                zip.close();
+                throw e;
+            }
+        }
+
+        @Override
+        public File toFile() throws IOException {
+            // Keep the archive's folders, so entries with the same name cannot clash
+            return extract(this, entryName.endsWith(".gz") ? entryName.substring(0, entryName.length() - ".gz".length()) : entryName);
+        }
+    }
+}
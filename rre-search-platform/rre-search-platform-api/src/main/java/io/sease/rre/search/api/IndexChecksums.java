@@ -0,0 +1,256 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.search.api;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The content checksums of an index loaded by a search platform: one for
+ * the index-time configuration, and one for each indexed document.
+ * <p>
+ * Persisting these alongside the index allows a subsequent load of the
+ * same index to send only the documents which have been added, changed or
+ * removed since the previous load, rather than rebuilding the whole index.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+public class IndexChecksums {
+
+    private static final String CONFIGURATION_PREFIX = "#configuration\t";
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final String configurationChecksum;
+    private final Map<String, String> documentChecksums = new ConcurrentHashMap<>();
+
+    /**
+     * Create a new, empty set of checksums.
+     *
+     * @param configurationChecksum the checksum of the index-time
+     *                              configuration the documents are indexed with.
+     */
+    public IndexChecksums(final String configurationChecksum) {
+        this.configurationChecksum = configurationChecksum;
+    }
+
+    /**
+     * @return the checksum of the index-time configuration.
+     */
+    public String getConfigurationChecksum() {
+        return configurationChecksum;
+    }
+
+    /**
+     * Record the checksum for a single document. May be called concurrently
+     * while loading several corpus entries in parallel.
+     *
+     * @param id       the document identifier.
+     * @param checksum the checksum of the document content.
+     * @return the checksum previously recorded for the document, or
+     * {@code null} if there was none.
+     */
+    public String put(final String id, final String checksum) {
+        return documentChecksums.put(id, checksum);
+    }
+
+    /**
+     * Check whether a document, with the given content checksum, has
+     * already been recorded.
+     *
+     * @param id       the document identifier.
+     * @param checksum the current checksum of the document content.
+     * @return {@code true} if the document is known and its content has not
+     * changed.
+     */
+    public boolean isUnchanged(final String id, final String checksum) {
+        return checksum.equals(documentChecksums.get(id));
+    }
+
+    /**
+     * @return the number of documents recorded.
+     */
+    public int size() {
+        return documentChecksums.size();
+    }
+
+    /**
+     * Check whether these checksums can be used as the base for an
+     * incremental update with the given configuration.
+     *
+     * @param configurationChecksum the checksum of the current index-time
+     *                              configuration.
+     * @return {@code true} if the configuration checksums match.
+     */
+    public boolean isCompatibleWith(final String configurationChecksum) {
+        return Objects.equals(this.configurationChecksum, configurationChecksum);
+    }
+
+    /**
+     * Find the documents recorded here which are not present in the current
+     * set of checksums, and so should be removed from the index.
+     *
+     * @param current the checksums of the current corpus.
+     * @return the identifiers of the documents to be deleted.
+     */
+    public Set<String> deletedIn(final IndexChecksums current) {
+        final Set<String> deleted = new LinkedHashSet<>(documentChecksums.keySet());
+        deleted.removeAll(current.documentChecksums.keySet());
+        return deleted;
+    }
+
+    /**
+     * Write the checksums to a file, replacing the file atomically where the
+     * file system allows it.
+     *
+     * @param file the destination file.
+     * @throws IOException if the file cannot be written.
+     */
+    public void write(final File file) throws IOException {
+        final File parent = file.getAbsoluteFile().getParentFile();
+        parent.mkdirs();
+
+        final File tmp = new File(parent, file.getName() + ".tmp");
+        try (final BufferedWriter writer = Files.newBufferedWriter(tmp.toPath(), StandardCharsets.UTF_8)) {
+            writer.write(CONFIGURATION_PREFIX + configurationChecksum);
+            writer.newLine();
+            for (final Map.Entry<String, String> entry : documentChecksums.entrySet()) {
+                writer.write(entry.getValue() + "\t" + entry.getKey());
+                writer.newLine();
+            }
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Read a set of checksums previously written with {@link #write(File)}.
+     *
+     * @param file the checksum file.
+     * @return the checksums, or an empty set with no configuration checksum
+     * if the file does not exist or cannot be parsed.
+     */
+    public static IndexChecksums read(final File file) {
+        if (!file.canRead()) {
+            return new IndexChecksums(null);
+        }
+
+        try (final BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            final String header = reader.readLine();
+            if (header == null || !header.startsWith(CONFIGURATION_PREFIX)) {
+                return new IndexChecksums(null);
+            }
+
+            final IndexChecksums checksums = new IndexChecksums(header.substring(CONFIGURATION_PREFIX.length()));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final int separator = line.indexOf('\t');
+                if (separator > 0) {
+                    checksums.put(line.substring(separator + 1), line.substring(0, separator));
+                }
+            }
+            return checksums;
+        } catch (final IOException e) {
+            return new IndexChecksums(null);
+        }
+    }
+
+    /**
+     * Calculate the checksum of a string, such as a single document.
+     *
+     * @param content the content to be hashed.
+     * @return the hex-encoded MD5 checksum of the content.
+     */
+    public static String checksum(final String content) {
+        return toHex(digest().digest(content.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Calculate a single checksum covering the content of a number of
+     * files. If any of the files is a directory, the regular files within it
+     * are included, in name order. Missing files are skipped.
+     *
+     * @param files the files to be hashed.
+     * @return the hex-encoded MD5 checksum of the files.
+     * @throws IOException if any of the files cannot be read.
+     */
+    public static String checksum(final File... files) throws IOException {
+        final MessageDigest digest = digest();
+        for (final File file : files) {
+            update(digest, file);
+        }
+        return toHex(digest.digest());
+    }
+
+    private static void update(final MessageDigest digest, final File file) throws IOException {
+        if (file.isDirectory()) {
+            final File[] children = file.listFiles();
+            if (children != null) {
+                Arrays.sort(children);
+                for (final File child : children) {
+                    update(digest, child);
+                }
+            }
+        } else if (file.isFile()) {
+            digest.update(file.getName().getBytes(StandardCharsets.UTF_8));
+            final byte[] buffer = new byte[8192];
+            try (final InputStream in = Files.newInputStream(file.toPath())) {
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    digest.update(buffer, 0, read);
+                }
+            }
+        }
+    }
+
+    private static MessageDigest digest() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(final byte[] bytes) {
+        final char[] hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            hex[i * 2] = HEX_DIGITS[(bytes[i] >> 4) & 0xF];
+            hex[i * 2 + 1] = HEX_DIGITS[bytes[i] & 0xF];
+        }
+        return new String(hex);
+    }
+
+    /**
+     * @return an unmodifiable view of the recorded document checksums.
+     */
+    public Map<String, String> getDocumentChecksums() {
+        return Collections.unmodifiableMap(documentChecksums);
+    }
+}
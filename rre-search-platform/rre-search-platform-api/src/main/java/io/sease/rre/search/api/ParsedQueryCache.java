@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.search.api;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A bounded, thread-safe cache of rendered queries converted into a search
+ * platform's own request representation.
+ * <p>
+ * A rendered query is fully determined by its template, version and
+ * placeholder values, so the query string itself is used as the key. When
+ * the same query is run again - for another version sharing the template,
+ * or in a later run - the platform can skip parsing it.
+ *
+ * @param <T> the type of the parsed query. Cached values are shared between
+ *            threads, so should not be modified once parsed.
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+public class ParsedQueryCache<T> {
+
+    /**
+     * Converts a rendered query into the platform's representation.
+     *
+     * @param <T> the type of the parsed query.
+     */
+    @FunctionalInterface
+    public interface Parser<T> {
+        /**
+         * @param query the rendered query.
+         * @return the parsed query.
+         * @throws IOException if the query cannot be parsed.
+         */
+        T parse(String query) throws IOException;
+    }
+
+    private final Map<String, T> cache = new ConcurrentHashMap<>();
+    private final int maxSize;
+    private final Parser<T> parser;
+
+    /**
+     * Build a new cache.
+     *
+     * @param maxSize the maximum number of queries to cache.
+     * @param parser  the parser for queries not in the cache.
+     */
+    public ParsedQueryCache(final int maxSize, final Parser<T> parser) {
+        this.maxSize = maxSize;
+        this.parser = parser;
+    }
+
+    /**
+     * Get the parsed form of a query, parsing and caching it if necessary.
+     *
+     * @param query the rendered query.
+     * @return the parsed query.
+     * @throws IOException if the query cannot be parsed.
+     */
+    public T get(final String query) throws IOException {
+        final T parsed = cache.get(query);
+        if (parsed != null) {
+            return parsed;
+        }
+
+        if (cache.size() >= maxSize) {
+            // Make room by evicting an arbitrary query - it will be re-parsed if needed
+            final Iterator<String> keys = cache.keySet().iterator();
+            if (keys.hasNext()) {
+                keys.next();
+                keys.remove();
+            }
+        }
+
+        try {
+            return cache.computeIfAbsent(query, q -> {
+                try {
+                    return parser.parse(q);
+                } catch (final IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (final UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * @return the number of queries currently cached.
+     */
+    public int size() {
+        return cache.size();
+    }
+}
@@ -28,8 +28,16 @@ import static java.util.Collections.unmodifiableList;
  * @since 1.0
  */
 public class QueryOrSearchResponse {
+    /**
+     * The value of a timing or size which was not reported.
+     */
+    public static final long UNKNOWN = -1;
+
     private final long totalHits;
     private final List<Map<String, Object>> hits;
+    private final long engineTime;
+    private final long responseBytes;
+    private final long latency;
 
     /**
      * Builds a new response with the given data.
@@ -38,8 +46,31 @@ public class QueryOrSearchResponse {
      * @param hits      the current hits window.
      */
     public QueryOrSearchResponse(final long totalHits, final List<Map<String, Object>> hits) {
+        this(totalHits, hits, UNKNOWN, UNKNOWN);
+    }
+
+    /**
+     * Builds a new response with the given data, and the timing and size
+     * reported by the search engine.
+     *
+     * @param totalHits     the total hits of this response.
+     * @param hits          the current hits window.
+     * @param engineTime    the time taken by the search engine, in milliseconds
+     *                      (eg. Solr's QTime), or {@link #UNKNOWN}.
+     * @param responseBytes the size of the response, in bytes, or {@link #UNKNOWN}.
+     */
+    public QueryOrSearchResponse(final long totalHits, final List<Map<String, Object>> hits,
+                                 final long engineTime, final long responseBytes) {
+        this(totalHits, unmodifiableList(hits), engineTime, responseBytes, UNKNOWN);
+    }
+
+    private QueryOrSearchResponse(final long totalHits, final List<Map<String, Object>> hits,
+                                  final long engineTime, final long responseBytes, final long latency) {
         this.totalHits = totalHits;
-        this.hits = unmodifiableList(hits);
+        this.hits = hits;
+        this.engineTime = engineTime;
+        this.responseBytes = responseBytes;
+        this.latency = latency;
     }
 
     /**
@@ -59,4 +90,41 @@ public class QueryOrSearchResponse {
     public List<Map<String, Object>> hits() {
         return hits;
     }
+
+    /**
+     * Returns the time the search engine reported for the query.
+     *
+     * @return the engine time in milliseconds, or {@link #UNKNOWN}.
+     */
+    public long engineTime() {
+        return engineTime;
+    }
+
+    /**
+     * Returns the size of the search engine's response.
+     *
+     * @return the response size in bytes, or {@link #UNKNOWN}.
+     */
+    public long responseBytes() {
+        return responseBytes;
+    }
+
+    /**
+     * Returns the latency of the query, as seen by the caller.
+     *
+     * @return the latency in nanoseconds, or {@link #UNKNOWN} if it was not recorded.
+     */
+    public long latency() {
+        return latency;
+    }
+
+    /**
+     * Returns a copy of this response, with the latency seen by the caller.
+     *
+     * @param latency the latency in nanoseconds.
+     * @return a copy of this response, holding the given latency.
+     */
+    public QueryOrSearchResponse withLatency(final long latency) {
+        return new QueryOrSearchResponse(totalHits, hits, engineTime, responseBytes, latency);
+    }
 }
\ No newline at end of file
@@ -18,7 +18,11 @@ package io.sease.rre.search.api;
 
 import java.io.Closeable;
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * A supertype layer interface for denoting the behaviour expected by a given search platform.
@@ -45,6 +49,32 @@ public interface SearchPlatform extends Closeable {
      */
     void load(final File dataToBeIndexed, final File configFolder, final String collection, final String version);
 
+    /**
+     * Loads a corpus, which may be held in an archive, in a given index.
+     * The default implementation loads each entry of the corpus as a file,
+     * extracting it from the archive if necessary. Platforms able to read
+     * the corpus as a stream, or which replace the index content on each
+     * load, should override this.
+     *
+     * @param corpus       the corpus, or {@code null} if the platform does not require one.
+     * @param configFolder the folder that contains the configuration for the given index.
+     * @param collection   the name of the index where data will be indexed.
+     * @param version      the id of the configuration version
+     */
+    default void loadCorpus(final CorpusSource corpus, final File configFolder, final String collection, final String version) {
+        if (corpus == null) {
+            load(null, configFolder, collection, version);
+        } else {
+            for (final CorpusSource.Entry entry : corpus.getEntries()) {
+                try {
+                    load(entry.toFile(), configFolder, collection, version);
+                } catch (final IOException e) {
+                    throw new UnableToLoadDataException(e);
+                }
+            }
+        }
+    }
+
     /**
      * Returns the FQDN of the target index that will be used.
      * Starting from the index name declared in the configuration, RRE uses an internal naming (which adds the version
@@ -86,6 +116,108 @@ public interface SearchPlatform extends Closeable {
      */
     QueryOrSearchResponse executeQuery(String collection, String version, String query, final String[] fields, int maxRows);
 
+    /**
+     * Executes a query built from a query template.
+     * The default implementation renders the template and runs
+     * {@link #executeQuery}. Platforms with their own templating may
+     * override this to send only the placeholder values, and should then
+     * return {@code true} from {@link #isQueryTemplateSupported()}.
+     *
+     * @param collection the index name that holds the data.
+     * @param version the id of the configuration version
+     * @param template  the compiled query template.
+     * @param values    the placeholder values, in the template's placeholder order.
+     * @param fields    the fields to return.
+     * @param maxRows   the maximum number of rows that will be returned.
+     * @return the response of the query execution.
+     */
+    default QueryOrSearchResponse executeQuery(final String collection, final String version, final CompiledQueryTemplate template, final String[] values, final String[] fields, final int maxRows) {
+        return executeQuery(collection, version, template.render(values), fields, maxRows);
+    }
+
+    /**
+     * @return {@code true} if queries built from a template should be
+     * passed to the platform as the template and its placeholder values,
+     * rather than as a rendered query.
+     */
+    default boolean isQueryTemplateSupported() {
+        return false;
+    }
+
+    /**
+     * Executes the given query without blocking the calling thread.
+     * The default implementation runs {@link #executeQuery} on the calling
+     * thread and returns a completed future. Platforms with a non-blocking
+     * client should override this, so that many queries can be in flight
+     * without each one holding a thread.
+     *
+     * @param collection the index name that holds the data.
+     * @param version the id of the configuration version
+     * @param query     the query.
+     * @param fields    the fields to return.
+     * @param maxRows   the maximum number of rows that will be returned.
+     * @return a future holding the response of the query execution.
+     */
+    default CompletableFuture<QueryOrSearchResponse> executeQueryAsync(final String collection, final String version, final String query, final String[] fields, final int maxRows) {
+        final CompletableFuture<QueryOrSearchResponse> future = new CompletableFuture<>();
+        try {
+            future.complete(executeQuery(collection, version, query, fields, maxRows));
+        } catch (final RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Executes a query built from a query template without blocking the
+     * calling thread. The default implementation renders the template and
+     * runs {@link #executeQueryAsync(String, String, String, String[], int)}
+     * - or, when the platform supports query templates, runs the template
+     * {@link #executeQuery(String, String, CompiledQueryTemplate, String[], String[], int)}
+     * on the calling thread and returns a completed future.
+     *
+     * @param collection the index name that holds the data.
+     * @param version the id of the configuration version
+     * @param template  the compiled query template.
+     * @param values    the placeholder values, in the template's placeholder order.
+     * @param fields    the fields to return.
+     * @param maxRows   the maximum number of rows that will be returned.
+     * @return a future holding the response of the query execution.
+     */
+    default CompletableFuture<QueryOrSearchResponse> executeQueryAsync(final String collection, final String version, final CompiledQueryTemplate template, final String[] values, final String[] fields, final int maxRows) {
+        if (!isQueryTemplateSupported()) {
+            return executeQueryAsync(collection, version, template.render(values), fields, maxRows);
+        }
+
+        final CompletableFuture<QueryOrSearchResponse> future = new CompletableFuture<>();
+        try {
+            future.complete(executeQuery(collection, version, template, values, fields, maxRows));
+        } catch (final RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Executes a batch of queries against the same index and version.
+     * The default implementation runs each query in turn with
+     * {@link #executeQuery}. Platforms able to send several queries in a
+     * single request should override this, to save the network round-trip
+     * for each query.
+     *
+     * @param collection the index name that holds the data.
+     * @param version the id of the configuration version
+     * @param queries   the queries to execute.
+     * @return the responses, in the same order as the queries.
+     */
+    default List<QueryOrSearchResponse> executeQueries(final String collection, final String version, final List<BatchQuery> queries) {
+        final List<QueryOrSearchResponse> responses = new ArrayList<>(queries.size());
+        for (final BatchQuery query : queries) {
+            responses.add(executeQuery(collection, version, query.getQuery(), query.getFields(), query.getMaxRows()));
+        }
+        return responses;
+    }
+
     /**
      * Returns the name of this search platform.
      *
@@ -0,0 +1,57 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.search.api;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+/**
+ * Unit tests for the CompiledQueryTemplate class.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+public class CompiledQueryTemplateTest {
+
+    private static final String CONTENT = "{ \"q\": \"$query\", \"pf\": \"$query\", \"fq\": \"$filter\" }";
+
+    @Test
+    public void rendersValuesInPlaceholderOrder() {
+        CompiledQueryTemplate template = new CompiledQueryTemplate(CONTENT, Arrays.asList("$filter", "$query"));
+
+        assertEquals("{ \"q\": \"fred\", \"pf\": \"fred\", \"fq\": \"type:bass\" }", template.render(new String[]{"type:bass", "fred"}));
+    }
+
+    @Test
+    public void convertsToOtherSyntax() {
+        CompiledQueryTemplate template = new CompiledQueryTemplate(CONTENT, Arrays.asList("$query", "$filter"));
+
+        assertEquals("{ \"q\": \"{{p0}}\", \"pf\": \"{{p0}}\", \"fq\": \"{{p1}}\" }", template.toSource(i -> "{{p" + i + "}}"));
+    }
+
+    @Test
+    public void idDependsOnContentAndPlaceholders() {
+        CompiledQueryTemplate template = new CompiledQueryTemplate(CONTENT, Arrays.asList("$query", "$filter"));
+
+        assertEquals(template.getId(), new CompiledQueryTemplate(CONTENT, Arrays.asList("$query", "$filter")).getId());
+        assertNotEquals(template.getId(), new CompiledQueryTemplate(CONTENT, Arrays.asList("$filter", "$query")).getId());
+        assertNotEquals(template.getId(), new CompiledQueryTemplate(CONTENT + " ", Arrays.asList("$query", "$filter")).getId());
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.search.api;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+/**
+ * Unit tests for the CorpusSource class.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+public class CorpusSourceTest {
+
+    private static final String CONTENT = "[{\"id\": \"1\"}]";
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void readsPlainFile() throws Exception {
+        File file = tempFolder.newFile("corpus.json");
+        Files.write(file.toPath(), CONTENT.getBytes(StandardCharsets.UTF_8));
+
+        CorpusSource corpus = CorpusSource.of(file);
+
+        assertEquals("corpus.json", corpus.getName());
+        assertEquals(1, corpus.getEntries().size());
+        assertEquals(CONTENT, read(corpus.getEntries().get(0)));
+        assertEquals(file, corpus.getEntries().get(0).toFile());
+    }
+
+    @Test
+    public void streamsGzippedFile() throws Exception {
+        File file = tempFolder.newFile("corpus.json.gz");
+        try (OutputStream out = new GZIPOutputStream(new FileOutputStream(file))) {
+            out.write(CONTENT.getBytes(StandardCharsets.UTF_8));
+        }
+
+        CorpusSource corpus = CorpusSource.of(file);
+
+        assertEquals("corpus.json", corpus.getName());
+        assertEquals(CONTENT, read(corpus.getEntries().get(0)));
+    }
+
+    @Test
+    public void streamsAllZipEntries() throws Exception {
+        File file = tempFolder.newFile("corpus.zip");
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file))) {
+            for (int i = 0; i < 3; i++) {
+                out.putNextEntry(new ZipEntry("part" + i + ".json"));
+                out.write(("[{\"id\": \"" + i + "\"}]").getBytes(StandardCharsets.UTF_8));
+                out.closeEntry();
+            }
+            out.putNextEntry(new ZipEntry("__MACOSX/._part0.json"));
+            out.closeEntry();
+            out.putNextEntry(new ZipEntry("README.md"));
+            out.write("Not part of the corpus".getBytes(StandardCharsets.UTF_8));
+            out.closeEntry();
+        }
+
+        CorpusSource corpus = CorpusSource.of(file);
+        List<CorpusSource.Entry> entries = corpus.getEntries();
+
+        assertEquals("corpus.zip", corpus.getName());
+        assertEquals(3, entries.size());
+        entries.parallelStream().forEach(entry -> {
+            String i = entry.getName().substring(4, 5);
+            assertEquals("[{\"id\": \"" + i + "\"}]", read(entry));
+        });
+    }
+
+    @Test
+    public void extractsEntryOnceToCache() throws Exception {
+        File file = tempFolder.newFile("corpus.zip");
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file))) {
+            out.putNextEntry(new ZipEntry("corpus-" + System.nanoTime() + ".json"));
+            out.write(CONTENT.getBytes(StandardCharsets.UTF_8));
+            out.closeEntry();
+        }
+
+        File extracted = CorpusSource.of(file).getEntries().get(0).toFile();
+        long lastModified = extracted.lastModified();
+        File extractedAgain = CorpusSource.of(file).getEntries().get(0).toFile();
+
+        try {
+            assertNotEquals(file, extracted);
+            assertEquals(extracted, extractedAgain);
+            assertEquals(lastModified, extractedAgain.lastModified());
+            assertEquals(CONTENT, new String(Files.readAllBytes(extracted.toPath()), StandardCharsets.UTF_8));
+        } finally {
+            extracted.delete();
+            extracted.getParentFile().delete();
+        }
+    }
+
+    @Test
+    public void extractsEntriesWithSameNameToSeparateFiles() throws Exception {
+        File file = tempFolder.newFile("corpus.zip");
+        String folder = "corpus-" + System.nanoTime();
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file))) {
+            for (String part : new String[]{"a", "b"}) {
+                out.putNextEntry(new ZipEntry(folder + "/" + part + "/docs.json"));
+                out.write(("[{\"id\": \"" + part + "\"}]").getBytes(StandardCharsets.UTF_8));
+                out.closeEntry();
+            }
+        }
+
+        List<CorpusSource.Entry> entries = CorpusSource.of(file).getEntries();
+        File first = entries.get(0).toFile();
+        File second = entries.get(1).toFile();
+
+        try {
+            assertNotEquals(first, second);
+            assertEquals("[{\"id\": \"a\"}]", new String(Files.readAllBytes(first.toPath()), StandardCharsets.UTF_8));
+            assertEquals("[{\"id\": \"b\"}]", new String(Files.readAllBytes(second.toPath()), StandardCharsets.UTF_8));
+        } finally {
+            first.delete();
+            second.delete();
+        }
+    }
+
+    private String read(CorpusSource.Entry entry) {
+        try (InputStream in = entry.open()) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
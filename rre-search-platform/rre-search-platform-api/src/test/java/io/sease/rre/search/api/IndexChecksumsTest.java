@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.search.api;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.PrintWriter;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for the IndexChecksums class.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+public class IndexChecksumsTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void read_returnsEmptyChecksumsWhenNoFile() {
+        IndexChecksums checksums = IndexChecksums.read(new File(tempFolder.getRoot(), "noSuchFile"));
+
+        assertNull(checksums.getConfigurationChecksum());
+        assertEquals(0, checksums.size());
+        assertFalse(checksums.isCompatibleWith("abc"));
+    }
+
+    @Test
+    public void readsWrittenChecksums() throws Exception {
+        IndexChecksums checksums = new IndexChecksums("config");
+        checksums.put("1", IndexChecksums.checksum("{\"id\":1}"));
+        checksums.put("doc\twith tab", IndexChecksums.checksum("{\"id\":2}"));
+
+        File checksumFile = new File(tempFolder.getRoot(), "checksums");
+        checksums.write(checksumFile);
+        IndexChecksums read = IndexChecksums.read(checksumFile);
+
+        assertTrue(read.isCompatibleWith("config"));
+        assertEquals(checksums.getDocumentChecksums(), read.getDocumentChecksums());
+    }
+
+    @Test
+    public void identifiesChangedAndDeletedDocuments() {
+        IndexChecksums previous = new IndexChecksums("config");
+        previous.put("1", IndexChecksums.checksum("one"));
+        previous.put("2", IndexChecksums.checksum("two"));
+        previous.put("3", IndexChecksums.checksum("three"));
+
+        IndexChecksums current = new IndexChecksums("config");
+        current.put("1", IndexChecksums.checksum("one"));
+        current.put("2", IndexChecksums.checksum("two, changed"));
+        current.put("4", IndexChecksums.checksum("four"));
+
+        assertTrue(previous.isUnchanged("1", IndexChecksums.checksum("one")));
+        assertFalse(previous.isUnchanged("2", IndexChecksums.checksum("two, changed")));
+        assertFalse(previous.isUnchanged("4", IndexChecksums.checksum("four")));
+        assertEquals(Collections.singleton("3"), previous.deletedIn(current));
+    }
+
+    @Test
+    public void fileChecksumChangesWithContent() throws Exception {
+        File folder = tempFolder.newFolder();
+        File file = new File(folder, "synonyms.txt");
+        try (final PrintWriter pw = new PrintWriter(new FileWriter(file))) {
+            pw.println("bass,guitar");
+        }
+        String original = IndexChecksums.checksum(folder);
+
+        assertEquals(original, IndexChecksums.checksum(folder));
+
+        try (final PrintWriter pw = new PrintWriter(new FileWriter(file))) {
+            pw.println("bass,fish");
+        }
+        assertNotEquals(original, IndexChecksums.checksum(folder));
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.search.api;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit tests for the ParsedQueryCache class.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+public class ParsedQueryCacheTest {
+
+    @Test
+    public void parsesEachQueryOnce() throws Exception {
+        AtomicInteger parseCount = new AtomicInteger();
+        ParsedQueryCache<StringBuilder> cache = new ParsedQueryCache<>(10, q -> {
+            parseCount.incrementAndGet();
+            return new StringBuilder(q);
+        });
+
+        StringBuilder parsed = cache.get("{\"q\": \"fred\"}");
+
+        assertSame(parsed, cache.get(new String("{\"q\": \"fred\"}")));
+        assertEquals(1, parseCount.get());
+    }
+
+    @Test
+    public void isBounded() throws Exception {
+        ParsedQueryCache<String> cache = new ParsedQueryCache<>(2, q -> q);
+
+        cache.get("a");
+        cache.get("b");
+        cache.get("c");
+
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void doesNotCacheParseFailures() throws Exception {
+        AtomicInteger parseCount = new AtomicInteger();
+        ParsedQueryCache<String> cache = new ParsedQueryCache<>(10, q -> {
+            parseCount.incrementAndGet();
+            throw new IOException("Bad query");
+        });
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                cache.get("bad");
+                fail("Expected IOException");
+            } catch (IOException e) {
+                assertEquals("Bad query", e.getMessage());
+            }
+        }
+        assertEquals(2, parseCount.get());
+        assertEquals(0, cache.size());
+    }
+}
@@ -21,39 +21,67 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import io.sease.rre.DirectoryUtils;
+import io.sease.rre.search.api.BatchQuery;
+import io.sease.rre.search.api.CompiledQueryTemplate;
+import io.sease.rre.search.api.CorpusSource;
+import io.sease.rre.search.api.IndexChecksums;
 import io.sease.rre.search.api.QueryOrSearchResponse;
 import io.sease.rre.search.api.SearchPlatform;
 import io.sease.rre.search.api.UnableToLoadDataException;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.admin.indices.alias.IndicesAliasesRequestBuilder;
 import org.elasticsearch.action.admin.indices.create.CreateIndexRequest;
 import org.elasticsearch.action.bulk.BulkRequest;
 import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.delete.DeleteRequest;
 import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.search.MultiSearchRequest;
+import org.elasticsearch.action.search.MultiSearchResponse;
 import org.elasticsearch.action.search.SearchRequest;
 import org.elasticsearch.action.search.SearchResponse;
-import org.elasticsearch.action.support.WriteRequest;
 import org.elasticsearch.analysis.common.CommonAnalysisPlugin;
 import org.elasticsearch.client.Client;
+import org.elasticsearch.cluster.metadata.AliasMetaData;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.collect.ImmutableOpenMap;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.xcontent.XContentType;
 import org.elasticsearch.index.query.QueryBuilders;
 import org.elasticsearch.node.Node;
 import org.elasticsearch.plugins.Plugin;
+import org.elasticsearch.script.ScriptType;
+import org.elasticsearch.script.mustache.MultiSearchTemplateAction;
+import org.elasticsearch.script.mustache.MultiSearchTemplateRequest;
+import org.elasticsearch.script.mustache.MultiSearchTemplateResponse;
+import org.elasticsearch.script.mustache.MustachePlugin;
+import org.elasticsearch.script.mustache.SearchTemplateAction;
+import org.elasticsearch.script.mustache.SearchTemplateRequest;
+import org.elasticsearch.script.mustache.SearchTemplateResponse;
 import org.elasticsearch.search.builder.SearchSourceBuilder;
 import org.elasticsearch.transport.Netty4Plugin;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static java.util.Arrays.asList;
 import static java.util.Arrays.stream;
@@ -74,6 +102,13 @@ import static org.elasticsearch.node.InternalSettingsPreparer.prepareEnvironment
  */
 public class Elasticsearch implements SearchPlatform {
     private static final Logger LOGGER = LogManager.getLogger(Elasticsearch.class);
+    private static final String CHECKSUM_FILE_SUFFIX = ".rre-checksums";
+    private static final String SHARED_INDEX_INFIX = "_shape_";
+    private static final int BULK_SIZE = 5000;
+    private static final String STORED_SCRIPT_PREFIX = "rre_";
+    private static final String PLACEHOLDER_TOKEN = "@@rre_p";
+    private static final String SIZE_PARAM = "rre_size";
+    private static final String FIELDS_PARAM = "rre_fields";
 
     private static class RRENode extends Node {
         RRENode(final Settings settings, final Collection<Class<? extends Plugin>> plugins) {
@@ -86,12 +121,20 @@ public class Elasticsearch implements SearchPlatform {
     private final ObjectMapper mapper = new ObjectMapper();
 
     private File nodeConfigFolder;
+    private File dataFolder;
     private boolean mustRefresh = false;
+    private boolean shareIndices = true;
+    private final Set<String> loadedIndices = new HashSet<>();
+
+    private boolean storedTemplates = false;
+    // Template ID -> stored script source, or empty if the template cannot be stored
+    private final Map<String, Optional<String>> storedTemplateSources = new ConcurrentHashMap<>();
+    private final Map<String, Boolean> registeredScripts = new ConcurrentHashMap<>();
 
     @Override
     public void beforeStart(final Map<String, Object> configuration) {
         final File logsFolder = new File("target/elasticsearch/logs");
-        final File dataFolder = new File((String) configuration.get("path.data"));
+        dataFolder = new File((String) configuration.get("path.data"));
 
         logsFolder.delete();
         logsFolder.mkdirs();
@@ -109,6 +152,9 @@ public class Elasticsearch implements SearchPlatform {
             mustRefresh = true;
         }
 
+        shareIndices = (Boolean) configuration.getOrDefault("shareIndices", Boolean.TRUE);
+        configureStoredTemplates(configuration);
+
         nodeConfigFolder = new File((String) configuration.get("path.home"), "config");
         nodeConfigFolder.mkdirs();
 
@@ -126,6 +172,15 @@ public class Elasticsearch implements SearchPlatform {
 
     @Override
     public void load(final File dataToBeIndexed, File indexShapeFile, String collection, String version) {
+        try {
+            loadCorpus(CorpusSource.of(dataToBeIndexed), indexShapeFile, collection, version);
+        } catch (final IOException exception) {
+            throw new UnableToLoadDataException(exception);
+        }
+    }
+
+    @Override
+    public void loadCorpus(final CorpusSource dataToBeIndexed, File indexShapeFile, String collection, String version) {
         if (!indexShapeFile.getName().startsWith("index")) {
             throw new IllegalArgumentException("Unable to find an index-shape (i.e. settings + mappings) within the configuration folder.");
         }
@@ -134,77 +189,298 @@ public class Elasticsearch implements SearchPlatform {
             final ObjectMapper mapper = new ObjectMapper();
             final JsonNode esconfig = mapper.readTree(indexShapeFile);
 
-            if (proxy.admin().indices().exists(indicesExistsRequest(indexName)).actionGet().isExists()) {
-                proxy.admin().indices().delete(deleteIndexRequest(indexName)).actionGet();
-            }
-
             List<JsonNode> protectedKeywordsPaths = esconfig.findParents("keywords_path");
             List<JsonNode> synonymsPaths = esconfig.findParents("synonyms_path");
             List<JsonNode> stopwordsPaths = esconfig.findParents("stopwords_path");
 
             final File configurationFolder = indexShapeFile.getParentFile();
-            final String namespace = configurationFolder.getName();
-
-            insertNamespaces(protectedKeywordsPaths, "keywords_path", configurationFolder, namespace);
-            insertNamespaces(synonymsPaths, "synonyms_path", configurationFolder, namespace);
-            insertNamespaces(stopwordsPaths, "stopwords_path", configurationFolder, namespace);
-
-            final CreateIndexRequest request = createIndexRequest(indexName);
-            ofNullable(esconfig.get("settings"))
-                    .ifPresent(settings -> {
-                        try {
-                            request.settings(Settings.builder().loadFromSource(mapper.writeValueAsString(settings), XContentType.JSON).build());
-                        } catch (JsonProcessingException exception) {
-                            LOGGER.error("Invalid \"settings\" section in Elasticsearch configuration. " +
-                                    "As consequence of that the entire section will be skipped.", exception);
-                        }
-                    });
-
-            ofNullable(esconfig.get("mappings"))
-                    .ifPresent(mappings -> {
-                        try {
-                            request.mapping("doc", mapper.writeValueAsString(mappings), XContentType.JSON);
-                        } catch (JsonProcessingException exception) {
-                            LOGGER.error("Invalid \"mappings\" section in Elasticsearch configuration. " +
-                                    "As consequence of that the entire section will be skipped.", exception);
-                        }
-                    });
-
-            proxy.admin().indices().create(request).actionGet();
-
-            final BulkRequest bulkRequest = new BulkRequest();
-            final List<String> lines = Files.readAllLines(dataToBeIndexed.toPath());
-
-            for (int i = 0; i < lines.size(); i += 2) {
-                JsonNode metadata = mapper.readTree(lines.get(i)).get("index");
-                String document = lines.get(i + 1);
-                bulkRequest.add(
-                        new IndexRequest(indexName)
-                                .type(metadata.get("_type").asText())
-                                .id(metadata.get("_id").asText())
-                                .source(document, XContentType.JSON)).setRefreshPolicy(WriteRequest.RefreshPolicy.IMMEDIATE);
+
+            final String configurationChecksum = configurationChecksum(esconfig, configurationFolder,
+                    protectedKeywordsPaths, synonymsPaths, stopwordsPaths);
+
+            // When sharing, versions with the same index shape are aliases of a single physical index
+            final String physicalIndexName;
+            if (shareIndices) {
+                physicalIndexName = (collection + SHARED_INDEX_INFIX + configurationChecksum.substring(0, 12)).toLowerCase();
+                if (aliasedIndices(indexName).isEmpty() && indexExists(indexName)) {
+                    // Concrete index left by a load without sharing
+                    dropIndex(indexName);
+                }
+            } else {
+                physicalIndexName = indexName;
+                releaseAlias(indexName, null);
             }
 
-            final BulkResponse response = proxy.bulk(bulkRequest).actionGet();
-            if (response.hasFailures()) {
-                final String message =
-                        "Unable to load datafile (" +
-                                dataToBeIndexed.getAbsolutePath() +
-                                ") in " +
-                                getName() +
-                                " using the index shape (" +
-                                indexShapeFile.getAbsolutePath() +
-                                ") into the index " +
-                                indexName +
-                                ". Error message is: " +
-                                response.buildFailureMessage();
-                throw new UnableToLoadDataException(message);
+            if (!loadedIndices.add(physicalIndexName)) {
+                LOGGER.info("Index shape for " + indexName + " is the same as an index already loaded - sharing " + physicalIndexName);
+            } else {
+                // Analysis files are namespaced by the physical index - a shared index outlives
+                // changes to the files of the version which first loaded it
+                loadIndex(dataToBeIndexed, indexShapeFile, physicalIndexName, esconfig, configurationChecksum,
+                        () -> {
+                            insertNamespaces(protectedKeywordsPaths, "keywords_path", configurationFolder, physicalIndexName);
+                            insertNamespaces(synonymsPaths, "synonyms_path", configurationFolder, physicalIndexName);
+                            insertNamespaces(stopwordsPaths, "stopwords_path", configurationFolder, physicalIndexName);
+                        });
+            }
+
+            if (shareIndices) {
+                releaseAlias(indexName, physicalIndexName);
             }
         } catch (final Exception exception) {
             throw new RuntimeException(exception);
         }
     }
 
+    private void loadIndex(final CorpusSource dataToBeIndexed, final File indexShapeFile, final String indexName,
+                           final JsonNode esconfig, final String configurationChecksum,
+                           final Runnable configurationPreparation) throws IOException {
+        final File checksumFile = new File(dataFolder, indexName + CHECKSUM_FILE_SUFFIX);
+        IndexChecksums previousChecksums = IndexChecksums.read(checksumFile);
+
+        final boolean indexExists = indexExists(indexName);
+        // The analysis files are only prepared when the index is (re)created
+        boolean prepared = false;
+        if (indexExists && previousChecksums.isCompatibleWith(configurationChecksum)) {
+            LOGGER.info("Index shape for " + indexName + " is unchanged - only changed documents will be indexed");
+        } else {
+            if (indexExists) {
+                proxy.admin().indices().delete(deleteIndexRequest(indexName)).actionGet();
+            }
+            previousChecksums = new IndexChecksums(configurationChecksum);
+
+            configurationPreparation.run();
+            prepared = true;
+            createIndex(indexName, esconfig);
+        }
+
+        final IndexChecksums checksums = new IndexChecksums(configurationChecksum);
+        final IndexChecksums indexedChecksums = previousChecksums;
+        try {
+            // Entries are streamed from the corpus - multi-entry archives are loaded in parallel
+            final int[] sent = dataToBeIndexed.getEntries().parallelStream()
+                    .mapToInt(entry -> indexEntry(entry, indexShapeFile, indexName, indexedChecksums, checksums))
+                    .toArray();
+            final boolean trackable = Arrays.stream(sent).noneMatch(changes -> changes < 0);
+
+            if (trackable) {
+                BulkRequest deletes = new BulkRequest();
+                for (final String id : indexedChecksums.deletedIn(checksums)) {
+                    deletes.add(new DeleteRequest(indexName, id));
+                    if (deletes.numberOfActions() == BULK_SIZE) {
+                        submitBulk(deletes, dataToBeIndexed.getName(), indexShapeFile, indexName);
+                        deletes = new BulkRequest();
+                    }
+                }
+                submitBulk(deletes, dataToBeIndexed.getName(), indexShapeFile, indexName);
+                LOGGER.info("Sent " + Arrays.stream(sent).sum() + " changed documents out of " + checksums.size() + " to " + indexName);
+            } else {
+                // Cannot track changes - rebuild the index and send the corpus as it is
+                proxy.admin().indices().delete(deleteIndexRequest(indexName)).actionGet();
+                if (!prepared) {
+                    configurationPreparation.run();
+                }
+                createIndex(indexName, esconfig);
+                final int documents = dataToBeIndexed.getEntries().parallelStream()
+                        .mapToInt(entry -> indexEntry(entry, indexShapeFile, indexName, null, null))
+                        .sum();
+                LOGGER.info("Sent all " + documents + " documents to " + indexName + " - the corpus has duplicate IDs");
+            }
+            proxy.admin().indices().prepareRefresh(indexName).get();
+
+            if (trackable) {
+                checksums.write(checksumFile);
+            } else {
+                Files.deleteIfExists(checksumFile.toPath());
+            }
+        } catch (final RuntimeException exception) {
+            // Make sure the next load starts from scratch
+            checksumFile.delete();
+            throw exception;
+        }
+    }
+
+    /**
+     * Stream a single corpus entry into the index, sending only the
+     * documents which have changed in bulk requests of bounded size.
+     *
+     * @param indexedChecksums the checksums recorded by the previous load,
+     *                         or {@code null} to send every document.
+     * @param checksums        the checksums for the current corpus, populated
+     *                         by this method - {@code null} when every document is sent.
+     * @return the number of documents sent, or -1 if the entry holds an ID
+     * already seen, so the changes cannot be tracked.
+     */
+    private int indexEntry(final CorpusSource.Entry entry, final File indexShapeFile, final String indexName,
+                           final IndexChecksums indexedChecksums, final IndexChecksums checksums) {
+        int changes = 0;
+        try (final BufferedReader reader = new BufferedReader(new InputStreamReader(entry.open(), StandardCharsets.UTF_8))) {
+            BulkRequest bulkRequest = new BulkRequest();
+            String metadataLine;
+            while ((metadataLine = reader.readLine()) != null) {
+                if (metadataLine.trim().isEmpty()) {
+                    continue;
+                }
+                JsonNode metadata = mapper.readTree(metadataLine).get("index");
+                String type = metadata.get("_type").asText();
+                String id = metadata.get("_id").asText();
+                String document = reader.readLine();
+
+                if (checksums != null) {
+                    final String checksum = IndexChecksums.checksum(type + "\n" + document);
+                    if (checksums.put(id, checksum) != null) {
+                        // Duplicate IDs - which one the index keeps depends on load order, so the delta cannot be trusted
+                        return -1;
+                    }
+                    if (indexedChecksums.isUnchanged(id, checksum)) {
+                        continue;
+                    }
+                }
+
+                bulkRequest.add(
+                        new IndexRequest(indexName)
+                                .type(type)
+                                .id(id)
+                                .source(document, XContentType.JSON));
+                changes++;
+                if (bulkRequest.numberOfActions() == BULK_SIZE) {
+                    submitBulk(bulkRequest, entry.getName(), indexShapeFile, indexName);
+                    bulkRequest = new BulkRequest();
+                }
+            }
+            submitBulk(bulkRequest, entry.getName(), indexShapeFile, indexName);
+        } catch (final IOException exception) {
+            throw new UnableToLoadDataException(exception);
+        }
+        return changes;
+    }
+
+    private void submitBulk(final BulkRequest bulkRequest, final String dataName, final File indexShapeFile, final String indexName) {
+        if (bulkRequest.numberOfActions() == 0) {
+            return;
+        }
+
+        final BulkResponse response = proxy.bulk(bulkRequest).actionGet();
+        if (response.hasFailures()) {
+            final String message =
+                    "Unable to load datafile (" +
+                            dataName +
+                            ") in " +
+                            getName() +
+                            " using the index shape (" +
+                            indexShapeFile.getAbsolutePath() +
+                            ") into the index " +
+                            indexName +
+                            ". Error message is: " +
+                            response.buildFailureMessage();
+            throw new UnableToLoadDataException(message);
+        }
+    }
+
+    private boolean indexExists(final String indexName) {
+        return proxy.admin().indices().exists(indicesExistsRequest(indexName)).actionGet().isExists();
+    }
+
+    /**
+     * Find the concrete indices an alias currently points at.
+     *
+     * @param alias the alias name.
+     * @return the names of the indices holding the alias - empty if there
+     * are none, or if the name is a concrete index.
+     */
+    private Set<String> aliasedIndices(final String alias) {
+        final ImmutableOpenMap<String, List<AliasMetaData>> aliases =
+                proxy.admin().indices().prepareGetAliases(alias).get().getAliases();
+        final Set<String> indices = new HashSet<>();
+        aliases.keysIt().forEachRemaining(index -> {
+            if (!aliases.get(index).isEmpty()) {
+                indices.add(index);
+            }
+        });
+        return indices;
+    }
+
+    /**
+     * Move an alias to a new index, or just remove it, in a single step.
+     * Any shared index left without aliases is dropped.
+     *
+     * @param alias     the alias name.
+     * @param indexName the index the alias should point at, or {@code null}
+     *                  if the alias should be removed.
+     */
+    private void releaseAlias(final String alias, final String indexName) {
+        final Set<String> previousIndices = aliasedIndices(alias);
+        if (previousIndices.remove(indexName) && previousIndices.isEmpty()) {
+            return;
+        }
+
+        if (indexName != null || !previousIndices.isEmpty()) {
+            final IndicesAliasesRequestBuilder request = proxy.admin().indices().prepareAliases();
+            previousIndices.forEach(index -> request.removeAlias(index, alias));
+            ofNullable(indexName).ifPresent(index -> request.addAlias(index, alias));
+            request.get();
+        }
+
+        previousIndices.stream()
+                .filter(index -> index.contains(SHARED_INDEX_INFIX))
+                .filter(index -> {
+                    final List<AliasMetaData> remaining =
+                            proxy.admin().indices().prepareGetAliases().setIndices(index).get().getAliases().get(index);
+                    return remaining == null || remaining.isEmpty();
+                })
+                .forEach(this::dropIndex);
+    }
+
+    private void dropIndex(final String indexName) {
+        LOGGER.info("Dropping index " + indexName + " - it is no longer used by any version");
+        proxy.admin().indices().delete(deleteIndexRequest(indexName)).actionGet();
+        loadedIndices.remove(indexName);
+        new File(dataFolder, indexName + CHECKSUM_FILE_SUFFIX).delete();
+    }
+
+    private void createIndex(final String indexName, final JsonNode esconfig) {
+        final CreateIndexRequest request = createIndexRequest(indexName);
+        ofNullable(esconfig.get("settings"))
+                .ifPresent(settings -> {
+                    try {
+                        request.settings(Settings.builder().loadFromSource(mapper.writeValueAsString(settings), XContentType.JSON).build());
+                    } catch (JsonProcessingException exception) {
+                        LOGGER.error("Invalid \"settings\" section in Elasticsearch configuration. " +
+                                "As consequence of that the entire section will be skipped.", exception);
+                    }
+                });
+
+        ofNullable(esconfig.get("mappings"))
+                .ifPresent(mappings -> {
+                    try {
+                        request.mapping("doc", mapper.writeValueAsString(mappings), XContentType.JSON);
+                    } catch (JsonProcessingException exception) {
+                        LOGGER.error("Invalid \"mappings\" section in Elasticsearch configuration. " +
+                                "As consequence of that the entire section will be skipped.", exception);
+                    }
+                });
+
+        proxy.admin().indices().create(request).actionGet();
+    }
+
+    /**
+     * Calculate a checksum covering the index shape and the content of any
+     * analysis files (synonyms, stopwords, protected keywords) it refers to.
+     * This is the index-time fingerprint of the version.
+     */
+    @SafeVarargs
+    private final String configurationChecksum(final JsonNode esconfig, final File configurationFolder, final List<JsonNode>... pathParents) throws IOException {
+        final List<File> files = new ArrayList<>();
+        for (final List<JsonNode> parents : pathParents) {
+            parents.forEach(parent -> parent.fields().forEachRemaining(field -> {
+                if (field.getKey().endsWith("_path")) {
+                    files.add(new File(configurationFolder, field.getValue().asText()));
+                }
+            }));
+        }
+        return IndexChecksums.checksum(esconfig.toString() + IndexChecksums.checksum(files.toArray(new File[0])));
+    }
+
     @Override
     public String getName() {
         return "Elasticsearch";
@@ -254,6 +530,107 @@ public class Elasticsearch implements SearchPlatform {
         }
     }
 
+    @Override
+    public boolean isQueryTemplateSupported() {
+        return storedTemplates;
+    }
+
+    @Override
+    public QueryOrSearchResponse executeQuery(final String collection, final String version, final CompiledQueryTemplate template,
+                                              final String[] values, final String[] fields, final int maxRows) {
+        try {
+            final Optional<String> scriptId = storedScript(version, template);
+            if (!scriptId.isPresent()) {
+                return executeQuery(collection, version, template.render(values), fields, maxRows);
+            }
+
+            final SearchTemplateRequest request =
+                    buildSearchTemplateRequest(templateIndexName(collection, version), scriptId.get(), values, fields, maxRows);
+            return convertResponse(searchTemplate(version, request).getResponse());
+        } catch (final ElasticsearchException e) {
+            LOGGER.error("Caught ElasticsearchException :: " + e.getMessage());
+            return new QueryOrSearchResponse(0, Collections.emptyList());
+        } catch (final IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public List<QueryOrSearchResponse> executeQueries(final String collection, final String version, final List<BatchQuery> queries) {
+        if (storedTemplates) {
+            try {
+                final Optional<MultiSearchTemplateRequest> request =
+                        buildMultiSearchTemplateRequest(templateIndexName(collection, version), version, queries);
+                if (request.isPresent()) {
+                    return convertTemplateResponses(multiSearchTemplate(version, request.get()));
+                }
+            } catch (final ElasticsearchException e) {
+                LOGGER.error("Caught ElasticsearchException :: " + e.getMessage());
+                return queries.stream().map(q -> new QueryOrSearchResponse(0, Collections.emptyList())).collect(toList());
+            } catch (final IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        return executeRenderedQueries(collection, version, queries);
+    }
+
+    /**
+     * Execute a batch of queries with a multi-search, rendering any templates
+     * on the client side.
+     */
+    List<QueryOrSearchResponse> executeRenderedQueries(final String collection, final String version, final List<BatchQuery> queries) {
+        try {
+            final MultiSearchRequest request = buildMultiSearchRequest(getFullyQualifiedDomainName(collection, version), queries);
+            return convertResponses(proxy.multiSearch(request).actionGet());
+        } catch (final ElasticsearchException e) {
+            LOGGER.error("Caught ElasticsearchException :: " + e.getMessage());
+            return queries.stream().map(q -> new QueryOrSearchResponse(0, Collections.emptyList())).collect(toList());
+        } catch (final Exception exception) {
+            throw new RuntimeException(exception);
+        }
+    }
+
+    @Override
+    public CompletableFuture<QueryOrSearchResponse> executeQueryAsync(final String collection, final String version, final String query, final String[] fields, final int maxRows) {
+        final CompletableFuture<QueryOrSearchResponse> future = new CompletableFuture<>();
+        try {
+            final SearchRequest request = buildSearchRequest(getFullyQualifiedDomainName(collection, version), query, fields, maxRows);
+            proxy.search(request, responseListener(future));
+        } catch (final Exception e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Build a listener completing the given future with the converted search
+     * response. As with {@link #executeQuery}, Elasticsearch errors are
+     * logged and result in an empty response.
+     */
+    ActionListener<SearchResponse> responseListener(final CompletableFuture<QueryOrSearchResponse> future) {
+        return new ActionListener<SearchResponse>() {
+            @Override
+            public void onResponse(final SearchResponse response) {
+                try {
+                    future.complete(convertResponse(response));
+                } catch (final RuntimeException e) {
+                    future.completeExceptionally(e);
+                }
+            }
+
+            @Override
+            public void onFailure(final Exception e) {
+                if (e instanceof ElasticsearchException) {
+                    LOGGER.error("Caught ElasticsearchException :: " + e.getMessage());
+                    future.complete(new QueryOrSearchResponse(0, Collections.emptyList()));
+                } else {
+                    future.completeExceptionally(e);
+                }
+            }
+        };
+    }
+
     SearchRequest buildSearchRequest(final String indexName, final String query, final String[] fields, final int maxRows) throws IOException {
         final String q = mapper.writeValueAsString(mapper.readTree(query).get("query"));
         final SearchSourceBuilder qBuilder = new SearchSourceBuilder()
@@ -263,6 +640,183 @@ public class Elasticsearch implements SearchPlatform {
         return new SearchRequest(indexName).source(qBuilder);
     }
 
+    MultiSearchRequest buildMultiSearchRequest(final String indexName, final List<BatchQuery> queries) throws IOException {
+        final MultiSearchRequest request = new MultiSearchRequest();
+        for (final BatchQuery query : queries) {
+            request.add(buildSearchRequest(indexName, query.getQuery(), query.getFields(), query.getMaxRows()));
+        }
+        return request;
+    }
+
+    void configureStoredTemplates(final Map<String, Object> configuration) {
+        storedTemplates = (Boolean) configuration.getOrDefault("storedTemplates", Boolean.FALSE);
+    }
+
+    /**
+     * @param collection the collection being queried.
+     * @param version    the version being queried.
+     * @return the name of the index to run a stored template against.
+     */
+    String templateIndexName(final String collection, final String version) {
+        return getFullyQualifiedDomainName(collection, version);
+    }
+
+    void putStoredScript(final String version, final String scriptId, final String content) throws IOException {
+        proxy.admin().cluster().preparePutStoredScript()
+                .setId(scriptId)
+                .setContent(new BytesArray(content), XContentType.JSON)
+                .get();
+    }
+
+    SearchTemplateResponse searchTemplate(final String version, final SearchTemplateRequest request) throws IOException {
+        return proxy.execute(SearchTemplateAction.INSTANCE, request).actionGet();
+    }
+
+    MultiSearchTemplateResponse multiSearchTemplate(final String version, final MultiSearchTemplateRequest request) throws IOException {
+        return proxy.execute(MultiSearchTemplateAction.INSTANCE, request).actionGet();
+    }
+
+    /**
+     * Find the stored script for a query template, registering it for the
+     * version the first time the template is used.
+     *
+     * @param version  the version being queried.
+     * @param template the compiled query template.
+     * @return the stored script ID, or empty if the template cannot be
+     * converted to a stored script and must be rendered on the client.
+     */
+    Optional<String> storedScript(final String version, final CompiledQueryTemplate template) throws IOException {
+        final Optional<String> source = storedTemplateSources.computeIfAbsent(template.getId(), id -> storedTemplateSource(template));
+        if (!source.isPresent()) {
+            return Optional.empty();
+        }
+
+        final String scriptId = STORED_SCRIPT_PREFIX + template.getId();
+        if (!registeredScripts.containsKey(version + "/" + scriptId)) {
+            synchronized (registeredScripts) {
+                if (!registeredScripts.containsKey(version + "/" + scriptId)) {
+                    final ObjectNode script = mapper.createObjectNode();
+                    script.putObject("script")
+                            .put("lang", "mustache")
+                            .put("source", source.get());
+                    putStoredScript(version, scriptId, mapper.writeValueAsString(script));
+                    registeredScripts.put(version + "/" + scriptId, Boolean.TRUE);
+                }
+            }
+        }
+        return Optional.of(scriptId);
+    }
+
+    /**
+     * Convert a query template into the source of a mustache search
+     * template. The placeholders are replaced by parameter references, so
+     * only their values need to be sent with each query.
+     *
+     * @param template the compiled query template.
+     * @return the mustache source, or empty if the template cannot be parsed
+     * as JSON with its placeholders in place (eg. a placeholder is used as a
+     * number rather than within a string).
+     */
+    Optional<String> storedTemplateSource(final CompiledQueryTemplate template) {
+        try {
+            final JsonNode query = mapper.readTree(template.toSource(i -> PLACEHOLDER_TOKEN + i + "@@")).get("query");
+            if (query == null || query.toString().contains("{{")) {
+                return Optional.empty();
+            }
+
+            String source = mapper.writeValueAsString(query);
+            for (int i = 0; i < template.getPlaceholderNames().size(); i++) {
+                source = source.replace(PLACEHOLDER_TOKEN + i + "@@", "{{p" + i + "}}");
+            }
+            if (source.contains(PLACEHOLDER_TOKEN)) {
+                // Placeholder token was escaped or split by the JSON serialisation
+                return Optional.empty();
+            }
+            return Optional.of("{\"query\":" + source
+                    + ",\"size\":{{" + SIZE_PARAM + "}}"
+                    + ",\"_source\":{{#toJson}}" + FIELDS_PARAM + "{{/toJson}}}");
+        } catch (final IOException e) {
+            LOGGER.info("Query template " + template.getId() + " cannot be stored - it will be rendered for each query :: " + e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    SearchTemplateRequest buildSearchTemplateRequest(final String indexName, final String scriptId, final String[] values,
+                                                     final String[] fields, final int maxRows) {
+        final Map<String, Object> params = new HashMap<>();
+        for (int i = 0; i < values.length; i++) {
+            params.put("p" + i, values[i]);
+        }
+        params.put(SIZE_PARAM, maxRows);
+        params.put(FIELDS_PARAM, fields == null ? emptyList() : asList(fields));
+
+        final SearchTemplateRequest request = new SearchTemplateRequest(new SearchRequest(indexName));
+        request.setScriptType(ScriptType.STORED);
+        request.setScript(scriptId);
+        request.setScriptParams(params);
+        return request;
+    }
+
+    /**
+     * Build a multi-search template request for a batch of queries.
+     *
+     * @return the request, or empty if any of the queries cannot use a
+     * stored template.
+     */
+    Optional<MultiSearchTemplateRequest> buildMultiSearchTemplateRequest(final String indexName, final String version,
+                                                                         final List<BatchQuery> queries) throws IOException {
+        final MultiSearchTemplateRequest request = new MultiSearchTemplateRequest();
+        for (final BatchQuery query : queries) {
+            if (query.getTemplate() == null) {
+                return Optional.empty();
+            }
+            final Optional<String> scriptId = storedScript(version, query.getTemplate());
+            if (!scriptId.isPresent()) {
+                return Optional.empty();
+            }
+            request.add(buildSearchTemplateRequest(indexName, scriptId.get(), query.getValues(), query.getFields(), query.getMaxRows()));
+        }
+        return Optional.of(request);
+    }
+
+    /**
+     * Convert each item of a multi-search template response, in the same
+     * way as {@link #convertResponses(MultiSearchResponse)}.
+     */
+    List<QueryOrSearchResponse> convertTemplateResponses(final MultiSearchTemplateResponse multiSearchResponse) {
+        return stream(multiSearchResponse.getResponses())
+                .map(item -> {
+                    if (item.isFailure()) {
+                        LOGGER.error("Caught exception in multi-search template :: " + item.getFailureMessage());
+                        return new QueryOrSearchResponse(0, Collections.emptyList());
+                    }
+                    return convertResponse(item.getResponse().getResponse());
+                })
+                .collect(toList());
+    }
+
+    /**
+     * Convert each item of a multi-search response. As with
+     * {@link #executeQuery}, an item which failed is logged and results in
+     * an empty response, without failing the rest of the batch.
+     */
+    List<QueryOrSearchResponse> convertResponses(final MultiSearchResponse multiSearchResponse) {
+        return stream(multiSearchResponse.getResponses())
+                .map(item -> {
+                    if (item.isFailure()) {
+                        LOGGER.error("Caught exception in multi-search :: " + item.getFailureMessage());
+                        return new QueryOrSearchResponse(0, Collections.emptyList());
+                    }
+                    return convertResponse(item.getResponse());
+                })
+                .collect(toList());
+    }
+
+    /**
+     * Convert a search response. The engine time is the time the search
+     * took, and - since the raw response is not available - the response
+     * size is the size of the returned document sources.
+     */
     QueryOrSearchResponse convertResponse(final SearchResponse searchResponse) {
         return new QueryOrSearchResponse(
                 searchResponse.getHits().getTotalHits().value,
@@ -272,7 +826,12 @@ public class Elasticsearch implements SearchPlatform {
                             result.put("_id", hit.getId());
                             return result;
                         })
-                        .collect(toList()));
+                        .collect(toList()),
+                searchResponse.getTook().millis(),
+                stream(searchResponse.getHits().getHits())
+                        .filter(hit -> hit.getSourceRef() != null)
+                        .mapToLong(hit -> hit.getSourceRef().length())
+                        .sum());
     }
 
     @Override
@@ -282,7 +841,7 @@ public class Elasticsearch implements SearchPlatform {
 
     @SuppressWarnings("unchecked")
     private List<Class<? extends Plugin>> plugins(final Map<String, Object> configuration) {
-        final List<Class<? extends Plugin>> defaultPlugins = asList(Netty4Plugin.class, CommonAnalysisPlugin.class);
+        final List<Class<? extends Plugin>> defaultPlugins = asList(Netty4Plugin.class, CommonAnalysisPlugin.class, MustachePlugin.class);
         final List<? extends Class<? extends Plugin>> customPlugins =
                 ofNullable((List<String>)configuration.get("plugins"))
                         .map(plugins ->
@@ -19,6 +19,7 @@ package io.sease.rre.search.api.impl;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.sease.rre.search.api.BatchQuery;
 import io.sease.rre.search.api.QueryOrSearchResponse;
 import org.apache.http.HttpHost;
 import org.apache.http.auth.AuthScope;
@@ -28,6 +29,8 @@ import org.apache.http.impl.client.BasicCredentialsProvider;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.action.admin.cluster.storedscripts.PutStoredScriptRequest;
+import org.elasticsearch.action.search.MultiSearchRequest;
 import org.elasticsearch.action.search.SearchRequest;
 import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.client.RequestOptions;
@@ -35,6 +38,12 @@ import org.elasticsearch.client.RestClient;
 import org.elasticsearch.client.RestClientBuilder;
 import org.elasticsearch.client.RestHighLevelClient;
 import org.elasticsearch.client.indices.GetIndexRequest;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.script.mustache.MultiSearchTemplateRequest;
+import org.elasticsearch.script.mustache.MultiSearchTemplateResponse;
+import org.elasticsearch.script.mustache.SearchTemplateRequest;
+import org.elasticsearch.script.mustache.SearchTemplateResponse;
 
 import java.io.File;
 import java.io.IOException;
@@ -42,6 +51,8 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
 
 /**
  * SearchPlatform implementation for connecting to and reading from an external
@@ -59,7 +70,7 @@ public class ExternalElasticsearch extends Elasticsearch {
 
     @Override
     public void beforeStart(Map<String, Object> configuration) {
-        // No-op for this implementation
+        configureStoredTemplates(configuration);
     }
 
     @Override
@@ -125,12 +136,64 @@ public class ExternalElasticsearch extends Elasticsearch {
         }
     }
 
+    @Override
+    List<QueryOrSearchResponse> executeRenderedQueries(final String collection, final String version, final List<BatchQuery> queries) {
+        try {
+            final MultiSearchRequest request = buildMultiSearchRequest(collection, queries);
+            return convertResponses(getClient(version).msearch(request, RequestOptions.DEFAULT));
+        } catch (final ElasticsearchException e) {
+            LOGGER.error("Caught ElasticsearchException :: " + e.getMessage());
+            return queries.stream().map(q -> new QueryOrSearchResponse(0, Collections.emptyList())).collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public CompletableFuture<QueryOrSearchResponse> executeQueryAsync(final String collection, final String version, final String query, final String[] fields, final int maxRows) {
+        final CompletableFuture<QueryOrSearchResponse> future = new CompletableFuture<>();
+        try {
+            final SearchRequest request = buildSearchRequest(collection, query, fields, maxRows);
+            getClient(version).searchAsync(request, RequestOptions.DEFAULT, responseListener(future));
+        } catch (final Exception e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    @Override
+    String templateIndexName(final String collection, final String version) {
+        return collection;
+    }
+
+    @Override
+    void putStoredScript(final String version, final String scriptId, final String content) throws IOException {
+        final PutStoredScriptRequest request = new PutStoredScriptRequest()
+                .id(scriptId)
+                .content(new BytesArray(content), XContentType.JSON);
+        getClient(version).putScript(request, RequestOptions.DEFAULT);
+    }
+
+    @Override
+    SearchTemplateResponse searchTemplate(final String version, final SearchTemplateRequest request) throws IOException {
+        return getClient(version).searchTemplate(request, RequestOptions.DEFAULT);
+    }
+
+    @Override
+    MultiSearchTemplateResponse multiSearchTemplate(final String version, final MultiSearchTemplateRequest request) throws IOException {
+        return getClient(version).msearchTemplate(request, RequestOptions.DEFAULT);
+    }
+
     private SearchResponse runQuery(final String clientId, final SearchRequest request) throws IOException {
+        return getClient(clientId).search(request, RequestOptions.DEFAULT);
+    }
+
+    private RestHighLevelClient getClient(final String clientId) {
         RestHighLevelClient client = indexClients.get(clientId);
         if (client == null) {
             throw new RuntimeException("No HTTP client found for index " + clientId);
         }
-        return client.search(request, RequestOptions.DEFAULT);
+        return client;
     }
 
     @Override
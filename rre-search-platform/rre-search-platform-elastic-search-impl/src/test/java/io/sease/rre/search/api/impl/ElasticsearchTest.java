@@ -16,6 +16,9 @@
  */
 package io.sease.rre.search.api.impl;
 
+import io.sease.rre.search.api.BatchQuery;
+import io.sease.rre.search.api.CompiledQueryTemplate;
+import io.sease.rre.search.api.QueryOrSearchResponse;
 import io.sease.rre.search.api.SearchPlatform;
 import org.junit.After;
 import org.junit.Before;
@@ -26,9 +29,15 @@ import org.junit.rules.TemporaryFolder;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
@@ -36,6 +45,12 @@ public class ElasticsearchTest {
 
     private static final String INDEX_NAME = "test";
     private static final String VERSION = "1.0";
+    private static final String MATCH_ALL = "{\"query\": {\"match_all\": {}}}";
+    private static final String MATCH_NONE = "{\"query\": {\"match_none\": {}}}";
+    private static final CompiledQueryTemplate NAME_TEMPLATE = new CompiledQueryTemplate(
+            "{\"query\": {\"match\": {\"name\": \"$query\"}}}", Collections.singletonList("$query"));
+    private static final CompiledQueryTemplate STRINGS_TEMPLATE = new CompiledQueryTemplate(
+            "{\"query\": {\"term\": {\"number_of_strings\": $strings}}}", Collections.singletonList("$strings"));
 
     @Rule
     public TemporaryFolder tempFolder = new TemporaryFolder();
@@ -100,6 +115,198 @@ public class ElasticsearchTest {
         platform.close();
     }
 
+    @Test
+    public void versionsWithSameIndexShapeShareIndex() throws Exception {
+        Map<String, Object> configuration = buildConfiguration();
+        platform.beforeStart(configuration);
+        platform.start();
+        loadVersion("v1.0");
+        loadVersion("v1.1");
+
+        assertTrue(platform.checkCollection(INDEX_NAME, "v1.0"));
+        assertTrue(platform.checkCollection(INDEX_NAME, "v1.1"));
+        long totalHits = platform.executeQuery(INDEX_NAME, "v1.0", MATCH_ALL, new String[]{"_id"}, 10).totalHits();
+        assertTrue(totalHits > 0);
+        assertEquals(totalHits, platform.executeQuery(INDEX_NAME, "v1.1", MATCH_ALL, new String[]{"_id"}, 10).totalHits());
+        assertEquals(1, countIndexChecksumFiles(configuration));
+        platform.close();
+    }
+
+    @Test
+    public void versionsHaveSeparateIndicesWhenSharingDisabled() throws Exception {
+        Map<String, Object> configuration = buildConfiguration();
+        configuration.put("shareIndices", Boolean.FALSE);
+        platform.beforeStart(configuration);
+        platform.start();
+        loadVersion("v1.0");
+        loadVersion("v1.1");
+
+        assertTrue(platform.checkCollection(INDEX_NAME, "v1.0"));
+        assertTrue(platform.checkCollection(INDEX_NAME, "v1.1"));
+        assertEquals(2, countIndexChecksumFiles(configuration));
+        platform.close();
+    }
+
+    @Test
+    public void corpusWithDuplicateIds_isLoadedInFullWithoutChecksums() throws Exception {
+        Map<String, Object> configuration = buildConfiguration();
+        platform.beforeStart(configuration);
+        platform.start();
+        File corpus = tempFolder.newFile("duplicates.bulk");
+        Files.write(corpus.toPath(), Arrays.asList(
+                "{\"index\" : {\"_type\":\"doc\",\"_id\":\"1\"}}",
+                "{\"name\":\"Fender Jazz Bass\", \"number_of_strings\": 4}",
+                "{\"index\" : {\"_type\":\"doc\",\"_id\":\"2\"}}",
+                "{\"name\":\"Fender Precision\", \"number_of_strings\": 4}",
+                "{\"index\" : {\"_type\":\"doc\",\"_id\":\"1\"}}",
+                "{\"name\":\"Warwick Thumb\", \"number_of_strings\": 5}"));
+        platform.load(corpus,
+                new File(this.getClass().getResource("/elasticsearch/configuration_sets/v1.0/index-shape.json").getPath()),
+                INDEX_NAME, VERSION);
+
+        assertEquals(2, platform.executeQuery(INDEX_NAME, VERSION, MATCH_ALL, new String[]{"_id"}, 10).totalHits());
+        assertEquals(0, countIndexChecksumFiles(configuration));
+        platform.close();
+    }
+
+    @Test
+    public void compatibleIndexReloadedWithDuplicateIds_isRebuiltWithAnalysisFiles() throws Exception {
+        Map<String, Object> configuration = buildConfiguration();
+        File versionFolder = tempFolder.newFolder("synonyms");
+        File indexShape = new File(versionFolder, "index-shape.json");
+        Files.write(new File(versionFolder, "synonyms.txt").toPath(), Collections.singletonList("bass, guitar"));
+        Files.write(indexShape.toPath(), Collections.singletonList(
+                "{\"settings\": {\"number_of_shards\": 1, \"number_of_replicas\": 0, \"analysis\": {"
+                        + "\"filter\": {\"synonyms\": {\"type\": \"synonym\", \"synonyms_path\": \"synonyms.txt\"}},"
+                        + "\"analyzer\": {\"raw_text\": {\"tokenizer\": \"standard\", \"filter\": [\"lowercase\", \"synonyms\"]}}}},"
+                        + "\"mappings\": {\"doc\": {\"properties\": {\"name\": {\"type\": \"text\", \"analyzer\": \"raw_text\"}}}}}"));
+
+        platform.beforeStart(configuration);
+        platform.start();
+        platform.load(new File(this.getClass().getResource("/elasticsearch/corpora/electric_basses.bulk").getPath()),
+                indexShape, INDEX_NAME, VERSION);
+        assertEquals(1, countIndexChecksumFiles(configuration));
+        platform.close();
+
+        // A new run finds the index compatible, then finds it cannot track the corpus
+        platform = new Elasticsearch();
+        platform.beforeStart(configuration);
+        platform.start();
+        File corpus = tempFolder.newFile("duplicates.bulk");
+        Files.write(corpus.toPath(), Arrays.asList(
+                "{\"index\" : {\"_type\":\"doc\",\"_id\":\"1\"}}",
+                "{\"name\":\"Fender Jazz Bass\"}",
+                "{\"index\" : {\"_type\":\"doc\",\"_id\":\"1\"}}",
+                "{\"name\":\"Warwick Thumb Bass\"}"));
+        platform.load(corpus, indexShape, INDEX_NAME, VERSION);
+
+        assertEquals(1, platform.executeQuery(INDEX_NAME, VERSION, MATCH_ALL, new String[]{"_id"}, 10).totalHits());
+        assertEquals(1, platform.executeQuery(INDEX_NAME, VERSION,
+                "{\"query\": {\"match\": {\"name\": \"guitar\"}}}", new String[]{"_id"}, 10).totalHits());
+        assertEquals(0, countIndexChecksumFiles(configuration));
+        platform.close();
+    }
+
+    @Test
+    public void executeQueryAsync_returnsSameResultsAsExecuteQuery() throws Exception {
+        Map<String, Object> configuration = buildConfiguration();
+        platform.beforeStart(configuration);
+        platform.start();
+        loadVersion(VERSION);
+
+        QueryOrSearchResponse expected = platform.executeQuery(INDEX_NAME, VERSION, MATCH_ALL, new String[]{"_id"}, 10);
+        QueryOrSearchResponse response = platform.executeQueryAsync(INDEX_NAME, VERSION, MATCH_ALL, new String[]{"_id"}, 10).get(10, TimeUnit.SECONDS);
+
+        assertTrue(response.totalHits() > 0);
+        assertEquals(expected.totalHits(), response.totalHits());
+        assertEquals(expected.hits(), response.hits());
+        platform.close();
+    }
+
+    @Test
+    public void executeQueries_returnsResponsesInQueryOrder() throws Exception {
+        Map<String, Object> configuration = buildConfiguration();
+        platform.beforeStart(configuration);
+        platform.start();
+        loadVersion(VERSION);
+
+        List<BatchQuery> queries = Arrays.asList(
+                new BatchQuery(MATCH_ALL, new String[]{"_id"}, 10),
+                new BatchQuery(MATCH_NONE, new String[]{"_id"}, 10),
+                new BatchQuery(MATCH_ALL, new String[]{"_id"}, 1));
+        List<QueryOrSearchResponse> responses = platform.executeQueries(INDEX_NAME, VERSION, queries);
+
+        assertEquals(3, responses.size());
+        assertEquals(platform.executeQuery(INDEX_NAME, VERSION, MATCH_ALL, new String[]{"_id"}, 10).hits(), responses.get(0).hits());
+        assertEquals(0, responses.get(1).totalHits());
+        assertEquals(1, responses.get(2).hits().size());
+        platform.close();
+    }
+
+    @Test
+    public void storedTemplateQueries_returnSameResultsAsRenderedQueries() throws Exception {
+        Map<String, Object> configuration = buildConfiguration();
+        configuration.put("storedTemplates", Boolean.TRUE);
+        platform.beforeStart(configuration);
+        platform.start();
+        loadVersion(VERSION);
+
+        assertTrue(platform.isQueryTemplateSupported());
+        assertTrue(((Elasticsearch) platform).storedTemplateSource(NAME_TEMPLATE).isPresent());
+        String[] fields = new String[]{"_id", "name"};
+        String[] values = new String[]{"warwick"};
+        QueryOrSearchResponse expected = platform.executeQuery(INDEX_NAME, VERSION, NAME_TEMPLATE.render(values), fields, 10);
+        QueryOrSearchResponse response = platform.executeQuery(INDEX_NAME, VERSION, NAME_TEMPLATE, values, fields, 10);
+
+        assertEquals(2, response.totalHits());
+        assertEquals(expected.hits(), response.hits());
+
+        List<QueryOrSearchResponse> responses = platform.executeQueries(INDEX_NAME, VERSION, Arrays.asList(
+                new BatchQuery(NAME_TEMPLATE, values, fields, 10),
+                new BatchQuery(NAME_TEMPLATE, new String[]{"fender"}, fields, 1)));
+        assertEquals(expected.hits(), responses.get(0).hits());
+        assertEquals(2, responses.get(1).totalHits());
+        assertEquals(1, responses.get(1).hits().size());
+        platform.close();
+    }
+
+    @Test
+    public void storedTemplateQueries_renderTemplatesWhichCannotBeStored() throws Exception {
+        Map<String, Object> configuration = buildConfiguration();
+        configuration.put("storedTemplates", Boolean.TRUE);
+        platform.beforeStart(configuration);
+        platform.start();
+        loadVersion(VERSION);
+
+        assertFalse(((Elasticsearch) platform).storedTemplateSource(STRINGS_TEMPLATE).isPresent());
+        String[] values = new String[]{"4"};
+        QueryOrSearchResponse response = platform.executeQuery(INDEX_NAME, VERSION, STRINGS_TEMPLATE, values, new String[]{"_id"}, 10);
+        List<QueryOrSearchResponse> responses = platform.executeQueries(INDEX_NAME, VERSION, Arrays.asList(
+                new BatchQuery(NAME_TEMPLATE, new String[]{"warwick"}, new String[]{"_id"}, 10),
+                new BatchQuery(STRINGS_TEMPLATE, values, new String[]{"_id"}, 10)));
+
+        assertTrue(response.totalHits() > 0);
+        assertEquals(platform.executeQuery(INDEX_NAME, VERSION, STRINGS_TEMPLATE.render(values), new String[]{"_id"}, 10).hits(), response.hits());
+        assertEquals(2, responses.get(0).totalHits());
+        assertEquals(response.hits(), responses.get(1).hits());
+        platform.close();
+    }
+
+    private void loadVersion(String version) throws IOException {
+        File versionFolder = tempFolder.newFolder(version);
+        File indexShape = new File(versionFolder, "index-shape.json");
+        Files.copy(new File(this.getClass().getResource("/elasticsearch/configuration_sets/v1.0/index-shape.json").getPath()).toPath(), indexShape.toPath());
+        platform.load(
+                new File(this.getClass().getResource("/elasticsearch/corpora/electric_basses.bulk").getPath()),
+                indexShape,
+                INDEX_NAME, version);
+    }
+
+    private long countIndexChecksumFiles(Map<String, Object> configuration) {
+        File[] files = new File((String) configuration.get("path.data")).listFiles((dir, name) -> name.endsWith(".rre-checksums"));
+        return files == null ? 0 : files.length;
+    }
+
     private Map<String, Object> buildConfiguration() throws IOException {
         Map<String, Object> configuration = new HashMap<>();
         File homeFolder = tempFolder.newFolder();
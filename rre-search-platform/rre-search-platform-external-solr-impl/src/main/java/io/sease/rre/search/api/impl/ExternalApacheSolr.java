@@ -16,18 +16,26 @@
  */
 package io.sease.rre.search.api.impl;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.sease.rre.search.api.ParsedQueryCache;
 import io.sease.rre.search.api.QueryOrSearchResponse;
 import io.sease.rre.search.api.SearchPlatform;
 import org.apache.solr.client.solrj.SolrClient;
 import org.apache.solr.client.solrj.SolrQuery;
 import org.apache.solr.client.solrj.SolrRequest;
 import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.impl.Http2SolrClient;
+import org.apache.solr.client.solrj.request.QueryRequest;
+import org.apache.solr.client.solrj.response.QueryResponse;
 import org.apache.solr.client.solrj.response.SolrPingResponse;
 import org.apache.solr.common.SolrException;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.common.util.NamedList;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -38,7 +46,9 @@ import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 import static java.util.Optional.of;
 
@@ -59,7 +69,13 @@ public class ExternalApacheSolr implements SearchPlatform {
     private static final String NAME = "External Apache Solr";
     static final String SETTINGS_FILE = "solr-settings.json";
 
+    private static final int QUERY_CACHE_SIZE = 10000;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
     private final SolrClientManager clientManager = new SolrClientManager();
+    private final ParsedQueryCache<SolrParams> queryParams = new ParsedQueryCache<>(QUERY_CACHE_SIZE, ExternalApacheSolr::parseQuery);
 
     @Override
     public void beforeStart(Map<String, Object> configuration) {
@@ -79,12 +95,9 @@ public class ExternalApacheSolr implements SearchPlatform {
     @Override
     public void load(File dataToBeIndexed, File settingsFile, String collection, String version) {
         // Corpus file is not used for this implementation
-        ObjectMapper mapper = new ObjectMapper();
-        mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
-
         try {
             // Load the index settings for this version of the search platform
-            SolrSettings settings = mapper.readValue(settingsFile, SolrSettings.class);
+            SolrSettings settings = MAPPER.readValue(settingsFile, SolrSettings.class);
 
             if (clientManager.getSolrClient(version) == null) {
                 clientManager.buildSolrClient(version, settings);
@@ -102,32 +115,10 @@ public class ExternalApacheSolr implements SearchPlatform {
     @Override
     public QueryOrSearchResponse executeQuery(String collection, String version, String queryString, String[] fields, int maxRows) {
         try {
-            final SolrQuery query =
-                    new SolrQuery()
-                            .setRows(maxRows)
-                            .setFields(fields);
-            final ObjectMapper mapper = new ObjectMapper();
-            final JsonNode queryDef = mapper.readTree(queryString);
-
-            for (final Iterator<Map.Entry<String, JsonNode>> iterator = queryDef.fields(); iterator.hasNext(); ) {
-                final Map.Entry<String, JsonNode> field = iterator.next();
-                final String value;
-                if (field.getValue().isValueNode()) {
-                    value = field.getValue().asText();
-                } else {
-                    // Either an array or an object - use writeValueAsString() instead
-                    // to convert to a string. Useful for writing JSON queries without escaping them.
-                    value = mapper.writeValueAsString(field.getValue());
-                }
-                query.add(field.getKey(), value);
-            }
-
+            final SolrQuery query = buildQuery(queryString, fields, maxRows);
             return of(clientManager.getSolrClient(version)
                     .query(collection, query, SolrRequest.METHOD.POST))
-                    .map(response ->
-                            new QueryOrSearchResponse(
-                                    response.getResults().getNumFound(),
-                                    new ArrayList<Map<String, Object>>(response.getResults())))
+                    .map(this::convertResponse)
                     .get();
         } catch (SolrException e) {
             LOGGER.error("Caught Solr exception :: " + e.getMessage());
@@ -137,6 +128,93 @@ public class ExternalApacheSolr implements SearchPlatform {
         }
     }
 
+    /**
+     * Executes the given query without blocking the calling thread. This is
+     * only possible when the version uses a standalone HTTP/2 client (ie.
+     * {@code useHttp2} is set and no ZooKeeper hosts are configured) - other
+     * clients have no non-blocking API, so fall back to running the query
+     * on the calling thread.
+     */
+    @Override
+    public CompletableFuture<QueryOrSearchResponse> executeQueryAsync(String collection, String version, String queryString, String[] fields, int maxRows) {
+        final SolrClient client = clientManager.getSolrClient(version);
+        if (!(client instanceof Http2SolrClient)) {
+            return SearchPlatform.super.executeQueryAsync(collection, version, queryString, fields, maxRows);
+        }
+
+        final CompletableFuture<QueryOrSearchResponse> future = new CompletableFuture<>();
+        try {
+            final QueryRequest request = new QueryRequest(buildQuery(queryString, fields, maxRows), SolrRequest.METHOD.POST);
+            ((Http2SolrClient) client).request(request, collection, new Http2SolrClient.OnComplete() {
+                @Override
+                public void onSuccess(NamedList<Object> result) {
+                    future.complete(convertResponse(new QueryResponse(result, client)));
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    if (t instanceof SolrException) {
+                        LOGGER.error("Caught Solr exception :: " + t.getMessage());
+                        future.complete(new QueryOrSearchResponse(0, Collections.emptyList()));
+                    } else {
+                        future.completeExceptionally(t);
+                    }
+                }
+            });
+        } catch (SolrException e) {
+            LOGGER.error("Caught Solr exception :: " + e.getMessage());
+            future.complete(new QueryOrSearchResponse(0, Collections.emptyList()));
+        } catch (final Exception exception) {
+            future.completeExceptionally(exception);
+        }
+        return future;
+    }
+
+    SolrQuery buildQuery(String queryString, String[] fields, int maxRows) throws IOException {
+        final SolrQuery query =
+                new SolrQuery()
+                        .setRows(maxRows)
+                        .setFields(fields);
+        final SolrParams params = queryParams.get(queryString);
+        // Add rather than set, so query values are appended to the rows and fields
+        for (final Iterator<String> names = params.getParameterNamesIterator(); names.hasNext(); ) {
+            final String name = names.next();
+            query.add(name, params.getParams(name).clone());
+        }
+        return query;
+    }
+
+    /**
+     * Convert a rendered query into request parameters. Each top-level field
+     * of the query becomes a parameter.
+     */
+    private static SolrParams parseQuery(String queryString) throws IOException {
+        final ModifiableSolrParams params = new ModifiableSolrParams();
+        final JsonNode queryDef = MAPPER.readTree(queryString);
+
+        for (final Iterator<Map.Entry<String, JsonNode>> iterator = queryDef.fields(); iterator.hasNext(); ) {
+            final Map.Entry<String, JsonNode> field = iterator.next();
+            final String value;
+            if (field.getValue().isValueNode()) {
+                value = field.getValue().asText();
+            } else {
+                // Either an array or an object - use writeValueAsString() instead
+                // to convert to a string. Useful for writing JSON queries without escaping them.
+                value = MAPPER.writeValueAsString(field.getValue());
+            }
+            params.add(field.getKey(), value);
+        }
+        return params;
+    }
+
+    private QueryOrSearchResponse convertResponse(QueryResponse response) {
+        return new QueryOrSearchResponse(
+                response.getResults().getNumFound(),
+                new ArrayList<Map<String, Object>>(response.getResults()),
+                response.getQTime(),
+                QueryOrSearchResponse.UNKNOWN);
+    }
+
     @Override
     public String getName() {
         return NAME;
@@ -193,17 +271,38 @@ public class ExternalApacheSolr implements SearchPlatform {
         private final Integer connectionTimeout;
         @JsonProperty("socketTimeoutMillis")
         private final Integer socketTimeout;
+        @JsonProperty("maxConnectionsPerHost")
+        private final Integer maxConnectionsPerHost;
+        @JsonProperty("keepAliveMillis")
+        private final Long keepAlive;
+        @JsonProperty("useHttp2")
+        private final boolean useHttp2;
+
+        public SolrSettings(List<String> baseUrls,
+                            List<String> zkHosts,
+                            String zkChroot,
+                            Integer connectionTimeout,
+                            Integer socketTimeout) throws IllegalArgumentException {
+            this(baseUrls, zkHosts, zkChroot, connectionTimeout, socketTimeout, null, null, null);
+        }
 
+        @JsonCreator
         public SolrSettings(@JsonProperty("baseUrls") List<String> baseUrls,
                             @JsonProperty("zkHosts") List<String> zkHosts,
                             @JsonProperty("zkChroot") String zkChroot,
                             @JsonProperty("connectionTimeoutMillis") Integer connectionTimeout,
-                            @JsonProperty("socketTimeoutMillis") Integer socketTimeout) throws IllegalArgumentException {
+                            @JsonProperty("socketTimeoutMillis") Integer socketTimeout,
+                            @JsonProperty("maxConnectionsPerHost") Integer maxConnectionsPerHost,
+                            @JsonProperty("keepAliveMillis") Long keepAlive,
+                            @JsonProperty("useHttp2") Boolean useHttp2) throws IllegalArgumentException {
             this.baseUrls = baseUrls;
             this.zkHosts = zkHosts;
             this.zkChroot = (zkChroot != null && zkChroot.length() > 0 ? zkChroot : null);
             this.connectionTimeout = connectionTimeout;
             this.socketTimeout = socketTimeout;
+            this.maxConnectionsPerHost = maxConnectionsPerHost;
+            this.keepAlive = keepAlive;
+            this.useHttp2 = useHttp2 != null && useHttp2;
 
             // Check that the required properties are set
             validate();
@@ -213,6 +312,9 @@ public class ExternalApacheSolr implements SearchPlatform {
             if ((baseUrls == null || baseUrls.isEmpty()) && !hasZookeeperSettings()) {
                 throw new IllegalArgumentException("Required configuration missing! No Solr or Zookeeper URLs set!");
             }
+            if (maxConnectionsPerHost != null && maxConnectionsPerHost < 1) {
+                throw new IllegalArgumentException("maxConnectionsPerHost must be greater than zero");
+            }
         }
 
         public List<String> getBaseUrls() {
@@ -238,5 +340,45 @@ public class ExternalApacheSolr implements SearchPlatform {
         public Integer getSocketTimeout() {
             return socketTimeout;
         }
+
+        public Integer getMaxConnectionsPerHost() {
+            return maxConnectionsPerHost;
+        }
+
+        public Long getKeepAlive() {
+            return keepAlive;
+        }
+
+        public boolean isUseHttp2() {
+            return useHttp2;
+        }
+
+        /*
+         * Settings are compared by value, so that versions connecting to the
+         * same cluster in the same way can share a client.
+         */
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            SolrSettings that = (SolrSettings) o;
+            return useHttp2 == that.useHttp2 &&
+                    Objects.equals(baseUrls, that.baseUrls) &&
+                    Objects.equals(zkHosts, that.zkHosts) &&
+                    Objects.equals(zkChroot, that.zkChroot) &&
+                    Objects.equals(connectionTimeout, that.connectionTimeout) &&
+                    Objects.equals(socketTimeout, that.socketTimeout) &&
+                    Objects.equals(maxConnectionsPerHost, that.maxConnectionsPerHost) &&
+                    Objects.equals(keepAlive, that.keepAlive);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(baseUrls, zkHosts, zkChroot, connectionTimeout, socketTimeout, maxConnectionsPerHost, keepAlive, useHttp2);
+        }
     }
 }
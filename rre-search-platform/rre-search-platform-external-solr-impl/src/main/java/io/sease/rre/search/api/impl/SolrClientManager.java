@@ -16,20 +16,36 @@
  */
 package io.sease.rre.search.api.impl;
 
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.impl.CloudHttp2SolrClient;
 import org.apache.solr.client.solrj.impl.CloudSolrClient;
+import org.apache.solr.client.solrj.impl.Http2SolrClient;
+import org.apache.solr.client.solrj.impl.HttpClientUtil;
 import org.apache.solr.client.solrj.impl.HttpSolrClient;
 import org.apache.solr.client.solrj.impl.SolrClientBuilder;
+import org.apache.solr.common.params.ModifiableSolrParams;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Optional.ofNullable;
 
 /**
  * Manager class for Solr Clients in use when connecting to external Solr instances.
+ * <p>
+ * Clients are shared between target indexes with the same connection
+ * settings, so every version pointing at the same Solr instance or cluster
+ * uses the same connection pool (and, for SolrCloud, the same ZooKeeper
+ * session).
  *
  * @author Matt Pearce (matt@flax.co.uk)
  */
@@ -38,31 +54,96 @@ class SolrClientManager implements Closeable {
     private static final Logger LOGGER = LoggerFactory.getLogger(SolrClientManager.class);
 
     private final Map<String, SolrClient> indexClients = new HashMap<>();
+    private final Map<ExternalApacheSolr.SolrSettings, SolrClient> sharedClients = new HashMap<>();
+    private final List<Closeable> transports = new ArrayList<>();
 
     /**
      * Build a SolrClient instance, associating it with a specific target index
-     * (or core).
+     * (or core). If a client has already been built with the same settings,
+     * it will be re-used.
      *
      * @param targetIndexName the name of the index/core this client should be
      *                        used with.
      * @param settings        the {@link io.sease.rre.search.api.impl.ExternalApacheSolr.SolrSettings}
      *                        containing the client connection details.
      */
-    void buildSolrClient(String targetIndexName, ExternalApacheSolr.SolrSettings settings) {
-        final SolrClient client;
+    synchronized void buildSolrClient(String targetIndexName, ExternalApacheSolr.SolrSettings settings) {
+        indexClients.put(targetIndexName, sharedClients.computeIfAbsent(settings, this::createSolrClient));
+    }
+
+    private SolrClient createSolrClient(ExternalApacheSolr.SolrSettings settings) {
+        if (settings.isUseHttp2()) {
+            return createHttp2SolrClient(settings);
+        }
+
+        final CloseableHttpClient httpClient = buildHttpClient(settings);
+        transports.add(httpClient);
 
+        final SolrClient client;
         if (settings.hasZookeeperSettings()) {
             final CloudSolrClient.Builder builder = new CloudSolrClient.Builder(settings.getZkHosts(), settings.getZkChroot());
-            client = applyTimeoutSettings(builder, settings).build();
+            client = applyTimeoutSettings(builder, settings).withHttpClient(httpClient).build();
         } else if (settings.getBaseUrls().size() > 1) {
             final CloudSolrClient.Builder builder = new CloudSolrClient.Builder(settings.getBaseUrls());
-            client = applyTimeoutSettings(builder, settings).build();
+            client = applyTimeoutSettings(builder, settings).withHttpClient(httpClient).build();
         } else {
             final HttpSolrClient.Builder builder = new HttpSolrClient.Builder(settings.getBaseUrls().get(0));
-            client = applyTimeoutSettings(builder, settings).build();
+            client = applyTimeoutSettings(builder, settings).withHttpClient(httpClient).build();
         }
 
-        indexClients.put(targetIndexName, client);
+        return client;
+    }
+
+    /**
+     * Build an HTTP/2 client. Requests to the same host are multiplexed over
+     * a single connection, so the keep-alive setting does not apply.
+     */
+    private SolrClient createHttp2SolrClient(ExternalApacheSolr.SolrSettings settings) {
+        final boolean cloud = settings.hasZookeeperSettings() || settings.getBaseUrls().size() > 1;
+        final Http2SolrClient.Builder transportBuilder =
+                cloud ? new Http2SolrClient.Builder() : new Http2SolrClient.Builder(settings.getBaseUrls().get(0));
+        if (settings.getConnectionTimeout() != null) {
+            transportBuilder.connectionTimeout(settings.getConnectionTimeout());
+        }
+        if (settings.getSocketTimeout() != null) {
+            transportBuilder.idleTimeout(settings.getSocketTimeout());
+        }
+        if (settings.getMaxConnectionsPerHost() != null) {
+            transportBuilder.maxConnectionsPerHost(settings.getMaxConnectionsPerHost());
+        }
+        final Http2SolrClient transport = transportBuilder.build();
+
+        if (settings.hasZookeeperSettings()) {
+            transports.add(transport);
+            return new CloudHttp2SolrClient.Builder(settings.getZkHosts(), settings.getZkChroot())
+                    .withHttpClient(transport)
+                    .build();
+        } else if (settings.getBaseUrls().size() > 1) {
+            transports.add(transport);
+            return new CloudHttp2SolrClient.Builder(settings.getBaseUrls())
+                    .withHttpClient(transport)
+                    .build();
+        }
+        return transport;
+    }
+
+    /**
+     * Build a pooled HTTP client for the HTTP/1.1 transport, applying the
+     * connection pool settings.
+     */
+    private CloseableHttpClient buildHttpClient(ExternalApacheSolr.SolrSettings settings) {
+        final PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(
+                HttpClientUtil.getSchemaRegisteryProvider().getSchemaRegistry(), null, null, null,
+                ofNullable(settings.getKeepAlive()).orElse(-1L), TimeUnit.MILLISECONDS);
+
+        final ModifiableSolrParams params = new ModifiableSolrParams();
+        final int maxConnectionsPerHost = ofNullable(settings.getMaxConnectionsPerHost()).orElse(HttpClientUtil.DEFAULT_MAXCONNECTIONSPERHOST);
+        params.set(HttpClientUtil.PROP_MAX_CONNECTIONS_PER_HOST, maxConnectionsPerHost);
+        params.set(HttpClientUtil.PROP_MAX_CONNECTIONS, Math.max(maxConnectionsPerHost, HttpClientUtil.DEFAULT_MAXCONNECTIONS));
+        connectionManager.setDefaultMaxPerRoute(maxConnectionsPerHost);
+        connectionManager.setMaxTotal(Math.max(maxConnectionsPerHost, HttpClientUtil.DEFAULT_MAXCONNECTIONS));
+
+        return HttpClientUtil.createClient(params, connectionManager);
     }
 
     /**
@@ -74,7 +155,7 @@ class SolrClientManager implements Closeable {
      * @param <C>      the type of SolrClientBuilder in use.
      * @return the SolrClientBuilder with the timeout settings applied.
      */
-    private <C extends SolrClientBuilder> C applyTimeoutSettings(C builder, ExternalApacheSolr.SolrSettings settings) {
+    private <C extends SolrClientBuilder<C>> C applyTimeoutSettings(C builder, ExternalApacheSolr.SolrSettings settings) {
         if (settings.getConnectionTimeout() != null) {
             builder.withConnectionTimeout(settings.getConnectionTimeout());
         }
@@ -92,20 +173,27 @@ class SolrClientManager implements Closeable {
      * @return the client, or {@code null} if no client has been set for the
      * target index.
      */
-    SolrClient getSolrClient(String targetIndexName) {
+    synchronized SolrClient getSolrClient(String targetIndexName) {
         return indexClients.get(targetIndexName);
     }
 
     /**
-     * Ensure that all of the index clients are closed.
+     * Ensure that all of the index clients, and the transports they share,
+     * are closed.
      */
-    public void close() {
-        indexClients.values().forEach(c -> {
-            try {
-                c.close();
-            } catch (IOException e) {
-                LOGGER.error("Caught IOException closing client: {}", e.getMessage());
-            }
-        });
+    public synchronized void close() {
+        sharedClients.values().forEach(this::closeQuietly);
+        transports.forEach(this::closeQuietly);
+        sharedClients.clear();
+        transports.clear();
+        indexClients.clear();
+    }
+
+    private void closeQuietly(Closeable c) {
+        try {
+            c.close();
+        } catch (IOException e) {
+            LOGGER.error("Caught IOException closing client: {}", e.getMessage());
+        }
     }
 }
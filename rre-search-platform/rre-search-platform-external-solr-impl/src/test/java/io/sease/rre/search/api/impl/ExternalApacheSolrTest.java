@@ -17,6 +17,7 @@
 package io.sease.rre.search.api.impl;
 
 import io.sease.rre.search.api.SearchPlatform;
+import org.apache.solr.client.solrj.SolrQuery;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -24,6 +25,8 @@ import org.junit.rules.TemporaryFolder;
 
 import java.io.File;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
@@ -63,4 +66,21 @@ public class ExternalApacheSolrTest {
         File configFile = tempFolder.newFile(ExternalApacheSolr.SETTINGS_FILE);
         assertTrue(platform.isSearchPlatformConfiguration(INDEX_NAME, configFile));
     }
+
+    @Test
+    public void buildQuery_convertsQueryFieldsToParams() throws Exception {
+        final String query = "{\"q\": \"fred\", \"rows\": 5, \"json\": {\"filter\": [\"type:bass\"]}}";
+        final ExternalApacheSolr solr = new ExternalApacheSolr();
+
+        SolrQuery params = solr.buildQuery(query, new String[]{"id"}, 10);
+
+        assertEquals("fred", params.get("q"));
+        assertArrayEquals(new String[]{"10", "5"}, params.getParams("rows"));
+        assertEquals("id", params.get("fl"));
+        assertEquals("{\"filter\":[\"type:bass\"]}", params.get("json"));
+
+        // A repeated query gets an independent copy of the cached params
+        params.set("q", "barney");
+        assertEquals("fred", solr.buildQuery(query, new String[]{"id"}, 10).get("q"));
+    }
 }
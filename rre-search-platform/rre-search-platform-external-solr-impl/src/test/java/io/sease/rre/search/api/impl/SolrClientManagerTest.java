@@ -18,6 +18,7 @@ package io.sease.rre.search.api.impl;
 
 import org.apache.solr.client.solrj.embedded.JettyConfig;
 import org.apache.solr.client.solrj.impl.CloudSolrClient;
+import org.apache.solr.client.solrj.impl.Http2SolrClient;
 import org.apache.solr.client.solrj.impl.HttpSolrClient;
 import org.apache.solr.cloud.MiniSolrCloudCluster;
 import org.junit.After;
@@ -33,6 +34,8 @@ import java.util.stream.Collectors;
 import static java.util.Arrays.asList;
 import static junit.framework.TestCase.assertTrue;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 
 /**
  * Unit tests for the SolrClientManager class.
@@ -42,6 +45,7 @@ import static org.junit.Assert.assertNotNull;
 public class SolrClientManagerTest {
 
     private final String TARGET_INDEX = "targetIndex";
+    private final String OTHER_INDEX = "otherIndex";
 
     @Rule
     public TemporaryFolder tempFolder = new TemporaryFolder();
@@ -69,6 +73,36 @@ public class SolrClientManagerTest {
         assertTrue(clientManager.getSolrClient(TARGET_INDEX) instanceof HttpSolrClient);
     }
 
+    @Test
+    public void sharesClientBetweenIndexesWithSameSettings() {
+        clientManager.buildSolrClient(TARGET_INDEX, new ExternalApacheSolr.SolrSettings(
+                Collections.singletonList("http://localhost:8983/solr"), null, null, null, null));
+        clientManager.buildSolrClient(OTHER_INDEX, new ExternalApacheSolr.SolrSettings(
+                Collections.singletonList("http://localhost:8983/solr"), null, null, null, null));
+
+        assertSame(clientManager.getSolrClient(TARGET_INDEX), clientManager.getSolrClient(OTHER_INDEX));
+    }
+
+    @Test
+    public void buildsSeparateClientsForDifferentSettings() {
+        clientManager.buildSolrClient(TARGET_INDEX, new ExternalApacheSolr.SolrSettings(
+                Collections.singletonList("http://localhost:8983/solr"), null, null, null, null));
+        clientManager.buildSolrClient(OTHER_INDEX, new ExternalApacheSolr.SolrSettings(
+                Collections.singletonList("http://localhost:8984/solr"), null, null, null, null));
+
+        assertNotSame(clientManager.getSolrClient(TARGET_INDEX), clientManager.getSolrClient(OTHER_INDEX));
+    }
+
+    @Test
+    public void buildsHttp2SolrClientWhenRequested() {
+        ExternalApacheSolr.SolrSettings settings = new ExternalApacheSolr.SolrSettings(
+                Collections.singletonList("http://localhost:8983/solr"), null, null, null, null, 16, 30000L, true);
+
+        clientManager.buildSolrClient(TARGET_INDEX, settings);
+
+        assertTrue(clientManager.getSolrClient(TARGET_INDEX) instanceof Http2SolrClient);
+    }
+
     @Test
     public void buildsCloudSolrClientForMultipleHosts() throws Exception {
         // Set a dummy log directory, to stop Solr complaining at start-up
@@ -66,6 +66,29 @@ public class SolrSettingsTest {
         assertNotNull(settings.getSocketTimeout());
     }
 
+    @Test
+    public void canDeserializeConnectionPoolSettings() throws Exception {
+        InputStream is = SolrSettingsTest.class.getResourceAsStream("/solr-settings-pool.json");
+        ObjectMapper mapper = new ObjectMapper();
+        ExternalApacheSolr.SolrSettings settings = mapper.readValue(is, ExternalApacheSolr.SolrSettings.class);
+
+        assertEquals(Integer.valueOf(32), settings.getMaxConnectionsPerHost());
+        assertEquals(Long.valueOf(30000), settings.getKeepAlive());
+        assertTrue(settings.isUseHttp2());
+    }
+
+    @Test
+    public void settingsAreEqualWhenConnectionDetailsMatch() {
+        ExternalApacheSolr.SolrSettings settings = new ExternalApacheSolr.SolrSettings(
+                Collections.singletonList("http://localhost:8983/solr"), null, null, 1000, null);
+        ExternalApacheSolr.SolrSettings other = new ExternalApacheSolr.SolrSettings(
+                Collections.singletonList("http://localhost:8983/solr"), null, "", 1000, null);
+
+        assertEquals(settings, other);
+        assertEquals(settings.hashCode(), other.hashCode());
+        assertNotEquals(settings, new ExternalApacheSolr.SolrSettings(
+                Collections.singletonList("http://localhost:8983/solr"), null, null, 2000, null));
+    }
 
     @Test(expected=java.lang.IllegalArgumentException.class)
     public void constructorThrowsException_whenNoURLsSet() {
@@ -0,0 +1,376 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.search.api.impl;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.sease.rre.search.api.BatchQuery;
+import io.sease.rre.search.api.QueryOrSearchResponse;
+import io.sease.rre.search.api.SearchPlatform;
+import io.sease.rre.search.api.UnableToLoadDataException;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Optional.ofNullable;
+
+/**
+ * A search platform with no search engine behind it, for measuring the cost
+ * of the evaluation itself.
+ * <p>
+ * Each query returns a result list generated from a seed derived from the
+ * collection, version and query, so the same query always returns the same
+ * results. The documents are identified as {@code doc0} to
+ * {@code doc<documentCount - 1>}. A configurable latency can be added to
+ * each query, and a proportion of the queries can be made to fail.
+ * <p>
+ * The settings may be passed in the configuration to
+ * {@link #beforeStart(Map)}, and overridden per version in an
+ * {@value #SETTINGS_FILE} file in the version's configuration folder.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+public class InMemorySearchPlatform implements SearchPlatform {
+
+    static final String SETTINGS_FILE = "in-memory-settings.json";
+
+    private static final String NAME = "In-memory";
+    private static final String DOCUMENT_PREFIX = "doc";
+
+    private final ObjectMapper mapper = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private Settings defaults = new Settings();
+    private final Map<String, Settings> versionSettings = new ConcurrentHashMap<>();
+    private final Set<String> loadedCollections = ConcurrentHashMap.newKeySet();
+    private ScheduledExecutorService scheduler;
+
+    @Override
+    public void beforeStart(final Map<String, Object> configuration) {
+        defaults = mapper.convertValue(configuration, Settings.class);
+    }
+
+    @Override
+    public void load(final File dataToBeIndexed, final File settingsFile, final String collection, final String version) {
+        // There is no corpus for this implementation - only the version settings
+        try {
+            versionSettings.put(version, defaults.overriddenBy(mapper.readValue(settingsFile, Settings.class)));
+            loadedCollections.add(getFullyQualifiedDomainName(collection, version));
+        } catch (final IOException e) {
+            throw new UnableToLoadDataException(e);
+        }
+    }
+
+    @Override
+    public void start() {
+        if (scheduler != null && !scheduler.isShutdown()) {
+            // Already started by a previous evaluation
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "rre-in-memory-latency");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void afterStart() {
+        // Nothing to be done here
+    }
+
+    @Override
+    public void beforeStop() {
+        // Nothing to be done here
+    }
+
+    @Override
+    public void close() {
+        ofNullable(scheduler).ifPresent(ScheduledExecutorService::shutdownNow);
+    }
+
+    @Override
+    public QueryOrSearchResponse executeQuery(final String collection, final String version, final String query, final String[] fields, final int maxRows) {
+        final Settings settings = settings(version);
+        sleep(settings.sampleLatency());
+        return search(settings, collection, version, query, fields, maxRows);
+    }
+
+    @Override
+    public List<QueryOrSearchResponse> executeQueries(final String collection, final String version, final List<BatchQuery> queries) {
+        // A batch is a single round trip, so has a single latency
+        final Settings settings = settings(version);
+        sleep(settings.sampleLatency());
+
+        final List<QueryOrSearchResponse> responses = new ArrayList<>(queries.size());
+        for (final BatchQuery query : queries) {
+            responses.add(search(settings, collection, version, query.getQuery(), query.getFields(), query.getMaxRows()));
+        }
+        return responses;
+    }
+
+    @Override
+    public CompletableFuture<QueryOrSearchResponse> executeQueryAsync(final String collection, final String version, final String query, final String[] fields, final int maxRows) {
+        final CompletableFuture<QueryOrSearchResponse> future = new CompletableFuture<>();
+        final Settings settings = settings(version);
+        final long latency = settings.sampleLatency();
+        final Runnable search = () -> {
+            try {
+                future.complete(search(settings, collection, version, query, fields, maxRows));
+            } catch (final RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+        };
+
+        if (latency > 0) {
+            scheduler.schedule(search, latency, TimeUnit.NANOSECONDS);
+        } else {
+            search.run();
+        }
+        return future;
+    }
+
+    /**
+     * Generate the results for a query.
+     */
+    QueryOrSearchResponse search(final Settings settings, final String collection, final String version,
+                                 final String query, final String[] fields, final int maxRows) {
+        final Random random = new Random(hash(settings.getSeed(version), collection, query));
+        if (random.nextDouble() < settings.getErrorRate()) {
+            if (settings.isErrorThrown()) {
+                throw new RuntimeException("Injected error for query " + query + " in " + collection + " version " + version);
+            }
+            return new QueryOrSearchResponse(0, Collections.emptyList());
+        }
+
+        final int documentCount = settings.getDocumentCount();
+        final int rows = Math.max(0, Math.min(maxRows, documentCount));
+        final long totalHits = rows + (long) random.nextInt(documentCount - rows + 1);
+
+        final List<Map<String, Object>> hits = new ArrayList<>(rows);
+        final Set<Integer> returned = new HashSet<>();
+        while (hits.size() < rows) {
+            final int doc = random.nextInt(documentCount);
+            if (returned.add(doc)) {
+                hits.add(hit(settings.getIdField(), doc, fields));
+            }
+        }
+        return new QueryOrSearchResponse(totalHits, hits);
+    }
+
+    private Map<String, Object> hit(final String idField, final int doc, final String[] fields) {
+        final Map<String, Object> hit = new HashMap<>();
+        hit.put(idField, DOCUMENT_PREFIX + doc);
+        if (fields != null) {
+            for (final String field : fields) {
+                if (!field.equals(idField) && !field.equals("*")) {
+                    hit.put(field, field + " " + doc);
+                }
+            }
+        }
+        return hit;
+    }
+
+    private Settings settings(final String version) {
+        return versionSettings.getOrDefault(version, defaults);
+    }
+
+    private static void sleep(final long nanos) {
+        if (nanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(nanos);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * A 64-bit FNV-1a hash of the seed and some strings - cheaper than a
+     * message digest, and stable between runs, unlike
+     * {@link Object#hashCode()} for most objects.
+     */
+    static long hash(final long seed, final String... parts) {
+        long hash = 0xcbf29ce484222325L ^ seed;
+        for (final String part : parts) {
+            for (int i = 0; i < part.length(); i++) {
+                hash ^= part.charAt(i);
+                hash *= 0x100000001b3L;
+            }
+            hash ^= '\n';
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    @Override
+    public boolean isRefreshRequired() {
+        // Nothing is persisted, so the settings must always be loaded
+        return true;
+    }
+
+    @Override
+    public boolean isSearchPlatformConfiguration(final String indexName, final File file) {
+        return file.isFile() && file.getName().equals(SETTINGS_FILE);
+    }
+
+    @Override
+    public boolean isCorporaRequired() {
+        return false;
+    }
+
+    @Override
+    public boolean checkCollection(final String collection, final String version) {
+        return loadedCollections.contains(getFullyQualifiedDomainName(collection, version));
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    /**
+     * The distribution of the latency added to each query.
+     */
+    public enum LatencyDistribution {
+        /** No latency. */
+        NONE,
+        /** Every query takes the mean latency. */
+        FIXED,
+        /** Latency is uniformly distributed between zero and twice the mean. */
+        UNIFORM,
+        /** Latency is exponentially distributed around the mean. */
+        EXPONENTIAL;
+
+        long sample(final double meanMillis, final Random random) {
+            final double millis;
+            switch (this) {
+                case FIXED:
+                    millis = meanMillis;
+                    break;
+                case UNIFORM:
+                    millis = random.nextDouble() * 2 * meanMillis;
+                    break;
+                case EXPONENTIAL:
+                    millis = -meanMillis * Math.log(1 - random.nextDouble());
+                    break;
+                default:
+                    millis = 0;
+            }
+            return (long) (millis * 1_000_000);
+        }
+    }
+
+    /**
+     * The settings for the platform, or for a single version. Settings which
+     * are not given fall back to the platform settings, and then to the
+     * defaults.
+     */
+    public static class Settings {
+        static final long DEFAULT_SEED = 42L;
+        static final int DEFAULT_DOCUMENT_COUNT = 10000;
+
+        @JsonProperty("seed")
+        private Long seed;
+
+        @JsonProperty("documentCount")
+        private Integer documentCount;
+
+        @JsonProperty("idField")
+        private String idField;
+
+        @JsonProperty("latencyDistribution")
+        private String latencyDistribution;
+
+        @JsonProperty("latencyMillis")
+        private Double latencyMillis;
+
+        @JsonProperty("errorRate")
+        private Double errorRate;
+
+        @JsonProperty("errorMode")
+        private String errorMode;
+
+        private Long versionSeed;
+
+        Settings overriddenBy(final Settings overrides) {
+            final Settings settings = new Settings();
+            settings.seed = ofNullable(seed).orElse(DEFAULT_SEED);
+            settings.versionSeed = overrides.seed;
+            settings.documentCount = ofNullable(overrides.documentCount).orElse(documentCount);
+            settings.idField = ofNullable(overrides.idField).orElse(idField);
+            settings.latencyDistribution = ofNullable(overrides.latencyDistribution).orElse(latencyDistribution);
+            settings.latencyMillis = ofNullable(overrides.latencyMillis).orElse(latencyMillis);
+            settings.errorRate = ofNullable(overrides.errorRate).orElse(errorRate);
+            settings.errorMode = ofNullable(overrides.errorMode).orElse(errorMode);
+            return settings;
+        }
+
+        /**
+         * @param version the version being queried.
+         * @return the seed for the version - either set explicitly for the
+         * version, so several versions can return the same results, or
+         * derived from the platform seed and the version name.
+         */
+        long getSeed(final String version) {
+            return ofNullable(versionSeed).orElseGet(() -> hash(ofNullable(seed).orElse(DEFAULT_SEED), version));
+        }
+
+        int getDocumentCount() {
+            return Math.max(1, ofNullable(documentCount).orElse(DEFAULT_DOCUMENT_COUNT));
+        }
+
+        String getIdField() {
+            return ofNullable(idField).orElse("id");
+        }
+
+        double getErrorRate() {
+            return ofNullable(errorRate).orElse(0.0);
+        }
+
+        /**
+         * @return {@code true} if failing queries should throw an exception,
+         * rather than returning an empty response as the other platforms do
+         * when the search engine reports an error.
+         */
+        boolean isErrorThrown() {
+            return "exception".equalsIgnoreCase(errorMode);
+        }
+
+        long sampleLatency() {
+            final LatencyDistribution distribution = ofNullable(latencyDistribution)
+                    .map(d -> LatencyDistribution.valueOf(d.toUpperCase()))
+                    .orElse(latencyMillis == null ? LatencyDistribution.NONE : LatencyDistribution.FIXED);
+            return distribution.sample(ofNullable(latencyMillis).orElse(0.0), ThreadLocalRandom.current());
+        }
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.search.api.impl;
+
+import io.sease.rre.search.api.BatchQuery;
+import io.sease.rre.search.api.QueryOrSearchResponse;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit tests for the in-memory search platform.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+public class InMemorySearchPlatformTest {
+
+    private static final String COLLECTION = "test";
+    private static final String QUERY = "{\"query\": \"bass\"}";
+    private static final String[] FIELDS = new String[]{"id", "title"};
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private InMemorySearchPlatform platform;
+
+    @Before
+    public void setupPlatform() {
+        platform = new InMemorySearchPlatform();
+    }
+
+    @After
+    public void tearDownPlatform() {
+        platform.close();
+    }
+
+    @Test
+    public void isSearchPlatformConfiguration_returnsTrueForSettingsFile() throws Exception {
+        assertTrue(platform.isSearchPlatformConfiguration(COLLECTION, tempFolder.newFile(InMemorySearchPlatform.SETTINGS_FILE)));
+        assertFalse(platform.isSearchPlatformConfiguration(COLLECTION, tempFolder.newFile("index-shape.json")));
+    }
+
+    @Test
+    public void checkCollection_returnsTrueOnlyWhenLoaded() throws Exception {
+        start(new HashMap<>());
+        assertFalse(platform.checkCollection(COLLECTION, "v1.0"));
+        load("v1.0", "{}");
+        assertTrue(platform.checkCollection(COLLECTION, "v1.0"));
+    }
+
+    @Test
+    public void executeQuery_isDeterministic() throws Exception {
+        start(new HashMap<>());
+        load("v1.0", "{}");
+        QueryOrSearchResponse response = platform.executeQuery(COLLECTION, "v1.0", QUERY, FIELDS, 10);
+
+        InMemorySearchPlatform other = new InMemorySearchPlatform();
+        other.beforeStart(new HashMap<>());
+        other.load(null, settingsFile("v1.0", "{}"), COLLECTION, "v1.0");
+
+        assertEquals(10, response.hits().size());
+        assertTrue(response.totalHits() >= 10);
+        assertEquals("title " + response.hits().get(0).get("id").toString().substring(3), response.hits().get(0).get("title"));
+        assertEquals(response.hits(), other.executeQuery(COLLECTION, "v1.0", QUERY, FIELDS, 10).hits());
+        assertEquals(response.totalHits(), other.executeQuery(COLLECTION, "v1.0", QUERY, FIELDS, 10).totalHits());
+    }
+
+    @Test
+    public void executeQuery_versionsDifferUnlessSeeded() throws Exception {
+        start(new HashMap<>());
+        load("v1.0", "{}");
+        load("v1.1", "{}");
+        load("v1.2", "{\"seed\": 7}");
+        load("v1.3", "{\"seed\": 7}");
+
+        assertNotEquals(platform.executeQuery(COLLECTION, "v1.0", QUERY, FIELDS, 10).hits(),
+                platform.executeQuery(COLLECTION, "v1.1", QUERY, FIELDS, 10).hits());
+        assertEquals(platform.executeQuery(COLLECTION, "v1.2", QUERY, FIELDS, 10).hits(),
+                platform.executeQuery(COLLECTION, "v1.3", QUERY, FIELDS, 10).hits());
+    }
+
+    @Test
+    public void executeQuery_limitsResultsToDocumentCount() throws Exception {
+        Map<String, Object> configuration = new HashMap<>();
+        configuration.put("documentCount", 5);
+        start(configuration);
+        load("v1.0", "{}");
+
+        QueryOrSearchResponse response = platform.executeQuery(COLLECTION, "v1.0", QUERY, FIELDS, 10);
+
+        assertEquals(5, response.totalHits());
+        assertEquals(5, response.hits().stream().map(hit -> hit.get("id")).distinct().count());
+    }
+
+    @Test
+    public void executeQuery_injectsErrors() throws Exception {
+        start(new HashMap<>());
+        load("v1.0", "{\"errorRate\": 1.0}");
+        load("v1.1", "{\"errorRate\": 1.0, \"errorMode\": \"exception\"}");
+
+        assertEquals(0, platform.executeQuery(COLLECTION, "v1.0", QUERY, FIELDS, 10).totalHits());
+        try {
+            platform.executeQuery(COLLECTION, "v1.1", QUERY, FIELDS, 10);
+            fail("Expected an injected error");
+        } catch (RuntimeException expected) {
+            // Expected
+        }
+        try {
+            platform.executeQueryAsync(COLLECTION, "v1.1", QUERY, FIELDS, 10).get(1, TimeUnit.SECONDS);
+            fail("Expected an injected error");
+        } catch (ExecutionException expected) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void executeQueryAsync_completesAfterLatency() throws Exception {
+        Map<String, Object> configuration = new HashMap<>();
+        configuration.put("latencyMillis", 20);
+        start(configuration);
+        load("v1.0", "{}");
+
+        long start = System.nanoTime();
+        QueryOrSearchResponse response = platform.executeQueryAsync(COLLECTION, "v1.0", QUERY, FIELDS, 10).get(1, TimeUnit.SECONDS);
+
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(20));
+        assertEquals(platform.executeQuery(COLLECTION, "v1.0", QUERY, FIELDS, 10).hits(), response.hits());
+    }
+
+    @Test
+    public void executeQueries_returnsSameResultsAsExecuteQuery() throws Exception {
+        start(new HashMap<>());
+        load("v1.0", "{}");
+
+        List<QueryOrSearchResponse> responses = platform.executeQueries(COLLECTION, "v1.0", Arrays.asList(
+                new BatchQuery(QUERY, FIELDS, 10),
+                new BatchQuery("{\"query\": \"guitar\"}", FIELDS, 3)));
+
+        assertEquals(platform.executeQuery(COLLECTION, "v1.0", QUERY, FIELDS, 10).hits(), responses.get(0).hits());
+        assertEquals(3, responses.get(1).hits().size());
+    }
+
+    private void start(Map<String, Object> configuration) {
+        platform.beforeStart(configuration);
+        platform.start();
+    }
+
+    private void load(String version, String settings) throws IOException {
+        platform.load(null, settingsFile(version, settings), COLLECTION, version);
+    }
+
+    private File settingsFile(String version, String settings) throws IOException {
+        File versionFolder = new File(tempFolder.getRoot(), version);
+        versionFolder.mkdirs();
+        File settingsFile = new File(versionFolder, InMemorySearchPlatform.SETTINGS_FILE);
+        Files.write(settingsFile.toPath(), settings.getBytes(StandardCharsets.UTF_8));
+        return settingsFile;
+    }
+}
@@ -16,32 +16,54 @@
  */
 package io.sease.rre.search.api.impl;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
 import io.sease.rre.DirectoryUtils;
+import io.sease.rre.search.api.CorpusSource;
+import io.sease.rre.search.api.IndexChecksums;
+import io.sease.rre.search.api.ParsedQueryCache;
 import io.sease.rre.search.api.QueryOrSearchResponse;
 import io.sease.rre.search.api.SearchPlatform;
+import io.sease.rre.search.api.UnableToLoadDataException;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.solr.client.solrj.SolrQuery;
 import org.apache.solr.client.solrj.SolrServerException;
 import org.apache.solr.client.solrj.embedded.EmbeddedSolrServer;
+import org.apache.solr.client.solrj.request.UpdateRequest;
 import org.apache.solr.client.solrj.response.QueryResponse;
 import org.apache.solr.client.solrj.response.UpdateResponse;
 import org.apache.solr.common.SolrException;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.common.params.SolrParams;
 import org.apache.solr.core.CoreContainer;
 
 import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
 
 import static java.util.Collections.emptyMap;
 import static java.util.Optional.of;
@@ -55,6 +77,18 @@ import static java.util.Optional.ofNullable;
  */
 public class ApacheSolr implements SearchPlatform {
 	private final static Logger LOGGER = LogManager.getLogger(ApacheSolr.class);
+	private final static String CHECKSUM_FILE_SUFFIX = ".rre-checksums";
+	private final static String ID_FIELD = "id";
+	private final static String SHARED_CORE_INFIX = "_shape_";
+	private final static String CORE_ROUTING_FILE = "rre-core-routing.properties";
+	private final static String VERSION_CONFIG_SUFFIX = ".rre-solrconfig.xml";
+	private final static int UPDATE_BATCH_SIZE = 5000;
+
+	private final static int QUERY_CACHE_SIZE = 10000;
+
+	private final static ObjectMapper MAPPER = new ObjectMapper();
+
+	private final ParsedQueryCache<SolrParams> queryParams = new ParsedQueryCache<>(QUERY_CACHE_SIZE, ApacheSolr::parseQuery);
 
 	private EmbeddedSolrServer proxy;
 	private File solrHome;
@@ -63,6 +97,11 @@ public class ApacheSolr implements SearchPlatform {
 
 	private boolean refreshRequired = false;
 	private boolean defaultSolrHome = false;
+	private boolean shareIndices = true;
+
+	private final Properties coreRouting = new Properties();
+	private final Set<String> loadedCores = new HashSet<>();
+	private final Map<String, RequestHandlerParams> versionParams = new ConcurrentHashMap<>();
 
 	@Override
 	public void beforeStart(final Map<String, Object> configuration) {
@@ -88,6 +127,16 @@ public class ApacheSolr implements SearchPlatform {
 			refreshRequired = true;
 		}
 
+		shareIndices = (Boolean) configuration.getOrDefault("shareIndices", Boolean.TRUE);
+		final File coreRoutingFile = new File(solrHome, CORE_ROUTING_FILE);
+		if (coreRoutingFile.exists()) {
+			try (final InputStream in = new FileInputStream(coreRoutingFile)) {
+				coreRouting.load(in);
+			} catch (IOException e) {
+				LOGGER.error("Could not read core routing - versions will need to be reloaded", e);
+			}
+		}
+
 		File dataDir = new File(solrHome, "data");
 		dataDir.mkdirs();
 
@@ -98,19 +147,208 @@ public class ApacheSolr implements SearchPlatform {
 
 	@Override
 	public void load(final File dataToBeIndexed, final File configFolder, final String collection, String version) {
+		try {
+			loadCorpus(CorpusSource.of(dataToBeIndexed), configFolder, collection, version);
+		} catch (IOException e) {
+			throw new UnableToLoadDataException(e);
+		}
+	}
+
+	@Override
+	public void loadCorpus(final CorpusSource dataToBeIndexed, final File configFolder, final String collection, String version) {
 		coreProperties = new File(configFolder, "core.properties");
 		if (coreProperties.exists()) {
 			renamedCoreProperties = new File(configFolder, "core.properties.ignore");
 			coreProperties.renameTo(renamedCoreProperties);
 		}
 
-		// Copy files from configFolder into solrHome/targetIndexName
-		String coreName = getFullyQualifiedDomainName(collection, version);
+		final String versionCoreName = getFullyQualifiedDomainName(collection, version);
+		final String configurationChecksum = configurationChecksum(configFolder);
+
+		// When sharing, versions with the same configuration are routed to a single physical core
+		final String coreName;
+		if (shareIndices) {
+			coreName = (collection + SHARED_CORE_INFIX + configurationChecksum.substring(0, 12)).toLowerCase();
+			if (proxy.getCoreContainer().getAllCoreNames().contains(versionCoreName)) {
+				// Core left by a load without sharing
+				dropCore(versionCoreName);
+			}
+		} else {
+			coreName = versionCoreName;
+		}
+
+		if (loadedCores.add(coreName)) {
+			loadCore(dataToBeIndexed, configFolder, coreName, configurationChecksum);
+		} else {
+			LOGGER.info("Configuration for " + versionCoreName + " is the same as a core already loaded - sharing " + coreName);
+		}
+
+		route(versionCoreName, shareIndices ? coreName : null);
+		keepRequestHandlerParams(configFolder, versionCoreName);
+	}
+
+	private void loadCore(final CorpusSource dataToBeIndexed, final File configFolder, final String coreName, final String configurationChecksum) {
 		File targetIndexDir = new File(solrHome, coreName);
+		File checksumFile = new File(solrHome, coreName + CHECKSUM_FILE_SUFFIX);
+
+		IndexChecksums previousChecksums = IndexChecksums.read(checksumFile);
+		final boolean coreExists = proxy.getCoreContainer().getAllCoreNames().contains(coreName);
+		if (coreExists && targetIndexDir.exists() && previousChecksums.isCompatibleWith(configurationChecksum)) {
+			LOGGER.info("Configuration for core " + coreName + " is unchanged - only changed documents will be indexed");
+		} else {
+			if (coreExists) {
+				// Drop the existing core and its data, so that it can be re-created with the new configuration
+				proxy.getCoreContainer().unload(coreName, true, true, false);
+			}
+			previousChecksums = new IndexChecksums(configurationChecksum);
+			createCore(configFolder, coreName, targetIndexDir);
+		}
+
+		final IndexChecksums checksums = new IndexChecksums(configurationChecksum);
+		final IndexChecksums indexedChecksums = previousChecksums;
+		try {
+			// Entries are streamed from the corpus - multi-entry archives are loaded in parallel
+			final boolean trackable = dataToBeIndexed.getEntries().parallelStream()
+					.map(entry -> indexChanges(entry, coreName, indexedChecksums, checksums))
+					.reduce(true, Boolean::logicalAnd);
+
+			if (trackable) {
+				final List<String> deletedIds = new ArrayList<>(indexedChecksums.deletedIn(checksums));
+				if (!deletedIds.isEmpty()) {
+					checkStatus(new UpdateRequest().deleteById(deletedIds).process(proxy, coreName));
+				}
+				LOGGER.info("Sent changes for " + coreName + ", deleting " + deletedIds.size() + " documents - " + checksums.size() + " documents in total");
+			} else {
+				// Cannot track changes - wipe the index and send the corpus as it is
+				checkStatus(new UpdateRequest().deleteByQuery("*:*").process(proxy, coreName));
+				dataToBeIndexed.getEntries().parallelStream().forEach(entry -> {
+					try (final InputStream data = entry.open()) {
+						checkStatus(new JsonUpdateRequest(data, false).process(proxy, coreName));
+					} catch (final IOException | SolrServerException exception) {
+						throw new UnableToLoadDataException(exception);
+					}
+				});
+			}
+
+			checkStatus(proxy.commit(coreName));
+			writeChecksums(trackable ? checksums : null, checksumFile);
+		} catch (final Exception exception) {
+			// Make sure the next load starts from scratch
+			checksumFile.delete();
+			throw new RuntimeException(exception);
+		}
+	}
+
+	/**
+	 * Calculate the fingerprint of the index-time part of a core
+	 * configuration: the schema, analysis resources and solrconfig.xml,
+	 * without the search request handler parameters. Versions which only
+	 * differ in those can share a core - see {@link RequestHandlerParams}.
+	 */
+	private String configurationChecksum(final File configFolder) {
+		final Path solrConfig = RequestHandlerParams.solrConfig(configFolder).toPath();
+		try (final Stream<Path> paths = Files.walk(configFolder.toPath())) {
+			final File[] files = paths
+					.filter(Files::isRegularFile)
+					.filter(path -> !path.equals(solrConfig))
+					.filter(path -> !(path.getParent().equals(configFolder.toPath()) && path.getFileName().toString().startsWith("core.properties")))
+					.sorted()
+					.map(Path::toFile)
+					.toArray(File[]::new);
+			return IndexChecksums.checksum(IndexChecksums.checksum(files)
+					+ RequestHandlerParams.indexTimeConfiguration(solrConfig.toFile()));
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Keep a copy of a version's solrconfig.xml while it is routed to a
+	 * shared core, so its request handler parameters can be applied to its
+	 * queries in later runs which do not reload the version.
+	 */
+	private void keepRequestHandlerParams(final File configFolder, final String versionCoreName) {
+		final File versionConfig = new File(solrHome, versionCoreName + VERSION_CONFIG_SUFFIX);
+		versionParams.remove(versionCoreName);
+		try {
+			final File solrConfig = RequestHandlerParams.solrConfig(configFolder);
+			if (shareIndices && solrConfig.isFile()) {
+				Files.copy(solrConfig.toPath(), versionConfig.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			} else {
+				Files.deleteIfExists(versionConfig.toPath());
+			}
+		} catch (IOException e) {
+			throw new UnableToLoadDataException(e);
+		}
+	}
+
+	private RequestHandlerParams requestHandlerParams(final String versionCoreName) {
+		if (!coreRouting.containsKey(versionCoreName)) {
+			// The version has a core of its own, which applies its parameters
+			return RequestHandlerParams.NONE;
+		}
+		return versionParams.computeIfAbsent(versionCoreName, name -> {
+			final File versionConfig = new File(solrHome, name + VERSION_CONFIG_SUFFIX);
+			try {
+				return versionConfig.isFile() ? RequestHandlerParams.read(versionConfig) : RequestHandlerParams.NONE;
+			} catch (IOException e) {
+				LOGGER.error("Could not read request handler parameters for " + name + " - queries will use the core defaults", e);
+				return RequestHandlerParams.NONE;
+			}
+		});
+	}
+
+	/**
+	 * Route the queries for a version to a physical core, persisting the
+	 * routing so it is available to runs which do not reload the version.
+	 * Any shared core no longer used by a version is dropped.
+	 *
+	 * @param versionCoreName the version's own core name.
+	 * @param coreName        the physical core, or {@code null} if the version
+	 *                        should use a core of its own.
+	 */
+	private void route(final String versionCoreName, final String coreName) {
+		final String previous = coreName == null
+				? (String) coreRouting.remove(versionCoreName)
+				: (String) coreRouting.setProperty(versionCoreName, coreName);
+		if (Objects.equals(previous, coreName)) {
+			return;
+		}
+		if (previous != null && !coreRouting.containsValue(previous)) {
+			dropCore(previous);
+		}
+
+		try (final OutputStream out = new FileOutputStream(new File(solrHome, CORE_ROUTING_FILE))) {
+			coreRouting.store(out, "RRE version to core routing");
+		} catch (IOException e) {
+			LOGGER.error("Could not write core routing - versions will need to be reloaded", e);
+		}
+	}
+
+	private String resolveCore(final String collection, final String version) {
+		final String versionCoreName = getFullyQualifiedDomainName(collection, version);
+		return coreRouting.getProperty(versionCoreName, versionCoreName);
+	}
+
+	private void dropCore(final String coreName) {
+		LOGGER.info("Dropping core " + coreName + " - it is no longer used by any version");
+		if (proxy.getCoreContainer().getAllCoreNames().contains(coreName)) {
+			proxy.getCoreContainer().unload(coreName, true, true, true);
+		}
+		loadedCores.remove(coreName);
+		new File(solrHome, coreName + CHECKSUM_FILE_SUFFIX).delete();
+	}
+
+	private void createCore(final File configFolder, final String coreName, final File targetIndexDir) {
+		// Copy files from configFolder into solrHome/targetIndexName
 		try {
 			// Make sure the directory is deleted before copying to it
 			DirectoryUtils.deleteDirectory(targetIndexDir);
 			DirectoryUtils.copyDirectory(configFolder, targetIndexDir);
+			if (shareIndices) {
+				// The versions sharing the core apply their own request handler parameters
+				RequestHandlerParams.stripQueryTimeParams(RequestHandlerParams.solrConfig(targetIndexDir));
+			}
 		} catch (IOException e) {
 			throw new RuntimeException(e);
 		}
@@ -126,14 +364,75 @@ public class ApacheSolr implements SearchPlatform {
 				LOGGER.error("Caught Solr exception creating core :: " + e.getMessage());
 			}
 		}
+	}
+
+	/**
+	 * Stream a corpus entry, recording the checksum of each document and
+	 * sending those which have changed since the previous load in batches.
+	 *
+	 * @param entry             the corpus entry - expected to be a JSON array of documents.
+	 * @param coreName          the core to be updated.
+	 * @param indexedChecksums  the checksums recorded by the previous load.
+	 * @param checksums         the checksums for the current corpus, populated by this method.
+	 * @return {@code false} if the entry is not in a format whose changes can be tracked.
+	 */
+	private boolean indexChanges(final CorpusSource.Entry entry, final String coreName,
+								 final IndexChecksums indexedChecksums, final IndexChecksums checksums) {
+		try (final InputStream in = entry.open();
+			 final JsonParser parser = MAPPER.getFactory().createParser(in)) {
+			if (parser.nextToken() != JsonToken.START_ARRAY) {
+				return false;
+			}
+
+			ArrayNode changedDocuments = MAPPER.createArrayNode();
+			while (parser.nextToken() == JsonToken.START_OBJECT) {
+				final JsonNode document = MAPPER.readTree(parser);
+				final JsonNode id = document.get(ID_FIELD);
+				if (id == null || !id.isValueNode()) {
+					return false;
+				}
+
+				final String checksum = IndexChecksums.checksum(document.toString());
+				if (checksums.put(id.asText(), checksum) != null) {
+					// Duplicate IDs - the last one wins in the index, but the delta cannot be trusted
+					return false;
+				}
+				if (!indexedChecksums.isUnchanged(id.asText(), checksum)) {
+					changedDocuments.add(document);
+					if (changedDocuments.size() == UPDATE_BATCH_SIZE) {
+						sendDocuments(changedDocuments, coreName);
+						changedDocuments = MAPPER.createArrayNode();
+					}
+				}
+			}
+			sendDocuments(changedDocuments, coreName);
+			return parser.currentToken() == JsonToken.END_ARRAY;
+		} catch (final IOException | SolrServerException exception) {
+			throw new UnableToLoadDataException(exception);
+		}
+	}
 
+	private void sendDocuments(final ArrayNode documents, final String coreName) throws IOException, SolrServerException {
+		if (documents.size() > 0) {
+			checkStatus(new JsonUpdateRequest(new ByteArrayInputStream(MAPPER.writeValueAsBytes(documents)), false).process(proxy, coreName));
+		}
+	}
+
+	private void writeChecksums(final IndexChecksums checksums, final File checksumFile) {
 		try {
-			UpdateResponse response = new JsonUpdateRequest(new FileInputStream(dataToBeIndexed)).process(proxy, coreName);
-			if (response.getStatus() != 0) {
-				throw new IllegalArgumentException("Received an error status from Solr: " + response.getStatus());
+			if (checksums == null) {
+				Files.deleteIfExists(checksumFile.toPath());
+			} else {
+				checksums.write(checksumFile);
 			}
-		} catch (final Exception exception) {
-			throw new RuntimeException(exception);
+		} catch (IOException e) {
+			LOGGER.warn("Could not write document checksums to " + checksumFile + " - the next load will re-index everything", e);
+		}
+	}
+
+	private void checkStatus(final UpdateResponse response) {
+		if (response.getStatus() != 0) {
+			throw new IllegalArgumentException("Received an error status from Solr: " + response.getStatus());
 		}
 	}
 
@@ -190,33 +489,17 @@ public class ApacheSolr implements SearchPlatform {
 
 	@Override
 	public QueryOrSearchResponse executeQuery(final String collection, final String version, final String queryString, final String[] fields, final int maxRows) {
-		String coreName = getFullyQualifiedDomainName(collection, version);
+		String coreName = resolveCore(collection, version);
 		try {
-			final SolrQuery query =
-					new SolrQuery()
-							.setRows(maxRows)
-							.setFields(fields);
-			final ObjectMapper mapper = new ObjectMapper();
-			final JsonNode queryDef = mapper.readTree(queryString);
-
-			for (final Iterator<Map.Entry<String, JsonNode>> iterator = queryDef.fields(); iterator.hasNext(); ) {
-				final Map.Entry<String, JsonNode> field = iterator.next();
-				final String value;
-				if (field.getValue().isValueNode()) {
-					value = field.getValue().asText();
-				} else {
-					// Either an array or an object - use writeValueAsString() instead
-					// to convert to a string. Useful for writing JSON queries without escaping them.
-					value = mapper.writeValueAsString(field.getValue());
-				}
-				query.add(field.getKey(), value);
-			}
-
-			return of(proxy.query(coreName, query))
+			final SolrQuery query = buildQuery(queryString, fields, maxRows);
+			final SolrParams params = requestHandlerParams(getFullyQualifiedDomainName(collection, version)).apply(query);
+			return of(proxy.query(coreName, params))
 					.map(response ->
 							new QueryOrSearchResponse(
 									response.getResults().getNumFound(),
-									new ArrayList<Map<String, Object>>(response.getResults())))
+									new ArrayList<Map<String, Object>>(response.getResults()),
+									response.getQTime(),
+									QueryOrSearchResponse.UNKNOWN))
 					.get();
 		} catch (SolrException e) {
 			LOGGER.error("Caught Solr exception :: " + e.getMessage());
@@ -226,6 +509,43 @@ public class ApacheSolr implements SearchPlatform {
 		}
 	}
 
+	SolrQuery buildQuery(final String queryString, final String[] fields, final int maxRows) throws IOException {
+		final SolrQuery query =
+				new SolrQuery()
+						.setRows(maxRows)
+						.setFields(fields);
+		final SolrParams params = queryParams.get(queryString);
+		// Add rather than set, so query values are appended to the rows and fields
+		for (final Iterator<String> names = params.getParameterNamesIterator(); names.hasNext(); ) {
+			final String name = names.next();
+			query.add(name, params.getParams(name).clone());
+		}
+		return query;
+	}
+
+	/**
+	 * Converts a rendered query into request parameters. Each top-level
+	 * field of the query becomes a parameter.
+	 */
+	private static SolrParams parseQuery(final String queryString) throws IOException {
+		final ModifiableSolrParams params = new ModifiableSolrParams();
+		final JsonNode queryDef = MAPPER.readTree(queryString);
+
+		for (final Iterator<Map.Entry<String, JsonNode>> iterator = queryDef.fields(); iterator.hasNext(); ) {
+			final Map.Entry<String, JsonNode> field = iterator.next();
+			final String value;
+			if (field.getValue().isValueNode()) {
+				value = field.getValue().asText();
+			} else {
+				// Either an array or an object - use writeValueAsString() instead
+				// to convert to a string. Useful for writing JSON queries without escaping them.
+				value = MAPPER.writeValueAsString(field.getValue());
+			}
+			params.add(field.getKey(), value);
+		}
+		return params;
+	}
+
 	@Override
 	public String getName() {
 		return "Apache Solr";
@@ -272,7 +592,7 @@ public class ApacheSolr implements SearchPlatform {
 
 	@Override
 	public boolean checkCollection(String collection, String version) {
-		String coreName = getFullyQualifiedDomainName(collection, version);
+		String coreName = resolveCore(collection, version);
 		try {
 			SolrQuery query = new SolrQuery("*:*").setRows(0);
 			QueryResponse response = proxy.query(coreName, query);
@@ -35,9 +35,21 @@ public class JsonUpdateRequest extends ContentStreamUpdateRequest {
      * @param stream the data stream.
      */
     public JsonUpdateRequest(final InputStream stream) {
+        this(stream, true);
+    }
+
+    /**
+     * Builds a new Update request with the given (JSON) payload stream.
+     *
+     * @param stream the data stream.
+     * @param commit whether the update should be committed immediately.
+     */
+    public JsonUpdateRequest(final InputStream stream, final boolean commit) {
         super("/update");
         this.stream = stream;
-        this.setAction(ACTION.COMMIT, true, true);
+        if (commit) {
+            this.setAction(ACTION.COMMIT, true, true);
+        }
     }
 
     @Override
@@ -0,0 +1,243 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.search.api.impl;
+
+import org.apache.solr.common.params.CommonParams;
+import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.util.DOMUtil;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Collections.emptyMap;
+
+/**
+ * The parameters the search request handlers of a solrconfig.xml add to
+ * each request: their defaults, appends and invariants.
+ * <p>
+ * These only apply at query time, so they are left out of the
+ * configuration used to decide whether versions can share a core. A shared
+ * core is created without them, and the parameters of the version being
+ * queried are applied to its requests instead, in the order Solr applies
+ * them. Update handlers are left alone - their parameters (eg. the update
+ * chain) change what is indexed.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+class RequestHandlerParams {
+    static final RequestHandlerParams NONE = new RequestHandlerParams(emptyMap(), null);
+
+    private static final String REQUEST_HANDLER = "requestHandler";
+    private static final String UPDATE_HANDLER_PREFIX = "/update";
+    private static final String SELECT_HANDLER = "/select";
+    private static final String DEFAULTS = "defaults";
+    private static final String APPENDS = "appends";
+    private static final String INVARIANTS = "invariants";
+    private static final List<String> PARAM_LISTS = Arrays.asList(DEFAULTS, APPENDS, INVARIANTS);
+
+    private final Map<String, Map<String, SolrParams>> handlers;
+    private final String defaultHandler;
+
+    private RequestHandlerParams(final Map<String, Map<String, SolrParams>> handlers, final String defaultHandler) {
+        this.handlers = handlers;
+        this.defaultHandler = defaultHandler;
+    }
+
+    /**
+     * @param configFolder a core configuration folder.
+     * @return the core's solrconfig.xml - the file may not exist.
+     */
+    static File solrConfig(final File configFolder) {
+        return new File(new File(configFolder, "conf"), "solrconfig.xml");
+    }
+
+    /**
+     * Read the request handler parameters from a solrconfig.xml.
+     *
+     * @param solrConfig the solrconfig.xml file.
+     * @return the parameters of each search request handler.
+     * @throws IOException if the file cannot be read or parsed.
+     */
+    static RequestHandlerParams read(final File solrConfig) throws IOException {
+        final Map<String, Map<String, SolrParams>> handlers = new HashMap<>();
+        String defaultHandler = null;
+        for (final Element handler : searchHandlers(parse(solrConfig))) {
+            final Map<String, SolrParams> params = new HashMap<>();
+            for (final Element list : paramLists(handler)) {
+                params.put(list.getAttribute("name"), SolrParams.toSolrParams(DOMUtil.childNodesToNamedList(list)));
+            }
+            handlers.put(handler.getAttribute("name"), params);
+            if (Boolean.parseBoolean(handler.getAttribute("default"))) {
+                defaultHandler = handler.getAttribute("name");
+            }
+        }
+        return new RequestHandlerParams(handlers, defaultHandler);
+    }
+
+    /**
+     * Get the index-time part of a solrconfig.xml: the file content without
+     * the search request handler parameters, comments or formatting.
+     *
+     * @param solrConfig the solrconfig.xml file.
+     * @return the normalised configuration, or an empty string if there is
+     * no such file.
+     * @throws IOException if the file cannot be read or parsed.
+     */
+    static String indexTimeConfiguration(final File solrConfig) throws IOException {
+        if (!solrConfig.isFile()) {
+            return "";
+        }
+
+        final Document document = parse(solrConfig);
+        for (final Element handler : searchHandlers(document)) {
+            for (final Element list : paramLists(handler)) {
+                handler.removeChild(list);
+            }
+        }
+        normalise(document.getDocumentElement());
+
+        try {
+            final Transformer transformer = TransformerFactory.newInstance().newTransformer();
+            transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
+            final StringWriter writer = new StringWriter();
+            transformer.transform(new DOMSource(document), new StreamResult(writer));
+            return writer.toString();
+        } catch (final TransformerException e) {
+            throw new IOException("Could not write " + solrConfig, e);
+        }
+    }
+
+    /**
+     * Replace a solrconfig.xml with its index-time part, so a core created
+     * from it applies no search request handler parameters of its own.
+     *
+     * @param solrConfig the solrconfig.xml file.
+     * @throws IOException if the file cannot be read, parsed or written.
+     */
+    static void stripQueryTimeParams(final File solrConfig) throws IOException {
+        if (solrConfig.isFile()) {
+            final String configuration = indexTimeConfiguration(solrConfig);
+            Files.write(solrConfig.toPath(), configuration.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Apply the parameters of the handler a request will be sent to, as
+     * Solr would: defaults first, then appends, then invariants.
+     *
+     * @param request the request parameters.
+     * @return the parameters to be sent to the core.
+     */
+    SolrParams apply(final SolrParams request) {
+        final String qt = request.get(CommonParams.QT);
+        final Map<String, SolrParams> params;
+        if (qt != null) {
+            params = handlers.get(qt);
+        } else if (handlers.containsKey(SELECT_HANDLER)) {
+            params = handlers.get(SELECT_HANDLER);
+        } else {
+            params = handlers.get(defaultHandler);
+        }
+
+        if (params == null) {
+            return request;
+        }
+
+        SolrParams applied = request;
+        if (params.containsKey(DEFAULTS)) {
+            applied = SolrParams.wrapDefaults(applied, params.get(DEFAULTS));
+        }
+        if (params.containsKey(APPENDS)) {
+            applied = SolrParams.wrapAppended(applied, params.get(APPENDS));
+        }
+        if (params.containsKey(INVARIANTS)) {
+            applied = SolrParams.wrapDefaults(params.get(INVARIANTS), applied);
+        }
+        return applied;
+    }
+
+    private static Document parse(final File solrConfig) throws IOException {
+        try {
+            return DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(solrConfig);
+        } catch (final ParserConfigurationException | SAXException e) {
+            throw new IOException("Could not parse " + solrConfig, e);
+        }
+    }
+
+    private static List<Element> searchHandlers(final Document document) {
+        final List<Element> handlers = new ArrayList<>();
+        final NodeList nodes = document.getElementsByTagName(REQUEST_HANDLER);
+        for (int i = 0; i < nodes.getLength(); i++) {
+            final Element handler = (Element) nodes.item(i);
+            if (!handler.getAttribute("name").startsWith(UPDATE_HANDLER_PREFIX)) {
+                handlers.add(handler);
+            }
+        }
+        return handlers;
+    }
+
+    private static List<Element> paramLists(final Element handler) {
+        final List<Element> lists = new ArrayList<>();
+        for (Node child = handler.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child instanceof Element
+                    && "lst".equals(child.getNodeName())
+                    && PARAM_LISTS.contains(((Element) child).getAttribute("name"))) {
+                lists.add((Element) child);
+            }
+        }
+        return lists;
+    }
+
+    /**
+     * Remove comments and whitespace between elements, so that only the
+     * content of the configuration affects the fingerprint.
+     */
+    private static void normalise(final Node node) {
+        Node child = node.getFirstChild();
+        while (child != null) {
+            final Node next = child.getNextSibling();
+            if (child.getNodeType() == Node.COMMENT_NODE
+                    || (child.getNodeType() == Node.TEXT_NODE && child.getTextContent().trim().isEmpty())) {
+                node.removeChild(child);
+            } else {
+                normalise(child);
+            }
+            child = next;
+        }
+    }
+}
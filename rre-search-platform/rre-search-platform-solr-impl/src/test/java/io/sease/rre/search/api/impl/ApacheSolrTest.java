@@ -16,6 +16,7 @@
  */
 package io.sease.rre.search.api.impl;
 
+import io.sease.rre.DirectoryUtils;
 import io.sease.rre.search.api.SearchPlatform;
 import org.junit.Before;
 import org.junit.Rule;
@@ -23,15 +24,23 @@ import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.function.UnaryOperator;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 public class ApacheSolrTest {
 
     private static final String INDEX_NAME = "test";
+    private static final String[] FIELDS = {"id", "name"};
+    private static final String BASS_QUERY = "{\"q\": \"bass\"}";
+    private static final String ALL_QUERY = "{\"q\": \"*:*\"}";
 
     @Rule
     public TemporaryFolder tempFolder = new TemporaryFolder();
@@ -82,4 +91,127 @@ public class ApacheSolrTest {
 
         assertTrue(platform.checkCollection(INDEX_NAME, "v1.0"));
     }
+
+    @Test
+    public void versionsDifferingOnlyInRequestHandlerParams_shareACore() throws Exception {
+        final File solrHome = new File(tempFolder.getRoot(), "solr");
+        platform.beforeStart(configuration(solrHome));
+
+        platform.load(corpus(), configFolder("v1.0", "solrconfig.xml", UnaryOperator.identity()), INDEX_NAME, "v1.0");
+        platform.load(corpus(), configFolder("v1.1", "solrconfig.xml", ApacheSolrTest::appendFilter), INDEX_NAME, "v1.1");
+
+        assertEquals(1, sharedCores(solrHome).length);
+        assertEquals(3, platform.executeQuery(INDEX_NAME, "v1.0", BASS_QUERY, FIELDS, 10).totalHits());
+        assertEquals(1, platform.executeQuery(INDEX_NAME, "v1.1", BASS_QUERY, FIELDS, 10).totalHits());
+    }
+
+    @Test
+    public void sharedCoreRequestHandlerParams_areKeptForRunsWhichDoNotReload() throws Exception {
+        final File solrHome = new File(tempFolder.getRoot(), "solr");
+        platform.beforeStart(configuration(solrHome));
+        platform.load(corpus(), configFolder("v1.0", "solrconfig.xml", UnaryOperator.identity()), INDEX_NAME, "v1.0");
+        platform.load(corpus(), configFolder("v1.1", "solrconfig.xml", ApacheSolrTest::appendFilter), INDEX_NAME, "v1.1");
+        platform.close();
+
+        platform = new ApacheSolr();
+        platform.beforeStart(configuration(solrHome));
+
+        assertEquals(3, platform.executeQuery(INDEX_NAME, "v1.0", BASS_QUERY, FIELDS, 10).totalHits());
+        assertEquals(1, platform.executeQuery(INDEX_NAME, "v1.1", BASS_QUERY, FIELDS, 10).totalHits());
+    }
+
+    @Test
+    public void versionsWithDifferentSchemas_useSeparateCores() throws Exception {
+        final File solrHome = new File(tempFolder.getRoot(), "solr");
+        platform.beforeStart(configuration(solrHome));
+
+        platform.load(corpus(), configFolder("v1.0", "schema.xml", UnaryOperator.identity()), INDEX_NAME, "v1.0");
+        platform.load(corpus(), configFolder("v1.1", "schema.xml",
+                schema -> schema.replace("<fields>", "<fields><field name=\"colour\" type=\"string\" indexed=\"true\" stored=\"true\"/>")),
+                INDEX_NAME, "v1.1");
+
+        assertEquals(2, sharedCores(solrHome).length);
+        assertEquals(3, platform.executeQuery(INDEX_NAME, "v1.0", BASS_QUERY, FIELDS, 10).totalHits());
+        assertEquals(3, platform.executeQuery(INDEX_NAME, "v1.1", BASS_QUERY, FIELDS, 10).totalHits());
+    }
+
+    @Test
+    public void unchangedConfiguration_onlyIndexesTheChangedDocuments() throws Exception {
+        final File solrHome = new File(tempFolder.getRoot(), "solr");
+        final File configFolder = configFolder("v1.0", "solrconfig.xml", UnaryOperator.identity());
+        platform.beforeStart(configuration(solrHome));
+        platform.load(corpus(), configFolder, INDEX_NAME, "v1.0");
+        platform.close();
+
+        platform = new ApacheSolr();
+        platform.beforeStart(configuration(solrHome));
+        platform.load(corpus("[{\"id\": 1, \"name\": \"Fender Jazz Guitar\"}, {\"id\": 2, \"name\": \"Fender Precision Bass\"}]"),
+                configFolder, INDEX_NAME, "v1.0");
+
+        assertEquals(2, platform.executeQuery(INDEX_NAME, "v1.0", ALL_QUERY, FIELDS, 10).totalHits());
+        assertEquals(1, platform.executeQuery(INDEX_NAME, "v1.0", BASS_QUERY, FIELDS, 10).totalHits());
+        assertEquals(1, checksumFiles(solrHome).length);
+    }
+
+    @Test
+    public void corpusWithDuplicateIds_isReindexedInFull() throws Exception {
+        final File solrHome = new File(tempFolder.getRoot(), "solr");
+        final File configFolder = configFolder("v1.0", "solrconfig.xml", UnaryOperator.identity());
+        platform.beforeStart(configuration(solrHome));
+        platform.load(corpus(), configFolder, INDEX_NAME, "v1.0");
+        platform.close();
+
+        platform = new ApacheSolr();
+        platform.beforeStart(configuration(solrHome));
+        platform.load(corpus("[{\"id\": 1, \"name\": \"Fender Jazz Bass\"}, {\"id\": 1, \"name\": \"Fender Jazz Guitar\"}]"),
+                configFolder, INDEX_NAME, "v1.0");
+
+        assertEquals(1, platform.executeQuery(INDEX_NAME, "v1.0", ALL_QUERY, FIELDS, 10).totalHits());
+        assertEquals(0, platform.executeQuery(INDEX_NAME, "v1.0", BASS_QUERY, FIELDS, 10).totalHits());
+        assertEquals(0, checksumFiles(solrHome).length);
+    }
+
+    private static Map<String, Object> configuration(final File solrHome) {
+        final Map<String, Object> config = new HashMap<>();
+        config.put("solr.home", solrHome.getAbsolutePath());
+        config.put("forceRefresh", Boolean.FALSE);
+        return config;
+    }
+
+    private static File corpus() {
+        return new File(ApacheSolrTest.class.getResource("/corpora/electric_basses.json").getPath());
+    }
+
+    private File corpus(final String documents) throws IOException {
+        final File corpus = tempFolder.newFile();
+        Files.write(corpus.toPath(), documents.getBytes(StandardCharsets.UTF_8));
+        return corpus;
+    }
+
+    /**
+     * Copy the test core configuration for a version, changing one of its
+     * files.
+     */
+    private File configFolder(final String version, final String fileName, final UnaryOperator<String> change) throws IOException {
+        final File configFolder = new File(tempFolder.newFolder(version), INDEX_NAME);
+        DirectoryUtils.copyDirectory(new File(ApacheSolrTest.class.getResource("/configuration_sets/v1.0/core1").getPath()), configFolder);
+
+        final File file = new File(new File(configFolder, "conf"), fileName);
+        final String content = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+        Files.write(file.toPath(), change.apply(content).getBytes(StandardCharsets.UTF_8));
+        return configFolder;
+    }
+
+    private static String appendFilter(final String solrConfig) {
+        return solrConfig.replace("<lst name=\"defaults\">",
+                "<lst name=\"appends\"><str name=\"fq\">id:1</str></lst><lst name=\"defaults\">");
+    }
+
+    private static File[] sharedCores(final File solrHome) {
+        return solrHome.listFiles(file -> file.isDirectory() && file.getName().startsWith(INDEX_NAME + "_shape_"));
+    }
+
+    private static File[] checksumFiles(final File solrHome) {
+        return solrHome.listFiles(file -> file.getName().endsWith(".rre-checksums"));
+    }
 }
@@ -0,0 +1,69 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.server;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Metrics configuration. The Micrometer registry - which also holds the
+ * RRE instrumentation metrics, via the global registry - is published over
+ * JMX, and through the actuator {@code /metrics} endpoint.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+@Configuration
+public class MetricsConfig {
+
+    /**
+     * Expose every Micrometer measurement through the actuator metrics
+     * endpoint, named {@code <meter>.<tag>.<value>...<statistic>}.
+     *
+     * @param registry the Micrometer registry.
+     * @return the public metrics.
+     */
+    @Bean
+    public PublicMetrics micrometerPublicMetrics(final MeterRegistry registry) {
+        return () -> {
+            final Collection<Metric<?>> metrics = new ArrayList<>();
+            for (final Meter meter : registry.getMeters()) {
+                final String prefix = metricName(meter);
+                meter.measure().forEach(measurement -> metrics.add(
+                        new Metric<>(prefix + "." + measurement.getStatistic().getTagValueRepresentation(), measurement.getValue())));
+            }
+            return metrics;
+        };
+    }
+
+    private static String metricName(final Meter meter) {
+        final StringBuilder name = new StringBuilder(meter.getId().getName());
+        final List<Tag> tags = meter.getId().getTags();
+        for (final Tag tag : tags) {
+            name.append('.').append(tag.getKey()).append('.').append(tag.getValue());
+        }
+        return name.toString();
+    }
+}
@@ -18,6 +18,7 @@ package io.sease.rre.server;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.core.env.ConfigurableEnvironment;
 import org.springframework.core.env.StandardEnvironment;
 
@@ -28,6 +29,7 @@ import org.springframework.core.env.StandardEnvironment;
  * @since 1.0
  */
 @SpringBootApplication
+@EnableScheduling
 public class RREServer {
     public static void main(final String[] args) {
         SpringApplication.run(RREServer.class, args);
@@ -19,43 +19,254 @@ package io.sease.rre.server.controllers;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.sease.rre.core.domain.Evaluation;
+import io.sease.rre.server.domain.CachedResponse;
+import io.sease.rre.server.domain.EvaluationLevel;
 import io.sease.rre.server.domain.EvaluationMetadata;
+import io.sease.rre.server.domain.EvaluationSnapshot;
+import io.sease.rre.server.domain.EvaluationSummary;
+import io.sease.rre.server.domain.ViewRequest;
+import io.sease.rre.persistence.impl.EvaluationDigest;
+import io.sease.rre.server.services.EvaluationConflictException;
+import io.sease.rre.server.services.EvaluationDeltaService;
 import io.sease.rre.server.services.EvaluationHandlerService;
+import io.sease.rre.server.services.EvaluationNotFoundException;
+import io.sease.rre.server.services.EvaluationStore;
+import io.sease.rre.server.services.EvaluationViewService;
+import io.sease.rre.server.services.ProgressService;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiResponse;
 import io.swagger.annotations.ApiResponses;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.InputStream;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
 
 @RestController
 public class RREController {
 
+    private static final EvaluationSnapshot EMPTY_SNAPSHOT = new EvaluationSnapshot(EvaluationStore.DEFAULT_ID, new Evaluation(),
+            new EvaluationMetadata(Collections.emptyList(), Collections.emptyList()), Instant.EPOCH, 0);
+
     @Autowired
     private EvaluationHandlerService evaluationHandler;
 
+    @Autowired
+    private EvaluationViewService evaluationViews;
+
+    @Autowired
+    private EvaluationStore evaluationStore;
+
+    @Autowired
+    private ProgressService progressService;
+
+    @Autowired
+    private EvaluationDeltaService deltaService;
+
+    @ApiOperation(value = "Receives an evaluation. The body is read as a stream, and may be gzip or deflate encoded.")
     @PostMapping("/evaluation")
-    public void updateEvaluationData(@RequestBody final JsonNode requestBody) throws Exception {
-        evaluationHandler.processEvaluationRequest(requestBody);
+    public void updateEvaluationData(
+            @RequestParam(value = "id", defaultValue = EvaluationStore.DEFAULT_ID) final String id,
+            final InputStream requestBody) throws Exception {
+        evaluationHandler.processEvaluationRequest(id, requestBody);
     }
 
     public EvaluationMetadata getMetadata() {
         return evaluationHandler.getEvaluationMetadata();
     }
 
-    @ApiOperation(value = "Returns the evaluation data.")
+    @ApiOperation(value = "Returns the evaluation data.", response = Evaluation.class)
     @ApiResponses(value = {
             @ApiResponse(code = 200, message = "Method successfully returned the evaluation data."),
+            @ApiResponse(code = 304, message = "The evaluation data has not changed."),
             @ApiResponse(code = 400, message = "Bad Request"),
             @ApiResponse(code = 414, message = "Request-URI Too Long"),
             @ApiResponse(code = 500, message = "System internal failure occurred.")
     })
     @GetMapping(value = "/evaluation", produces = { "application/json" })
-    @ResponseBody
-    public Evaluation getEvaluationData() {
-        return evaluationHandler.getEvaluation();
+    public ResponseEntity<byte[]> getEvaluationData(
+            @RequestParam(value = "id", required = false) final String id,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) final String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) final String acceptEncoding) {
+        return read(id, snapshot -> cached(evaluationViews.getEvaluation(snapshot), ifNoneMatch, acceptEncoding));
+    }
+
+    @ApiOperation(value = "Returns a page of the members at one level of the evaluation, with their aggregated metrics.")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Method successfully returned the evaluation members."),
+            @ApiResponse(code = 304, message = "The evaluation members have not changed."),
+            @ApiResponse(code = 400, message = "Bad Request"),
+            @ApiResponse(code = 500, message = "System internal failure occurred.")
+    })
+    @GetMapping(value = "/evaluation/{level}", produces = { "application/json" })
+    public ResponseEntity<byte[]> getEvaluationView(
+            @PathVariable("level") final String level,
+            @RequestParam(value = "id", required = false) final String id,
+            @RequestParam(value = "parent", required = false) final List<String> parents,
+            @RequestParam(value = "name", required = false) final String name,
+            @RequestParam(value = "metric", required = false) final List<String> metrics,
+            @RequestParam(value = "version", required = false) final List<String> versions,
+            @RequestParam(value = "field", required = false) final List<String> fields,
+            @RequestParam(value = "page", defaultValue = "0") final int page,
+            @RequestParam(value = "size", defaultValue = "" + ViewRequest.DEFAULT_PAGE_SIZE) final int size,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) final String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) final String acceptEncoding) {
+        final ViewRequest request = new ViewRequest(EvaluationLevel.of(level),
+                orEmpty(parents), name, orEmpty(metrics), orEmpty(versions), orEmpty(fields), page, size);
+        return read(id, snapshot -> cached(evaluationViews.getView(snapshot, request), ifNoneMatch, acceptEncoding));
+    }
+
+    @ApiOperation(value = "Lists the stored evaluations, most recent first.")
+    @GetMapping(value = "/evaluations", produces = { "application/json" })
+    public List<EvaluationSummary> getEvaluations() {
+        return evaluationStore.list();
+    }
+
+    @ApiOperation(value = "Removes a stored evaluation.")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "The evaluation was removed."),
+            @ApiResponse(code = 404, message = "There is no evaluation with the identifier.")
+    })
+    @DeleteMapping("/evaluations/{id}")
+    public ResponseEntity<Void> deleteEvaluation(@PathVariable("id") final String id) {
+        return evaluationStore.remove(id) ? ResponseEntity.ok().build() : ResponseEntity.notFound().build();
+    }
+
+    @ApiOperation(value = "Returns the content digests of an evaluation's members, against which changes can be sent.")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Method successfully returned the digests."),
+            @ApiResponse(code = 304, message = "The digests have not changed."),
+            @ApiResponse(code = 400, message = "There is no evaluation member at the path."),
+            @ApiResponse(code = 404, message = "There is no evaluation with the identifier, or its digests are not known.")
+    })
+    @GetMapping(value = "/evaluations/{id}/digest", produces = { "application/json" })
+    public ResponseEntity<byte[]> getEvaluationDigest(
+            @PathVariable("id") final String id,
+            @RequestParam(value = "path", defaultValue = "") final String path,
+            @RequestParam(value = "depth", defaultValue = "-1") final int depth,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) final String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) final String acceptEncoding) {
+        return read(id, snapshot -> deltaService.getDigest(snapshot, path, depth)
+                .map(digest -> cached(digest, ifNoneMatch, acceptEncoding))
+                .orElseGet(() -> ResponseEntity.notFound().build()));
+    }
+
+    @ApiOperation(value = "Applies changes to an evaluation, computed against its digests.")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "The changes were applied."),
+            @ApiResponse(code = 400, message = "The changes are not valid."),
+            @ApiResponse(code = 404, message = "There is no evaluation with the identifier."),
+            @ApiResponse(code = 409, message = "The evaluation has changed since its digests were read.")
+    })
+    @PostMapping(value = "/evaluations/{id}/patch", produces = { "application/json" })
+    public Map<String, String> patchEvaluation(
+            @PathVariable("id") final String id,
+            @RequestBody final JsonNode requestBody) {
+        final EvaluationSnapshot patched = deltaService.patch(id, requestBody);
+        return Collections.singletonMap("digest", EvaluationDigest.hex(patched.getDigest().getDigest()));
+    }
+
+    @ApiOperation(value = "Receives a batch of progress from a running evaluation.")
+    @ApiResponses(value = {
+            @ApiResponse(code = 202, message = "The progress was accepted."),
+            @ApiResponse(code = 400, message = "Bad Request")
+    })
+    @PostMapping("/evaluations/{id}/progress")
+    public ResponseEntity<Void> updateProgress(
+            @PathVariable("id") final String id,
+            @RequestBody final JsonNode requestBody) {
+        progressService.update(id, requestBody);
+        return ResponseEntity.accepted().build();
+    }
+
+    @ApiOperation(value = "Streams the progress of a running evaluation as Server-Sent Events.")
+    @GetMapping(value = "/evaluations/{id}/progress", produces = { MediaType.TEXT_EVENT_STREAM_VALUE })
+    public SseEmitter streamProgress(@PathVariable("id") final String id) {
+        return progressService.subscribe(id);
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public String badRequest(final IllegalArgumentException e) {
+        return e.getMessage();
+    }
+
+    @ExceptionHandler(EvaluationConflictException.class)
+    @ResponseStatus(HttpStatus.CONFLICT)
+    public String conflict(final EvaluationConflictException e) {
+        return e.getMessage();
+    }
+
+    @ExceptionHandler(EvaluationNotFoundException.class)
+    @ResponseStatus(HttpStatus.NOT_FOUND)
+    public String notFound(final EvaluationNotFoundException e) {
+        return e.getMessage();
+    }
+
+    /**
+     * Read the evaluation with the given identifier, or the most recently
+     * stored evaluation if the identifier is not set. If nothing has been
+     * stored yet, this is an empty evaluation. The evaluation's files are
+     * kept while it is read, even if it is replaced meanwhile.
+     */
+    private <T> T read(final String id, final Function<EvaluationSnapshot, T> reader) {
+        final EvaluationSnapshot snapshot = id == null
+                ? evaluationStore.acquireLatest().orElse(EMPTY_SNAPSHOT)
+                : evaluationStore.acquire(id).orElseThrow(() -> new EvaluationNotFoundException(id));
+        try {
+            return reader.apply(snapshot);
+        } finally {
+            snapshot.release();
+        }
+    }
+
+    /**
+     * Build the response for a cached body, using the compressed body if
+     * the client accepts it, or no body if the client already has it.
+     */
+    private static ResponseEntity<byte[]> cached(final CachedResponse response, final String ifNoneMatch, final String acceptEncoding) {
+        final boolean gzip = acceptsGzip(acceptEncoding);
+        final HttpHeaders headers = new HttpHeaders();
+        headers.setCacheControl("no-cache");
+        headers.setVary(Collections.singletonList(HttpHeaders.ACCEPT_ENCODING));
+        headers.setETag(gzip ? response.getGzippedEtag() : response.getEtag());
+        if (response.matches(ifNoneMatch)) {
+            return new ResponseEntity<>(headers, HttpStatus.NOT_MODIFIED);
+        }
+
+        headers.setContentType(MediaType.APPLICATION_JSON_UTF8);
+        if (gzip) {
+            headers.set(HttpHeaders.CONTENT_ENCODING, "gzip");
+            return new ResponseEntity<>(response.getGzippedBody(), headers, HttpStatus.OK);
+        }
+        return new ResponseEntity<>(response.getBody(), headers, HttpStatus.OK);
+    }
+
+    private static boolean acceptsGzip(final String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (final String coding : acceptEncoding.toLowerCase(Locale.ROOT).split(",")) {
+            final String[] parts = coding.trim().split(";");
+            if (parts[0].trim().equals("gzip")) {
+                return parts.length == 1 || !parts[1].replace(" ", "").matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+
+    private static List<String> orEmpty(final List<String> values) {
+        return values == null ? Collections.emptyList() : values;
     }
 }
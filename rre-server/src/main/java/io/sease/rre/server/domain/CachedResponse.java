@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.server.domain;
+
+import org.springframework.util.DigestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A serialized response body, held both plain and gzip compressed so it
+ * can be returned to any client without further work.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+public class CachedResponse {
+
+    private final byte[] body;
+    private final byte[] gzippedBody;
+    private final String etag;
+
+    /**
+     * @param body the serialized response body.
+     */
+    public CachedResponse(final byte[] body) {
+        this.body = body;
+        this.gzippedBody = gzip(body);
+        this.etag = "\"" + DigestUtils.md5DigestAsHex(body) + "\"";
+    }
+
+    public byte[] getBody() {
+        return body;
+    }
+
+    public byte[] getGzippedBody() {
+        return gzippedBody;
+    }
+
+    /**
+     * @return the entity tag for the plain body. The compressed body is
+     * tagged with this, with a "-gzip" suffix inside the quotes.
+     */
+    public String getEtag() {
+        return etag;
+    }
+
+    public String getGzippedEtag() {
+        return etag.substring(0, etag.length() - 1) + "-gzip\"";
+    }
+
+    /**
+     * @param ifNoneMatch the If-None-Match request header, may be
+     *                    {@code null}.
+     * @return {@code true} if the header matches either representation of
+     * this response.
+     */
+    public boolean matches(final String ifNoneMatch) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (final String tag : ifNoneMatch.split(",")) {
+            final String trimmed = tag.trim();
+            final String strong = trimmed.startsWith("W/") ? trimmed.substring(2) : trimmed;
+            if (strong.equals("*") || strong.equals(etag) || strong.equals(getGzippedEtag())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static byte[] gzip(final byte[] body) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, body.length / 4));
+        try (final GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.server.domain;
+
+import java.util.Locale;
+
+/**
+ * The levels of the evaluation tree which may be viewed, with the names
+ * used for them in the evaluation data.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+public enum EvaluationLevel {
+    EVALUATION("evaluation"),
+    CORPORA("corpora"),
+    TOPICS("topics"),
+    QUERY_GROUPS("query-groups"),
+    QUERIES("queries");
+
+    private final String label;
+
+    EvaluationLevel(final String label) {
+        this.label = label;
+    }
+
+    /**
+     * @return the number of levels above this one in the evaluation tree.
+     */
+    public int depth() {
+        return ordinal();
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * Find the level with the given label.
+     *
+     * @param label the label, as used in the evaluation data.
+     * @return the level.
+     * @throws IllegalArgumentException if there is no level with the label.
+     */
+    public static EvaluationLevel of(final String label) {
+        for (final EvaluationLevel level : values()) {
+            if (level.label.equals(label.toLowerCase(Locale.ROOT))) {
+                return level;
+            }
+        }
+        throw new IllegalArgumentException("Unknown evaluation level " + label);
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.server.domain;
+
+import io.sease.rre.core.domain.Evaluation;
+import io.sease.rre.persistence.impl.EvaluationDigest;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * A named evaluation, as uploaded. The evaluation must not be changed once
+ * it is in a snapshot - an updated evaluation is held in a new snapshot,
+ * which replaces this one.
+ * <p>
+ * The snapshot also holds the responses serialized from its evaluation,
+ * so they are dropped along with it, and the digests of the evaluation as
+ * uploaded, if known, against which later changes can be sent.
+ * <p>
+ * A {@link MappedEvaluation} keeps reading from its file after it is
+ * stored, so a reader takes a reference to the file with
+ * {@link #retain()}, and the file is kept until the last is released,
+ * even if the snapshot is replaced or removed meanwhile.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+public class EvaluationSnapshot {
+
+    private static final int MAX_CACHED_RESPONSES = 64;
+
+    private final String id;
+    private final Evaluation evaluation;
+    private final EvaluationMetadata metadata;
+    private final Instant created;
+    private final long size;
+    private final EvaluationDigest.Node digest;
+
+    private final Map<String, CachedResponse> responses = new LinkedHashMap<String, CachedResponse>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, CachedResponse> eldest) {
+            return size() > MAX_CACHED_RESPONSES;
+        }
+    };
+
+    /**
+     * @param id         the evaluation identifier.
+     * @param evaluation the evaluation.
+     * @param metadata   the evaluation's versions and metrics.
+     * @param created    when the evaluation was uploaded.
+     * @param size       the estimated size of the evaluation, in bytes.
+     */
+    public EvaluationSnapshot(final String id, final Evaluation evaluation, final EvaluationMetadata metadata,
+                              final Instant created, final long size) {
+        this(id, evaluation, metadata, created, size, null);
+    }
+
+    /**
+     * @param id         the evaluation identifier.
+     * @param evaluation the evaluation.
+     * @param metadata   the evaluation's versions and metrics.
+     * @param created    when the evaluation was uploaded.
+     * @param size       the estimated size of the evaluation, in bytes.
+     * @param digest     the digests of the evaluation as uploaded, or
+     *                   {@code null} if not known.
+     */
+    public EvaluationSnapshot(final String id, final Evaluation evaluation, final EvaluationMetadata metadata,
+                              final Instant created, final long size, final EvaluationDigest.Node digest) {
+        this.id = id;
+        this.evaluation = evaluation;
+        this.metadata = metadata;
+        this.created = created;
+        this.size = size;
+        this.digest = digest;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public Evaluation getEvaluation() {
+        return evaluation;
+    }
+
+    public EvaluationMetadata getMetadata() {
+        return metadata;
+    }
+
+    public Instant getCreated() {
+        return created;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return the digests of the evaluation as uploaded, or {@code null} if
+     * not known.
+     */
+    public EvaluationDigest.Node getDigest() {
+        return digest;
+    }
+
+    /**
+     * Take a reference to the file the evaluation reads from, if any,
+     * keeping it until {@link #release()} is called.
+     *
+     * @return {@code false} if the file has already been released by the
+     * store, when the snapshot should be fetched again.
+     */
+    public boolean retain() {
+        return !(evaluation instanceof MappedEvaluation) || ((MappedEvaluation) evaluation).getFile().retain();
+    }
+
+    /**
+     * Release a reference taken by {@link #retain()}.
+     */
+    public void release() {
+        if (evaluation instanceof MappedEvaluation) {
+            ((MappedEvaluation) evaluation).getFile().release();
+        }
+    }
+
+    /**
+     * Get a serialized response, serializing it if it is not already held.
+     * The least recently used responses are dropped once there are more
+     * than {@link #MAX_CACHED_RESPONSES}.
+     *
+     * @param key        the key identifying the response.
+     * @param serializer the function serializing the response.
+     * @return the serialized response.
+     */
+    public CachedResponse response(final String key, final Supplier<CachedResponse> serializer) {
+        synchronized (responses) {
+            final CachedResponse cached = responses.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        // Serialize outside the lock - a concurrent request for the same response may serialize it too
+        final CachedResponse response = serializer.get();
+        synchronized (responses) {
+            final CachedResponse cached = responses.putIfAbsent(key, response);
+            return cached == null ? response : cached;
+        }
+    }
+}
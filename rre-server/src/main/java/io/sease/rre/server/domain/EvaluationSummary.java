@@ -0,0 +1,62 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.server.domain;
+
+import java.time.Instant;
+
+/**
+ * Summary details of a stored evaluation.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+public class EvaluationSummary {
+
+    private final String id;
+    private final Instant created;
+    private final long size;
+    private final boolean resident;
+
+    /**
+     * @param id       the evaluation identifier.
+     * @param created  when the evaluation was uploaded.
+     * @param size     the estimated size of the evaluation, in bytes.
+     * @param resident {@code true} if the evaluation is held in memory,
+     *                 {@code false} if it has been moved to disk.
+     */
+    public EvaluationSummary(final String id, final Instant created, final long size, final boolean resident) {
+        this.id = id;
+        this.created = created;
+        this.size = size;
+        this.resident = resident;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getCreated() {
+        return created.toString();
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public boolean isResident() {
+        return resident;
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.server.domain;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import io.sease.rre.core.domain.MutableQueryOrSearchResponse;
+import io.sease.rre.core.domain.Query;
+import io.sease.rre.core.domain.metrics.Metric;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.SoftReference;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * A query whose metrics and results are held in a mapped evaluation file,
+ * and decoded when they are first needed. The decoded query is softly
+ * held, so it can be dropped again when memory is short.
+ * <p>
+ * When the query is serialized, its JSON is copied straight from the file.
+ * A query sent to a mapped evaluation after it was stored holds its JSON in
+ * memory instead.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+@JsonSerialize(using = LazyQuery.Serializer.class)
+public class LazyQuery extends Query {
+
+    /**
+     * Rough size of a query held in memory before it has been decoded.
+     */
+    public static final int STUB_SIZE = 256;
+
+    private final MappedEvaluationFile file;
+    private final long offset;
+    private final int length;
+    private final ByteBuffer json;
+    private final Function<ByteBuffer, Query> decoder;
+
+    private volatile SoftReference<Query> decoded = new SoftReference<>(null);
+
+    /**
+     * @param file    the file holding the query's JSON.
+     * @param offset  the offset of the query's JSON in the file.
+     * @param length  the length of the query's JSON, in bytes.
+     * @param decoder the function building a query from its JSON.
+     */
+    public LazyQuery(final MappedEvaluationFile file, final long offset, final int length,
+                     final Function<ByteBuffer, Query> decoder) {
+        this.file = file;
+        this.offset = offset;
+        this.length = length;
+        this.json = null;
+        this.decoder = decoder;
+    }
+
+    /**
+     * @param json    the query's JSON.
+     * @param decoder the function building a query from its JSON.
+     */
+    public LazyQuery(final ByteBuffer json, final Function<ByteBuffer, Query> decoder) {
+        this.file = null;
+        this.offset = 0;
+        this.length = json.remaining();
+        this.json = json;
+        this.decoder = decoder;
+    }
+
+    @Override
+    public Map<String, Metric> getMetrics() {
+        return decoded().getMetrics();
+    }
+
+    @Override
+    public Map<String, MutableQueryOrSearchResponse> getResults() {
+        return decoded().getResults();
+    }
+
+    /**
+     * @return the query's JSON, as held in the file.
+     */
+    public ByteBuffer bytes() {
+        if (json != null) {
+            return json.duplicate();
+        }
+        try {
+            return file.slice(offset, length);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return the estimated size of the query held in memory, not counting
+     * the decoded query, which may be dropped at any time.
+     */
+    public long getResidentSize() {
+        return json == null ? STUB_SIZE : length;
+    }
+
+    private Query decoded() {
+        Query query = decoded.get();
+        if (query == null) {
+            // Concurrent readers may both decode the query - the result is the same
+            query = decoder.apply(bytes());
+            decoded = new SoftReference<>(query);
+        }
+        return query;
+    }
+
+    /**
+     * Writes the query's JSON without decoding it.
+     */
+    public static class Serializer extends JsonSerializer<LazyQuery> {
+        @Override
+        public void serialize(final LazyQuery query, final JsonGenerator generator, final SerializerProvider provider) throws IOException {
+            generator.writeRawValue(StandardCharsets.UTF_8.decode(query.bytes()).toString());
+        }
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.server.domain;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import io.sease.rre.core.domain.Evaluation;
+
+/**
+ * An evaluation whose aggregated metrics are held in memory, and whose
+ * queries are {@link LazyQuery} instances, read from a mapped file when
+ * needed.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+public class MappedEvaluation extends Evaluation {
+
+    private final MappedEvaluationFile file;
+    private final long residentSize;
+
+    /**
+     * @param file         the mapped file holding the queries. The
+     *                     evaluation takes over a reference to the file,
+     *                     which is released by whoever stores it.
+     * @param residentSize the estimated size of the evaluation held in
+     *                     memory, in bytes.
+     */
+    public MappedEvaluation(final MappedEvaluationFile file, final long residentSize) {
+        this.file = file;
+        this.residentSize = residentSize;
+    }
+
+    @JsonIgnore
+    public MappedEvaluationFile getFile() {
+        return file;
+    }
+
+    @JsonIgnore
+    public long getResidentSize() {
+        return residentSize;
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.server.domain;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A read-only, memory-mapped evaluation file, from which ranges of bytes
+ * can be read without loading the file onto the heap.
+ * <p>
+ * A single mapping is limited to 2GB, so the file is mapped in chunks
+ * which overlap a little. A range which does not fit in one chunk is read
+ * from the file instead.
+ * <p>
+ * The file is shared by every snapshot of an evaluation which reads from
+ * it, so it is reference counted, and deleted once the last reference is
+ * released. It is created holding one reference, for the evaluation read
+ * from it.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+public class MappedEvaluationFile {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MappedEvaluationFile.class);
+
+    private static final long CHUNK_SIZE = 1L << 30;
+    private static final long CHUNK_OVERLAP = 64L << 20;
+
+    private final File file;
+    private final long length;
+    private final long chunkSize;
+    private final MappedByteBuffer[] chunks;
+    private final AtomicInteger references = new AtomicInteger(1);
+
+    /**
+     * @param file the file to map.
+     * @throws IOException if the file cannot be mapped.
+     */
+    public MappedEvaluationFile(final File file) throws IOException {
+        this(file, CHUNK_SIZE, CHUNK_OVERLAP);
+    }
+
+    /**
+     * @param file         the file to map.
+     * @param chunkSize    the distance between the starts of the chunks.
+     * @param chunkOverlap how far each chunk runs into the next.
+     * @throws IOException if the file cannot be mapped.
+     */
+    MappedEvaluationFile(final File file, final long chunkSize, final long chunkOverlap) throws IOException {
+        this.file = file;
+        this.chunkSize = chunkSize;
+        try (final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            this.length = channel.size();
+            this.chunks = new MappedByteBuffer[(int) Math.max(1, (length + chunkSize - 1) / chunkSize)];
+            for (int i = 0; i < chunks.length; i++) {
+                final long start = i * chunkSize;
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(chunkSize + chunkOverlap, length - start));
+            }
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * Get a range of bytes from the file.
+     *
+     * @param offset the offset of the first byte.
+     * @param size   the number of bytes.
+     * @return a buffer holding the bytes, positioned at the first byte.
+     * @throws IOException if the range lies outside the file, or cannot be
+     *                     read.
+     */
+    public ByteBuffer slice(final long offset, final int size) throws IOException {
+        if (offset < 0 || size < 0 || offset + size > length) {
+            throw new EOFException("Range " + offset + "+" + size + " is outside " + file);
+        }
+        final int index = (int) (offset / chunkSize);
+        final int position = (int) (offset - index * chunkSize);
+        final ByteBuffer chunk = chunks[index].duplicate();
+        if (position + size <= chunk.limit()) {
+            // Cast to Buffer - the covariant ByteBuffer overrides do not exist before Java 9
+            ((Buffer) chunk).position(position);
+            ((Buffer) chunk).limit(position + size);
+            return chunk.slice();
+        }
+
+        // The range crosses the end of the chunk - read it from the file
+        final ByteBuffer buffer = ByteBuffer.allocate(size);
+        try (final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, offset + buffer.position()) < 0) {
+                    throw new EOFException("Unexpected end of " + file);
+                }
+            }
+        }
+        ((Buffer) buffer).flip();
+        return buffer;
+    }
+
+    /**
+     * Take a reference to the file, keeping it until the reference is
+     * released.
+     *
+     * @return {@code false} if the last reference has already been
+     * released, and the file deleted.
+     */
+    public boolean retain() {
+        int count;
+        do {
+            count = references.get();
+            if (count == 0) {
+                return false;
+            }
+        } while (!references.compareAndSet(count, count + 1));
+        return true;
+    }
+
+    /**
+     * Release a reference to the file, deleting the file once the last
+     * reference is released. The mapped chunks remain readable until they
+     * are garbage collected, on platforms which allow mapped files to be
+     * deleted, but ranges read from the file itself do not.
+     */
+    public void release() {
+        if (references.decrementAndGet() == 0 && !file.delete()) {
+            LOGGER.warn("Could not delete {}", file);
+        }
+    }
+}
@@ -16,45 +16,100 @@
  */
 package io.sease.rre.server.domain;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import io.sease.rre.core.domain.metrics.Metric;
 import io.sease.rre.core.domain.metrics.ValueFactory;
 
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import static io.sease.rre.Calculator.subtract;
 
 /**
  * A metric holder, which is not itself a metric but contains some metric data (actually name and value).
  * This is needed on RRE server side because here we no longer have the metrics definitions (in terms of classes / subclasses)
  * defined on the RRE core, but at the same time we need a general way to deserialize them in an object structure.
+ * <p>
+ * There is one of these for every metric of every query, group, topic and corpus, so the values are held as
+ * doubles, in an array indexed by the version ordinals of a {@link VersionIndex} shared across the evaluation.
+ * Values are held to {@link #SCALE} decimal places, rounded up as they are collected. The {@link ValueFactory} instances returned by
+ * {@link #getVersions()} are built when needed, and the metric is serialized in the same form as a core metric.
  *
  * @author agazzarini
  * @since 1.0
  */
+@JsonSerialize(using = StaticMetric.Serializer.class)
 public class StaticMetric extends Metric {
 
     /**
-     * Builds a new {@link Metric} with the given mnemonic name.
+     * The number of decimal places held for each value.
+     */
+    public static final int SCALE = 4;
+
+    private static final double[] NO_VALUES = new double[0];
+
+    private final VersionIndex versionIndex;
+    private double[] versionValues = NO_VALUES;
+
+    /**
+     * Builds a new {@link Metric} with the given mnemonic name, with its
+     * own version index.
      *
      * @param name the metric name.
      */
     public StaticMetric(final String name) {
+        this(name, new VersionIndex());
+    }
+
+    /**
+     * Builds a new {@link Metric} with the given mnemonic name.
+     *
+     * @param name         the metric name.
+     * @param versionIndex the version index shared by the evaluation's metrics.
+     */
+    public StaticMetric(final String name, final VersionIndex versionIndex) {
         super(name);
+        this.versionIndex = versionIndex;
+        // Values are held in the array - avoid allocating a map per metric
+        this.values = Collections.emptyMap();
     }
 
-    public void collect(final String version, final BigDecimal value) {
-        values.computeIfAbsent(version, v ->
-                new ValueFactory(this, version) {
-                    @Override
-                    public BigDecimal value() {
-                        return value;
-                    }
+    /**
+     * Round a value read from an evaluation to the scale held, as it has
+     * always been rounded: up, from the exact value of the double.
+     *
+     * @param value the value as read.
+     * @return the rounded value.
+     */
+    public static BigDecimal round(final double value) {
+        return new BigDecimal(value).setScale(SCALE, RoundingMode.CEILING);
+    }
 
-                    @Override
-                    public void collect(Map<String, Object> hit, int rank, String version) {
-                        // Nothing to be done here...
-                    }
-                }
-        );
+    public void collect(final String version, final BigDecimal value) {
+        final int ordinal = versionIndex.ordinal(version);
+        if (ordinal >= versionValues.length) {
+            final int length = versionValues.length;
+            versionValues = Arrays.copyOf(versionValues, Math.max(ordinal + 1, versionIndex.size()));
+            Arrays.fill(versionValues, length, versionValues.length, Double.NaN);
+        }
+        // The first value collected for a version is kept
+        if (Double.isNaN(versionValues[ordinal])) {
+            versionValues[ordinal] = value.setScale(SCALE, RoundingMode.CEILING).doubleValue();
+        }
     }
 
     @Override
@@ -71,4 +126,149 @@ public class StaticMetric extends Metric {
             }
         };
     }
-}
\ No newline at end of file
+
+    @Override
+    public Map<String, ValueFactory> getVersions() {
+        return new VersionMap();
+    }
+
+    @Override
+    public ValueFactory valueFactory(final String version) {
+        return getVersions().get(version);
+    }
+
+    @Override
+    public List<BigDecimal> trend() {
+        final List<BigDecimal> values = new ArrayList<>(versionValues.length);
+        for (final double value : versionValues) {
+            if (!Double.isNaN(value)) {
+                values.add(value(value));
+            }
+        }
+        if (values.size() <= 1) {
+            return values;
+        }
+        final List<BigDecimal> trend = new ArrayList<>(values.size() - 1);
+        for (int i = 0; i < values.size() - 1; i++) {
+            trend.add(subtract(values.get(i + 1), values.get(i)));
+        }
+        return trend;
+    }
+
+    private static BigDecimal value(final double value) {
+        // Held values are already rounded, so this only restores the scale
+        return BigDecimal.valueOf(value).setScale(SCALE, RoundingMode.CEILING);
+    }
+
+    private ValueFactory valueFactory(final int ordinal) {
+        final String version = versionIndex.version(ordinal);
+        final BigDecimal value = value(versionValues[ordinal]);
+        return new ValueFactory(this, version) {
+            @Override
+            public BigDecimal value() {
+                return value;
+            }
+
+            @Override
+            public void collect(Map<String, Object> hit, int rank, String version) {
+                // Nothing to be done here...
+            }
+        };
+    }
+
+    /**
+     * Read-only view of the values, by version name, in version ordinal
+     * order.
+     */
+    private class VersionMap extends AbstractMap<String, ValueFactory> {
+
+        @Override
+        public ValueFactory get(final Object key) {
+            if (key instanceof String) {
+                final int ordinal = versionIndex.find((String) key);
+                if (ordinal >= 0 && ordinal < versionValues.length && !Double.isNaN(versionValues[ordinal])) {
+                    return valueFactory(ordinal);
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public boolean containsKey(final Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public Set<Entry<String, ValueFactory>> entrySet() {
+            return new AbstractSet<Entry<String, ValueFactory>>() {
+                @Override
+                public Iterator<Entry<String, ValueFactory>> iterator() {
+                    return new Iterator<Entry<String, ValueFactory>>() {
+                        private int next = advance(0);
+
+                        private int advance(int ordinal) {
+                            while (ordinal < versionValues.length && Double.isNaN(versionValues[ordinal])) {
+                                ordinal++;
+                            }
+                            return ordinal;
+                        }
+
+                        @Override
+                        public boolean hasNext() {
+                            return next < versionValues.length;
+                        }
+
+                        @Override
+                        public Entry<String, ValueFactory> next() {
+                            if (!hasNext()) {
+                                throw new NoSuchElementException();
+                            }
+                            final int ordinal = next;
+                            next = advance(ordinal + 1);
+                            return new SimpleImmutableEntry<>(versionIndex.version(ordinal), valueFactory(ordinal));
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    int size = 0;
+                    for (final double value : versionValues) {
+                        if (!Double.isNaN(value)) {
+                            size++;
+                        }
+                    }
+                    return size;
+                }
+            };
+        }
+    }
+
+    /**
+     * Writes the metric in the same form as a core metric, without
+     * building its value factories.
+     */
+    public static class Serializer extends JsonSerializer<StaticMetric> {
+        @Override
+        public void serialize(final StaticMetric metric, final JsonGenerator generator, final SerializerProvider provider) throws IOException {
+            generator.writeStartObject();
+            generator.writeStringField("name", metric.getName());
+            generator.writeObjectFieldStart("versions");
+            for (int ordinal = 0; ordinal < metric.versionValues.length; ordinal++) {
+                if (!Double.isNaN(metric.versionValues[ordinal])) {
+                    generator.writeObjectFieldStart(metric.versionIndex.version(ordinal));
+                    generator.writeStringField("value", value(metric.versionValues[ordinal]).toPlainString());
+                    generator.writeEndObject();
+                }
+            }
+            generator.writeEndObject();
+            generator.writeNumberField("requiredResults", metric.getRequiredResults());
+            generator.writeArrayFieldStart("trend");
+            for (final BigDecimal delta : metric.trend()) {
+                generator.writeNumber(delta);
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.server.domain;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Assigns each version name an ordinal, so the metrics of an evaluation can
+ * hold their values in arrays indexed by version, and share a single copy
+ * of each version name. Ordinals follow the order in which versions are
+ * first seen.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+public class VersionIndex {
+
+    private final Map<String, Integer> ordinals = new ConcurrentHashMap<>();
+    private volatile String[] versions = new String[0];
+
+    /**
+     * Get the ordinal for a version, assigning one if it is new.
+     *
+     * @param version the version name.
+     * @return the version's ordinal.
+     */
+    public int ordinal(final String version) {
+        final Integer ordinal = ordinals.get(version);
+        return ordinal != null ? ordinal : assign(version);
+    }
+
+    /**
+     * @param version the version name.
+     * @return the version's ordinal, or -1 if it has not been seen.
+     */
+    public int find(final String version) {
+        final Integer ordinal = ordinals.get(version);
+        return ordinal != null ? ordinal : -1;
+    }
+
+    private synchronized int assign(final String version) {
+        final Integer ordinal = ordinals.get(version);
+        if (ordinal != null) {
+            return ordinal;
+        }
+        final String[] updated = Arrays.copyOf(versions, versions.length + 1);
+        updated[versions.length] = version;
+        versions = updated;
+        ordinals.put(version, versions.length - 1);
+        return versions.length - 1;
+    }
+
+    /**
+     * @param ordinal the version ordinal.
+     * @return the version name.
+     */
+    public String version(final int ordinal) {
+        return versions[ordinal];
+    }
+
+    /**
+     * @return the number of versions seen.
+     */
+    public int size() {
+        return versions.length;
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.server.domain;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * A request for a page of the members at one level of the evaluation,
+ * optionally filtered and with only some of their fields.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+public class ViewRequest {
+
+    public static final String FIELD_NAME = "name";
+    public static final String FIELD_PATH = "path";
+    public static final String FIELD_METRICS = "metrics";
+    public static final String FIELD_RESULTS = "results";
+
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 1000;
+
+    private static final Set<String> DEFAULT_FIELDS = new LinkedHashSet<>(Arrays.asList(FIELD_NAME, FIELD_PATH, FIELD_METRICS));
+    private static final Set<String> ALL_FIELDS = new LinkedHashSet<>(Arrays.asList(FIELD_NAME, FIELD_PATH, FIELD_METRICS, FIELD_RESULTS));
+
+    private final EvaluationLevel level;
+    private final List<String> parents;
+    private final String name;
+    private final Set<String> metrics;
+    private final Set<String> versions;
+    private final Set<String> fields;
+    private final int page;
+    private final int size;
+
+    /**
+     * @param level    the level of the evaluation to view.
+     * @param parents  the names of the ancestors the members must be under,
+     *                 starting from the corpus. May be empty.
+     * @param name     text the member names must contain, ignoring case, or
+     *                 {@code null} to include every member.
+     * @param metrics  the metrics to include, or empty for every metric.
+     * @param versions the versions to include, or empty for every version.
+     * @param fields   the fields to return for each member, or empty for
+     *                 name, path and metrics.
+     * @param page     the page to return, counting from 0.
+     * @param size     the number of members in each page.
+     * @throws IllegalArgumentException if the fields, page or size are not
+     *                                  valid.
+     */
+    public ViewRequest(final EvaluationLevel level, final List<String> parents, final String name,
+                       final List<String> metrics, final List<String> versions, final List<String> fields,
+                       final int page, final int size) {
+        if (page < 0) {
+            throw new IllegalArgumentException("page must not be negative");
+        }
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("size must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        if (parents.size() >= Math.max(1, level.depth())) {
+            throw new IllegalArgumentException("Too many parents for " + level.getLabel());
+        }
+        this.level = level;
+        this.parents = parents;
+        this.name = name == null || name.isEmpty() ? null : name.toLowerCase(Locale.ROOT);
+        this.metrics = new LinkedHashSet<>(metrics);
+        this.versions = new LinkedHashSet<>(versions);
+        this.fields = fields.isEmpty() ? DEFAULT_FIELDS : new LinkedHashSet<>(fields);
+        if (!ALL_FIELDS.containsAll(this.fields)) {
+            throw new IllegalArgumentException("fields must be some of " + ALL_FIELDS);
+        }
+        this.page = page;
+        this.size = size;
+    }
+
+    /**
+     * @return a view of the whole of the top level of the evaluation.
+     */
+    public static ViewRequest evaluation() {
+        return new ViewRequest(EvaluationLevel.EVALUATION, Collections.emptyList(), null,
+                Collections.emptyList(), Collections.emptyList(), Collections.emptyList(), 0, 1);
+    }
+
+    public EvaluationLevel getLevel() {
+        return level;
+    }
+
+    public List<String> getParents() {
+        return parents;
+    }
+
+    public int getPage() {
+        return page;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @param path the names of a member and its ancestors, from the corpus.
+     * @return {@code true} if the member is, or may have descendants,
+     * under the requested parents.
+     */
+    public boolean isWithinParents(final List<String> path) {
+        final int length = Math.min(path.size(), parents.size());
+        return path.subList(0, length).equals(parents.subList(0, length));
+    }
+
+    /**
+     * @param memberName the name of a member at the requested level.
+     * @return {@code true} if the member passes the name filter.
+     */
+    public boolean includesName(final String memberName) {
+        return name == null || (memberName != null && memberName.toLowerCase(Locale.ROOT).contains(name));
+    }
+
+    public boolean includesMetric(final String metric) {
+        return metrics.isEmpty() || metrics.contains(metric);
+    }
+
+    public boolean includesVersion(final String version) {
+        return versions.isEmpty() || versions.contains(version);
+    }
+
+    public boolean includesField(final String field) {
+        return fields.contains(field);
+    }
+
+    /**
+     * @return a key identifying the view, which is the same for every
+     * request for the same view.
+     */
+    public String cacheKey() {
+        return String.join("\u0000",
+                level.getLabel(),
+                String.join("\u0001", parents),
+                String.valueOf(name),
+                String.join("\u0001", metrics),
+                String.join("\u0001", versions),
+                String.join("\u0001", fields),
+                Integer.toString(page),
+                Integer.toString(size));
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.server.filters;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Decodes request bodies sent with a {@code gzip} or {@code deflate}
+ * Content-Encoding, as they are read. Requests with any other encoding are
+ * rejected.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+@Component
+public class ContentEncodingFilter extends OncePerRequestFilter {
+
+    @Override
+    protected void doFilterInternal(final HttpServletRequest request, final HttpServletResponse response, final FilterChain chain) throws ServletException, IOException {
+        final String encoding = request.getHeader(HttpHeaders.CONTENT_ENCODING);
+        if (encoding == null || encoding.equalsIgnoreCase("identity")) {
+            chain.doFilter(request, response);
+        } else if (encoding.equalsIgnoreCase("gzip") || encoding.equalsIgnoreCase("deflate")) {
+            chain.doFilter(new DecodedRequest(request, encoding.equalsIgnoreCase("gzip")), response);
+        } else {
+            response.sendError(HttpStatus.UNSUPPORTED_MEDIA_TYPE.value(), "Unsupported Content-Encoding: " + encoding);
+        }
+    }
+
+    /**
+     * A request whose body is decoded as it is read. The decoded length is
+     * not known in advance, so the Content-Length header is hidden.
+     */
+    private static class DecodedRequest extends HttpServletRequestWrapper {
+        private final boolean gzip;
+        private ServletInputStream decoded;
+        private BufferedReader reader;
+
+        DecodedRequest(final HttpServletRequest request, final boolean gzip) {
+            super(request);
+            this.gzip = gzip;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() throws IOException {
+            if (decoded == null) {
+                final ServletInputStream body = super.getInputStream();
+                decoded = new DecodedInputStream(body, gzip ? new GZIPInputStream(body) : new InflaterInputStream(body));
+            }
+            return decoded;
+        }
+
+        /**
+         * Read the decoded body as text, in the request's character
+         * encoding, or UTF-8 if it has none.
+         */
+        @Override
+        public BufferedReader getReader() throws IOException {
+            if (reader == null) {
+                final String charset = getCharacterEncoding();
+                reader = new BufferedReader(new InputStreamReader(getInputStream(),
+                        charset == null ? StandardCharsets.UTF_8.name() : charset));
+            }
+            return reader;
+        }
+
+        @Override
+        public int getContentLength() {
+            return -1;
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            return -1;
+        }
+
+        @Override
+        public String getHeader(final String name) {
+            return isContentLength(name) ? null : super.getHeader(name);
+        }
+
+        @Override
+        public Enumeration<String> getHeaders(final String name) {
+            return isContentLength(name) ? Collections.emptyEnumeration() : super.getHeaders(name);
+        }
+
+        @Override
+        public Enumeration<String> getHeaderNames() {
+            final Enumeration<String> names = super.getHeaderNames();
+            if (names == null) {
+                return null;
+            }
+            final List<String> decodedNames = new ArrayList<>();
+            while (names.hasMoreElements()) {
+                final String name = names.nextElement();
+                if (!isContentLength(name)) {
+                    decodedNames.add(name);
+                }
+            }
+            return Collections.enumeration(decodedNames);
+        }
+
+        @Override
+        public int getIntHeader(final String name) {
+            return isContentLength(name) ? -1 : super.getIntHeader(name);
+        }
+
+        private static boolean isContentLength(final String name) {
+            return HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name);
+        }
+    }
+
+    private static class DecodedInputStream extends ServletInputStream {
+        private final ServletInputStream body;
+        private final InputStream decoder;
+        private boolean finished;
+
+        DecodedInputStream(final ServletInputStream body, final InputStream decoder) {
+            this.body = body;
+            this.decoder = decoder;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int b = decoder.read();
+            finished = b == -1;
+            return b;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            final int read = decoder.read(b, off, len);
+            finished = read == -1;
+            return read;
+        }
+
+        @Override
+        public boolean isFinished() {
+            return finished;
+        }
+
+        @Override
+        public boolean isReady() {
+            return body.isReady();
+        }
+
+        @Override
+        public void setReadListener(final ReadListener listener) {
+            throw new UnsupportedOperationException("Decoded request bodies are read synchronously");
+        }
+
+        @Override
+        public void close() throws IOException {
+            decoder.close();
+        }
+    }
+}
@@ -0,0 +1,541 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.server.services;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import io.sease.rre.core.domain.Corpus;
+import io.sease.rre.core.domain.DomainMember;
+import io.sease.rre.core.domain.Evaluation;
+import io.sease.rre.core.domain.Query;
+import io.sease.rre.core.domain.QueryGroup;
+import io.sease.rre.core.domain.Topic;
+import io.sease.rre.persistence.impl.EvaluationDigest;
+import io.sease.rre.server.domain.CachedResponse;
+import io.sease.rre.server.domain.EvaluationSnapshot;
+import io.sease.rre.server.domain.LazyQuery;
+import io.sease.rre.server.domain.MappedEvaluation;
+import io.sease.rre.server.domain.MappedEvaluationFile;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Applies changes to stored evaluations, so that an evaluation which
+ * differs from the stored one in a few members can be sent without
+ * sending the whole evaluation.
+ * <p>
+ * The sender reads the digests of the stored evaluation's members, compares
+ * them with its own (see {@link EvaluationDigest}), and sends a patch
+ * holding the members which have changed:
+ * <pre>
+ * {
+ *   "base": "digest of the stored evaluation",
+ *   "operations": [
+ *     { "op": "replace", "path": "/corpus/topic/group/query", "value": { ...query... } },
+ *     { "op": "add", "path": "/corpus/topic/new group", "index": 2, "value": { ...query group... } },
+ *     { "op": "remove", "path": "/corpus/old topic" },
+ *     { "op": "update", "path": "/corpus/topic", "value": { "name": "topic", "metrics": { ... } } }
+ *   ]
+ * }
+ * </pre>
+ * Paths are JSON Pointers made of member names. {@code add} and
+ * {@code replace} set the whole of a member, {@code remove} removes it, and
+ * {@code update} sets the member's own fields, leaving its children as
+ * they are. A new member is added at the {@code index} given with it - its
+ * position among its siblings once the patch is applied - or after its
+ * siblings if there is none.
+ * <p>
+ * The patched evaluation shares the unchanged members of the stored one,
+ * leaving them as they are, so applying a patch takes time in proportion to
+ * the size of the patch, and to the number of siblings of the changed
+ * members. It replaces the stored evaluation in one step, and only if the
+ * stored evaluation has not changed in the meantime.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+@Service
+public class EvaluationDeltaService {
+
+    private static final String DIGEST_KEY = "digest:";
+
+    @SuppressWarnings("unchecked")
+    private static final Supplier<? extends DomainMember<?>>[] FACTORIES =
+            new Supplier[]{Corpus::new, Topic::new, QueryGroup::new, Query::new};
+
+    @Autowired
+    private ObjectMapper mapper;
+
+    @Autowired
+    private EvaluationStore store;
+
+    /**
+     * Get the digests of an evaluation's members.
+     *
+     * @param snapshot the evaluation snapshot.
+     * @param pointer  the path of the member to start from, as a JSON
+     *                 Pointer - empty for the whole evaluation.
+     * @param depth    the number of levels of children to include, or a
+     *                 negative number for all of them.
+     * @return the digests, or empty if the evaluation's digests are not
+     * known.
+     * @throws IllegalArgumentException if there is no member at the path.
+     */
+    public Optional<CachedResponse> getDigest(final EvaluationSnapshot snapshot, final String pointer, final int depth) {
+        if (snapshot.getDigest() == null) {
+            return Optional.empty();
+        }
+        EvaluationDigest.Node node = snapshot.getDigest();
+        for (final String name : EvaluationDigest.path(pointer)) {
+            node = child(node, name).orElseThrow(() -> new IllegalArgumentException("No evaluation member at " + pointer));
+        }
+        final EvaluationDigest.Node start = node;
+        return Optional.of(snapshot.response(DIGEST_KEY + depth + ":" + pointer, () -> serialize(start, depth)));
+    }
+
+    /**
+     * Apply a patch to a stored evaluation.
+     *
+     * @param id    the evaluation identifier.
+     * @param patch the patch.
+     * @return the snapshot holding the patched evaluation.
+     * @throws EvaluationNotFoundException if there is no evaluation with
+     *                                     the identifier.
+     * @throws EvaluationConflictException if the patch was not computed
+     *                                     against the stored evaluation.
+     * @throws IllegalArgumentException    if the patch is not valid.
+     */
+    public EvaluationSnapshot patch(final String id, final JsonNode patch) {
+        final EvaluationSnapshot snapshot = store.acquire(id).orElseThrow(() -> new EvaluationNotFoundException(id));
+        try {
+            return patch(snapshot, patch);
+        } finally {
+            snapshot.release();
+        }
+    }
+
+    private EvaluationSnapshot patch(final EvaluationSnapshot snapshot, final JsonNode patch) {
+        final String id = snapshot.getId();
+        final EvaluationDigest.Node digest = snapshot.getDigest();
+        if (digest == null) {
+            throw new EvaluationConflictException("The digests of evaluation " + id + " are not known - send the whole evaluation");
+        }
+        final JsonNode base = patch.get("base");
+        if (base == null || !MessageDigest.isEqual(digest.getDigest(), EvaluationDigest.unhex(base.asText()))) {
+            throw new EvaluationConflictException("Evaluation " + id + " has changed - send the whole evaluation");
+        }
+
+        final Change changes = changes(patch.get("operations"));
+        final Evaluation current = snapshot.getEvaluation();
+        final Patch applied = new Patch(current instanceof MappedEvaluation);
+        final long size = Math.max(0, snapshot.getSize() + changes.size() - applied.released(current, changes));
+        final Evaluation patched;
+        if (current instanceof MappedEvaluation) {
+            // Unchanged queries are still read from the mapped file, so the patched evaluation holds its own reference
+            final MappedEvaluationFile file = ((MappedEvaluation) current).getFile();
+            file.retain();
+            patched = new MappedEvaluation(file, size);
+        } else {
+            patched = new Evaluation();
+        }
+
+        Optional<EvaluationSnapshot> replaced = Optional.empty();
+        try {
+            patched.setName(changes.value != null && changes.value.has("name") ? changes.value.get("name").asText() : current.getName());
+            final EvaluationDigest.Node patchedDigest = applied.apply(current, patched, digest, changes, 0);
+            replaced = store.replace(snapshot, patched, patchedDigest, size);
+        } finally {
+            if (!replaced.isPresent() && patched instanceof MappedEvaluation) {
+                ((MappedEvaluation) patched).getFile().release();
+            }
+        }
+        return replaced.orElseThrow(() -> new EvaluationConflictException("Evaluation " + id + " has changed - send the whole evaluation"));
+    }
+
+    private ByteBuffer json(final JsonNode value) {
+        try {
+            return ByteBuffer.wrap(mapper.writeValueAsBytes(value));
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private EvaluationDigest.Node read(final JsonNode value, final int depth) {
+        try (final JsonParser parser = value.traverse(mapper)) {
+            return EvaluationDigest.read(parser, depth);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid evaluation member: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @return the size of an evaluation member's JSON, in bytes.
+     */
+    private long jsonSize(final Object value) {
+        try {
+            return mapper.writeValueAsBytes(value).length;
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Map<String, DomainMember<?>> children(final DomainMember<?> member) {
+        final Map<String, DomainMember<?>> children = new HashMap<>();
+        member.getChildren().forEach(child -> children.putIfAbsent(child.getName(), child));
+        return children;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static DomainMember<?> findOrCreate(final DomainMember<?> parent, final String name,
+                                                final Supplier<? extends DomainMember<?>> factory) {
+        return (DomainMember<?>) ((DomainMember) parent).findOrCreate(name, (Supplier) factory);
+    }
+
+    /**
+     * Add a member of the stored evaluation to the patched one. The member
+     * keeps its parent in the stored evaluation, which is left unchanged.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static void share(final DomainMember<?> parent, final DomainMember<?> child) {
+        ((DomainMember) parent).findOrShare(child);
+    }
+
+    /**
+     * Arrange the patch operations by path.
+     */
+    private Change changes(final JsonNode operations) {
+        if (operations == null || !operations.isArray()) {
+            throw new IllegalArgumentException("The patch has no operations");
+        }
+        final Change root = new Change("");
+        for (final JsonNode operation : operations) {
+            final Op op = Op.of(operation.path("op").asText());
+            final String pointer = operation.path("path").asText();
+            final List<String> path = EvaluationDigest.path(pointer);
+            final JsonNode value = operation.get("value");
+            final int depth = path.size();
+            if (depth > EvaluationDigest.QUERY_DEPTH
+                    || depth == 0 && op != Op.UPDATE
+                    || depth == EvaluationDigest.QUERY_DEPTH && op == Op.UPDATE) {
+                throw new IllegalArgumentException("Cannot " + op.label() + " " + pointer);
+            } else if (op != Op.REMOVE && (value == null || !value.isObject())) {
+                throw new IllegalArgumentException("No value to " + op.label() + " " + pointer);
+            } else if (depth > 0 && value != null && (op == Op.REPLACE || value.has("name"))
+                    && !path.get(depth - 1).equals(value.path(depth == EvaluationDigest.QUERY_DEPTH ? "query" : "name").asText())) {
+                throw new IllegalArgumentException("The value to " + op.label() + " is not named for " + pointer);
+            }
+
+            Change change = root;
+            for (int i = 0; i < depth; i++) {
+                if (change.op == Op.REPLACE || change.op == Op.REMOVE) {
+                    throw new IllegalArgumentException("Conflicting operations at " + pointer);
+                }
+                final String childPointer = EvaluationDigest.pointer(path.subList(0, i + 1));
+                change = change.children.computeIfAbsent(path.get(i), n -> new Change(childPointer));
+            }
+            if (change.op != null || op != Op.UPDATE && !change.children.isEmpty()) {
+                throw new IllegalArgumentException("Conflicting operations at " + pointer);
+            }
+            change.op = op;
+            change.value = value;
+            change.index = index(operation, op, pointer);
+            if (value != null) {
+                root.bytes += value.toString().length();
+            }
+        }
+        return root;
+    }
+
+    /**
+     * @return the position to add a member at among its siblings, or -1 if
+     * the operation does not give one.
+     */
+    private static int index(final JsonNode operation, final Op op, final String pointer) {
+        final JsonNode index = operation.get("index");
+        if (index == null) {
+            return -1;
+        } else if (op != Op.REPLACE || !index.canConvertToInt() || index.asInt() < 0) {
+            throw new IllegalArgumentException("Invalid index to " + op.label() + " " + pointer + ": " + index);
+        }
+        return index.asInt();
+    }
+
+    private CachedResponse serialize(final EvaluationDigest.Node node, final int depth) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (final JsonGenerator generator = mapper.getFactory().createGenerator(out)) {
+            write(generator, node, depth);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new CachedResponse(out.toByteArray());
+    }
+
+    private static void write(final JsonGenerator generator, final EvaluationDigest.Node node, final int depth) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("name", node.getName());
+        generator.writeStringField("digest", EvaluationDigest.hex(node.getDigest()));
+        if (node.getOwn() != null) {
+            generator.writeStringField("own", EvaluationDigest.hex(node.getOwn()));
+            if (depth != 0) {
+                generator.writeArrayFieldStart("children");
+                for (final EvaluationDigest.Node child : node.getChildren()) {
+                    write(generator, child, depth - 1);
+                }
+                generator.writeEndArray();
+            }
+        }
+        generator.writeEndObject();
+    }
+
+    private static Optional<EvaluationDigest.Node> child(final EvaluationDigest.Node node, final String name) {
+        return node.getChildren().stream().filter(child -> name.equals(child.getName())).findFirst();
+    }
+
+    /**
+     * The application of one patch. New members are read with a single
+     * reader, so share its version index.
+     */
+    private class Patch {
+        private final EvaluationReader reader = new EvaluationReader(mapper);
+        private final boolean mapped;
+
+        /**
+         * @param mapped whether the evaluation is mapped, and new queries
+         *               should be held as JSON, like the rest of its queries.
+         */
+        Patch(final boolean mapped) {
+            this.mapped = mapped;
+        }
+
+        /**
+         * Build a patched member, holding the unchanged children of the
+         * current member and the changed children from the patch.
+         *
+         * @return the digests of the patched member.
+         */
+        EvaluationDigest.Node apply(final DomainMember<?> current, final DomainMember<?> patched,
+                                    final EvaluationDigest.Node digest, final Change change, final int depth) {
+            final byte[] own;
+            if (change.value != null) {
+                // An update of the member's own fields
+                final JsonNode metrics = change.value.get("metrics");
+                if (metrics != null) {
+                    reader.metrics(metrics, patched);
+                }
+                own = read(change.value, depth).getOwn();
+            } else {
+                patched.getMetrics().putAll(current.getMetrics());
+                own = digest.getOwn();
+            }
+
+            // Arrange the children in order before adding them, since
+            // members are added after their siblings
+            final List<Slot> slots = new ArrayList<>();
+            final Map<String, Change> pending = new LinkedHashMap<>(change.children);
+            for (final EvaluationDigest.Node childDigest : digest.getChildren()) {
+                final Change childChange = pending.remove(childDigest.getName());
+                if (childChange == null || childChange.op != Op.REMOVE) {
+                    slots.add(new Slot(childDigest, childChange));
+                }
+            }
+            final List<Change> added = new ArrayList<>(pending.values());
+            added.sort(Comparator.comparingInt(c -> c.index < 0 ? Integer.MAX_VALUE : c.index));
+            for (final Change addedChange : added) {
+                if (addedChange.op != Op.REPLACE) {
+                    throw new IllegalArgumentException("No evaluation member at " + addedChange.pointer);
+                }
+                // Added members go where the sender holds them, or after the other members
+                final int index = addedChange.index < 0 ? slots.size() : Math.min(addedChange.index, slots.size());
+                slots.add(index, new Slot(null, addedChange));
+            }
+
+            final Map<String, DomainMember<?>> currentChildren = children(current);
+            final List<EvaluationDigest.Node> children = new ArrayList<>();
+            for (final Slot slot : slots) {
+                if (slot.change == null) {
+                    share(patched, currentChildren.get(slot.digest.getName()));
+                    children.add(slot.digest);
+                } else if (slot.change.op == Op.REPLACE) {
+                    children.add(create(patched, slot.change.value, depth + 1));
+                } else {
+                    final String name = slot.digest.getName();
+                    final DomainMember<?> patchedChild = findOrCreate(patched, name, FACTORIES[depth]);
+                    children.add(apply(currentChildren.get(name), patchedChild, slot.digest, slot.change, depth + 1));
+                }
+            }
+
+            return EvaluationDigest.Node.of(patched.getName(), own, children);
+        }
+
+        /**
+         * Create a member from its JSON.
+         *
+         * @return the digests of the new member.
+         */
+        private EvaluationDigest.Node create(final DomainMember<?> parent, final JsonNode value, final int depth) {
+            final EvaluationDigest.Node digest = read(value, depth);
+            populate(parent, value, depth);
+            return digest;
+        }
+
+        /**
+         * Add a member and its children to their parent, read from their
+         * JSON.
+         */
+        private void populate(final DomainMember<?> parent, final JsonNode value, final int depth) {
+            final String name = value.get(depth == EvaluationDigest.QUERY_DEPTH ? "query" : "name").asText();
+            if (depth == EvaluationDigest.QUERY_DEPTH) {
+                if (mapped) {
+                    findOrCreate(parent, name, () -> new LazyQuery(json(value), this::decode));
+                } else {
+                    reader.query(value, (Query) findOrCreate(parent, name, Query::new));
+                }
+                return;
+            }
+
+            final DomainMember<?> member = findOrCreate(parent, name, FACTORIES[depth - 1]);
+            reader.metrics(value.get("metrics"), member);
+            value.get(EvaluationDigest.CHILDREN_FIELDS[depth]).forEach(child -> populate(member, child, depth + 1));
+        }
+
+        private Query decode(final ByteBuffer json) {
+            try {
+                final Query query = new Query();
+                reader.query(mapper.readTree(new ByteBufferBackedInputStream(json)), query);
+                return query;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * @return the estimated size of the parts of a stored member which
+         * its changes replace or remove.
+         */
+        long released(final DomainMember<?> current, final Change change) {
+            long released = change.value != null ? ownSize(current) : 0;
+            final Map<String, DomainMember<?>> currentChildren = children(current);
+            for (final Map.Entry<String, Change> child : change.children.entrySet()) {
+                final DomainMember<?> currentChild = currentChildren.get(child.getKey());
+                if (currentChild != null) {
+                    final Op op = child.getValue().op;
+                    released += op == Op.REPLACE || op == Op.REMOVE ? size(currentChild) : released(currentChild, child.getValue());
+                }
+            }
+            return released;
+        }
+
+        /**
+         * @return the estimated size of a stored member held in memory, as
+         * counted by the store.
+         */
+        private long size(final DomainMember<?> member) {
+            if (member instanceof LazyQuery) {
+                return ((LazyQuery) member).getResidentSize();
+            } else if (member instanceof Query) {
+                return jsonSize(member);
+            }
+            long size = ownSize(member);
+            for (final DomainMember<?> child : member.getChildren()) {
+                size += size(child);
+            }
+            return size;
+        }
+
+        private long ownSize(final DomainMember<?> member) {
+            return member.getName() == null ? 0 : member.getName().length() + jsonSize(member.getMetrics());
+        }
+    }
+
+    private enum Op {
+        REPLACE, REMOVE, UPDATE;
+
+        static Op of(final String op) {
+            switch (op) {
+                case "add":
+                case "replace":
+                    // Members are identified by name, so adding and replacing are the same
+                    return REPLACE;
+                case "remove":
+                    return REMOVE;
+                case "update":
+                    return UPDATE;
+                default:
+                    throw new IllegalArgumentException("Unknown operation: " + op);
+            }
+        }
+
+        String label() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    /**
+     * A child of a patched member: a member of the stored evaluation, its
+     * change, or both.
+     */
+    private static class Slot {
+        private final EvaluationDigest.Node digest;
+        private final Change change;
+
+        Slot(final EvaluationDigest.Node digest, final Change change) {
+            this.digest = digest;
+            this.change = change;
+        }
+    }
+
+    /**
+     * The changes to one member, and to its children.
+     */
+    private static class Change {
+        private final String pointer;
+        private final Map<String, Change> children = new LinkedHashMap<>();
+        private Op op;
+        private JsonNode value;
+        private int index = -1;
+        private long bytes;
+
+        Change(final String pointer) {
+            this.pointer = pointer;
+        }
+
+        /**
+         * @return the approximate size of the patch values, in bytes.
+         */
+        long size() {
+            return bytes;
+        }
+    }
+}
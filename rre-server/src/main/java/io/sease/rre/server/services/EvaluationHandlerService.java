@@ -17,10 +17,14 @@
 package io.sease.rre.server.services;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.sease.rre.core.domain.Evaluation;
 import io.sease.rre.server.domain.EvaluationMetadata;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.InputStream;
+
 /**
  * An EvaluationHandlerService can be used to process an incoming evaluation
  * update request. It should extract the relevant details from the request,
@@ -38,23 +42,59 @@ import org.springframework.stereotype.Service;
 public interface EvaluationHandlerService {
 
     /**
-     * Update the currently held evaluation data. This may be done
-     * asynchronously - the method should return as quickly as possible.
+     * Update the evaluation data held under the default identifier. This
+     * may be done asynchronously - the method should return as quickly as
+     * possible.
      *
      * @param requestData incoming data giving details of evaluation.
      * @throws EvaluationHandlerException if the data cannot be processed.
      */
-    void processEvaluationRequest(final JsonNode requestData) throws EvaluationHandlerException;
+    default void processEvaluationRequest(final JsonNode requestData) throws EvaluationHandlerException {
+        processEvaluationRequest(EvaluationStore.DEFAULT_ID, requestData);
+    }
+
+    /**
+     * Update the evaluation data held under an identifier. This may be done
+     * asynchronously - the method should return as quickly as possible.
+     *
+     * @param evaluationId the identifier to hold the evaluation under, such
+     *                     as a project, branch or run identifier.
+     * @param requestData  incoming data giving details of evaluation.
+     * @throws EvaluationHandlerException if the data cannot be processed.
+     */
+    void processEvaluationRequest(final String evaluationId, final JsonNode requestData) throws EvaluationHandlerException;
+
+    /**
+     * Update the evaluation data held under an identifier, reading the
+     * request data from a stream. By default, the stream is read in full
+     * and passed to {@link #processEvaluationRequest(String, JsonNode)};
+     * implementations may override this to read large requests without
+     * holding them in memory.
+     *
+     * @param evaluationId the identifier to hold the evaluation under.
+     * @param requestData  the (decoded) incoming request body.
+     * @throws EvaluationHandlerException if the data cannot be read or
+     *                                    processed.
+     */
+    default void processEvaluationRequest(final String evaluationId, final InputStream requestData) throws EvaluationHandlerException {
+        final JsonNode data;
+        try {
+            data = new ObjectMapper().readTree(requestData);
+        } catch (final IOException e) {
+            throw new EvaluationHandlerException(e);
+        }
+        processEvaluationRequest(evaluationId, data);
+    }
 
     /**
-     * Get the current evaluation data.
+     * Get the most recently updated evaluation data.
      *
      * @return the Evaluation.
      */
     Evaluation getEvaluation();
 
     /**
-     * Get the current evaluation metadata.
+     * Get the most recently updated evaluation metadata.
      *
      * @return the evaluation metadata.
      */
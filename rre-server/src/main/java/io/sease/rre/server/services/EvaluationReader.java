@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.server.services;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.sease.rre.core.domain.*;
+import io.sease.rre.server.domain.StaticMetric;
+import io.sease.rre.server.domain.VersionIndex;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.util.stream.StreamSupport.stream;
+
+/**
+ * Builds an {@link Evaluation} from its JSON representation, as written
+ * by the JSON persistence handler or by serializing an Evaluation.
+ * <p>
+ * The metrics read by a single reader share one {@link VersionIndex}, and
+ * one copy of each metric name.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+public class EvaluationReader {
+
+    private final ObjectMapper mapper;
+    private final VersionIndex versionIndex = new VersionIndex();
+    private final Map<String, String> metricNames = new ConcurrentHashMap<>();
+
+    public EvaluationReader(final ObjectMapper mapper) {
+        this.mapper = mapper;
+    }
+
+    /**
+     * Creates an evaluation object from the input JSON data.
+     *
+     * @param data the JSON payload.
+     * @return a session evaluation instance.
+     */
+    public Evaluation read(final JsonNode data) {
+        final Evaluation evaluation = new Evaluation();
+        evaluation.setName(data.get("name").asText());
+
+        metrics(data.get("metrics"), evaluation);
+
+        data.get("corpora").iterator().forEachRemaining(corpusNode ->
+                corpus(corpusNode, evaluation.findOrCreate(corpusNode.get("name").asText(), Corpus::new)));
+
+        return evaluation;
+    }
+
+    /**
+     * Read the metrics and topics of a single corpus.
+     *
+     * @param corpusNode the JSON for the corpus.
+     * @param corpus     the corpus to populate.
+     */
+    void corpus(final JsonNode corpusNode, final Corpus corpus) {
+        metrics(corpusNode.get("metrics"), corpus);
+
+        corpusNode.get("topics").iterator().forEachRemaining(topicNode ->
+                topic(topicNode, corpus.findOrCreate(topicNode.get("name").asText(), Topic::new)));
+    }
+
+    /**
+     * Read the metrics and query groups of a single topic.
+     *
+     * @param topicNode the JSON for the topic.
+     * @param topic     the topic to populate.
+     */
+    void topic(final JsonNode topicNode, final Topic topic) {
+        metrics(topicNode.get("metrics"), topic);
+
+        topicNode.get("query-groups").iterator().forEachRemaining(groupNode ->
+                queryGroup(groupNode, topic.findOrCreate(groupNode.get("name").asText(), QueryGroup::new)));
+    }
+
+    /**
+     * Read the metrics and queries of a single query group.
+     *
+     * @param groupNode the JSON for the query group.
+     * @param group     the query group to populate.
+     */
+    void queryGroup(final JsonNode groupNode, final QueryGroup group) {
+        metrics(groupNode.get("metrics"), group);
+
+        groupNode.get("query-evaluations").iterator().forEachRemaining(queryNode ->
+                query(queryNode, group.findOrCreate(queryNode.get("query").asText(), Query::new)));
+    }
+
+    /**
+     * Read the metrics and results of a single query.
+     *
+     * @param queryNode the JSON for the query.
+     * @param q         the query to populate.
+     */
+    void query(final JsonNode queryNode, final Query q) {
+        metrics(queryNode.get("metrics"), q);
+
+        queryNode.get("results").fields().forEachRemaining(resultsEntry -> {
+            final MutableQueryOrSearchResponse versionedResponse =
+                    q.getResults().computeIfAbsent(
+                            resultsEntry.getKey(),
+                            version -> new MutableQueryOrSearchResponse());
+
+            JsonNode content = resultsEntry.getValue();
+            versionedResponse.setTotalHits(content.get("total-hits").asLong(), null);
+
+            stream(content.get("hits").spliterator(), false)
+                    .map(hit -> mapper.convertValue(hit, Map.class))
+                    .forEach(hit -> versionedResponse.collect(hit, -1, null));
+        });
+    }
+
+    /**
+     * Read a set of metrics, as held by any member of the evaluation.
+     *
+     * @param metrics the JSON metrics node.
+     * @param parent  the evaluation member holding the metrics.
+     */
+    void metrics(final JsonNode metrics, final DomainMember parent) {
+        metrics.fields().forEachRemaining(entry -> {
+            final String name = metricNames.computeIfAbsent(entry.getKey(), n -> n);
+            final StaticMetric metric = new StaticMetric(name, versionIndex);
+
+            entry.getValue().get("versions").fields().forEachRemaining(vEntry -> {
+                metric.collect(vEntry.getKey(), StaticMetric.round(vEntry.getValue().get("value").asDouble()));
+            });
+            parent.getMetrics().put(metric.getName(), metric);
+        });
+    }
+}
@@ -0,0 +1,467 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.server.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.sease.rre.core.domain.Evaluation;
+import io.sease.rre.persistence.impl.EvaluationDigest;
+import io.sease.rre.server.domain.EvaluationMetadata;
+import io.sease.rre.server.domain.EvaluationSnapshot;
+import io.sease.rre.server.domain.EvaluationSummary;
+import io.sease.rre.server.domain.MappedEvaluation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Holds any number of named evaluations - for example, one per project,
+ * branch or run.
+ * <p>
+ * Each evaluation is held in an immutable {@link EvaluationSnapshot}, and
+ * replacing an evaluation swaps in a new snapshot, so readers see either
+ * the old or the new evaluation, never a partial update. Reading an
+ * evaluation held in memory never waits for an upload.
+ * <p>
+ * When the evaluations held in memory exceed the heap budget, the least
+ * recently used are moved to disk, and read back when next requested. The
+ * size of an evaluation is estimated as the size of its JSON as uploaded. A
+ * {@link MappedEvaluation} only counts the part held in memory, and is
+ * never moved, since its queries are already read from disk. The store
+ * takes over the evaluation's reference to its file, and releases it once
+ * the evaluation is replaced or removed.
+ * <p>
+ * Files are written and read outside the write lock, which is only held
+ * while swapping the slots, so moving one evaluation to or from disk does
+ * not hold up changes to the others.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+@Service
+public class EvaluationStore {
+
+    /**
+     * The identifier used for evaluations uploaded without one.
+     */
+    public static final String DEFAULT_ID = "default";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EvaluationStore.class);
+
+    static final String SPILL_FILE_SUFFIX = ".json.gz";
+
+    private static final EvaluationMetadata EMPTY_METADATA = new EvaluationMetadata(Collections.emptyList(), Collections.emptyList());
+
+    @Autowired
+    private ObjectMapper mapper;
+
+    @Value("${rre.evaluations.heap-budget-mb:256}")
+    private long heapBudgetMb;
+
+    @Value("${rre.evaluations.spill-folder:${java.io.tmpdir}/rre-evaluations}")
+    private File spillFolder;
+
+    private final Map<String, Slot> slots = new ConcurrentHashMap<>();
+    private final Object writeLock = new Object();
+    private volatile String latestId;
+
+    /**
+     * Store an evaluation, with the digests of its members as uploaded,
+     * replacing any evaluation with the same identifier.
+     *
+     * @param id         the evaluation identifier.
+     * @param evaluation the evaluation. This must not be changed once stored.
+     * @param digest     the digests of the evaluation, or {@code null} if
+     *                   not known.
+     * @param size       the size of the evaluation JSON as uploaded, in
+     *                   bytes - or, for a {@link MappedEvaluation}, the size
+     *                   of the part held in memory.
+     * @return the snapshot holding the evaluation.
+     */
+    public EvaluationSnapshot put(final String id, final Evaluation evaluation, final EvaluationDigest.Node digest,
+                                  final long size) {
+        final EvaluationSnapshot snapshot = snapshot(id, evaluation, digest, Instant.now(), size);
+        final Slot previous;
+        final List<Slot> evicted;
+        synchronized (writeLock) {
+            previous = store(snapshot);
+            evicted = evictions(id);
+        }
+        stored(snapshot, previous, evicted);
+        return snapshot;
+    }
+
+    /**
+     * Replace an evaluation, if it is still held in the expected snapshot.
+     * This allows an evaluation to be derived from the current one without
+     * losing a concurrent update.
+     *
+     * @param expected   the snapshot the evaluation was derived from.
+     * @param evaluation the replacement evaluation. This must not be changed
+     *                   once stored.
+     * @param digest     the digests of the replacement evaluation.
+     * @param size       the estimated size of the replacement, in bytes.
+     * @return the snapshot holding the replacement, or empty if the
+     * evaluation has been replaced or removed since the expected snapshot
+     * was read - when the replacement's reference to any mapped file is
+     * still held by the caller.
+     */
+    public Optional<EvaluationSnapshot> replace(final EvaluationSnapshot expected, final Evaluation evaluation,
+                                                final EvaluationDigest.Node digest, final long size) {
+        final EvaluationSnapshot snapshot = snapshot(expected.getId(), evaluation, digest, Instant.now(), size);
+        final Slot previous;
+        final List<Slot> evicted;
+        synchronized (writeLock) {
+            final Slot current = slots.get(expected.getId());
+            if (current == null || current.snapshot != expected) {
+                return Optional.empty();
+            }
+            previous = store(snapshot);
+            evicted = evictions(snapshot.getId());
+        }
+        stored(snapshot, previous, evicted);
+        return Optional.of(snapshot);
+    }
+
+    /**
+     * @param id the evaluation identifier.
+     * @return the evaluation, or empty if there is no evaluation with the
+     * identifier.
+     */
+    public Optional<EvaluationSnapshot> get(final String id) {
+        final Slot slot = slots.get(id);
+        if (slot == null) {
+            return Optional.empty();
+        }
+        slot.touch();
+        final EvaluationSnapshot snapshot = slot.snapshot;
+        return snapshot != null ? Optional.of(snapshot) : reload(slot);
+    }
+
+    /**
+     * @return the most recently stored evaluation, or empty if there are no
+     * evaluations.
+     */
+    public Optional<EvaluationSnapshot> latest() {
+        final String id = latestId;
+        return id == null ? Optional.empty() : get(id);
+    }
+
+    /**
+     * Get an evaluation to read from, taking a reference to any file it
+     * reads from, so the file is kept even if the evaluation is replaced or
+     * removed while it is read.
+     *
+     * @param id the evaluation identifier.
+     * @return the evaluation, which must be released by calling
+     * {@link EvaluationSnapshot#release()} once it has been read, or empty
+     * if there is no evaluation with the identifier.
+     */
+    public Optional<EvaluationSnapshot> acquire(final String id) {
+        return acquire(() -> get(id));
+    }
+
+    /**
+     * Get the most recently stored evaluation to read from, as
+     * {@link #acquire(String)}.
+     *
+     * @return the evaluation, which must be released once it has been read,
+     * or empty if there are no evaluations.
+     */
+    public Optional<EvaluationSnapshot> acquireLatest() {
+        return acquire(this::latest);
+    }
+
+    private static Optional<EvaluationSnapshot> acquire(final Supplier<Optional<EvaluationSnapshot>> lookup) {
+        while (true) {
+            final Optional<EvaluationSnapshot> snapshot = lookup.get();
+            if (!snapshot.isPresent() || snapshot.get().retain()) {
+                return snapshot;
+            }
+            // Replaced or removed, and its file released, since it was looked up
+        }
+    }
+
+    /**
+     * @return a summary of every stored evaluation, most recently stored
+     * first.
+     */
+    public List<EvaluationSummary> list() {
+        return slots.values().stream()
+                .sorted(Comparator.comparing((Slot slot) -> slot.created).reversed())
+                .map(slot -> new EvaluationSummary(slot.id, slot.created, slot.size, slot.snapshot != null))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Remove an evaluation.
+     *
+     * @param id the evaluation identifier.
+     * @return {@code true} if there was an evaluation to remove.
+     */
+    public boolean remove(final String id) {
+        final Slot removed;
+        synchronized (writeLock) {
+            removed = slots.remove(id);
+            if (removed == null) {
+                return false;
+            }
+            if (id.equals(latestId)) {
+                latestId = slots.values().stream()
+                        .max(Comparator.comparing((Slot slot) -> slot.created))
+                        .map(slot -> slot.id)
+                        .orElse(null);
+            }
+        }
+        removed.release();
+        return true;
+    }
+
+    /**
+     * Store a snapshot. Must be called holding the write lock.
+     *
+     * @return the slot replaced by the snapshot, or {@code null} if there
+     * was none.
+     */
+    private Slot store(final EvaluationSnapshot snapshot) {
+        final Slot previous = slots.put(snapshot.getId(), new Slot(snapshot));
+        latestId = snapshot.getId();
+        return previous;
+    }
+
+    /**
+     * Release the slot a snapshot replaced, and move the evaluations
+     * evicted to make room for it to disk. Must be called without holding
+     * the write lock.
+     */
+    private void stored(final EvaluationSnapshot snapshot, final Slot previous, final List<Slot> evicted) {
+        if (previous != null) {
+            previous.release();
+        }
+        spill(evicted);
+    }
+
+    private EvaluationSnapshot snapshot(final String id, final Evaluation evaluation, final EvaluationDigest.Node digest,
+                                        final Instant created, final long size) {
+        final EvaluationMetadata metadata = evaluation.getChildren().isEmpty()
+                ? EMPTY_METADATA
+                : HttpEvaluationHandlerService.extractEvaluationMetadata(evaluation);
+        return new EvaluationSnapshot(id, evaluation, metadata, created, size, digest);
+    }
+
+    /**
+     * Choose the least recently used evaluations to move to disk, until
+     * those left in memory fit the heap budget. Must be called holding the
+     * write lock; the evaluations are moved by {@link #spill(List)} once
+     * it has been released.
+     *
+     * @param keep the identifier of an evaluation to keep in memory.
+     * @return the slots to move to disk.
+     */
+    private List<Slot> evictions(final String keep) {
+        final long budget = heapBudgetMb * 1024 * 1024;
+        long resident = slots.values().stream().filter(Slot::isResident).mapToLong(slot -> slot.size).sum();
+        final List<Slot> evicted = new ArrayList<>();
+        while (resident > budget) {
+            final Optional<Slot> eldest = slots.values().stream()
+                    .filter(slot -> slot.isResident() && !slot.id.equals(keep) && !slot.isMapped())
+                    .min(Comparator.comparingLong(slot -> slot.lastAccess));
+            if (!eldest.isPresent()) {
+                break;
+            }
+            final Slot slot = eldest.get();
+            slot.spilling = true;
+            evicted.add(slot);
+            resident -= slot.size;
+        }
+        return evicted;
+    }
+
+    /**
+     * Write evicted evaluations to disk, and swap each slot for one holding
+     * the file - unless the evaluation was replaced or removed meanwhile.
+     */
+    private void spill(final List<Slot> evicted) {
+        for (final Slot slot : evicted) {
+            File file = null;
+            try {
+                file = write(slot);
+            } catch (IOException e) {
+                LOGGER.error("Could not move evaluation {} to disk - dropping it: {}", slot.id, e.getMessage());
+            }
+
+            final boolean swapped;
+            synchronized (writeLock) {
+                swapped = file == null ? slots.remove(slot.id, slot) : slots.replace(slot.id, slot, new Slot(slot, file));
+            }
+            if (file != null && swapped) {
+                LOGGER.info("Moved evaluation {} to disk", slot.id);
+            } else if (file != null && !file.delete()) {
+                LOGGER.warn("Could not delete {}", file);
+            }
+        }
+    }
+
+    private File write(final Slot slot) throws IOException {
+        if (!spillFolder.isDirectory() && !spillFolder.mkdirs()) {
+            throw new IOException("Unable to create " + spillFolder);
+        }
+        // Unique, since a replacement may be written while an older file is still in use
+        final File file = File.createTempFile(filePrefix(slot.id), SPILL_FILE_SUFFIX, spillFolder);
+        try (final OutputStream out = new GZIPOutputStream(new FileOutputStream(file))) {
+            mapper.writeValue(out, slot.snapshot.getEvaluation());
+        } catch (IOException e) {
+            file.delete();
+            throw e;
+        }
+        return file;
+    }
+
+    /**
+     * Read an evaluation back from disk, and swap its slot for one holding
+     * the evaluation. Concurrent readers of the same evaluation wait for a
+     * single read.
+     */
+    private Optional<EvaluationSnapshot> reload(final Slot spilled) {
+        synchronized (spilled) {
+            if (spilled.reloaded == null) {
+                try (final InputStream in = new GZIPInputStream(new FileInputStream(spilled.spillFile))) {
+                    final Evaluation evaluation = new EvaluationReader(mapper).read(mapper.readTree(in));
+                    spilled.reloaded = snapshot(spilled.id, evaluation, spilled.digest, spilled.created, spilled.size);
+                } catch (IOException e) {
+                    if (slots.get(spilled.id) != spilled) {
+                        // Replaced or removed while reading
+                        return get(spilled.id);
+                    }
+                    LOGGER.error("Could not read evaluation {} from disk: {}", spilled.id, e.getMessage());
+                    return Optional.empty();
+                }
+            }
+        }
+
+        final List<Slot> evicted;
+        synchronized (writeLock) {
+            if (!slots.replace(spilled.id, spilled, new Slot(spilled.reloaded))) {
+                // Replaced, removed or already swapped by another reader
+                return get(spilled.id);
+            }
+            evicted = evictions(spilled.id);
+        }
+        spilled.deleteSpillFile();
+        LOGGER.info("Moved evaluation {} back into memory", spilled.id);
+        spill(evicted);
+        return Optional.of(spilled.reloaded);
+    }
+
+    static String filePrefix(final String id) {
+        try {
+            return "evaluation-" + URLEncoder.encode(id, "UTF-8") + "-";
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * The store's entry for one evaluation, holding either the snapshot or
+     * the file it has been moved to. The evaluation's digests are kept in
+     * memory either way.
+     */
+    private static class Slot {
+        private final String id;
+        private final Instant created;
+        private final long size;
+        private final EvaluationSnapshot snapshot;
+        private final EvaluationDigest.Node digest;
+        private final File spillFile;
+        private volatile long lastAccess = System.nanoTime();
+        /** Set, holding the write lock, once the slot is chosen to be moved to disk. */
+        private boolean spilling;
+        /** The evaluation read back from the spill file, while the slot is swapped. */
+        private volatile EvaluationSnapshot reloaded;
+
+        Slot(final EvaluationSnapshot snapshot) {
+            this.id = snapshot.getId();
+            this.created = snapshot.getCreated();
+            this.size = snapshot.getSize();
+            this.snapshot = snapshot;
+            this.digest = snapshot.getDigest();
+            this.spillFile = null;
+        }
+
+        Slot(final Slot resident, final File spillFile) {
+            this.id = resident.id;
+            this.created = resident.created;
+            this.size = resident.size;
+            this.snapshot = null;
+            this.digest = resident.digest;
+            this.spillFile = spillFile;
+            this.lastAccess = resident.lastAccess;
+        }
+
+        void touch() {
+            lastAccess = System.nanoTime();
+        }
+
+        boolean isResident() {
+            return snapshot != null && !spilling;
+        }
+
+        boolean isMapped() {
+            return snapshot != null && snapshot.getEvaluation() instanceof MappedEvaluation;
+        }
+
+        /**
+         * Delete any spill file holding the evaluation, and release its
+         * reference to any mapped file, once it has been replaced or
+         * removed. The mapped file is kept while a replacement or a reader
+         * still holds a reference to it.
+         */
+        void release() {
+            deleteSpillFile();
+            if (isMapped()) {
+                ((MappedEvaluation) snapshot.getEvaluation()).getFile().release();
+            }
+        }
+
+        void deleteSpillFile() {
+            if (spillFile != null && !spillFile.delete()) {
+                LOGGER.warn("Could not delete {}", spillFile);
+            }
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.server.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.sease.rre.core.domain.DomainMember;
+import io.sease.rre.core.domain.Evaluation;
+import io.sease.rre.core.domain.Query;
+import io.sease.rre.server.domain.CachedResponse;
+import io.sease.rre.server.domain.EvaluationSnapshot;
+import io.sease.rre.server.domain.ViewRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Serves views of stored evaluations. Each view is serialized once per
+ * evaluation snapshot, and the serialized bytes are held in the snapshot,
+ * so repeated requests for the same view do not serialize the evaluation
+ * again.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+@Service
+public class EvaluationViewService {
+
+    private static final String EVALUATION_KEY = "";
+
+    @Autowired
+    private ObjectMapper mapper;
+
+    /**
+     * @param snapshot the evaluation snapshot.
+     * @return the whole of the evaluation.
+     */
+    public CachedResponse getEvaluation(final EvaluationSnapshot snapshot) {
+        return snapshot.response(EVALUATION_KEY, () -> serialize(snapshot.getEvaluation()));
+    }
+
+    /**
+     * @param snapshot the evaluation snapshot.
+     * @param request  the view required.
+     * @return the requested view of the evaluation.
+     */
+    public CachedResponse getView(final EvaluationSnapshot snapshot, final ViewRequest request) {
+        return snapshot.response(request.cacheKey(), () -> serialize(view(snapshot.getEvaluation(), request)));
+    }
+
+    private ObjectNode view(final Evaluation evaluation, final ViewRequest request) {
+        final List<Member> members = new ArrayList<>();
+        collect(evaluation, Collections.emptyList(), request, members);
+
+        final ObjectNode view = mapper.createObjectNode();
+        view.put("level", request.getLevel().getLabel());
+        view.put("total", members.size());
+        view.put("page", request.getPage());
+        view.put("size", request.getSize());
+        final ArrayNode items = view.putArray("items");
+        final int from = (int) Math.min((long) request.getPage() * request.getSize(), members.size());
+        final int to = Math.min(from + request.getSize(), members.size());
+        members.subList(from, to).forEach(member -> member.write(items.addObject(), request));
+        return view;
+    }
+
+    /**
+     * Walk down to the requested level, collecting the members which pass
+     * the request's filters.
+     */
+    private void collect(final DomainMember<?> member, final List<String> path, final ViewRequest request, final List<Member> members) {
+        if (!request.isWithinParents(path)) {
+            return;
+        }
+        if (path.size() == request.getLevel().depth()) {
+            if (request.includesName(member.getName())) {
+                members.add(new Member(member, path));
+            }
+            return;
+        }
+        for (final DomainMember<?> child : member.getChildren()) {
+            final List<String> childPath = new ArrayList<>(path);
+            childPath.add(child.getName());
+            collect(child, childPath, request, members);
+        }
+    }
+
+    private CachedResponse serialize(final Object value) {
+        try {
+            return new CachedResponse(mapper.writeValueAsBytes(value));
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * A member of the evaluation at the requested level, with the names of
+     * its ancestors.
+     */
+    private class Member {
+        private final DomainMember<?> member;
+        private final List<String> path;
+
+        Member(final DomainMember<?> member, final List<String> path) {
+            this.member = member;
+            this.path = path;
+        }
+
+        void write(final ObjectNode node, final ViewRequest request) {
+            if (request.includesField(ViewRequest.FIELD_NAME)) {
+                node.put("name", member.getName());
+            }
+            if (request.includesField(ViewRequest.FIELD_PATH)) {
+                final ArrayNode pathNode = node.putArray("path");
+                path.subList(0, Math.max(0, path.size() - 1)).forEach(pathNode::add);
+            }
+            if (request.includesField(ViewRequest.FIELD_METRICS)) {
+                final ObjectNode metrics = node.putObject("metrics");
+                member.getMetrics().forEach((name, metric) -> {
+                    if (request.includesMetric(name)) {
+                        final ObjectNode versions = metrics.putObject(name);
+                        metric.getVersions().forEach((version, value) -> {
+                            if (request.includesVersion(version)) {
+                                versions.put(version, value.value());
+                            }
+                        });
+                    }
+                });
+            }
+            if (request.includesField(ViewRequest.FIELD_RESULTS) && member instanceof Query) {
+                final ObjectNode results = node.putObject("results");
+                ((Query) member).getResults().forEach((version, response) -> {
+                    if (request.includesVersion(version)) {
+                        results.set(version, mapper.valueToTree(response));
+                    }
+                });
+            }
+        }
+    }
+}
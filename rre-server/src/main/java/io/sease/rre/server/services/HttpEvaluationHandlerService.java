@@ -16,26 +16,43 @@
  */
 package io.sease.rre.server.services;
 
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import io.sease.rre.core.domain.*;
+import io.sease.rre.core.domain.Evaluation;
+import io.sease.rre.persistence.impl.EvaluationDigest;
 import io.sease.rre.server.domain.EvaluationMetadata;
-import io.sease.rre.server.domain.StaticMetric;
+import io.sease.rre.server.domain.EvaluationSnapshot;
+import io.sease.rre.server.domain.MappedEvaluation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Service;
 
-import java.math.BigDecimal;
-import java.math.RoundingMode;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.Map;
-
-import static java.util.stream.StreamSupport.stream;
 
 /**
  * Implementation of the evaluation manager service which will extract a
- * complete Evaluation object from the request data.
+ * complete Evaluation object from the request data, and hold it in the
+ * {@link EvaluationStore}.
+ * <p>
+ * Streamed requests are copied to the spill folder as they are read, and
+ * the copy memory-mapped (see {@link MappedEvaluationReader}), so a large
+ * upload is never held in memory.
+ * <p>
+ * The digests of each uploaded evaluation are stored with it, so later
+ * changes can be sent as a patch - see {@link EvaluationDeltaService}.
  *
  * @author Matt Pearce (matt@flax.co.uk)
  */
@@ -43,29 +60,73 @@ import static java.util.stream.StreamSupport.stream;
 @Profile({"http", "default"})
 public class HttpEvaluationHandlerService implements EvaluationHandlerService {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(HttpEvaluationHandlerService.class);
+
+    private static final Evaluation EMPTY_EVALUATION = new Evaluation();
+    private static final EvaluationMetadata EMPTY_METADATA = new EvaluationMetadata(Collections.emptyList(), Collections.emptyList());
+
     private final ObjectMapper mapper = new ObjectMapper();
 
-    private Evaluation evaluation = new Evaluation();
-    private EvaluationMetadata metadata = new EvaluationMetadata(Collections.emptyList(), Collections.emptyList());
+    @Autowired
+    private EvaluationStore store;
+
+    @Value("${rre.evaluations.spill-folder:${java.io.tmpdir}/rre-evaluations}")
+    private File spillFolder;
 
     @Override
-    public void processEvaluationRequest(final JsonNode requestData) throws EvaluationHandlerException {
-        evaluation = make(requestData);
+    public void processEvaluationRequest(final String evaluationId, final JsonNode requestData) throws EvaluationHandlerException {
+        setEvaluation(evaluationId, requestData, size(requestData));
+    }
+
+    @Override
+    public void processEvaluationRequest(final String evaluationId, final InputStream requestData) throws EvaluationHandlerException {
+        try {
+            putMapped(evaluationId, requestData);
+        } catch (final IOException e) {
+            LOGGER.error("Caught IOException reading evaluation upload: {}", e.getMessage());
+            throw new EvaluationHandlerException(e);
+        }
     }
 
     @Override
     public Evaluation getEvaluation() {
-        return evaluation;
+        return store.latest().map(EvaluationSnapshot::getEvaluation).orElse(EMPTY_EVALUATION);
     }
 
     @Override
     public EvaluationMetadata getEvaluationMetadata() {
-        return metadata;
+        return store.latest().map(EvaluationSnapshot::getMetadata).orElse(EMPTY_METADATA);
+    }
+
+    /**
+     * Store an evaluation read as a JSON tree.
+     *
+     * @param evaluationId the identifier to hold the evaluation under.
+     * @param data         the evaluation JSON.
+     * @param size         the size of the JSON the tree was read from, in bytes.
+     */
+    void setEvaluation(String evaluationId, JsonNode data, long size) {
+        final EvaluationDigest.Node digest;
+        try (JsonParser parser = data.traverse(mapper)) {
+            digest = digest(parser);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        store.put(evaluationId, make(data), digest, size);
     }
 
-    void setEvaluation(Evaluation eval) {
-        this.evaluation = eval;
-        this.metadata = extractEvaluationMetadata(eval);
+    /**
+     * Measure a JSON tree which was not uploaded, and so has no upload
+     * size, by writing it out.
+     */
+    private long size(final JsonNode data) {
+        final CountingOutputStream counter = new CountingOutputStream();
+        try {
+            mapper.writeValue(counter, data);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return counter.count;
     }
 
     ObjectMapper getMapper() {
@@ -79,63 +140,55 @@ public class HttpEvaluationHandlerService implements EvaluationHandlerService {
      * @return a session evaluation instance.
      */
     protected Evaluation make(final JsonNode data) {
-        final Evaluation evaluation = new Evaluation();
-        evaluation.setName(data.get("name").asText());
-
-        metrics(data, evaluation);
-
-        data.get("corpora").iterator().forEachRemaining(corpusNode -> {
-            final String cname = corpusNode.get("name").asText();
-            final Corpus corpus = evaluation.findOrCreate(cname, Corpus::new);
-
-            metrics(corpusNode, corpus);
-
-            corpusNode.get("topics").iterator().forEachRemaining(topicNode -> {
-                final String tname = topicNode.get("name").asText();
-                final Topic topic = corpus.findOrCreate(tname, Topic::new);
-                metrics(topicNode, topic);
-
-                topicNode.get("query-groups").iterator().forEachRemaining(groupNode -> {
-                    final String gname = groupNode.get("name").asText();
-                    final QueryGroup group = topic.findOrCreate(gname, QueryGroup::new);
-                    metrics(groupNode, group);
-
-                    groupNode.get("query-evaluations").iterator().forEachRemaining(queryNode -> {
-                        final String qename = queryNode.get("query").asText();
-                        final Query q = group.findOrCreate(qename, Query::new);
-                        metrics(queryNode, q);
-
-
-                        queryNode.get("results").fields().forEachRemaining(resultsEntry -> {
-                            final MutableQueryOrSearchResponse versionedResponse =
-                                    q.getResults().computeIfAbsent(
-                                            resultsEntry.getKey(),
-                                            version -> new MutableQueryOrSearchResponse());
-
-                            JsonNode content = resultsEntry.getValue();
-                            versionedResponse.setTotalHits(content.get("total-hits").asLong(), null);
-
-                            stream(content.get("hits").spliterator(), false)
-                                    .map(hit -> mapper.convertValue(hit, Map.class))
-                                    .forEach(hit -> versionedResponse.collect(hit, -1, null));
-                        });
-                    });
-                });
-            });
-        });
-
-        return evaluation;
+        return new EvaluationReader(mapper).read(data);
     }
 
-    private void metrics(final JsonNode data, final DomainMember parent) {
-        data.get("metrics").fields().forEachRemaining(entry -> {
-            final StaticMetric metric = new StaticMetric(entry.getKey());
+    /**
+     * Copy an evaluation into the spill folder, and store it as a
+     * memory-mapped evaluation. The copy is removed when the evaluation is
+     * released by the store.
+     *
+     * @param evaluationId the identifier to hold the evaluation under.
+     * @param source       the evaluation JSON.
+     * @throws IOException if the evaluation cannot be copied or read.
+     */
+    protected void putMapped(final String evaluationId, final InputStream source) throws IOException {
+        final File mappedFolder = new File(spillFolder, "mapped");
+        if (!mappedFolder.isDirectory() && !mappedFolder.mkdirs()) {
+            throw new IOException("Unable to create " + mappedFolder);
+        }
+        final File copy = File.createTempFile("evaluation-", ".json", mappedFolder);
+        copy.deleteOnExit();
+        try {
+            Files.copy(source, copy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            final MappedEvaluation evaluation = new MappedEvaluationReader(mapper).read(copy);
+            final EvaluationDigest.Node digest;
+            try (JsonParser parser = mapper.getFactory().createParser(copy)) {
+                digest = digest(parser);
+            }
+            store.put(evaluationId, evaluation, digest, evaluation.getResidentSize());
+        } catch (IOException e) {
+            if (!copy.delete()) {
+                LOGGER.warn("Could not delete {}", copy);
+            }
+            throw e;
+        }
+    }
 
-            entry.getValue().get("versions").fields().forEachRemaining(vEntry -> {
-                metric.collect(vEntry.getKey(), new BigDecimal(vEntry.getValue().get("value").asDouble()).setScale(4, RoundingMode.CEILING));
-            });
-            parent.getMetrics().put(metric.getName(), metric);
-        });
+    /**
+     * Read the digests of an evaluation. The evaluation can still be
+     * stored without them, though changes to it cannot then be sent as a
+     * patch.
+     *
+     * @return the digests, or {@code null} if they could not be read.
+     */
+    private EvaluationDigest.Node digest(final JsonParser parser) {
+        try {
+            return EvaluationDigest.read(parser);
+        } catch (IOException e) {
+            LOGGER.warn("Could not read evaluation digests: {}", e.getMessage());
+            return null;
+        }
     }
 
     /**
@@ -157,4 +210,21 @@ public class HttpEvaluationHandlerService implements EvaluationHandlerService {
 
         return new EvaluationMetadata(versions, metrics);
     }
+
+    /**
+     * Counts the bytes written, discarding them.
+     */
+    private static class CountingOutputStream extends OutputStream {
+        private long count;
+
+        @Override
+        public void write(final int b) {
+            count++;
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) {
+            count += len;
+        }
+    }
 }
@@ -0,0 +1,182 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.server.services;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import io.sease.rre.core.domain.Corpus;
+import io.sease.rre.core.domain.DomainMember;
+import io.sease.rre.core.domain.Query;
+import io.sease.rre.core.domain.QueryGroup;
+import io.sease.rre.core.domain.Topic;
+import io.sease.rre.server.domain.LazyQuery;
+import io.sease.rre.server.domain.MappedEvaluation;
+import io.sease.rre.server.domain.MappedEvaluationFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds a {@link MappedEvaluation} from an evaluation JSON file, in a
+ * single streaming pass.
+ * <p>
+ * The metrics of the evaluation, corpora, topics and query groups are read
+ * as they are passed. Each query is skipped, noting its name and where its
+ * JSON lies in the file, so its metrics and results can be read from the
+ * mapped file when they are needed. No tree is built for the whole file,
+ * so the heap required depends on the number of queries rather than on the
+ * size of their results.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+public class MappedEvaluationReader {
+
+    // The field holding the children at each level, from the evaluation down to the query groups
+    private static final String[] CHILDREN_FIELDS = { "corpora", "topics", "query-groups", "query-evaluations" };
+    private static final int QUERY_DEPTH = CHILDREN_FIELDS.length;
+
+    private final ObjectMapper mapper;
+    private final EvaluationReader reader;
+
+    public MappedEvaluationReader(final ObjectMapper mapper) {
+        this.mapper = mapper;
+        this.reader = new EvaluationReader(mapper);
+    }
+
+    /**
+     * Read an evaluation file. The file must not be changed while the
+     * evaluation is in use.
+     *
+     * @param file the evaluation JSON file.
+     * @return the evaluation.
+     * @throws IOException if the file cannot be read or mapped, or is not
+     *                     an evaluation.
+     */
+    public MappedEvaluation read(final File file) throws IOException {
+        final Member root;
+        try (final JsonParser parser = mapper.getFactory().createParser(file)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException(file + " does not hold an evaluation");
+            }
+            root = member(parser, 0);
+        }
+
+        final MappedEvaluationFile mapped = new MappedEvaluationFile(file);
+        final long[] queries = new long[2];
+        root.children.forEach(c -> c.children.forEach(t -> t.children.forEach(g -> g.children.forEach(q -> {
+            queries[0]++;
+            queries[1] += q.length;
+        }))));
+        final MappedEvaluation evaluation = new MappedEvaluation(mapped, mapped.getLength() - queries[1] + queries[0] * LazyQuery.STUB_SIZE);
+        if (root.name != null) {
+            evaluation.setName(root.name);
+        }
+        metrics(root, evaluation);
+
+        for (final Member corpusMember : root.children) {
+            final Corpus corpus = evaluation.findOrCreate(corpusMember.name, Corpus::new);
+            metrics(corpusMember, corpus);
+            for (final Member topicMember : corpusMember.children) {
+                final Topic topic = corpus.findOrCreate(topicMember.name, Topic::new);
+                metrics(topicMember, topic);
+                for (final Member groupMember : topicMember.children) {
+                    final QueryGroup group = topic.findOrCreate(groupMember.name, QueryGroup::new);
+                    metrics(groupMember, group);
+                    for (final Member queryMember : groupMember.children) {
+                        group.findOrCreate(queryMember.name,
+                                () -> new LazyQuery(mapped, queryMember.offset, (int) queryMember.length, this::decode));
+                    }
+                }
+            }
+        }
+
+        return evaluation;
+    }
+
+    /**
+     * Read an evaluation member, with the parser positioned at the start of
+     * its object. The children of the member are read recursively, down to
+     * the queries, which are skipped.
+     */
+    private Member member(final JsonParser parser, final int depth) throws IOException {
+        final Member member = new Member(parser.getTokenLocation().getByteOffset());
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String field = parser.getCurrentName();
+            final JsonToken value = parser.nextToken();
+            if (depth == QUERY_DEPTH) {
+                if ("query".equals(field)) {
+                    member.name = parser.getText();
+                } else {
+                    parser.skipChildren();
+                }
+            } else if ("name".equals(field)) {
+                member.name = parser.getText();
+            } else if ("metrics".equals(field)) {
+                member.metrics = parser.readValueAsTree();
+            } else if (CHILDREN_FIELDS[depth].equals(field) && value == JsonToken.START_ARRAY) {
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    member.children.add(member(parser, depth + 1));
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+        if (member.name == null && depth > 0) {
+            throw new IOException("Unnamed evaluation member at offset " + member.offset);
+        }
+        member.length = parser.getCurrentLocation().getByteOffset() - member.offset;
+        return member;
+    }
+
+    private void metrics(final Member member, final DomainMember<?> target) {
+        if (member.metrics != null) {
+            reader.metrics(member.metrics, target);
+        }
+    }
+
+    private Query decode(final ByteBuffer bytes) {
+        try {
+            final Query query = new Query();
+            reader.query(mapper.readTree(new ByteBufferBackedInputStream(bytes)), query);
+            return query;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * A member of the evaluation, as read from the file.
+     */
+    private static class Member {
+        private final long offset;
+        private final List<Member> children = new ArrayList<>();
+        private long length;
+        private String name;
+        private JsonNode metrics;
+
+        Member(final long offset) {
+            this.offset = offset;
+        }
+    }
+}
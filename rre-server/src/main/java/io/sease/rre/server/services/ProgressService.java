@@ -0,0 +1,234 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.server.services;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Relays the progress of running evaluations to browsers, using
+ * Server-Sent Events.
+ * <p>
+ * Progress updates arrive from the engine in batches, as often as it cares
+ * to send them. Rather than forwarding every batch, updates are merged into
+ * the state for the evaluation, and subscribers are sent at most one event
+ * per interval holding the latest counts and aggregates, plus the most
+ * recently completed queries. Queries which arrive faster than that are
+ * counted but not sent, so a very large run cannot flood the clients.
+ * <p>
+ * The state for an evaluation is dropped once nobody is subscribed to it
+ * and it has either finished, or stopped receiving progress.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+@Service
+public class ProgressService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProgressService.class);
+
+    static final String EVENT_NAME = "progress";
+
+    @Autowired
+    private ObjectMapper mapper;
+
+    @Value("${rre.progress.max-queries-per-event:100}")
+    private int maxQueriesPerEvent;
+
+    @Value("${rre.progress.emitter-timeout-ms:1800000}")
+    private long emitterTimeoutMs;
+
+    @Value("${rre.progress.retention-ms:60000}")
+    private long retentionMs;
+
+    private final Map<String, Progress> progress = new ConcurrentHashMap<>();
+
+    /**
+     * Merge a batch of progress from the engine into the state for an
+     * evaluation.
+     *
+     * @param evaluationId the evaluation identifier.
+     * @param update       the progress update.
+     */
+    public void update(final String evaluationId, final JsonNode update) {
+        if (update == null || !update.isObject()) {
+            throw new IllegalArgumentException("Progress update must be a JSON object");
+        }
+        progress.compute(evaluationId, (id, state) -> {
+            final Progress merged = state == null ? new Progress() : state;
+            merged.merge(update, maxQueriesPerEvent);
+            return merged;
+        });
+    }
+
+    /**
+     * Subscribe to the progress of an evaluation. The subscriber is sent the
+     * current state straight away, if there is any.
+     *
+     * @param evaluationId the evaluation identifier.
+     * @return the emitter for the subscriber.
+     */
+    public SseEmitter subscribe(final String evaluationId) {
+        final SseEmitter emitter = new SseEmitter(emitterTimeoutMs);
+        // Subscribe atomically, so the state cannot be dropped in between
+        final Progress state = progress.compute(evaluationId, (id, existing) -> {
+            final Progress subscribed = existing == null ? new Progress() : existing;
+            subscribed.emitters.add(emitter);
+            return subscribed;
+        });
+        emitter.onCompletion(() -> state.emitters.remove(emitter));
+        emitter.onTimeout(() -> state.emitters.remove(emitter));
+
+        final ObjectNode current = state.current(mapper);
+        if (current != null) {
+            send(state, emitter, current);
+        }
+        return emitter;
+    }
+
+    /**
+     * Send each evaluation's subscribers the progress since the last event,
+     * if there has been any, and drop the state nobody needs any more.
+     */
+    @Scheduled(fixedDelayString = "${rre.progress.interval-ms:500}")
+    public void broadcast() {
+        final long now = System.currentTimeMillis();
+        progress.forEach((evaluationId, state) -> {
+            final ObjectNode event = state.drain(mapper);
+            if (event != null) {
+                state.emitters.forEach(emitter -> send(state, emitter, event));
+            }
+            progress.computeIfPresent(evaluationId, (id, current) ->
+                    current.isExpired(now, retentionMs, emitterTimeoutMs) ? null : current);
+        });
+    }
+
+    /**
+     * @return the number of evaluations whose progress is being held.
+     */
+    int size() {
+        return progress.size();
+    }
+
+    private static void send(final Progress state, final SseEmitter emitter, final ObjectNode event) {
+        try {
+            emitter.send(SseEmitter.event().name(EVENT_NAME).data(event, MediaType.APPLICATION_JSON));
+        } catch (final IOException | IllegalStateException e) {
+            // The client has gone away
+            LOGGER.debug("Dropping progress subscriber :: {}", e.getMessage());
+            state.emitters.remove(emitter);
+        }
+    }
+
+    /**
+     * The progress of a single evaluation, and its subscribers.
+     */
+    private static class Progress {
+        private final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+        private final Deque<JsonNode> recentQueries = new ArrayDeque<>();
+
+        private long completed;
+        private boolean done;
+        private JsonNode aggregates;
+        private long skipped;
+        private boolean changed;
+        private long lastUpdate = System.currentTimeMillis();
+
+        synchronized void merge(final JsonNode update, final int maxQueries) {
+            final boolean updateDone = update.path("done").asBoolean(false);
+            if (done && !updateDone) {
+                // The start of a new run
+                recentQueries.clear();
+                skipped = 0;
+            }
+            done = updateDone;
+            completed = update.path("completed").asLong(completed);
+            if (update.has("aggregates")) {
+                aggregates = update.get("aggregates");
+            }
+            for (final JsonNode query : update.path("queries")) {
+                recentQueries.addLast(query);
+                if (recentQueries.size() > maxQueries) {
+                    recentQueries.removeFirst();
+                    skipped++;
+                }
+            }
+            changed = true;
+            lastUpdate = System.currentTimeMillis();
+        }
+
+        /**
+         * @return {@code true} if there are no subscribers, and the
+         * evaluation finished more than {@code retentionMs} ago, or has sent
+         * no progress for {@code idleMs}.
+         */
+        synchronized boolean isExpired(final long now, final long retentionMs, final long idleMs) {
+            return emitters.isEmpty() && !changed && now - lastUpdate >= (done ? retentionMs : idleMs);
+        }
+
+        /**
+         * @return the event holding the progress since the last event, or
+         * {@code null} if there has been no progress.
+         */
+        synchronized ObjectNode drain(final ObjectMapper mapper) {
+            if (!changed) {
+                return null;
+            }
+            final ObjectNode event = state(mapper);
+            final ArrayNode queries = event.putArray("queries");
+            recentQueries.forEach(queries::add);
+            event.put("skipped", skipped);
+            recentQueries.clear();
+            skipped = 0;
+            changed = false;
+            return event;
+        }
+
+        /**
+         * @return the current counts and aggregates, without any queries, or
+         * {@code null} if no progress has been received.
+         */
+        synchronized ObjectNode current(final ObjectMapper mapper) {
+            return aggregates == null && completed == 0 ? null : state(mapper);
+        }
+
+        private ObjectNode state(final ObjectMapper mapper) {
+            final ObjectNode event = mapper.createObjectNode();
+            event.put("completed", completed);
+            event.put("done", done);
+            event.set("aggregates", aggregates == null ? mapper.createObjectNode() : aggregates);
+            return event;
+        }
+    }
+}
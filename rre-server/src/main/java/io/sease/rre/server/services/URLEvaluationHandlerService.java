@@ -17,15 +17,19 @@
 package io.sease.rre.server.services;
 
 import com.fasterxml.jackson.databind.JsonNode;
-import io.sease.rre.core.domain.Evaluation;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Service;
 
+import java.io.File;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.MalformedURLException;
+import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.file.Files;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ThreadPoolExecutor;
 
@@ -33,6 +37,11 @@ import java.util.concurrent.ThreadPoolExecutor;
  * Implementation of the evaluation handler that extracts a URL from the
  * evaluation update request, and uses that as the endpoint from which the
  * evaluation data should be read.
+ * <p>
+ * Evaluations read from {@code file:} URLs are copied and memory-mapped,
+ * rather than parsed in full - see {@link MappedEvaluationReader}. The copy
+ * means the evaluation is not affected when the original file is replaced
+ * by the next run.
  *
  * @author Matt Pearce (matt@flax.co.uk)
  */
@@ -45,7 +54,7 @@ public class URLEvaluationHandlerService extends HttpEvaluationHandlerService im
     private URLEvaluationUpdater updater = null;
 
     @Override
-    public void processEvaluationRequest(JsonNode requestData) throws EvaluationHandlerException {
+    public void processEvaluationRequest(String evaluationId, JsonNode requestData) throws EvaluationHandlerException {
         try {
             if (updater != null && updater.isAlive()) {
                 throw new EvaluationHandlerException("Update is already running - request rejected!");
@@ -55,7 +64,7 @@ public class URLEvaluationHandlerService extends HttpEvaluationHandlerService im
             LOGGER.debug("Extracted URL {} from incoming request", urlParam);
 
             // Build the evaluation in a separate thread - avoid causing timeouts in the report plugin
-            updater = createUpdaterThread(new URL(urlParam));
+            updater = createUpdaterThread(evaluationId, new URL(urlParam));
             updater.start();
         } catch (IOException e) {
             LOGGER.error("Caught IOException processing request: {}", e.getMessage());
@@ -63,8 +72,21 @@ public class URLEvaluationHandlerService extends HttpEvaluationHandlerService im
         }
     }
 
-    private URLEvaluationUpdater createUpdaterThread(URL evaluationUrl) {
-        URLEvaluationUpdater thread = new URLEvaluationUpdater(evaluationUrl);
+    @Override
+    public void processEvaluationRequest(String evaluationId, InputStream requestData) throws EvaluationHandlerException {
+        // The request holds the URL, rather than the evaluation itself
+        final JsonNode data;
+        try {
+            data = getMapper().readTree(requestData);
+        } catch (IOException e) {
+            LOGGER.error("Caught IOException reading request: {}", e.getMessage());
+            throw new EvaluationHandlerException(e);
+        }
+        processEvaluationRequest(evaluationId, data);
+    }
+
+    private URLEvaluationUpdater createUpdaterThread(String evaluationId, URL evaluationUrl) {
+        URLEvaluationUpdater thread = new URLEvaluationUpdater(evaluationId, evaluationUrl);
         // Run the thread in the background
         thread.setDaemon(true);
         return thread;
@@ -73,9 +95,11 @@ public class URLEvaluationHandlerService extends HttpEvaluationHandlerService im
 
     class URLEvaluationUpdater extends Thread {
 
+        private final String evaluationId;
         private final URL evaluationUrl;
 
-        URLEvaluationUpdater(URL evaluationUrl) {
+        URLEvaluationUpdater(String evaluationId, URL evaluationUrl) {
+            this.evaluationId = evaluationId;
             this.evaluationUrl = evaluationUrl;
         }
 
@@ -83,21 +107,67 @@ public class URLEvaluationHandlerService extends HttpEvaluationHandlerService im
         public void run() {
             try {
                 LOGGER.info("Building evaluation from URL {}", evaluationUrl);
-                final JsonNode evaluationNode = readNodeFromUrl(evaluationUrl);
-                setEvaluation(make(evaluationNode));
+                if ("file".equals(evaluationUrl.getProtocol())) {
+                    putMappedFile(new File(evaluationUrl.toURI()));
+                } else {
+                    putFromUrl(evaluationUrl);
+                }
                 LOGGER.debug("Evaluation build complete");
-            } catch (IOException e) {
-                LOGGER.error("Caught IOException building evaluation: {}", e.getMessage());
+            } catch (IOException | URISyntaxException | IllegalArgumentException e) {
+                LOGGER.error("Caught {} building evaluation: {}", e.getClass().getSimpleName(), e.getMessage());
             }
         }
 
-        private JsonNode readNodeFromUrl(URL evaluationUrl) throws IOException {
-            try {
-                return getMapper().readTree(evaluationUrl);
+        private void putMappedFile(File source) throws IOException {
+            try (InputStream in = Files.newInputStream(source.toPath())) {
+                putMapped(evaluationId, in);
+            }
+        }
+
+        private void putFromUrl(URL evaluationUrl) throws IOException {
+            try (CountingInputStream in = new CountingInputStream(evaluationUrl.openStream())) {
+                final JsonNode evaluationNode = getMapper().readTree(in);
+                setEvaluation(evaluationId, evaluationNode, in.count);
             } catch (IOException e) {
                 LOGGER.error("Caught IOException reading JSON from {}: {}", evaluationUrl, e.getMessage());
                 throw e;
             }
         }
     }
+
+    /**
+     * Counts the bytes read, so an evaluation can be sized as it was read.
+     */
+    private static class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            final int read = super.read(b, off, len);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            final long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
 }
@@ -17,11 +17,18 @@
          */
         var requestUrl = "/evaluation";
 
+        /**
+         * The live progress event stream URL
+         * @type {string}
+         */
+        var progressUrl = "/evaluations/default/progress";
+
         init();
 
         return {
             requestInterval: requestInterval,
-            requestUrl: requestUrl
+            requestUrl: requestUrl,
+            progressUrl: progressUrl
         };
 
         ////////////
@@ -39,6 +39,17 @@
                     }
                 );
             }, ConfigService.requestInterval);
+            // Reload as soon as a running evaluation completes
+            $scope.$on('evaluation-complete', function () {
+                DataService.getData().then(
+                    function (response) {
+                        vm.data = response.data;
+                    },
+                    function (error) {
+                        $log.error("DataService - Error while performing request:", error);
+                    }
+                );
+            });
             $scope.vm = vm;
             $log.log('DashboardController', 'starting');
         }
@@ -1,10 +1,11 @@
 (function () {
     angular.module('myApp').controller('NavbarController', NavbarController);
 
-    NavbarController.$inject = ['$scope', '$http', '$log', 'DataService'];
+    NavbarController.$inject = ['$scope', '$http', '$log', 'DataService', 'ProgressService'];
 
-    function NavbarController($scope, $http, $log, DataService) {
+    function NavbarController($scope, $http, $log, DataService, ProgressService) {
         var vm = this;
+        vm.progress = null;
 
         // Scope vars
         activate();
@@ -24,6 +25,9 @@
                     $log.error("DataService - Error while performing request:", error);
                 }
             );
+            ProgressService.onProgress(function (progress) {
+                vm.progress = progress;
+            });
 
             $scope.vm = vm;
         }
@@ -0,0 +1,49 @@
+(function () {
+    angular.module('myApp').factory('ProgressService', ProgressService);
+
+    ProgressService.$inject = ['$log', '$rootScope', 'ConfigService'];
+
+    function ProgressService($log, $rootScope, ConfigService) {
+
+        var source = null;
+        var listeners = [];
+
+        init();
+
+        return {
+            onProgress: onProgress
+        };
+
+        ////////////
+
+        /**
+         * Init
+         */
+        function init() {
+            $log.log("ProgressService", "starting");
+        }
+
+        /**
+         * Register a callback for progress events, opening the event
+         * stream on first use. The browser reconnects automatically if the
+         * stream is dropped.
+         */
+        function onProgress(listener) {
+            listeners.push(listener);
+            if (source === null && typeof EventSource !== 'undefined') {
+                source = new EventSource(ConfigService.progressUrl);
+                source.addEventListener('progress', function (event) {
+                    var progress = JSON.parse(event.data);
+                    $rootScope.$applyAsync(function () {
+                        listeners.forEach(function (l) {
+                            l(progress);
+                        });
+                        if (progress.done) {
+                            $rootScope.$broadcast('evaluation-complete', progress);
+                        }
+                    });
+                });
+            }
+        }
+    }
+})();
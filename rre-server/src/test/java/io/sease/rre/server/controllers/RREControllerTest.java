@@ -0,0 +1,221 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.server.controllers;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.sease.rre.server.services.EvaluationNotFoundException;
+import io.sease.rre.server.services.EvaluationStore;
+import io.sease.rre.server.services.EvaluationViewService;
+import io.sease.rre.server.services.MappedEvaluationReader;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for the RREController endpoints serving evaluations, called
+ * directly rather than through a Spring context.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+public class RREControllerTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private RREController controller;
+    private EvaluationStore store;
+    private JsonNode json;
+
+    @Before
+    public void setup() throws Exception {
+        try (final InputStream in = RREControllerTest.class.getResourceAsStream("/evaluation.json")) {
+            json = mapper.readTree(in);
+        }
+        store = new EvaluationStore();
+        inject(store, "mapper", mapper);
+        inject(store, "heapBudgetMb", 256L);
+        inject(store, "spillFolder", tempFolder.newFolder());
+        final EvaluationViewService views = new EvaluationViewService();
+        inject(views, "mapper", mapper);
+        controller = new RREController();
+        inject(controller, "evaluationStore", store);
+        inject(controller, "evaluationViews", views);
+
+        final File file = tempFolder.newFile();
+        Files.write(file.toPath(), mapper.writeValueAsBytes(json));
+        store.put("a", new MappedEvaluationReader(mapper).read(file), null, file.length());
+    }
+
+    @Test
+    public void getEvaluationData_returnsPlainBody() throws Exception {
+        final ResponseEntity<byte[]> response = controller.getEvaluationData("a", null, null);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(MediaType.APPLICATION_JSON_UTF8, response.getHeaders().getContentType());
+        assertNull(response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(Collections.singletonList(HttpHeaders.ACCEPT_ENCODING), response.getHeaders().getVary());
+        assertEquals(json.get("name"), mapper.readTree(response.getBody()).get("name"));
+        assertEquals(3, mapper.readTree(response.getBody()).findValues("query").size());
+    }
+
+    @Test
+    public void getEvaluationData_returnsLatestWithoutId() throws Exception {
+        final ResponseEntity<byte[]> byId = controller.getEvaluationData("a", null, null);
+        final ResponseEntity<byte[]> latest = controller.getEvaluationData(null, null, null);
+
+        assertEquals(byId.getHeaders().getETag(), latest.getHeaders().getETag());
+    }
+
+    @Test
+    public void getEvaluationData_returnsEmptyEvaluationWhenNothingStored() throws Exception {
+        store.remove("a");
+
+        final ResponseEntity<byte[]> response = controller.getEvaluationData(null, null, null);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(0, mapper.readTree(response.getBody()).get("corpora").size());
+    }
+
+    @Test(expected = EvaluationNotFoundException.class)
+    public void getEvaluationData_throwsNotFoundForUnknownId() {
+        controller.getEvaluationData("b", null, null);
+    }
+
+    @Test
+    public void getEvaluationData_returnsGzipWhenAccepted() throws Exception {
+        final ResponseEntity<byte[]> plain = controller.getEvaluationData("a", null, null);
+        final ResponseEntity<byte[]> gzipped = controller.getEvaluationData("a", null, "deflate, gzip;q=0.5");
+
+        assertEquals(HttpStatus.OK, gzipped.getStatusCode());
+        assertEquals("gzip", gzipped.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertTrue(gzipped.getHeaders().getETag().endsWith("-gzip\""));
+        assertEquals(mapper.readTree(plain.getBody()), mapper.readTree(gunzip(gzipped.getBody())));
+    }
+
+    @Test
+    public void getEvaluationData_returnsPlainWhenGzipRefused() {
+        assertNull(controller.getEvaluationData("a", null, "gzip;q=0").getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertNull(controller.getEvaluationData("a", null, "gzip; q=0.000").getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertNull(controller.getEvaluationData("a", null, "deflate, br").getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertEquals("gzip", controller.getEvaluationData("a", null, "GZIP;q=0.1").getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+    }
+
+    @Test
+    public void getEvaluationData_returnsNotModifiedForMatchingEtag() {
+        final String etag = controller.getEvaluationData("a", null, null).getHeaders().getETag();
+        final String gzipEtag = controller.getEvaluationData("a", null, "gzip").getHeaders().getETag();
+
+        final ResponseEntity<byte[]> plain = controller.getEvaluationData("a", etag, null);
+        assertEquals(HttpStatus.NOT_MODIFIED, plain.getStatusCode());
+        assertNull(plain.getBody());
+        assertEquals(etag, plain.getHeaders().getETag());
+
+        // A client may hold either representation
+        final ResponseEntity<byte[]> gzipped = controller.getEvaluationData("a", etag, "gzip");
+        assertEquals(HttpStatus.NOT_MODIFIED, gzipped.getStatusCode());
+        assertEquals(gzipEtag, gzipped.getHeaders().getETag());
+    }
+
+    @Test
+    public void getEvaluationData_returnsBodyWhenEvaluationReplaced() throws Exception {
+        final String etag = controller.getEvaluationData("a", null, null).getHeaders().getETag();
+        final File file = tempFolder.newFile();
+        Files.write(file.toPath(), mapper.writeValueAsBytes(((ObjectNode) json.deepCopy()).put("name", "replaced")));
+        store.put("a", new MappedEvaluationReader(mapper).read(file), null, file.length());
+
+        final ResponseEntity<byte[]> response = controller.getEvaluationData("a", etag, null);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("replaced", mapper.readTree(response.getBody()).get("name").asText());
+    }
+
+    @Test
+    public void getEvaluationView_returnsFilteredPage() throws Exception {
+        final ResponseEntity<byte[]> response = controller.getEvaluationView("queries", "a",
+                Collections.singletonList("corpus.json"), "query", Collections.singletonList("P@10"),
+                Collections.singletonList("v1.0"), null, 1, 2, null, null);
+
+        final JsonNode view = mapper.readTree(response.getBody());
+        assertEquals(3, view.get("total").asInt());
+        assertEquals(1, view.get("items").size());
+        assertEquals("query c", view.at("/items/0/name").asText());
+        assertEquals(1, view.at("/items/0/metrics").size());
+        assertEquals(1, view.at("/items/0/metrics/P@10").size());
+    }
+
+    @Test
+    public void getEvaluationView_returnsNotModifiedForMatchingEtag() {
+        final List<String> fields = Collections.singletonList("name");
+        final String etag = controller.getEvaluationView("topics", null, null, null, null, null, fields, 0, 10, null, "gzip")
+                .getHeaders().getETag();
+
+        final ResponseEntity<byte[]> response = controller.getEvaluationView("topics", null, null, null, null, null, fields, 0, 10, etag, "gzip");
+
+        assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void getEvaluationView_rejectsUnknownLevel() {
+        controller.getEvaluationView("documents", "a", null, null, null, null, null, 0, 10, null, null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void getEvaluationView_rejectsOversizedPage() {
+        controller.getEvaluationView("queries", "a", null, null, null, null, null, 0, 1001, null, null);
+    }
+
+    private static byte[] gunzip(final byte[] body) throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (final InputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+            final byte[] buffer = new byte[1024];
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                out.write(buffer, 0, read);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static void inject(final Object target, final String name, final Object value) throws Exception {
+        final Field field = target.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+}
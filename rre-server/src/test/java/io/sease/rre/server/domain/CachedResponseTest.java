@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.server.domain;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for the CachedResponse class.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+public class CachedResponseTest {
+
+    private static final byte[] BODY = "{\"name\":\"evaluation\"}".getBytes(StandardCharsets.UTF_8);
+
+    private final CachedResponse response = new CachedResponse(BODY);
+
+    @Test
+    public void gzippedBody_holdsBody() throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (final InputStream in = new GZIPInputStream(new ByteArrayInputStream(response.getGzippedBody()))) {
+            final byte[] buffer = new byte[1024];
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                out.write(buffer, 0, read);
+            }
+        }
+
+        assertArrayEquals(BODY, out.toByteArray());
+    }
+
+    @Test
+    public void etags_identifyBodyAndEncoding() {
+        assertTrue(response.getEtag().matches("\"[0-9a-f]{32}\""));
+        assertEquals(response.getEtag().replace("\"", "") + "-gzip", response.getGzippedEtag().replace("\"", ""));
+        assertEquals(response.getEtag(), new CachedResponse(BODY.clone()).getEtag());
+        assertNotEquals(response.getEtag(), new CachedResponse("{}".getBytes(StandardCharsets.UTF_8)).getEtag());
+    }
+
+    @Test
+    public void matches_eitherRepresentation() {
+        assertTrue(response.matches(response.getEtag()));
+        assertTrue(response.matches(response.getGzippedEtag()));
+    }
+
+    @Test
+    public void matches_weakTagsListsAndWildcard() {
+        assertTrue(response.matches("W/" + response.getEtag()));
+        assertTrue(response.matches("\"other\", " + response.getGzippedEtag()));
+        assertTrue(response.matches("*"));
+    }
+
+    @Test
+    public void doesNotMatch_otherTags() {
+        assertFalse(response.matches(null));
+        assertFalse(response.matches(""));
+        assertFalse(response.matches("\"other\""));
+        assertFalse(response.matches(response.getEtag().replace("\"", "")));
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.server.domain;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.sease.rre.core.domain.Query;
+import io.sease.rre.core.domain.QueryGroup;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Unit tests for the LazyQuery class.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+public class LazyQueryTest {
+
+    private static final String PREFIX = "{\"name\":\"evaluation\",\"query\":";
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final AtomicInteger decoded = new AtomicInteger();
+    private final Query decodedQuery = new Query();
+    private final Function<ByteBuffer, Query> decoder = bytes -> {
+        decoded.incrementAndGet();
+        return decodedQuery;
+    };
+
+    private JsonNode query;
+    private byte[] queryBytes;
+
+    @Before
+    public void setup() throws Exception {
+        try (final InputStream in = LazyQueryTest.class.getResourceAsStream("/evaluation.json")) {
+            query = mapper.readTree(in).at("/corpora/0/topics/0/query-groups/0/query-evaluations/0");
+        }
+        queryBytes = mapper.writeValueAsBytes(query);
+    }
+
+    @Test
+    public void serializer_copiesJsonFromFile() throws Exception {
+        final MappedEvaluationFile file = mappedQuery();
+        final LazyQuery lazy = new LazyQuery(file, PREFIX.length(), queryBytes.length, decoder);
+
+        assertEquals(query, mapper.readTree(mapper.writeValueAsBytes(lazy)));
+        assertEquals(0, decoded.get());
+    }
+
+    @Test
+    public void serializer_copiesJsonHeldInMemory() throws Exception {
+        final LazyQuery lazy = new LazyQuery(ByteBuffer.wrap(queryBytes), decoder);
+
+        assertEquals(query, mapper.readTree(mapper.writeValueAsBytes(lazy)));
+        // The buffer is not consumed by serializing it
+        assertEquals(query, mapper.readTree(mapper.writeValueAsBytes(lazy)));
+        assertEquals(queryBytes.length, lazy.getResidentSize());
+    }
+
+    @Test
+    public void serializer_writesQueryWithinParent() throws Exception {
+        final QueryGroup group = new QueryGroup();
+        group.setName("group");
+        group.findOrCreate("query", () -> new LazyQuery(ByteBuffer.wrap(queryBytes), decoder));
+
+        final JsonNode serialized = mapper.readTree(mapper.writeValueAsBytes(group));
+
+        assertEquals(query, serialized.at("/query-evaluations/0"));
+        assertEquals(0, decoded.get());
+    }
+
+    @Test
+    public void metrics_areDecodedOnce() throws Exception {
+        final LazyQuery lazy = new LazyQuery(mappedQuery(), PREFIX.length(), queryBytes.length, decoder);
+
+        assertSame(decodedQuery.getMetrics(), lazy.getMetrics());
+        assertSame(decodedQuery.getResults(), lazy.getResults());
+        assertEquals(1, decoded.get());
+        assertEquals(LazyQuery.STUB_SIZE, lazy.getResidentSize());
+    }
+
+    /**
+     * @return a mapped file holding the query's JSON part way through.
+     */
+    private MappedEvaluationFile mappedQuery() throws Exception {
+        final File file = tempFolder.newFile();
+        final String json = PREFIX + new String(queryBytes, StandardCharsets.UTF_8) + "}";
+        Files.write(file.toPath(), json.getBytes(StandardCharsets.UTF_8));
+        return new MappedEvaluationFile(file);
+    }
+}
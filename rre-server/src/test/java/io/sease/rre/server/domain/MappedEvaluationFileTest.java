@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.server.domain;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit tests for the MappedEvaluationFile class, using small chunks so the
+ * chunk boundaries can be tested without a file over 1GB.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+public class MappedEvaluationFileTest {
+
+    private static final int LENGTH = 100;
+    private static final long CHUNK_SIZE = 32;
+    private static final long CHUNK_OVERLAP = 8;
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private File file;
+
+    @Before
+    public void setup() throws Exception {
+        final byte[] bytes = new byte[LENGTH];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) i;
+        }
+        file = tempFolder.newFile();
+        Files.write(file.toPath(), bytes);
+    }
+
+    @Test
+    public void slice_readsRangeWithinChunk() throws Exception {
+        final MappedEvaluationFile mapped = new MappedEvaluationFile(file, CHUNK_SIZE, CHUNK_OVERLAP);
+
+        assertRange(mapped.slice(0, 32), 0, 32);
+        assertRange(mapped.slice(40, 10), 40, 10);
+        assertRange(mapped.slice(96, 4), 96, 4);
+    }
+
+    @Test
+    public void slice_readsRangeCrossingChunkBoundaryWithinOverlap() throws Exception {
+        final MappedEvaluationFile mapped = new MappedEvaluationFile(file, CHUNK_SIZE, CHUNK_OVERLAP);
+
+        assertRange(mapped.slice(30, 10), 30, 10);
+        assertRange(mapped.slice(60, 12), 60, 12);
+    }
+
+    @Test
+    public void slice_readsRangeBeyondOverlapFromFile() throws Exception {
+        final MappedEvaluationFile mapped = new MappedEvaluationFile(file, CHUNK_SIZE, CHUNK_OVERLAP);
+
+        assertRange(mapped.slice(30, 11), 30, 11);
+        assertRange(mapped.slice(10, 80), 10, 80);
+        assertRange(mapped.slice(0, LENGTH), 0, LENGTH);
+    }
+
+    @Test
+    public void slice_rejectsRangeOutsideFile() throws Exception {
+        final MappedEvaluationFile mapped = new MappedEvaluationFile(file, CHUNK_SIZE, CHUNK_OVERLAP);
+
+        assertOutside(mapped, -1, 10);
+        assertOutside(mapped, 95, 6);
+        assertOutside(mapped, 0, -1);
+    }
+
+    @Test
+    public void defaultChunks_mapWholeFile() throws Exception {
+        final MappedEvaluationFile mapped = new MappedEvaluationFile(file);
+
+        assertEquals(LENGTH, mapped.getLength());
+        assertRange(mapped.slice(0, LENGTH), 0, LENGTH);
+    }
+
+    @Test
+    public void file_isKeptUntilLastReferenceReleased() throws Exception {
+        final MappedEvaluationFile mapped = new MappedEvaluationFile(file, CHUNK_SIZE, CHUNK_OVERLAP);
+        assertTrue(mapped.retain());
+
+        mapped.release();
+        assertTrue(file.isFile());
+        assertRange(mapped.slice(30, 20), 30, 20);
+
+        mapped.release();
+        assertFalse(file.exists());
+        assertFalse(mapped.retain());
+    }
+
+    @Test
+    public void slice_cannotReadBeyondOverlapOnceReleased() throws Exception {
+        final MappedEvaluationFile mapped = new MappedEvaluationFile(file, CHUNK_SIZE, CHUNK_OVERLAP);
+        mapped.release();
+
+        try {
+            mapped.slice(30, 20);
+            fail("Expected the released file not to be read");
+        } catch (IOException e) {
+            // Expected - the range is read from the deleted file
+        }
+    }
+
+    private static void assertRange(final ByteBuffer buffer, final int offset, final int size) {
+        assertEquals(size, buffer.remaining());
+        for (int i = 0; i < size; i++) {
+            assertEquals((byte) (offset + i), buffer.get());
+        }
+    }
+
+    private static void assertOutside(final MappedEvaluationFile mapped, final long offset, final int size) throws IOException {
+        try {
+            mapped.slice(offset, size);
+            fail("Expected " + offset + "+" + size + " to be outside the file");
+        } catch (EOFException e) {
+            // Expected
+        }
+    }
+}
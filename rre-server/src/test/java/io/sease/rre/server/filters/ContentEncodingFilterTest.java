@@ -0,0 +1,234 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.server.filters;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for the ContentEncodingFilter class.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+public class ContentEncodingFilterTest {
+
+    private static final String BODY = "{\"name\":\"evaluation\"}";
+
+    private final ContentEncodingFilter filter = new ContentEncodingFilter();
+
+    private HttpServletRequest request;
+    private HttpServletResponse response;
+    private FilterChain chain;
+
+    @Before
+    public void setup() {
+        request = mock(HttpServletRequest.class);
+        response = mock(HttpServletResponse.class);
+        chain = mock(FilterChain.class);
+        when(request.getHeader("Content-Length")).thenReturn("100");
+        when(request.getContentLength()).thenReturn(100);
+        when(request.getContentLengthLong()).thenReturn(100L);
+    }
+
+    @Test
+    public void requestsWithoutEncoding_arePassedThrough() throws Exception {
+        filter.doFilterInternal(request, response, chain);
+
+        verify(chain).doFilter(request, response);
+    }
+
+    @Test
+    public void identityEncodedRequests_arePassedThrough() throws Exception {
+        when(request.getHeader("Content-Encoding")).thenReturn("Identity");
+
+        filter.doFilterInternal(request, response, chain);
+
+        verify(chain).doFilter(request, response);
+    }
+
+    @Test
+    public void gzipEncodedRequests_areDecoded() throws Exception {
+        final ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        try (final OutputStream out = new GZIPOutputStream(encoded)) {
+            out.write(BODY.getBytes(StandardCharsets.UTF_8));
+        }
+        when(request.getHeader("Content-Encoding")).thenReturn("gzip");
+        when(request.getInputStream()).thenReturn(body(encoded.toByteArray()));
+
+        assertDecoded(filtered());
+    }
+
+    @Test
+    public void deflateEncodedRequests_areDecoded() throws Exception {
+        final ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        try (final OutputStream out = new DeflaterOutputStream(encoded)) {
+            out.write(BODY.getBytes(StandardCharsets.UTF_8));
+        }
+        when(request.getHeader("Content-Encoding")).thenReturn("deflate");
+        when(request.getInputStream()).thenReturn(body(encoded.toByteArray()));
+
+        assertDecoded(filtered());
+    }
+
+    @Test
+    public void decodedBodies_areReadAsTextInRequestEncoding() throws Exception {
+        final String body = "{\"name\":\"\u00e9valuation\"}";
+        when(request.getHeader("Content-Encoding")).thenReturn("gzip");
+        when(request.getCharacterEncoding()).thenReturn("ISO-8859-1");
+        when(request.getInputStream()).thenReturn(body(gzip(body.getBytes(StandardCharsets.ISO_8859_1))));
+
+        final HttpServletRequest decoded = filtered();
+
+        assertEquals(body, decoded.getReader().readLine());
+        assertSame(decoded.getReader(), decoded.getReader());
+    }
+
+    @Test
+    public void decodedBodies_areReadAsUtf8WithoutEncoding() throws Exception {
+        final String body = "{\"name\":\"\u00e9valuation\"}";
+        when(request.getHeader("Content-Encoding")).thenReturn("gzip");
+        when(request.getInputStream()).thenReturn(body(gzip(body.getBytes(StandardCharsets.UTF_8))));
+
+        assertEquals(body, filtered().getReader().readLine());
+    }
+
+    @Test
+    public void decodedRequests_hideContentLength() throws Exception {
+        when(request.getHeader("Content-Encoding")).thenReturn("gzip");
+        when(request.getHeaders("Content-Length")).thenReturn(Collections.enumeration(Collections.singletonList("100")));
+        when(request.getHeaders("Content-Type")).thenReturn(Collections.enumeration(Collections.singletonList("application/json")));
+        when(request.getHeaderNames()).thenReturn(Collections.enumeration(Arrays.asList("Content-Type", "content-length", "Content-Encoding")));
+        when(request.getIntHeader("Content-Length")).thenReturn(100);
+
+        final HttpServletRequest decoded = filtered();
+
+        assertFalse(decoded.getHeaders("Content-Length").hasMoreElements());
+        assertFalse(decoded.getHeaders("CONTENT-LENGTH").hasMoreElements());
+        assertEquals(Collections.singletonList("application/json"), Collections.list(decoded.getHeaders("Content-Type")));
+        assertEquals(Arrays.asList("Content-Type", "Content-Encoding"), Collections.list(decoded.getHeaderNames()));
+        assertEquals(-1, decoded.getIntHeader("Content-Length"));
+    }
+
+    @Test
+    public void requestsWithOtherEncodings_areRejected() throws Exception {
+        when(request.getHeader("Content-Encoding")).thenReturn("br");
+
+        filter.doFilterInternal(request, response, chain);
+
+        verify(response).sendError(eq(HttpServletResponse.SC_UNSUPPORTED_MEDIA_TYPE), anyString());
+        verify(chain, never()).doFilter(any(), any());
+    }
+
+    @Test(expected = IOException.class)
+    public void invalidEncodedBodies_failWhenRead() throws Exception {
+        when(request.getHeader("Content-Encoding")).thenReturn("gzip");
+        when(request.getInputStream()).thenReturn(body(BODY.getBytes(StandardCharsets.UTF_8)));
+
+        filtered().getInputStream().read();
+    }
+
+    private static byte[] gzip(final byte[] bytes) throws IOException {
+        final ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        try (final OutputStream out = new GZIPOutputStream(encoded)) {
+            out.write(bytes);
+        }
+        return encoded.toByteArray();
+    }
+
+    private HttpServletRequest filtered() throws Exception {
+        filter.doFilterInternal(request, response, chain);
+        final ArgumentCaptor<ServletRequest> captor = ArgumentCaptor.forClass(ServletRequest.class);
+        verify(chain).doFilter(captor.capture(), eq(response));
+        verify(response, never()).sendError(anyInt(), anyString());
+        return (HttpServletRequest) captor.getValue();
+    }
+
+    private static void assertDecoded(final HttpServletRequest decoded) throws IOException {
+        final ServletInputStream in = decoded.getInputStream();
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[4];
+        int read;
+        while ((read = in.read(buffer, 0, buffer.length)) != -1) {
+            body.write(buffer, 0, read);
+        }
+
+        assertEquals(BODY, new String(body.toByteArray(), StandardCharsets.UTF_8));
+        assertTrue(in.isFinished());
+        assertSame(in, decoded.getInputStream());
+        // The decoded length is not known
+        assertEquals(-1, decoded.getContentLength());
+        assertEquals(-1, decoded.getContentLengthLong());
+        assertNull(decoded.getHeader("Content-Length"));
+    }
+
+    private static ServletInputStream body(final byte[] bytes) {
+        final InputStream in = new ByteArrayInputStream(bytes);
+        return new ServletInputStream() {
+            @Override
+            public int read() throws IOException {
+                return in.read();
+            }
+
+            @Override
+            public boolean isFinished() {
+                return false;
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setReadListener(final ReadListener listener) {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+}
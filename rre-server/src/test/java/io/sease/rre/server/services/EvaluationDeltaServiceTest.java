@@ -0,0 +1,324 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.server.services;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.sease.rre.core.domain.DomainMember;
+import io.sease.rre.core.domain.Evaluation;
+import io.sease.rre.persistence.impl.EvaluationDigest;
+import io.sease.rre.server.domain.EvaluationSnapshot;
+import io.sease.rre.server.domain.LazyQuery;
+import io.sease.rre.server.domain.MappedEvaluation;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit tests for the EvaluationDeltaService class.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+public class EvaluationDeltaServiceTest {
+
+    private static final String GROUP_ONE = "/corpus.json/topic one/group one";
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private JsonNode json;
+    private EvaluationStore store;
+    private EvaluationDeltaService service;
+
+    @Before
+    public void setup() throws Exception {
+        json = Fixtures.evaluationJson(mapper);
+        store = Fixtures.store(mapper, 256, tempFolder.newFolder());
+        service = new EvaluationDeltaService();
+        Fixtures.inject(service, "mapper", mapper);
+        Fixtures.inject(service, "store", store);
+    }
+
+    @Test
+    public void patch_appliesChangesToEvaluation() throws Exception {
+        final EvaluationSnapshot snapshot = store.put("a", new EvaluationReader(mapper).read(json), Fixtures.digest(mapper, json), Fixtures.size(mapper, json));
+        patch_appliesChanges(snapshot, tree(expected()));
+    }
+
+    @Test
+    public void patch_appliesChangesToMappedEvaluation() throws Exception {
+        final EvaluationSnapshot snapshot = store.put("a", mapped(json), Fixtures.digest(mapper, json), Fixtures.size(mapper, json));
+        final EvaluationSnapshot patched = patch_appliesChanges(snapshot, tree(mapped(expected())));
+        assertTrue(patched.getEvaluation() instanceof MappedEvaluation);
+    }
+
+    /**
+     * @return the test evaluation, after the changes made by
+     * {@link #patch_appliesChanges(EvaluationSnapshot, JsonNode)}.
+     */
+    private ObjectNode expected() {
+        final ObjectNode expected = json.deepCopy();
+        final ObjectNode topic = (ObjectNode) expected.at("/corpora/0/topics/0");
+        final ObjectNode group = (ObjectNode) topic.at("/query-groups/0");
+        final ArrayNode queries = (ArrayNode) group.get("query-evaluations");
+        final ObjectNode replaced = (ObjectNode) queries.get(0);
+        ((ObjectNode) replaced.at("/metrics/P@10/versions/v1.1")).put("value", 0.5);
+        queries.remove(1);
+        final ObjectNode added = group.deepCopy();
+        added.put("name", "group three");
+        ((ArrayNode) topic.get("query-groups")).add(added);
+        ((ObjectNode) topic.at("/metrics/P@10/versions/v1.0")).put("value", 0.75);
+        return expected;
+    }
+
+    private EvaluationSnapshot patch_appliesChanges(final EvaluationSnapshot snapshot, final JsonNode expectedTree) throws Exception {
+        final JsonNode original = tree(snapshot.getEvaluation());
+        final ObjectNode expected = expected();
+        final ObjectNode topic = (ObjectNode) expected.at("/corpora/0/topics/0");
+        final ObjectNode replaced = (ObjectNode) topic.at("/query-groups/0/query-evaluations/0");
+        final ObjectNode added = (ObjectNode) topic.at("/query-groups/1");
+
+        final ObjectNode update = mapper.createObjectNode();
+        update.put("name", "topic one");
+        update.set("metrics", topic.get("metrics"));
+        final JsonNode patch = patch(snapshot,
+                operation("replace", GROUP_ONE + "/query a", replaced),
+                operation("remove", GROUP_ONE + "/query b", null),
+                operation("add", "/corpus.json/topic one/group three", added),
+                operation("update", "/corpus.json/topic one", update));
+
+        final EvaluationSnapshot patched = service.patch("a", patch);
+
+        assertArrayEquals(Fixtures.digest(mapper, expected).getDigest(), patched.getDigest().getDigest());
+        assertEquals(expectedTree, tree(patched.getEvaluation()));
+        assertSame(patched, store.get("a").get());
+        // The patched snapshot is new - the original is left as it was
+        assertEquals(original, tree(snapshot.getEvaluation()));
+        return patched;
+    }
+
+    @Test
+    public void patch_addsMembersAtTheirIndex() throws Exception {
+        final EvaluationSnapshot snapshot = store.put("a", new EvaluationReader(mapper).read(json), Fixtures.digest(mapper, json), Fixtures.size(mapper, json));
+        final ObjectNode expected = json.deepCopy();
+        final ObjectNode topic = (ObjectNode) expected.at("/corpora/0/topics/0");
+        final ArrayNode queries = (ArrayNode) topic.at("/query-groups/0/query-evaluations");
+        final ObjectNode query = queries.get(0).deepCopy();
+        query.put("query", "query between");
+        queries.insert(1, query);
+        final ObjectNode group = topic.at("/query-groups/0").deepCopy();
+        group.put("name", "group zero");
+        ((ArrayNode) topic.get("query-groups")).insert(0, group);
+
+        final ObjectNode addQuery = operation("add", GROUP_ONE + "/query between", query).put("index", 1);
+        final ObjectNode addGroup = operation("add", "/corpus.json/topic one/group zero", group).put("index", 0);
+        final EvaluationSnapshot patched = service.patch("a", patch(snapshot, addQuery, addGroup));
+
+        assertArrayEquals(Fixtures.digest(mapper, expected).getDigest(), patched.getDigest().getDigest());
+        assertEquals(tree(expected), tree(patched.getEvaluation()));
+    }
+
+    @Test
+    public void patch_updatesEvaluationName() throws Exception {
+        final EvaluationSnapshot snapshot = store.put("a", new EvaluationReader(mapper).read(json), Fixtures.digest(mapper, json), Fixtures.size(mapper, json));
+        final ObjectNode update = mapper.createObjectNode();
+        update.put("name", "renamed");
+        update.set("metrics", json.get("metrics"));
+
+        final EvaluationSnapshot patched = service.patch("a", patch(snapshot, operation("update", "", update)));
+
+        assertEquals("renamed", patched.getEvaluation().getName());
+        assertEquals(tree(json).get("corpora"), tree(patched.getEvaluation()).get("corpora"));
+    }
+
+    @Test
+    public void patch_sharesUnchangedMembersWithoutChangingThem() throws Exception {
+        final EvaluationSnapshot snapshot = store.put("a", new EvaluationReader(mapper).read(json), Fixtures.digest(mapper, json), Fixtures.size(mapper, json));
+        final DomainMember<?> corpus = snapshot.getEvaluation().getChildren().get(0);
+        final DomainMember<?> topicTwo = corpus.getChildren().get(1);
+
+        final EvaluationSnapshot patched = service.patch("a", patch(snapshot, operation("remove", GROUP_ONE + "/query b", null)));
+
+        final DomainMember<?> patchedCorpus = patched.getEvaluation().getChildren().get(0);
+        assertSame(topicTwo, patchedCorpus.getChildren().get(1));
+        assertSame(corpus, topicTwo.getParent().get());
+        assertSame(snapshot.getEvaluation(), corpus.getParent().get());
+        assertSame(patched.getEvaluation(), patchedCorpus.getParent().get());
+    }
+
+    @Test
+    public void patch_removesSizeOfReplacedMembers() throws Exception {
+        final EvaluationSnapshot snapshot = store.put("a", new EvaluationReader(mapper).read(json), Fixtures.digest(mapper, json), Fixtures.size(mapper, json));
+        final JsonNode query = json.at("/corpora/0/topics/0/query-groups/0/query-evaluations/0");
+
+        final EvaluationSnapshot replaced = service.patch("a", patch(snapshot, operation("replace", GROUP_ONE + "/query a", query)));
+        final EvaluationSnapshot removed = service.patch("a", patch(replaced, operation("remove", GROUP_ONE + "/query a", null)));
+
+        // The replacement query has the same content, so the size stays about the same
+        assertEquals(snapshot.getSize(), replaced.getSize(), query.toString().length());
+        assertTrue(removed.getSize() < replaced.getSize() - query.toString().length() / 2);
+    }
+
+    @Test
+    public void patch_removesSizeOfMappedQueries() throws Exception {
+        final EvaluationSnapshot snapshot = store.put("a", mapped(json), Fixtures.digest(mapper, json), Fixtures.size(mapper, json));
+
+        final EvaluationSnapshot removed = service.patch("a", patch(snapshot, operation("remove", GROUP_ONE + "/query a", null)));
+
+        // Only a stub of a mapped query is held in memory
+        assertEquals(snapshot.getSize() - LazyQuery.STUB_SIZE, removed.getSize());
+        assertEquals(removed.getSize(), ((MappedEvaluation) removed.getEvaluation()).getResidentSize());
+    }
+
+    @Test
+    public void patch_keepsMappedFileUntilPatchedEvaluationRemoved() throws Exception {
+        final Evaluation mapped = mapped(json);
+        final File file = ((MappedEvaluation) mapped).getFile().getFile();
+        final EvaluationSnapshot snapshot = store.put("a", mapped, Fixtures.digest(mapper, json), Fixtures.size(mapper, json));
+
+        service.patch("a", patch(snapshot, operation("remove", GROUP_ONE + "/query a", null)));
+        assertTrue(file.isFile());
+
+        store.remove("a");
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void patch_releasesMappedFileWhenPatchRejected() throws Exception {
+        final Evaluation mapped = mapped(json);
+        final File file = ((MappedEvaluation) mapped).getFile().getFile();
+        final EvaluationSnapshot snapshot = store.put("a", mapped, Fixtures.digest(mapper, json), Fixtures.size(mapper, json));
+
+        assertInvalid(patch(snapshot, operation("remove", GROUP_ONE + "/query z", null)));
+        assertTrue(file.isFile());
+
+        store.remove("a");
+        assertFalse(file.exists());
+    }
+
+    @Test(expected = EvaluationNotFoundException.class)
+    public void patch_throwsNotFoundForUnknownEvaluation() {
+        service.patch("a", mapper.createObjectNode());
+    }
+
+    @Test(expected = EvaluationConflictException.class)
+    public void patch_throwsConflictWhenDigestsUnknown() throws Exception {
+        store.put("a", new EvaluationReader(mapper).read(json), null, Fixtures.size(mapper, json));
+        service.patch("a", mapper.createObjectNode().put("base", "00"));
+    }
+
+    @Test(expected = EvaluationConflictException.class)
+    public void patch_throwsConflictForDifferentBase() throws Exception {
+        store.put("a", new EvaluationReader(mapper).read(json), Fixtures.digest(mapper, json), Fixtures.size(mapper, json));
+        final ObjectNode patch = mapper.createObjectNode();
+        patch.put("base", EvaluationDigest.hex(new byte[20]));
+        patch.putArray("operations").add(operation("remove", GROUP_ONE + "/query a", null));
+
+        service.patch("a", patch);
+    }
+
+    @Test
+    public void patch_rejectsInvalidPatches() throws Exception {
+        final EvaluationSnapshot snapshot = store.put("a", new EvaluationReader(mapper).read(json), Fixtures.digest(mapper, json), Fixtures.size(mapper, json));
+        final JsonNode query = json.at("/corpora/0/topics/0/query-groups/0/query-evaluations/0");
+
+        assertInvalid(mapper.createObjectNode().put("base", EvaluationDigest.hex(snapshot.getDigest().getDigest())));
+        assertInvalid(patch(snapshot, operation("move", GROUP_ONE + "/query a", query)));
+        assertInvalid(patch(snapshot, operation("remove", GROUP_ONE + "/query z", null)));
+        assertInvalid(patch(snapshot, operation("update", GROUP_ONE + "/query z", mapper.createObjectNode())));
+        assertInvalid(patch(snapshot, operation("replace", GROUP_ONE + "/query b", query)));
+        assertInvalid(patch(snapshot, operation("replace", GROUP_ONE + "/query a", null)));
+        assertInvalid(patch(snapshot, operation("remove", "", null)));
+        assertInvalid(patch(snapshot, operation("remove", GROUP_ONE + "/query a", null).put("index", 0)));
+        assertInvalid(patch(snapshot, operation("add", GROUP_ONE + "/query a", query).put("index", -1)));
+        assertInvalid(patch(snapshot,
+                operation("remove", GROUP_ONE, null),
+                operation("replace", GROUP_ONE + "/query a", query)));
+        assertInvalid(patch(snapshot,
+                operation("remove", GROUP_ONE + "/query a", null),
+                operation("replace", GROUP_ONE + "/query a", query)));
+        // Nothing was applied
+        assertSame(snapshot, store.get("a").get());
+    }
+
+    private void assertInvalid(final JsonNode patch) {
+        try {
+            service.patch("a", patch);
+            fail("Expected an invalid patch: " + patch);
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+
+    private JsonNode patch(final EvaluationSnapshot snapshot, final JsonNode... operations) {
+        final ObjectNode patch = mapper.createObjectNode();
+        patch.put("base", EvaluationDigest.hex(snapshot.getDigest().getDigest()));
+        final ArrayNode array = patch.putArray("operations");
+        for (final JsonNode operation : operations) {
+            array.add(operation);
+        }
+        return patch;
+    }
+
+    private ObjectNode operation(final String op, final String path, final JsonNode value) {
+        final ObjectNode operation = mapper.createObjectNode();
+        operation.put("op", op);
+        operation.put("path", path);
+        if (value != null) {
+            operation.set("value", value);
+        }
+        return operation;
+    }
+
+    /**
+     * @return the evaluation as the store would serialize it, after reading
+     * it from its JSON.
+     */
+    private JsonNode tree(final JsonNode json) throws IOException {
+        return tree(new EvaluationReader(mapper).read(json));
+    }
+
+    /**
+     * @return the evaluation as serialized - mapped queries are written as
+     * raw JSON, so cannot be converted to a tree directly.
+     */
+    private JsonNode tree(final Evaluation evaluation) throws IOException {
+        return mapper.readTree(mapper.writeValueAsBytes(evaluation));
+    }
+
+    private Evaluation mapped(final JsonNode json) throws Exception {
+        final File file = tempFolder.newFile();
+        Files.write(file.toPath(), mapper.writeValueAsBytes(json));
+        return new MappedEvaluationReader(mapper).read(file);
+    }
+}
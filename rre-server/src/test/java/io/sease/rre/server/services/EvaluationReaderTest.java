@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.server.services;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.sease.rre.core.domain.DomainMember;
+import io.sease.rre.core.domain.metrics.Metric;
+import io.sease.rre.core.domain.metrics.ValueFactory;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Unit tests for the EvaluationReader class.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+public class EvaluationReaderTest {
+
+    /**
+     * Values which round differently depending on how their doubles are
+     * rounded.
+     */
+    private static final double[] VALUES = {
+            0.1, 0.7, 1.0 / 3, 2.0 / 3, 0.1 + 0.2, 0.12345, 0.99995, 0.00005, 0.123449999, 1e-9,
+            0.0, 1.0, 0.5625, 0.99999999, 0.15, 0.25005, 12.34565
+    };
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    public void read_serializesMetricsAsBaselineReader() throws Exception {
+        final JsonNode json = Fixtures.evaluationJson(mapper);
+        setValues(json, new int[1]);
+
+        final String expected = mapper.writeValueAsString(new BaselineReader(mapper).read(json));
+        final String actual = mapper.writeValueAsString(new EvaluationReader(mapper).read(json));
+
+        assertEquals(expected, actual);
+    }
+
+    /**
+     * Replace every metric value in the evaluation, cycling through
+     * {@link #VALUES}.
+     */
+    private static void setValues(final JsonNode node, final int[] next) {
+        if (node.has("versions") && node.get("versions").isObject()) {
+            node.get("versions").forEach(version ->
+                    ((ObjectNode) version).put("value", VALUES[next[0]++ % VALUES.length]));
+        }
+        node.forEach(child -> setValues(child, next));
+    }
+
+    /**
+     * Reads metrics as the reader did before metric values were held in
+     * arrays: a map of values, each rounded up from the exact double.
+     */
+    private static class BaselineReader extends EvaluationReader {
+
+        BaselineReader(final ObjectMapper mapper) {
+            super(mapper);
+        }
+
+        @Override
+        void metrics(final JsonNode metrics, final DomainMember parent) {
+            metrics.fields().forEachRemaining(entry -> {
+                final BaselineMetric metric = new BaselineMetric(entry.getKey());
+                entry.getValue().get("versions").fields().forEachRemaining(vEntry ->
+                        metric.collect(vEntry.getKey(), new BigDecimal(vEntry.getValue().get("value").asDouble()).setScale(4, RoundingMode.CEILING)));
+                parent.getMetrics().put(metric.getName(), metric);
+            });
+        }
+    }
+
+    private static class BaselineMetric extends Metric {
+
+        BaselineMetric(final String name) {
+            super(name);
+        }
+
+        void collect(final String version, final BigDecimal value) {
+            values.computeIfAbsent(version, v -> new ValueFactory(this, version) {
+                @Override
+                public BigDecimal value() {
+                    return value;
+                }
+
+                @Override
+                public void collect(final Map<String, Object> hit, final int rank, final String version) {
+                    // Nothing to be done here...
+                }
+            });
+        }
+
+        @Override
+        public ValueFactory createValueFactory(final String version) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,260 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.server.services;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.sease.rre.core.domain.Evaluation;
+import io.sease.rre.persistence.impl.EvaluationDigest;
+import io.sease.rre.server.domain.EvaluationSnapshot;
+import io.sease.rre.server.domain.EvaluationSummary;
+import io.sease.rre.server.domain.MappedEvaluation;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for the EvaluationStore class.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+public class EvaluationStoreTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private JsonNode json;
+    private long size;
+    private File spillFolder;
+
+    @Before
+    public void setup() throws Exception {
+        json = Fixtures.evaluationJson(mapper);
+        size = Fixtures.size(mapper, json);
+        spillFolder = new File(tempFolder.getRoot(), "spill");
+    }
+
+    @Test
+    public void put_replacesEvaluationWithSameId() {
+        final EvaluationStore store = Fixtures.store(mapper, 256, spillFolder);
+        store.put("a", evaluation(), null, size);
+        final EvaluationSnapshot replacement = store.put("a", evaluation(), null, size);
+
+        assertSame(replacement, store.get("a").get());
+        assertSame(replacement, store.latest().get());
+        assertEquals(1, store.list().size());
+    }
+
+    @Test
+    public void evaluationsOverBudget_areMovedToDiskAndReadBack() throws Exception {
+        final EvaluationStore store = Fixtures.store(mapper, 0, spillFolder);
+        final EvaluationDigest.Node digest = Fixtures.digest(mapper, json);
+        final EvaluationSnapshot first = store.put("a", evaluation(), digest, size);
+        store.put("b", evaluation(), null, size);
+
+        assertFalse(summary(store, "a").isResident());
+        assertTrue(summary(store, "b").isResident());
+        assertEquals(1, spillFiles("a").length);
+
+        final EvaluationSnapshot reloaded = store.get("a").get();
+        assertEquals(mapper.valueToTree(first.getEvaluation()), mapper.valueToTree(reloaded.getEvaluation()));
+        assertSame(digest, reloaded.getDigest());
+        assertEquals(first.getCreated(), reloaded.getCreated());
+        assertEquals(0, spillFiles("a").length);
+        // Reading "a" back moved "b" out instead
+        assertTrue(summary(store, "a").isResident());
+        assertFalse(summary(store, "b").isResident());
+    }
+
+    @Test
+    public void put_recordsUploadedSize() {
+        final EvaluationStore store = Fixtures.store(mapper, 256, spillFolder);
+        store.put("a", evaluation(), null, 1234);
+
+        assertEquals(1234, summary(store, "a").getSize());
+    }
+
+    @Test
+    public void put_deletesSpilledEvaluationItReplaces() {
+        final EvaluationStore store = Fixtures.store(mapper, 0, spillFolder);
+        store.put("a", evaluation(), null, size);
+        store.put("b", evaluation(), null, size);
+        assertEquals(1, spillFiles("a").length);
+
+        store.put("a", evaluation(), null, size);
+
+        assertEquals(0, spillFiles("a").length);
+        assertTrue(summary(store, "a").isResident());
+    }
+
+    @Test
+    public void remove_deletesSpilledEvaluation() {
+        final EvaluationStore store = Fixtures.store(mapper, 0, spillFolder);
+        store.put("a", evaluation(), null, size);
+        store.put("b", evaluation(), null, size);
+
+        assertTrue(store.remove("a"));
+        assertEquals(0, spillFiles("a").length);
+        assertFalse(store.get("a").isPresent());
+        assertFalse(store.remove("a"));
+    }
+
+    @Test
+    public void replace_storesReplacementOfCurrentSnapshot() {
+        final EvaluationStore store = Fixtures.store(mapper, 256, spillFolder);
+        final EvaluationSnapshot current = store.put("a", evaluation(), null, size);
+        final Evaluation replacement = evaluation();
+
+        final Optional<EvaluationSnapshot> replaced = store.replace(current, replacement, null, 100);
+
+        assertTrue(replaced.isPresent());
+        assertSame(replacement, store.get("a").get().getEvaluation());
+        assertEquals(100, replaced.get().getSize());
+    }
+
+    @Test
+    public void replace_returnsEmptyWhenSnapshotIsStale() {
+        final EvaluationStore store = Fixtures.store(mapper, 256, spillFolder);
+        final EvaluationSnapshot stale = store.put("a", evaluation(), null, size);
+        final EvaluationSnapshot current = store.put("a", evaluation(), null, size);
+
+        assertFalse(store.replace(stale, evaluation(), null, 100).isPresent());
+        assertSame(current, store.get("a").get());
+    }
+
+    @Test
+    public void replace_returnsEmptyWhenEvaluationRemoved() {
+        final EvaluationStore store = Fixtures.store(mapper, 256, spillFolder);
+        final EvaluationSnapshot removed = store.put("a", evaluation(), null, size);
+        store.remove("a");
+
+        assertFalse(store.replace(removed, evaluation(), null, 100).isPresent());
+        assertFalse(store.get("a").isPresent());
+    }
+
+    @Test
+    public void mappedFile_isKeptWhileReplacementReadsFromIt() throws Exception {
+        final EvaluationStore store = Fixtures.store(mapper, 256, spillFolder);
+        final MappedEvaluation mapped = mapped();
+        final EvaluationSnapshot current = store.put("a", mapped, null, mapped.getResidentSize());
+
+        assertTrue(mapped.getFile().retain());
+        store.replace(current, new MappedEvaluation(mapped.getFile(), mapped.getResidentSize()), null, mapped.getResidentSize());
+        assertTrue(mapped.getFile().getFile().isFile());
+
+        store.put("a", evaluation(), null, size);
+        assertFalse(mapped.getFile().getFile().exists());
+    }
+
+    @Test
+    public void mappedFile_isKeptWhileAcquiredSnapshotIsRead() throws Exception {
+        final EvaluationStore store = Fixtures.store(mapper, 256, spillFolder);
+        final MappedEvaluation mapped = mapped();
+        put(store, "a", mapped);
+        final JsonNode stored = tree(mapped);
+
+        final EvaluationSnapshot acquired = store.acquire("a").get();
+        store.put("a", evaluation(), null, size);
+        assertTrue(mapped.getFile().getFile().isFile());
+        assertEquals(stored, tree(acquired.getEvaluation()));
+
+        acquired.release();
+        assertFalse(mapped.getFile().getFile().exists());
+        assertFalse(mapped.getFile().retain());
+    }
+
+    @Test
+    public void acquire_returnsReplacementOfReleasedSnapshot() throws Exception {
+        final EvaluationStore store = Fixtures.store(mapper, 256, spillFolder);
+        put(store, "a", mapped());
+        final EvaluationSnapshot replacement = put(store, "a", mapped());
+
+        final EvaluationSnapshot latest = store.acquireLatest().get();
+        assertSame(replacement, latest);
+        latest.release();
+        assertTrue(((MappedEvaluation) replacement.getEvaluation()).getFile().getFile().isFile());
+
+        store.remove("a");
+        assertFalse(store.acquire("a").isPresent());
+        assertFalse(store.acquireLatest().isPresent());
+    }
+
+    @Test
+    public void mappedFile_isDeletedWhenEvaluationRemoved() throws Exception {
+        final EvaluationStore store = Fixtures.store(mapper, 256, spillFolder);
+        final MappedEvaluation mapped = mapped();
+        store.put("a", mapped, null, mapped.getResidentSize());
+
+        store.remove("a");
+
+        assertFalse(mapped.getFile().getFile().exists());
+    }
+
+    @Test
+    public void mappedEvaluations_areNotMovedToDisk() throws Exception {
+        final EvaluationStore store = Fixtures.store(mapper, 0, spillFolder);
+        put(store, "a", mapped());
+        store.put("b", evaluation(), null, size);
+
+        assertTrue(summary(store, "a").isResident());
+        assertEquals(0, spillFiles("a").length);
+    }
+
+    private Evaluation evaluation() {
+        return new EvaluationReader(mapper).read(json);
+    }
+
+    private MappedEvaluation mapped() throws Exception {
+        final File file = tempFolder.newFile();
+        Files.write(file.toPath(), mapper.writeValueAsBytes(json));
+        return new MappedEvaluationReader(mapper).read(file);
+    }
+
+    /**
+     * @return the evaluation as serialized - mapped queries are written as
+     * raw JSON, so cannot be converted to a tree directly.
+     */
+    private JsonNode tree(final Object evaluation) throws Exception {
+        return mapper.readTree(mapper.writeValueAsBytes(evaluation));
+    }
+
+    private static EvaluationSnapshot put(final EvaluationStore store, final String id, final MappedEvaluation mapped) {
+        return store.put(id, mapped, null, mapped.getResidentSize());
+    }
+
+    private File[] spillFiles(final String id) {
+        final File[] files = spillFolder.listFiles((dir, name) ->
+                name.startsWith(EvaluationStore.filePrefix(id)) && name.endsWith(EvaluationStore.SPILL_FILE_SUFFIX));
+        return files == null ? new File[0] : files;
+    }
+
+    private static EvaluationSummary summary(final EvaluationStore store, final String id) {
+        return store.list().stream().filter(summary -> summary.getId().equals(id)).findFirst().get();
+    }
+}
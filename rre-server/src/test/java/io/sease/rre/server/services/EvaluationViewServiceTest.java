@@ -0,0 +1,201 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.server.services;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.sease.rre.server.domain.CachedResponse;
+import io.sease.rre.server.domain.EvaluationLevel;
+import io.sease.rre.server.domain.EvaluationSnapshot;
+import io.sease.rre.server.domain.ViewRequest;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit tests for the EvaluationViewService class.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+public class EvaluationViewServiceTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private EvaluationViewService service;
+    private EvaluationSnapshot snapshot;
+
+    @Before
+    public void setup() throws Exception {
+        final JsonNode json = Fixtures.evaluationJson(mapper);
+        final EvaluationStore store = Fixtures.store(mapper, 256, tempFolder.newFolder());
+        snapshot = store.put("a", new EvaluationReader(mapper).read(json), null, Fixtures.size(mapper, json));
+        service = new EvaluationViewService();
+        Fixtures.inject(service, "mapper", mapper);
+    }
+
+    @Test
+    public void getEvaluation_serializesWholeEvaluation() throws Exception {
+        final CachedResponse response = service.getEvaluation(snapshot);
+
+        assertArrayEquals(mapper.writeValueAsBytes(snapshot.getEvaluation()), response.getBody());
+        assertSame(response, service.getEvaluation(snapshot));
+    }
+
+    @Test
+    public void getView_returnsPagesOfMembers() throws Exception {
+        final JsonNode first = view(request(EvaluationLevel.QUERIES, 0, 2));
+        assertEquals("queries", first.get("level").asText());
+        assertEquals(3, first.get("total").asInt());
+        assertEquals(0, first.get("page").asInt());
+        assertEquals(2, first.get("size").asInt());
+        assertEquals(Arrays.asList("query a", "query b"), names(first));
+
+        final JsonNode second = view(request(EvaluationLevel.QUERIES, 1, 2));
+        assertEquals(3, second.get("total").asInt());
+        assertEquals(Collections.singletonList("query c"), names(second));
+    }
+
+    @Test
+    public void getView_returnsEmptyPageBeyondMembers() throws Exception {
+        final JsonNode view = view(request(EvaluationLevel.QUERIES, 5, 2));
+
+        assertEquals(3, view.get("total").asInt());
+        assertEquals(0, view.get("items").size());
+    }
+
+    @Test
+    public void getView_returnsEvaluationAtTopLevel() throws Exception {
+        final JsonNode view = view(ViewRequest.evaluation());
+
+        assertEquals(Collections.singletonList("evaluation"), names(view));
+        assertEquals(0, view.at("/items/0/path").size());
+    }
+
+    @Test
+    public void getView_filtersByParents() throws Exception {
+        final JsonNode view = view(new ViewRequest(EvaluationLevel.QUERIES, Arrays.asList("corpus.json", "topic two"), null,
+                Collections.emptyList(), Collections.emptyList(), Collections.emptyList(), 0, 10));
+
+        assertEquals(Collections.singletonList("query c"), names(view));
+        assertEquals(mapper.createArrayNode().add("corpus.json").add("topic two").add("group two"), view.at("/items/0/path"));
+    }
+
+    @Test
+    public void getView_filtersByNameIgnoringCase() throws Exception {
+        final JsonNode view = view(new ViewRequest(EvaluationLevel.TOPICS, Collections.emptyList(), "TWO",
+                Collections.emptyList(), Collections.emptyList(), Collections.emptyList(), 0, 10));
+
+        assertEquals(1, view.get("total").asInt());
+        assertEquals(Collections.singletonList("topic two"), names(view));
+    }
+
+    @Test
+    public void getView_filtersMetricsAndVersions() throws Exception {
+        final JsonNode view = view(new ViewRequest(EvaluationLevel.CORPORA, Collections.emptyList(), null,
+                Collections.singletonList("P@10"), Collections.singletonList("v1.1"), Collections.emptyList(), 0, 10));
+
+        final JsonNode metrics = view.at("/items/0/metrics");
+        assertEquals(Collections.singletonList("P@10"), fieldNames(metrics));
+        assertEquals(Collections.singletonList("v1.1"), fieldNames(metrics.get("P@10")));
+        assertEquals(0.375, metrics.at("/P@10/v1.1").asDouble(), 0);
+    }
+
+    @Test
+    public void getView_returnsRequestedFields() throws Exception {
+        final JsonNode names = view(new ViewRequest(EvaluationLevel.QUERIES, Collections.emptyList(), null,
+                Collections.emptyList(), Collections.emptyList(), Collections.singletonList(ViewRequest.FIELD_NAME), 0, 10));
+        assertEquals(Collections.singletonList("name"), fieldNames(names.at("/items/0")));
+
+        final JsonNode results = view(new ViewRequest(EvaluationLevel.QUERIES, Collections.emptyList(), null,
+                Collections.emptyList(), Collections.singletonList("v1.1"), Collections.singletonList(ViewRequest.FIELD_RESULTS), 0, 10));
+        assertEquals(Collections.singletonList("results"), fieldNames(results.at("/items/0")));
+        assertEquals(Collections.singletonList("v1.1"), fieldNames(results.at("/items/0/results")));
+        assertEquals(1, results.at("/items/0/results/v1.1/total-hits").asInt());
+    }
+
+    @Test
+    public void getView_omitsResultsAboveQueries() throws Exception {
+        final JsonNode view = view(new ViewRequest(EvaluationLevel.QUERY_GROUPS, Collections.emptyList(), null,
+                Collections.emptyList(), Collections.emptyList(), Collections.singletonList(ViewRequest.FIELD_RESULTS), 0, 10));
+
+        assertEquals(2, view.get("items").size());
+        assertEquals(0, view.at("/items/0").size());
+    }
+
+    @Test
+    public void getView_cachesEachViewInSnapshot() {
+        final CachedResponse first = service.getView(snapshot, request(EvaluationLevel.QUERIES, 0, 2));
+
+        assertSame(first, service.getView(snapshot, request(EvaluationLevel.QUERIES, 0, 2)));
+        assertNotSame(first, service.getView(snapshot, request(EvaluationLevel.QUERIES, 1, 2)));
+    }
+
+    @Test
+    public void viewRequest_rejectsInvalidPages() {
+        assertInvalid(EvaluationLevel.QUERIES, Collections.emptyList(), Collections.emptyList(), -1, 10);
+        assertInvalid(EvaluationLevel.QUERIES, Collections.emptyList(), Collections.emptyList(), 0, 0);
+        assertInvalid(EvaluationLevel.QUERIES, Collections.emptyList(), Collections.emptyList(), 0, ViewRequest.MAX_PAGE_SIZE + 1);
+        assertInvalid(EvaluationLevel.QUERIES, Collections.emptyList(), Collections.singletonList("unknown"), 0, 10);
+        assertInvalid(EvaluationLevel.CORPORA, Arrays.asList("corpus.json", "topic one"), Collections.emptyList(), 0, 10);
+    }
+
+    private JsonNode view(final ViewRequest request) throws Exception {
+        return mapper.readTree(service.getView(snapshot, request).getBody());
+    }
+
+    private static ViewRequest request(final EvaluationLevel level, final int page, final int size) {
+        return new ViewRequest(level, Collections.emptyList(), null,
+                Collections.emptyList(), Collections.emptyList(), Collections.emptyList(), page, size);
+    }
+
+    private static List<String> names(final JsonNode view) {
+        final List<String> names = new ArrayList<>();
+        view.get("items").forEach(item -> names.add(item.get("name").asText()));
+        return names;
+    }
+
+    private static List<String> fieldNames(final JsonNode node) {
+        final List<String> names = new ArrayList<>();
+        node.fieldNames().forEachRemaining(names::add);
+        return names;
+    }
+
+    private static void assertInvalid(final EvaluationLevel level, final List<String> parents, final List<String> fields,
+                                      final int page, final int size) {
+        try {
+            new ViewRequest(level, parents, null, Collections.emptyList(), Collections.emptyList(), fields, page, size);
+            fail("Expected an invalid request for page " + page + " of " + size);
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+}
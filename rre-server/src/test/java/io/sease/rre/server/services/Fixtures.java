@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.server.services;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.sease.rre.persistence.impl.EvaluationDigest;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+
+/**
+ * Shared set-up for the service tests, which run without a Spring context.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+final class Fixtures {
+
+    private Fixtures() {
+    }
+
+    /**
+     * Set a field normally injected by Spring.
+     */
+    static void inject(final Object target, final String name, final Object value) {
+        try {
+            final Field field = target.getClass().getDeclaredField(name);
+            field.setAccessible(true);
+            field.set(target, value);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return the test evaluation: one corpus, with two topics holding
+     * three queries between them.
+     */
+    static JsonNode evaluationJson(final ObjectMapper mapper) throws IOException {
+        try (final InputStream in = Fixtures.class.getResourceAsStream("/evaluation.json")) {
+            return mapper.readTree(in);
+        }
+    }
+
+    static EvaluationDigest.Node digest(final ObjectMapper mapper, final JsonNode json) throws IOException {
+        try (final JsonParser parser = json.traverse(mapper)) {
+            return EvaluationDigest.read(parser);
+        }
+    }
+
+    /**
+     * @return the size of the evaluation JSON as it would be uploaded.
+     */
+    static long size(final ObjectMapper mapper, final JsonNode json) throws IOException {
+        return mapper.writeValueAsBytes(json).length;
+    }
+
+    static EvaluationStore store(final ObjectMapper mapper, final long heapBudgetMb, final File spillFolder) {
+        final EvaluationStore store = new EvaluationStore();
+        inject(store, "mapper", mapper);
+        inject(store, "heapBudgetMb", heapBudgetMb);
+        inject(store, "spillFolder", spillFolder);
+        return store;
+    }
+}
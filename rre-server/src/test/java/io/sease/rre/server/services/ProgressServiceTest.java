@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sease.rre.server.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Unit tests for the ProgressService class.
+ *
+ * @author Matt Pearce (matt@flax.co.uk)
+ */
+public class ProgressServiceTest {
+
+    private static final long HOUR_MS = 3600000;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private ProgressService service;
+
+    @Before
+    public void setup() {
+        service = new ProgressService();
+        Fixtures.inject(service, "mapper", mapper);
+        Fixtures.inject(service, "maxQueriesPerEvent", 100);
+        Fixtures.inject(service, "emitterTimeoutMs", HOUR_MS);
+        Fixtures.inject(service, "retentionMs", 0L);
+    }
+
+    @Test
+    public void finishedEvaluations_areDroppedOnceSent() {
+        service.update("a", mapper.createObjectNode().put("completed", 10).put("done", true));
+
+        service.broadcast();
+
+        assertEquals(0, service.size());
+    }
+
+    @Test
+    public void finishedEvaluations_areKeptForRetentionPeriod() {
+        Fixtures.inject(service, "retentionMs", HOUR_MS);
+        service.update("a", mapper.createObjectNode().put("completed", 10).put("done", true));
+
+        service.broadcast();
+
+        assertEquals(1, service.size());
+    }
+
+    @Test
+    public void runningEvaluations_areDroppedOnceIdle() {
+        service.update("a", mapper.createObjectNode().put("completed", 5));
+
+        service.broadcast();
+        assertEquals(1, service.size());
+
+        Fixtures.inject(service, "emitterTimeoutMs", 0L);
+        service.broadcast();
+        assertEquals(0, service.size());
+    }
+
+    @Test
+    public void subscribedEvaluations_areKept() {
+        service.update("a", mapper.createObjectNode().put("completed", 10).put("done", true));
+        service.subscribe("a");
+        service.subscribe("b");
+
+        service.broadcast();
+
+        assertEquals(2, service.size());
+    }
+}